@@ -0,0 +1,219 @@
+package ca.bcit.comp2522.lab09;
+
+import java.util.Locale;
+
+/**
+ * Represents the engine behind answer normalization and comparison, which avoids allocating for plain ASCII answers.
+ * <p>
+ * ASCII answers are trimmed and compared case-insensitively in place. Only answers with other characters fall back
+ * to full Unicode case folding, which is done in the root locale so that grading is identical on every machine,
+ * regardless of its default locale (for example, "I" is always folded to "i", even on a Turkish system).
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+final class AnswerNormalizer {
+
+    private static final char MAX_ASCII = 0x7F;
+    private static final char MAX_TRIMMED = ' ';
+    private static final int ASCII_CASE_OFFSET = 'a' - 'A';
+
+    /**
+     * Prevents instantiation of this utility class.
+     */
+    private AnswerNormalizer() {
+    }
+
+    /**
+     * Normalizes the specified answer by trimming it and folding it to lowercase.
+     * <p>
+     * An answer that is already normalized is returned as is, without allocating.
+     *
+     * @param answer the answer to normalize
+     * @return the normalized answer
+     */
+    static String normalize(final String answer) {
+        final int start;
+        final int end;
+
+        start = AnswerNormalizer.trimmedStart(answer);
+        end = AnswerNormalizer.trimmedEnd(answer, start);
+
+        boolean hasUppercase = false;
+
+        for (int i = start; i < end; i++) {
+            final char character;
+            character = answer.charAt(i);
+
+            if (character > AnswerNormalizer.MAX_ASCII) {
+                return AnswerNormalizer.foldUnicode(answer.substring(start, end));
+            }
+
+            hasUppercase |= AnswerNormalizer.isAsciiUppercase(character);
+        }
+
+        if (!hasUppercase) {
+            return start == 0 && end == answer.length() ? answer : answer.substring(start, end);
+        }
+
+        final char[] folded;
+        folded = new char[end - start];
+
+        for (int i = start; i < end; i++) {
+            folded[i - start] = AnswerNormalizer.toAsciiLowercase(answer.charAt(i));
+        }
+
+        return new String(folded);
+    }
+
+    /**
+     * Determines whether the given answer contains the known answer after normalization, and the normalized known
+     * answer is at least half as long as the normalized given answer (floored).
+     * <p>
+     * When both answers are ASCII, this is done in place without allocating.
+     *
+     * @param knownAnswer the known correct answer
+     * @param givenAnswer the given, potentially correct, answer
+     * @return whether the given answer is considered a match after normalization
+     */
+    static boolean matches(final String knownAnswer, final String givenAnswer) {
+        if (!AnswerNormalizer.isAscii(knownAnswer) || !AnswerNormalizer.isAscii(givenAnswer)) {
+            final String normalizedKnown;
+            final String normalizedGiven;
+
+            normalizedKnown = AnswerNormalizer.normalize(knownAnswer);
+            normalizedGiven = AnswerNormalizer.normalize(givenAnswer);
+
+            return normalizedKnown.length() >= normalizedGiven.length() / 2 &&
+                   normalizedGiven.contains(normalizedKnown);
+        }
+
+        final int knownStart;
+        final int knownLength;
+        final int givenStart;
+        final int givenLength;
+
+        knownStart = AnswerNormalizer.trimmedStart(knownAnswer);
+        knownLength = AnswerNormalizer.trimmedEnd(knownAnswer, knownStart) - knownStart;
+        givenStart = AnswerNormalizer.trimmedStart(givenAnswer);
+        givenLength = AnswerNormalizer.trimmedEnd(givenAnswer, givenStart) - givenStart;
+
+        if (knownLength < givenLength / 2) {
+            return false;
+        }
+
+        for (int offset = 0; offset <= givenLength - knownLength; offset++) {
+            if (AnswerNormalizer.regionEqualsIgnoreAsciiCase(givenAnswer, givenStart + offset, knownAnswer,
+                                                             knownStart, knownLength)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Folds the specified non-ASCII text to lowercase in the root locale. Upper casing first folds characters that
+     * have no single lowercase form, such as "ß" into "ss", so that both spellings compare equal.
+     *
+     * @param text the text to fold
+     * @return the folded text
+     */
+    private static String foldUnicode(final String text) {
+        return text.toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Determines whether every character of the given text is ASCII.
+     *
+     * @param text the text to check
+     * @return whether the text is entirely ASCII
+     */
+    private static boolean isAscii(final String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > AnswerNormalizer.MAX_ASCII) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Compares a region of two ASCII strings, ignoring case.
+     *
+     * @param left        the first string
+     * @param leftOffset  the start of the region in the first string
+     * @param right       the second string
+     * @param rightOffset the start of the region in the second string
+     * @param length      the length of the region
+     * @return whether the regions are equal, ignoring case
+     */
+    private static boolean regionEqualsIgnoreAsciiCase(final String left, final int leftOffset, final String right,
+                                                       final int rightOffset, final int length) {
+        for (int i = 0; i < length; i++) {
+            if (AnswerNormalizer.toAsciiLowercase(left.charAt(leftOffset + i)) !=
+                AnswerNormalizer.toAsciiLowercase(right.charAt(rightOffset + i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Finds the first character of the text that would be kept by {@link String#trim()}.
+     *
+     * @param text the text to trim
+     * @return the start of the trimmed text
+     */
+    private static int trimmedStart(final String text) {
+        int start = 0;
+
+        while (start < text.length() && text.charAt(start) <= AnswerNormalizer.MAX_TRIMMED) {
+            start++;
+        }
+
+        return start;
+    }
+
+    /**
+     * Finds the end of the text that would be kept by {@link String#trim()}.
+     *
+     * @param text  the text to trim
+     * @param start the start of the trimmed text
+     * @return the end of the trimmed text, exclusive
+     */
+    private static int trimmedEnd(final String text, final int start) {
+        int end = text.length();
+
+        while (end > start && text.charAt(end - 1) <= AnswerNormalizer.MAX_TRIMMED) {
+            end--;
+        }
+
+        return end;
+    }
+
+    /**
+     * Determines whether the specified character is an uppercase ASCII letter.
+     *
+     * @param character the character to check
+     * @return whether the character is between 'A' and 'Z'
+     */
+    private static boolean isAsciiUppercase(final char character) {
+        return character >= 'A' && character <= 'Z';
+    }
+
+    /**
+     * Lowercases the specified character if it is an uppercase ASCII letter.
+     *
+     * @param character the character to lowercase
+     * @return the lowercased character
+     */
+    private static char toAsciiLowercase(final char character) {
+        return AnswerNormalizer.isAsciiUppercase(character)
+               ? (char) (character + AnswerNormalizer.ASCII_CASE_OFFSET)
+               : character;
+    }
+
+}
@@ -0,0 +1,316 @@
+package ca.bcit.comp2522.lab09;
+
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.concurrent.Service;
+import javafx.util.Subscription;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.file.WatchKey;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Represents every resource held by one owner, such as a scene, which are all released when the owner is destroyed.
+ * <p>
+ * Threads, services, listeners, subscriptions, watch keys, and closeables are tracked as they are acquired, and
+ * released in the reverse order when the lifecycle is destroyed. Every resource that is still held afterward, such as
+ * a thread that did not stop, is reported as leaked on the standard error stream.
+ * <p>
+ * A destroyed owner is also remembered weakly, so it can be checked whether destroyed owners are ever reclaimed, which
+ * catches anything else that keeps them reachable. A lifecycle is only ever used by the thread of its owner.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class Lifecycle implements Destroyable {
+
+    private static final long THREAD_STOP_MILLIS = 100;
+
+    private static final Set<Reference<Object>> DESTROYED_OWNERS = ConcurrentHashMap.newKeySet();
+    private static final ReferenceQueue<Object> RECLAIMED_OWNERS = new ReferenceQueue<>();
+    private static final AtomicLong LEAK_COUNT = new AtomicLong();
+
+    private final Object owner;
+    private final Deque<Resource> resources;
+    private final List<String> leaks;
+
+    private boolean destroyed;
+
+    /**
+     * Creates a new lifecycle for the specified owner, which does not hold any resources yet.
+     *
+     * @param owner the owner of the resources, which is reported with any leaks
+     */
+    public Lifecycle(final Object owner) {
+        Lifecycle.validateOwner(owner);
+
+        this.owner = owner;
+        this.resources = new ArrayDeque<>();
+        this.leaks = new ArrayList<>();
+    }
+
+    /**
+     * Validates that the given owner exists.
+     *
+     * @param owner the owner to check
+     */
+    private static void validateOwner(final Object owner) {
+        if (owner == null) {
+            throw new IllegalArgumentException("A lifecycle must have an owner.");
+        }
+    }
+
+    /**
+     * Tracks a resource that is released by destroying it, and is always released once destroyed.
+     *
+     * @param name     the name of the resource, which is reported if it leaks
+     * @param resource the resource
+     * @param <T>      the type of the resource
+     * @return the resource
+     */
+    public <T extends Destroyable> T track(final String name, final T resource) {
+        this.add(name, resource::destroy, () -> true);
+
+        return resource;
+    }
+
+    /**
+     * Tracks a thread that is released by interrupting it, and leaks if it does not stop shortly afterward.
+     *
+     * @param thread the started thread
+     * @return the thread
+     */
+    public Thread trackThread(final Thread thread) {
+        this.add("thread " + thread.getName(), () -> {
+            thread.interrupt();
+
+            try {
+                thread.join(Lifecycle.THREAD_STOP_MILLIS);
+            } catch (InterruptedException _) {
+                Thread.currentThread().interrupt();
+            }
+        }, () -> !thread.isAlive());
+
+        return thread;
+    }
+
+    /**
+     * Tracks a service that is released by cancelling it, and leaks if it is still running afterward. Services are
+     * only ever released on the JavaFX application thread.
+     *
+     * @param name    the name of the service, which is reported if it leaks
+     * @param service the service
+     * @param <S>     the type of the service
+     * @return the service
+     */
+    public <S extends Service<?>> S trackService(final String name, final S service) {
+        this.add(name, service::cancel, () -> !service.isRunning());
+
+        return service;
+    }
+
+    /**
+     * Tracks a subscription, which is released by unsubscribing.
+     *
+     * @param name         the name of the subscription, which is reported if it leaks
+     * @param subscription the subscription
+     * @return the subscription
+     */
+    public Subscription trackSubscription(final String name, final Subscription subscription) {
+        this.add(name, subscription::unsubscribe, () -> true);
+
+        return subscription;
+    }
+
+    /**
+     * Adds the specified listener to the specified value, and tracks it to be removed when released.
+     *
+     * @param name     the name of the listener, which is reported if it leaks
+     * @param value    the value to listen to
+     * @param listener the listener
+     * @param <T>      the type of the value
+     */
+    public <T> void listen(final String name, final ObservableValue<T> value,
+                           final ChangeListener<? super T> listener) {
+        value.addListener(listener);
+
+        this.add(name, () -> value.removeListener(listener), () -> true);
+    }
+
+    /**
+     * Tracks a watch key that is released by cancelling it, and leaks if it is still valid afterward.
+     *
+     * @param name the name of the watched directory, which is reported if it leaks
+     * @param key  the watch key
+     * @return the watch key
+     */
+    public WatchKey trackWatchKey(final String name, final WatchKey key) {
+        this.add(name, key::cancel, () -> !key.isValid());
+
+        return key;
+    }
+
+    /**
+     * Tracks a closeable that is released by closing it, and leaks if it cannot be closed.
+     *
+     * @param name      the name of the closeable, which is reported if it leaks
+     * @param closeable the closeable
+     * @param <T>       the type of the closeable
+     * @return the closeable
+     */
+    public <T extends Closeable> T trackCloseable(final String name, final T closeable) {
+        this.add(name, () -> {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }, () -> true);
+
+        return closeable;
+    }
+
+    /**
+     * Tracks a resource, unless this lifecycle was already destroyed, in which case it is released immediately.
+     *
+     * @param name     the name of the resource
+     * @param release  the action that releases the resource
+     * @param released whether the resource is released, which is checked after every resource was released
+     */
+    private void add(final String name, final Runnable release, final BooleanSupplier released) {
+        final Resource resource;
+        resource = new Resource(name, release, released);
+
+        if (this.destroyed) {
+            this.release(resource);
+            this.check(resource);
+            this.reportLeaks();
+        } else {
+            this.resources.push(resource);
+        }
+    }
+
+    /**
+     * Releases the specified resource, remembering it as leaked if it cannot be released.
+     *
+     * @param resource the resource
+     */
+    private void release(final Resource resource) {
+        try {
+            resource.release.run();
+        } catch (RuntimeException e) {
+            this.leaks.add(resource.name + " (" + e.getMessage() + ")");
+        }
+    }
+
+    /**
+     * Remembers the specified resource as leaked if it is still held.
+     *
+     * @param resource the released resource
+     */
+    private void check(final Resource resource) {
+        if (!resource.released.getAsBoolean()) {
+            this.leaks.add(resource.name);
+        }
+    }
+
+    /**
+     * Reports every leaked resource that was not reported yet.
+     */
+    private void reportLeaks() {
+        if (this.leaks.isEmpty()) {
+            return;
+        }
+
+        System.err.println("Leaked by " + this.owner.getClass().getSimpleName() + ": " + String.join(", ", this.leaks));
+        Lifecycle.LEAK_COUNT.addAndGet(this.leaks.size());
+        this.leaks.clear();
+    }
+
+    @Override
+    public void destroy() {
+        if (this.destroyed) {
+            return;
+        }
+
+        this.destroyed = true;
+
+        final List<Resource> released;
+        released = new ArrayList<>(this.resources);
+
+        while (!this.resources.isEmpty()) {
+            this.release(this.resources.pop());
+        }
+
+        // Resources are only checked once all of them were released, so a thread has as long as possible to stop.
+        for (final Resource resource : released) {
+            this.check(resource);
+        }
+
+        this.reportLeaks();
+
+        Lifecycle.DESTROYED_OWNERS.add(new WeakReference<>(this.owner, Lifecycle.RECLAIMED_OWNERS));
+    }
+
+    /**
+     * Retrieves the amount of resources that leaked from every lifecycle so far.
+     *
+     * @return the amount of leaked resources
+     */
+    public static long getLeakCount() {
+        return Lifecycle.LEAK_COUNT.get();
+    }
+
+    /**
+     * Determines how many destroyed owners have not been reclaimed by the garbage collector yet. Owners that stay
+     * unreclaimed across garbage collections are kept reachable by something that should have been released.
+     *
+     * @return the amount of destroyed owners that are still reachable
+     */
+    public static int countUnreclaimed() {
+        Reference<?> reclaimed;
+        while ((reclaimed = Lifecycle.RECLAIMED_OWNERS.poll()) != null) {
+            Lifecycle.DESTROYED_OWNERS.remove(reclaimed);
+        }
+
+        Lifecycle.DESTROYED_OWNERS.removeIf((owner) -> owner.refersTo(null));
+
+        return Lifecycle.DESTROYED_OWNERS.size();
+    }
+
+    /**
+     * Represents a single tracked resource.
+     */
+    private static final class Resource {
+
+        private final String name;
+        private final Runnable release;
+        private final BooleanSupplier released;
+
+        /**
+         * Creates a new tracked resource.
+         *
+         * @param name     the name of the resource
+         * @param release  the action that releases the resource
+         * @param released whether the resource is released
+         */
+        private Resource(final String name, final Runnable release, final BooleanSupplier released) {
+            this.name = name;
+            this.release = release;
+            this.released = released;
+        }
+
+    }
+
+}
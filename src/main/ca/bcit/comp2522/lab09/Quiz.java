@@ -1,16 +1,34 @@
 package ca.bcit.comp2522.lab09;
 
+import ca.bcit.comp2522.lab09.bank.CompressedBank;
+import ca.bcit.comp2522.lab09.bank.DeckBuilder;
+import ca.bcit.comp2522.lab09.bank.QuestionBank;
+import ca.bcit.comp2522.lab09.bank.ShardedBank;
+import ca.bcit.comp2522.lab09.match.GradingCache;
+import ca.bcit.comp2522.lab09.metrics.Counter;
+import ca.bcit.comp2522.lab09.metrics.GradeEvent;
+import ca.bcit.comp2522.lab09.metrics.LatencyHistogram;
+import ca.bcit.comp2522.lab09.metrics.Metrics;
+import ca.bcit.comp2522.lab09.metrics.QuizLoadEvent;
+import ca.bcit.comp2522.lab09.practice.PracticeSchedule;
+import ca.bcit.comp2522.lab09.practice.SeenFilter;
+
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Represents a quiz which can have multiple questions and can manage which questions have been asked and which still
@@ -21,11 +39,19 @@ import java.util.stream.Collectors;
  */
 public final class Quiz {
 
+    private static final LatencyHistogram LOAD_LATENCY = Metrics.histogram("quiz.load");
+    private static final LatencyHistogram GRADE_LATENCY = Metrics.histogram("quiz.grade");
+    private static final Counter CORRECT_GRADES = Metrics.counter("quiz.grade.correct");
+    private static final Counter INCORRECT_GRADES = Metrics.counter("quiz.grade.incorrect");
+
     private final Set<QuizQuestion> questions;
     private final Map<QuizQuestion, String> questionAnswers;
     private final Map<QuizQuestion, Boolean> questionAnswerResults;
+    private final Map<QuizQuestion, Long> questionAnswerLatencies;
 
     private Iterator<QuizQuestion> questionIterator;
+    private long questionAskedNanos;
+    private QuizCheckpoint checkpoint;
 
     /**
      * Creates a new quiz.
@@ -38,6 +64,7 @@ public final class Quiz {
         this.questions = questions;
         this.questionAnswers = new HashMap<>();
         this.questionAnswerResults = new HashMap<>();
+        this.questionAnswerLatencies = new HashMap<>();
         this.questionIterator = questions.iterator();
     }
 
@@ -53,15 +80,326 @@ public final class Quiz {
      * @throws IOException if the provided file path cannot be open and read
      */
     public static Quiz fromQuestionsFile(final Path file, final int maxQuestions, boolean shuffle) throws IOException {
+        return Quiz.fromQuestionsFile(file, maxQuestions, shuffle ? new Random() : null);
+    }
+
+    /**
+     * Creates a quiz containing all the questions from the given file, shuffled by the given source of randomness.
+     * <p>
+     * The file is expected to have one encoded {@link QuizQuestion} per line. The same file and the same source of
+     * randomness, in the same state, always create the same quiz, with the questions in the same order.
+     *
+     * @param file         the file to get questions from
+     * @param maxQuestions the maximum amount of questions to load from the file
+     * @param random       the source of randomness to shuffle the questions with, or null to keep the file order
+     * @return the quiz with all the questions
+     * @throws IOException if the provided file path cannot be open and read
+     */
+    public static Quiz fromQuestionsFile(final Path file, final int maxQuestions, final Random random)
+            throws IOException {
+        final QuizLoadEvent event;
+        final long startNanos;
+
+        event = new QuizLoadEvent();
+        startNanos = Metrics.now();
+        event.begin();
+
         final List<String> encodedQuestions;
         final Set<QuizQuestion> questions;
 
         encodedQuestions = Files.readAllLines(file);
-        if (shuffle) Collections.shuffle(encodedQuestions);
+        if (random != null) Collections.shuffle(encodedQuestions, random);
+
+        questions = encodedQuestions.stream()
+                                    .limit(maxQuestions)
+                                    .map(QuizQuestion::decode)
+                                    .collect(Collectors.toCollection(LinkedHashSet::new));
+
+        return Quiz.recordLoad(event, startNanos, file.toString(), questions);
+    }
+
+    /**
+     * Creates a quiz containing questions from the given question bank.
+     * <p>
+     * Only the questions that end up on the quiz are touched, so this does not depend on the size of the bank.
+     *
+     * @param bank         the bank to get questions from
+     * @param maxQuestions the maximum amount of questions to take from the bank
+     * @param shuffle      whether to take random questions, rather than the first questions of the bank
+     * @return the quiz with the taken questions
+     */
+    public static Quiz fromBank(final QuestionBank bank, final int maxQuestions, final boolean shuffle) {
+        final QuizLoadEvent event;
+        final long startNanos;
+
+        event = new QuizLoadEvent();
+        startNanos = Metrics.now();
+        event.begin();
+
+        final Set<QuizQuestion> questions;
+
+        if (shuffle) {
+            questions = bank.sample(maxQuestions, ThreadLocalRandom.current());
+        } else {
+            questions = bank.getQuestions()
+                            .stream()
+                            .limit(maxQuestions)
+                            .collect(Collectors.toCollection(LinkedHashSet::new));
+        }
+
+        return Quiz.recordLoad(event, startNanos, "bank", questions);
+    }
+
+    /**
+     * Creates a quiz containing random questions from the given question bank, selected by the given seed.
+     * <p>
+     * The same bank and the same seed always create the same quiz, with the questions in the same order.
+     *
+     * @param bank         the bank to get questions from
+     * @param maxQuestions the maximum amount of questions to take from the bank
+     * @param seed         the seed of the selection
+     * @return the quiz with the selected questions
+     */
+    public static Quiz fromBank(final QuestionBank bank, final int maxQuestions, final long seed) {
+        final QuizLoadEvent event;
+        final long startNanos;
+
+        event = new QuizLoadEvent();
+        startNanos = Metrics.now();
+        event.begin();
+
+        return Quiz.recordLoad(event, startNanos, "bank", bank.sample(maxQuestions, new Random(seed)));
+    }
+
+    /**
+     * Creates a quiz containing questions from the given compressed bank.
+     * <p>
+     * Only the blocks that hold the questions that end up on the quiz are decompressed, so this does not depend on
+     * the size of the bank.
+     *
+     * @param bank         the compressed bank to get questions from
+     * @param maxQuestions the maximum amount of questions to take from the bank
+     * @param shuffle      whether to take random questions, rather than the first questions of the bank
+     * @return the quiz with the taken questions
+     * @throws IOException if a block of the bank that holds any of the questions is truncated or corrupt
+     */
+    public static Quiz fromCompressedBank(final CompressedBank bank, final int maxQuestions, final boolean shuffle)
+            throws IOException {
+        final QuizLoadEvent event;
+        final long startNanos;
+
+        event = new QuizLoadEvent();
+        startNanos = Metrics.now();
+        event.begin();
+
+        final Set<QuizQuestion> questions;
+
+        if (shuffle) {
+            questions = bank.sample(maxQuestions, ThreadLocalRandom.current());
+        } else {
+            questions = new LinkedHashSet<>(bank.getQuestions(IntStream.range(0, Math.min(maxQuestions, bank.size()))
+                                                                       .toArray()));
+        }
+
+        return Quiz.recordLoad(event, startNanos, "compressed bank", questions);
+    }
+
+    /**
+     * Creates a quiz containing random questions from the given categories of a sharded bank.
+     * <p>
+     * Only the selected questions are read, from the shards that hold them, so a themed quiz does not depend on the
+     * size of the bank.
+     *
+     * @param bank         the sharded bank to get questions from
+     * @param categories   the categories the questions must belong to at least one of
+     * @param maxQuestions the maximum amount of questions to take from the bank
+     * @return the quiz with the taken questions
+     * @throws IOException if a shard of the bank cannot be read
+     */
+    public static Quiz fromCategories(final ShardedBank bank, final Set<String> categories, final int maxQuestions)
+            throws IOException {
+        final QuizLoadEvent event;
+        final long startNanos;
+
+        event = new QuizLoadEvent();
+        startNanos = Metrics.now();
+        event.begin();
+
+        return Quiz.recordLoad(event, startNanos, "categories " + categories,
+                               bank.sample(categories, maxQuestions, ThreadLocalRandom.current()));
+    }
+
+    /**
+     * Creates a quiz containing random questions from the given question bank that the player has not seen yet, and
+     * records them as seen.
+     * <p>
+     * Once the player has seen about every question of the bank, they start seeing questions again.
+     *
+     * @param bank         the bank to get questions from
+     * @param seen         the questions the player has already seen
+     * @param maxQuestions the maximum amount of questions to take from the bank
+     * @return the quiz with the taken questions
+     */
+    public static Quiz fromUnseen(final QuestionBank bank, final SeenFilter seen, final int maxQuestions) {
+        final QuizLoadEvent event;
+        final long startNanos;
+
+        event = new QuizLoadEvent();
+        startNanos = Metrics.now();
+        event.begin();
+
+        final Set<QuizQuestion> questions;
+        questions = new LinkedHashSet<>();
+
+        for (final int ordinal : seen.sampleUnseen(bank, maxQuestions, ThreadLocalRandom.current())) {
+            questions.add(bank.get(ordinal));
+        }
+
+        return Quiz.recordLoad(event, startNanos, "unseen", questions);
+    }
+
+    /**
+     * Creates a practice quiz for the player with the given schedule, drawing questions from the given bank.
+     * <p>
+     * The questions that are due first are the most overdue ones. If fewer questions than the maximum are due, the
+     * quiz is filled with questions the player has never practiced, and then with the questions that will be due the
+     * soonest.
+     *
+     * @param bank         the bank to get questions from
+     * @param schedule     the practice schedule of the player
+     * @param maxQuestions the maximum amount of questions to take from the bank
+     * @return the quiz with the taken questions
+     */
+    public static Quiz fromPractice(final QuestionBank bank, final PracticeSchedule schedule, final int maxQuestions) {
+        final QuizLoadEvent event;
+        final long startNanos;
+
+        event = new QuizLoadEvent();
+        startNanos = Metrics.now();
+        event.begin();
+
+        final int questionCount;
+        final Set<QuizQuestion> questions;
+
+        questionCount = Math.min(maxQuestions, bank.size());
+        questions = new LinkedHashSet<>();
+
+        Quiz.addIds(bank, schedule.findMostDue(questionCount, System.currentTimeMillis()), questions, questionCount);
+
+        // Questions that were never practiced, which are given up on once mostly practiced ones are drawn.
+        final Random random;
+        random = ThreadLocalRandom.current();
+
+        for (int attempt = 0; attempt < 2 * questionCount && questions.size() < questionCount; attempt++) {
+            final int ordinal;
+            ordinal = random.nextInt(bank.size());
+
+            if (!schedule.contains(bank.getId(ordinal))) {
+                questions.add(bank.get(ordinal));
+            }
+        }
 
-        questions = encodedQuestions.stream().limit(maxQuestions).map(QuizQuestion::decode).collect(Collectors.toSet());
+        Quiz.addIds(bank, schedule.findMostDue(2 * questionCount, Long.MAX_VALUE), questions, questionCount);
 
-        return new Quiz(questions);
+        return Quiz.recordLoad(event, startNanos, "practice", questions);
+    }
+
+    /**
+     * Adds the questions of the question bank with the given ids to the given questions, until there are enough
+     * questions. Ids of questions that are no longer in the bank are skipped.
+     *
+     * @param bank          the bank to get questions from
+     * @param ids           the ids of the questions to add
+     * @param questions     the questions to add to
+     * @param questionCount the amount of questions to stop at
+     */
+    private static void addIds(final QuestionBank bank, final long[] ids, final Set<QuizQuestion> questions,
+                               final int questionCount) {
+        for (int i = 0; i < ids.length && questions.size() < questionCount; i++) {
+            final int ordinal;
+            ordinal = bank.ordinalOfId(ids[i]);
+
+            if (ordinal >= 0) {
+                questions.add(bank.get(ordinal));
+            }
+        }
+    }
+
+    /**
+     * Creates a quiz containing the questions of the question bank with the given ids, in order.
+     * <p>
+     * This is used to play a deck prepared ahead of time by a {@link DeckBuilder}. The questions are found by id, so
+     * the deck plays the same questions after the questions file is reordered, and questions that have been removed
+     * from the bank since are skipped.
+     *
+     * @param bank the bank to get questions from
+     * @param ids  the ids of the questions of the deck, in play order
+     * @return the quiz with the questions
+     */
+    public static Quiz fromDeck(final QuestionBank bank, final long[] ids) {
+        final QuizLoadEvent event;
+        final long startNanos;
+
+        event = new QuizLoadEvent();
+        startNanos = Metrics.now();
+        event.begin();
+
+        final Set<QuizQuestion> questions;
+        questions = new LinkedHashSet<>();
+
+        Quiz.addIds(bank, ids, questions, ids.length);
+
+        return Quiz.recordLoad(event, startNanos, "deck", questions);
+    }
+
+    /**
+     * Creates a quiz containing exactly the questions at the given ordinals of the question bank, in order.
+     * <p>
+     * This is used where every party reads the same bank, such as the nodes of a cluster, so an ordinal means the
+     * same question everywhere.
+     *
+     * @param bank     the bank to get questions from
+     * @param ordinals the ordinals of the questions in the bank
+     * @return the quiz with the questions
+     */
+    public static Quiz fromDeck(final QuestionBank bank, final int[] ordinals) {
+        final QuizLoadEvent event;
+        final long startNanos;
+
+        event = new QuizLoadEvent();
+        startNanos = Metrics.now();
+        event.begin();
+
+        final Set<QuizQuestion> questions;
+        questions = new LinkedHashSet<>();
+
+        for (final int ordinal : ordinals) {
+            questions.add(bank.get(ordinal));
+        }
+
+        return Quiz.recordLoad(event, startNanos, "deck", questions);
+    }
+
+    /**
+     * Creates a quiz from the loaded questions, and records how long the load took.
+     *
+     * @param event      the started load event
+     * @param startNanos the time the load started, as returned by {@link Metrics#now()}
+     * @param source     where the questions were loaded from
+     * @param questions  the loaded questions
+     * @return the quiz with the loaded questions
+     */
+    private static Quiz recordLoad(final QuizLoadEvent event, final long startNanos, final String source,
+                                   final Set<QuizQuestion> questions) {
+        final Quiz quiz;
+        quiz = new Quiz(questions);
+
+        event.source = source;
+        event.questionCount = questions.size();
+        event.commit();
+        Quiz.LOAD_LATENCY.recordSince(startNanos);
+
+        return quiz;
     }
 
     /**
@@ -83,6 +421,7 @@ public final class Quiz {
      */
     public QuizQuestion getNextQuestion() {
         if (this.questionIterator.hasNext()) {
+            this.questionAskedNanos = System.nanoTime();
             return this.questionIterator.next();
         }
 
@@ -95,6 +434,43 @@ public final class Quiz {
     public void reset() {
         this.questionIterator = this.questions.iterator();
         this.questionAnswerResults.clear();
+        this.questionAnswerLatencies.clear();
+
+        if (this.checkpoint != null) {
+            this.checkpoint.clearAnswers();
+        }
+    }
+
+    /**
+     * Attaches the specified checkpoint, which records every answer from now on.
+     *
+     * @param checkpoint the checkpoint of this quiz
+     */
+    void attachCheckpoint(final QuizCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Restores an answer recorded by a checkpoint, without grading it again.
+     *
+     * @param question the answered question
+     * @param answer   the recorded answer
+     * @param result   the recorded result
+     */
+    void restoreAnswer(final QuizQuestion question, final String answer, final boolean result) {
+        this.questionAnswers.put(question, answer);
+        this.questionAnswerResults.put(question, result);
+    }
+
+    /**
+     * Advances past the specified amount of questions, so that the next question is the first one not skipped.
+     *
+     * @param count the amount of questions to skip
+     */
+    void skipQuestions(final int count) {
+        for (int i = 0; i < count && this.questionIterator.hasNext(); i++) {
+            this.questionIterator.next();
+        }
     }
 
     /**
@@ -109,11 +485,52 @@ public final class Quiz {
                                                        "\" is not on this quiz, so it cannot be answered.");
         }
 
+        final long latencyMillis;
+        latencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.questionAskedNanos);
+
+        final GradeEvent event;
+        final long startNanos;
+
+        event = new GradeEvent();
+        startNanos = Metrics.now();
+        event.begin();
+
         final boolean result;
-        result = question.isAcceptedAnswer(answer);
+        result = GradingCache.shared().grade(question, answer);
+
+        event.answerLength = answer.length();
+        event.correct = result;
+        event.commit();
+        Quiz.GRADE_LATENCY.recordSince(startNanos);
+        (result ? Quiz.CORRECT_GRADES : Quiz.INCORRECT_GRADES).increment();
 
         this.questionAnswers.put(question, answer);
         this.questionAnswerResults.put(question, result);
+        this.questionAnswerLatencies.put(question, latencyMillis);
+
+        if (this.checkpoint != null) {
+            this.checkpoint.recordAnswer(this.indexOf(question), answer, result);
+        }
+    }
+
+    /**
+     * Determines the position of the specified question on this quiz.
+     *
+     * @param question the question, which must be on this quiz
+     * @return the index of the question
+     */
+    private int indexOf(final QuizQuestion question) {
+        int index = 0;
+
+        for (final QuizQuestion other : this.questions) {
+            if (other.equals(question)) {
+                return index;
+            }
+
+            index++;
+        }
+
+        return -1;
     }
 
     /**
@@ -173,4 +590,20 @@ public final class Quiz {
         return this.questionAnswerResults.getOrDefault(question, false);
     }
 
+    /**
+     * Retrieves how long the answer to the specified question took, from when the question was asked until it was
+     * answered.
+     *
+     * @param question the question to get the answer time for
+     * @return the answer time in milliseconds, or -1 if there was no answer, or it was restored from a checkpoint
+     */
+    public long getRecordedLatencyFor(final QuizQuestion question) {
+        if (!this.questions.contains(question)) {
+            throw new IllegalArgumentException("The question \"" + question.getQuestionText() +
+                                                       "\" is not on this quiz, so it cannot have an answer.");
+        }
+
+        return this.questionAnswerLatencies.getOrDefault(question, -1L);
+    }
+
 }
@@ -1,10 +1,20 @@
 package ca.bcit.comp2522.lab09;
 
+import ca.bcit.comp2522.lab09.analytics.AnswerLog;
+import ca.bcit.comp2522.lab09.bank.BankSnapshot;
+import ca.bcit.comp2522.lab09.bank.QuestionBank;
+import ca.bcit.comp2522.lab09.bank.QuestionBankWatcher;
+import ca.bcit.comp2522.lab09.metrics.FxTasks;
+import ca.bcit.comp2522.lab09.metrics.LatencyHistogram;
+import ca.bcit.comp2522.lab09.metrics.Metrics;
+import ca.bcit.comp2522.lab09.metrics.SceneSwitchEvent;
+import ca.bcit.comp2522.lab09.metrics.StartupReport;
+import ca.bcit.comp2522.lab09.practice.PracticeScheduler;
+import ca.bcit.comp2522.lab09.practice.SeenStore;
 import ca.bcit.comp2522.lab09.scene.GameScene;
 import ca.bcit.comp2522.lab09.scene.HomeScene;
 import ca.bcit.comp2522.lab09.scene.SummaryScene;
 import javafx.application.Application;
-import javafx.application.Platform;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
@@ -16,9 +26,14 @@ import java.nio.file.StandardWatchEventKinds;
 import java.nio.file.WatchEvent;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The driver class for COMP2522 Lab #9.
+ * <p>
+ * The state saved between runs is kept in the directory given by the {@code quizzer.data.dir} system property, which
+ * is the working directory unless it is given.
  *
  * @author Ole Lammers & Tianyou Xie
  * @version 1.0
@@ -26,11 +41,29 @@ import java.nio.file.WatchService;
 public final class QuizApp extends Application {
 
     private static final Path GLOBAL_STYLES_PATH = Path.of("src", "resources", "style.css");
+    private static final Path QUESTIONS_PATH = Path.of("quiz.txt");
+    private static final Path DATA_DIRECTORY = Path.of(System.getProperty("quizzer.data.dir", ""));
+    private static final Path SNAPSHOT_PATH = QuizApp.DATA_DIRECTORY.resolve(
+            BankSnapshot.pathFor(QuizApp.QUESTIONS_PATH).getFileName());
+    private static final Path PRACTICE_PATH = QuizApp.DATA_DIRECTORY.resolve("practice.bin");
+    private static final Path SEEN_PATH = QuizApp.DATA_DIRECTORY.resolve("seen.bin");
+    private static final Path CHECKPOINT_PATH = QuizApp.DATA_DIRECTORY.resolve("checkpoint.bin");
+    private static final Path ANSWERS_PATH = QuizApp.DATA_DIRECTORY.resolve("answers.bin");
+    private static final String PLAYER_NAME = System.getProperty("user.name", "player");
 
     private static final int SCENE_WIDTH = 600;
     private static final int SCENE_HEIGHT = 400;
 
+    private static final LatencyHistogram SCENE_SWITCH_LATENCY = Metrics.histogram("scene.switch");
+    private static final CountDownLatch STARTED = new CountDownLatch(1);
+
     private static Stage primaryStage;
+    private static Lifecycle lifecycle;
+    private static QuestionBankWatcher questionBankWatcher;
+    private static PracticeScheduler practiceScheduler;
+    private static SeenStore seenStore;
+    private static QuizCheckpoint unfinishedGame;
+    private static AnswerLog answerLog;
 
     /**
      * Entry point for the Lab #9 driver class.
@@ -38,6 +71,7 @@ public final class QuizApp extends Application {
      * @param args the command line arguments
      */
     public static void main(final String[] args) {
+        StartupReport.mark("launch");
         launch(args);
     }
 
@@ -70,18 +104,59 @@ public final class QuizApp extends Application {
                             continue;
                         }
 
-                        Platform.runLater(QuizApp::applyStyles);
+                        FxTasks.runLater(QuizApp::applyStyles);
                     }
 
                     key.reset();
                 }
-            } catch (IOException | InterruptedException e) {
+            } catch (InterruptedException _) {
+                // The application is stopping.
+            } catch (IOException e) {
                 throw new RuntimeException(e);
             }
-        });
+        }, "style-watcher");
 
         watcherThread.setDaemon(true);
         watcherThread.start();
+        QuizApp.lifecycle.trackThread(watcherThread);
+    }
+
+    /**
+     * Loads the questions file and starts watching it for changes, so that every new game is played with the latest
+     * questions without re-reading the whole file. If the last run left a snapshot of the current questions file,
+     * the bank is mapped from the snapshot instead, and the questions file is not decoded at all.
+     */
+    private static void startQuestionReloading() {
+        try {
+            final QuestionBank snapshotBank;
+            snapshotBank = BankSnapshot.load(QuizApp.SNAPSHOT_PATH, QuizApp.QUESTIONS_PATH);
+
+            QuizApp.questionBankWatcher = QuizApp.lifecycle.track("question bank watcher",
+                                                                  new QuestionBankWatcher(QuizApp.QUESTIONS_PATH,
+                                                                                          snapshotBank));
+            QuizApp.questionBankWatcher.start();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Loads the practice schedules, seen questions, and unfinished game saved by the last run, so that practice games
+     * continue where they left off, regular games do not repeat questions, and a game cut short can be resumed. The
+     * answer archive is opened to add the answers of every game to.
+     */
+    private static void loadPlayerState() {
+        try {
+            QuizApp.answerLog = QuizApp.lifecycle.trackCloseable("answer log", AnswerLog.open(QuizApp.ANSWERS_PATH));
+            QuizApp.practiceScheduler = PracticeScheduler.load(QuizApp.PRACTICE_PATH);
+            QuizApp.seenStore = QuizApp.lifecycle.trackCloseable("seen store",
+                                                                 SeenStore.open(QuizApp.SEEN_PATH,
+                                                                                SeenStore.DEFAULT_BUDGET_BYTES));
+            QuizApp.unfinishedGame = QuizCheckpoint.resume(QuizApp.CHECKPOINT_PATH,
+                                                           QuizApp.questionBankWatcher.getBank());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
     }
 
     /**
@@ -101,8 +176,16 @@ public final class QuizApp extends Application {
 
     @Override
     public void start(final Stage primaryStage) {
+        StartupReport.mark("toolkit init");
+
         QuizApp.primaryStage = primaryStage;
+        QuizApp.lifecycle = new Lifecycle(this);
         QuizApp.startStyleReloading();
+        QuizApp.startQuestionReloading();
+        QuizApp.questionBankWatcher.setOnReload((_) -> FxTasks.runLater(this::refreshHomeScreen));
+        StartupReport.mark("question bank");
+        QuizApp.loadPlayerState();
+        StartupReport.mark("player state");
 
         this.setToHomeScreen();
 
@@ -110,33 +193,173 @@ public final class QuizApp extends Application {
         primaryStage.setResizable(false);
         primaryStage.show();
         primaryStage.toFront();
+
+        StartupReport.markAfterNextPulse("first scene render", primaryStage.getScene());
+        QuizApp.STARTED.countDown();
+    }
+
+    /**
+     * Waits for the application to show its home screen, for anything driving the application from another thread.
+     *
+     * @param timeout the longest time to wait
+     * @param unit    the unit of the timeout
+     * @return the primary stage, or null if the application did not start in time
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    static Stage awaitStarted(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return QuizApp.STARTED.await(timeout, unit) ? QuizApp.primaryStage : null;
+    }
+
+    @Override
+    public void stop() throws IOException {
+        try {
+            QuizApp.practiceScheduler.save(QuizApp.PRACTICE_PATH);
+        } catch (IOException e) {
+            System.err.println("Could not save the practice schedules: " + e.getMessage());
+        }
+
+        try {
+            QuizApp.questionBankWatcher.writeSnapshot(QuizApp.SNAPSHOT_PATH);
+        } catch (IOException e) {
+            System.err.println("Could not write the question bank snapshot: " + e.getMessage());
+        }
+
+        // A game still in progress keeps its checkpoint active, so it can be resumed by the next run.
+        if (QuizApp.primaryStage.getScene().getRoot() instanceof Destroyable destroyable) {
+            destroyable.destroy();
+        }
+
+        QuizApp.lifecycle.destroy();
+        Metrics.dump();
     }
 
     /**
-     * Transitions to the game summary screen with the given quiz being summarized.
+     * Records the results of the given quiz for practice and archives its answers, and transitions to the game
+     * summary screen with the given quiz being summarized.
      *
+     * @param bank       the bank the questions of the quiz were taken from
      * @param playedQuiz the quiz to summarize on the summary screen
      */
-    private void summarizeGame(final Quiz playedQuiz) {
+    private void summarizeGame(final QuestionBank bank, final Quiz playedQuiz) {
+        QuizApp.practiceScheduler.recordQuiz(QuizApp.PLAYER_NAME, bank, playedQuiz);
+
+        try {
+            QuizApp.answerLog.appendQuiz(bank, playedQuiz);
+            QuizApp.answerLog.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
         this.loadAsScene(new SummaryScene(playedQuiz, this::setToHomeScreen));
     }
 
     /**
-     * Transitions to the home screen.
+     * Transitions to the home screen, which offers to resume the game left unfinished by the last run if there is one,
+     * and tells the player if the questions file could not be reloaded.
      */
     private void setToHomeScreen() {
-        this.loadAsScene(new HomeScene(this::startGame));
+        final Exception reloadError;
+        reloadError = QuizApp.questionBankWatcher.getReloadError();
+
+        this.loadAsScene(new HomeScene(this::startGame, this::startPractice,
+                                       QuizApp.unfinishedGame == null ? null : this::resumeGame,
+                                       reloadError == null ? null : "The questions file has an error, so the previous "
+                                                                    + "questions are used: "
+                                                                    + reloadError.getMessage()));
     }
 
     /**
-     * Transitions to the game screen, which will start a new quiz game immediately.
+     * Shows the home screen again if it is currently shown, so that it reflects whether the questions file could be
+     * reloaded.
+     */
+    private void refreshHomeScreen() {
+        if (QuizApp.primaryStage.getScene() != null && QuizApp.primaryStage.getScene().getRoot() instanceof HomeScene) {
+            this.setToHomeScreen();
+        }
+    }
+
+    /**
+     * Transitions to the game screen, which will start a new quiz game of questions the player has not seen yet
+     * immediately.
      */
     private void startGame() {
+        final QuestionBank bank;
+        final Quiz quiz;
+
+        StartupReport.mark("home screen");
+        bank = QuizApp.questionBankWatcher.getBank();
+
+        try {
+            quiz = Quiz.fromUnseen(bank, QuizApp.seenStore.getFilter(QuizApp.PLAYER_NAME, bank.size()),
+                                   GameScene.QUESTIONS_PER_GAME);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        this.playGame(bank, quiz);
+    }
+
+    /**
+     * Transitions to the game screen, which will start a new practice game of the questions that are due for review
+     * immediately.
+     */
+    private void startPractice() {
+        final QuestionBank bank;
+        final Quiz quiz;
+
+        StartupReport.mark("home screen");
+        bank = QuizApp.questionBankWatcher.getBank();
+        quiz = Quiz.fromPractice(bank, QuizApp.practiceScheduler.getSchedule(QuizApp.PLAYER_NAME),
+                                 GameScene.QUESTIONS_PER_GAME);
+
+        this.playGame(bank, quiz);
+    }
+
+    /**
+     * Transitions to the game screen, which will continue the game left unfinished by the last run at the question
+     * and remaining time it was left at.
+     */
+    private void resumeGame() {
+        final QuestionBank bank;
+        final QuizCheckpoint checkpoint;
+
+        StartupReport.mark("home screen");
+        bank = QuizApp.questionBankWatcher.getBank();
+        checkpoint = QuizApp.unfinishedGame;
+        QuizApp.unfinishedGame = null;
+
+        this.loadAsScene(new GameScene(checkpoint, (playedQuiz) -> this.summarizeGame(bank, playedQuiz)));
+        QuizApp.reportStartup();
+    }
+
+    /**
+     * Transitions to the game screen, which will play the specified quiz while checkpointing every answer, so that
+     * the game can be resumed if the application dies mid-game. Any unfinished game of the last run is replaced.
+     *
+     * @param bank the bank the questions of the quiz were taken from
+     * @param quiz the quiz to play
+     */
+    private void playGame(final QuestionBank bank, final Quiz quiz) {
+        final QuizCheckpoint checkpoint;
+
         try {
-            this.loadAsScene(new GameScene(this::summarizeGame));
+            checkpoint = QuizCheckpoint.begin(QuizApp.CHECKPOINT_PATH, quiz, bank);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+
+        QuizApp.unfinishedGame = null;
+        this.loadAsScene(new GameScene(checkpoint, (playedQuiz) -> this.summarizeGame(bank, playedQuiz)));
+        QuizApp.reportStartup();
+    }
+
+    /**
+     * Marks the first question as being on screen, and reports how long startup took if this was the first game.
+     * The time spent on the home screen is reported as its own phase, since it is up to the player.
+     */
+    private static void reportStartup() {
+        StartupReport.mark("first quiz ready");
+        StartupReport.report();
     }
 
     /**
@@ -148,6 +371,13 @@ public final class QuizApp extends Application {
      * @param root the root node to load
      */
     private void loadAsScene(final Parent root) {
+        final SceneSwitchEvent event;
+        final long startNanos;
+
+        event = new SceneSwitchEvent();
+        startNanos = Metrics.now();
+        event.begin();
+
         final Scene currentScene;
         final Scene newScene;
 
@@ -160,6 +390,11 @@ public final class QuizApp extends Application {
 
         QuizApp.primaryStage.setScene(newScene);
         QuizApp.applyStyles();
+
+        event.fromScene = currentScene == null ? null : currentScene.getRoot().getClass().getSimpleName();
+        event.toScene = root.getClass().getSimpleName();
+        event.commit();
+        QuizApp.SCENE_SWITCH_LATENCY.recordSince(startNanos);
     }
 
 }
@@ -0,0 +1,546 @@
+package ca.bcit.comp2522.lab09;
+
+import ca.bcit.comp2522.lab09.metrics.FxTasks;
+import ca.bcit.comp2522.lab09.metrics.LatencyHistogram;
+import ca.bcit.comp2522.lab09.metrics.Metrics;
+import ca.bcit.comp2522.lab09.scene.GameScene;
+import ca.bcit.comp2522.lab09.scene.HomeScene;
+import ca.bcit.comp2522.lab09.scene.SummaryScene;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.event.Event;
+import javafx.event.EventType;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.control.ButtonBase;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.stage.Stage;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Represents a headless run of the whole application, which plays one game through the home, game, and summary
+ * screens, and fails when the user interface got slower than its budgets.
+ * <p>
+ * The run needs no display and no GPU, since it renders with the Monocle headless platform in software. Monocle is
+ * not part of the JavaFX SDK, so the Monocle build matching the JavaFX version must be on the class path. Text is
+ * still laid out by the native font libraries of the platform, which on Linux means Pango must be installed. The
+ * following system properties select it, and are set to these values unless they are given on the command line:
+ * <ul>
+ *     <li>{@code glass.platform=Monocle} and {@code monocle.platform=Headless} select the headless window system</li>
+ *     <li>{@code prism.order=sw} renders in software</li>
+ *     <li>{@code quizzer.metrics=true} records the measurements below</li>
+ *     <li>{@code quizzer.data.dir} is a new temporary directory, so the run neither reads nor overwrites the saved
+ *     state of the application, and {@code quizzer.metrics.file} is a file in it</li>
+ * </ul>
+ * Answers are typed into the answer input as synthetic key events, which are fired at the input directly. Three
+ * things are measured, each against a budget in milliseconds or tasks that can be given as a system property:
+ * <ul>
+ *     <li>the time between pulses while the game screen is shown and its timer is ticking, whose 99th percentile
+ *     must stay within {@code quizzer.harness.pulse}, by default 50 milliseconds</li>
+ *     <li>the time from a keystroke to the next pulse, which lays out and renders it, whose 99th percentile must
+ *     stay within {@code quizzer.harness.keystroke}, by default 50 milliseconds</li>
+ *     <li>the amount of tasks waiting on the JavaFX application thread at every pulse of the game screen, which
+ *     must never exceed {@code quizzer.harness.queue}, by default 4 tasks</li>
+ * </ul>
+ * <p>
+ * When {@code quizzer.harness.soak} is given a number of rounds, that many more games are played afterward, as fast
+ * as possible, to find what degrades over a long run. Every {@value #SOAK_SAMPLE_ROUNDS} rounds, the heap after a
+ * garbage collection, the thread count, the garbage collections so far, the resources leaked by any
+ * {@link Lifecycle}, and the destroyed owners that were not reclaimed are written to the CSV file named by
+ * {@code quizzer.harness.soak.file}, by default {@code soak.csv}. The soak fails if any resource leaked, or more than
+ * {@code quizzer.harness.unreclaimed} destroyed owners, by default 2, are still reachable at the end.
+ * <p>
+ * The process exits with 0 if every budget was met, and with 1 if any was not, or the run failed.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class QuizAppHarness {
+
+    private static final String BUDGET_PROPERTY_PREFIX = "quizzer.harness.";
+    private static final String DATA_DIRECTORY_PROPERTY = "quizzer.data.dir";
+    private static final String DATA_DIRECTORY_PREFIX = "quizzer-harness";
+    private static final double PULSE_BUDGET_MILLIS = QuizAppHarness.budget("pulse", 50);
+    private static final double KEYSTROKE_BUDGET_MILLIS = QuizAppHarness.budget("keystroke", 50);
+    private static final double QUEUE_DEPTH_BUDGET = QuizAppHarness.budget("queue", 4);
+    private static final double UNRECLAIMED_BUDGET = QuizAppHarness.budget("unreclaimed", 2);
+    private static final double BUDGET_PERCENTILE = 99;
+
+    private static final int SOAK_ROUNDS = Integer.getInteger("quizzer.harness.soak", 0);
+    private static final Path SOAK_PATH = Path.of(System.getProperty("quizzer.harness.soak.file", "soak.csv"));
+    private static final int SOAK_SAMPLE_ROUNDS = 50;
+    private static final String SOAK_HEADER = "elapsed_ms,round,heap_used_bytes,heap_committed_bytes,threads," +
+                                              "gc_count,gc_millis,leaked_resources,unreclaimed_owners";
+
+    private static final long STARTUP_TIMEOUT_SECONDS = 60;
+    private static final long STEP_TIMEOUT_SECONDS = 10;
+    private static final long THINKING_MILLIS = 250;
+    private static final String TYPED_ANSWER = "synthetic answer";
+
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final int SUCCESS_STATUS = 0;
+    private static final int FAILURE_STATUS = 1;
+
+    private final Stage stage;
+    private final LatencyHistogram pulseIntervals;
+    private final LatencyHistogram keystrokeLatencies;
+    private final Runnable pulseListener;
+
+    private long lastPulseNanos;
+    private long keystrokeNanos;
+    private CompletableFuture<Void> nextPulse;
+    private int maxQueueDepth;
+
+    /**
+     * Creates a new harness driving the application shown in the specified stage.
+     *
+     * @param stage the primary stage of the started application
+     */
+    private QuizAppHarness(final Stage stage) {
+        this.stage = stage;
+        this.pulseIntervals = Metrics.histogram("harness.pulse.interval");
+        this.keystrokeLatencies = Metrics.histogram("harness.keystroke.render");
+        this.pulseListener = this::onPulse;
+    }
+
+    /**
+     * Entry point of the headless harness, which starts the application, plays one game, and exits with the result.
+     *
+     * @param args the command line arguments, which are passed on to the application
+     * @throws IOException          if the temporary directory for the state of the application cannot be created
+     * @throws InterruptedException if the harness is interrupted while the application stops
+     */
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        if (System.getProperty(QuizAppHarness.DATA_DIRECTORY_PROPERTY) == null) {
+            System.setProperty(QuizAppHarness.DATA_DIRECTORY_PROPERTY,
+                               Files.createTempDirectory(QuizAppHarness.DATA_DIRECTORY_PREFIX).toString());
+        }
+
+        final Path dataDirectory;
+        dataDirectory = Path.of(System.getProperty(QuizAppHarness.DATA_DIRECTORY_PROPERTY));
+
+        QuizAppHarness.setDefault("glass.platform", "Monocle");
+        QuizAppHarness.setDefault("monocle.platform", "Headless");
+        QuizAppHarness.setDefault("prism.order", "sw");
+        QuizAppHarness.setDefault("quizzer.metrics", Boolean.TRUE.toString());
+        QuizAppHarness.setDefault("quizzer.metrics.file", dataDirectory.resolve("metrics.txt").toString());
+
+        System.out.println("Application state kept in " + dataDirectory.toAbsolutePath());
+
+        final Thread launcherThread;
+        launcherThread = new Thread(() -> Application.launch(QuizApp.class, args));
+
+        launcherThread.setDaemon(true);
+        launcherThread.start();
+
+        final Stage stage;
+        stage = QuizApp.awaitStarted(QuizAppHarness.STARTUP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        if (stage == null) {
+            System.err.println("The application did not start within " + QuizAppHarness.STARTUP_TIMEOUT_SECONDS +
+                               " seconds.");
+            System.exit(QuizAppHarness.FAILURE_STATUS);
+        }
+
+        boolean withinBudget = false;
+
+        try {
+            final QuizAppHarness harness;
+            harness = new QuizAppHarness(stage);
+
+            harness.watchPulses();
+            harness.playGame(QuizAppHarness.THINKING_MILLIS);
+            withinBudget = harness.report();
+
+            if (QuizAppHarness.SOAK_ROUNDS > 0) {
+                withinBudget = harness.soak(QuizAppHarness.SOAK_ROUNDS) && withinBudget;
+            }
+        } catch (Exception e) {
+            System.err.println("The harness run failed:");
+            e.printStackTrace();
+        } finally {
+            // The application is stopped normally, so its state and metrics are saved before the process exits.
+            Platform.exit();
+            launcherThread.join(TimeUnit.SECONDS.toMillis(QuizAppHarness.STEP_TIMEOUT_SECONDS));
+        }
+
+        System.exit(withinBudget ? QuizAppHarness.SUCCESS_STATUS : QuizAppHarness.FAILURE_STATUS);
+    }
+
+    /**
+     * Sets the specified system property, unless it was already given.
+     *
+     * @param key   the name of the property
+     * @param value the value of the property
+     */
+    private static void setDefault(final String key, final String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+
+    /**
+     * Reads the budget of the specified name from the system properties.
+     *
+     * @param name          the name of the budget, without the common prefix
+     * @param defaultBudget the budget if the property is not given
+     * @return the budget
+     */
+    private static double budget(final String name, final double defaultBudget) {
+        return Double.parseDouble(System.getProperty(QuizAppHarness.BUDGET_PROPERTY_PREFIX + name,
+                                                     String.valueOf(defaultBudget)));
+    }
+
+    /**
+     * Starts measuring the pulses of whichever scene the stage shows.
+     *
+     * @throws Exception if the JavaFX application thread does not answer in time
+     */
+    private void watchPulses() throws Exception {
+        this.onFx(() -> {
+            this.moveListener(null, this.stage.getScene());
+            this.stage.sceneProperty().subscribe(this::moveListener);
+            return null;
+        });
+    }
+
+    /**
+     * Plays one game from the home screen, answering every question by typing, and then goes back home.
+     *
+     * @param thinkingMillis the time to wait before typing every answer, while the timer ticks
+     * @throws Exception if any step fails or does not finish in time
+     */
+    private void playGame(final long thinkingMillis) throws Exception {
+        this.onFx(() -> {
+            this.fire(HomeScene.START_BUTTON_ID);
+            return null;
+        });
+
+        int answered = 0;
+        while (answered < GameScene.QUESTIONS_PER_GAME && this.isShowing(GameScene.class)) {
+            // The timer ticks for a while before every answer, so the game screen is measured while it is updating.
+            Thread.sleep(thinkingMillis);
+
+            for (final char character : QuizAppHarness.TYPED_ANSWER.toCharArray()) {
+                this.typeKey(String.valueOf(character), KeyCode.UNDEFINED);
+            }
+
+            this.typeKey(KeyEvent.CHAR_UNDEFINED, KeyCode.ENTER);
+            answered++;
+        }
+
+        if (!this.isShowing(SummaryScene.class)) {
+            throw new IllegalStateException("The game did not end on the summary screen after " + answered +
+                                            " answers.");
+        }
+
+        this.onFx(() -> {
+            this.fire(SummaryScene.EXIT_BUTTON_ID);
+            return null;
+        });
+
+        if (!this.isShowing(HomeScene.class)) {
+            throw new IllegalStateException("Exiting the summary screen did not go back to the home screen.");
+        }
+    }
+
+    /**
+     * Plays the specified amount of games as fast as possible, sampling the health of the process along the way.
+     *
+     * @param rounds the amount of games to play
+     * @return whether no resources leaked, and few enough destroyed owners stayed reachable
+     * @throws Exception if any game fails, or the samples cannot be written
+     */
+    private boolean soak(final int rounds) throws Exception {
+        final long startNanos;
+        startNanos = System.nanoTime();
+
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(QuizAppHarness.SOAK_PATH))) {
+            out.println(QuizAppHarness.SOAK_HEADER);
+            QuizAppHarness.sample(out, startNanos, 0);
+
+            for (int round = 1; round <= rounds; round++) {
+                this.playGame(0);
+
+                if (round % QuizAppHarness.SOAK_SAMPLE_ROUNDS == 0 || round == rounds) {
+                    QuizAppHarness.sample(out, startNanos, round);
+                }
+            }
+        }
+
+        final boolean leakWithinBudget;
+        final boolean unreclaimedWithinBudget;
+
+        leakWithinBudget = QuizAppHarness.printMeasurement("soak leaked resources", Lifecycle.getLeakCount(),
+                                                           "", rounds, 0);
+        unreclaimedWithinBudget = QuizAppHarness.printMeasurement("soak unreclaimed owners",
+                                                                  Lifecycle.countUnreclaimed(), "", rounds,
+                                                                  QuizAppHarness.UNRECLAIMED_BUDGET);
+
+        System.out.println("Soak samples written to " + QuizAppHarness.SOAK_PATH.toAbsolutePath());
+
+        return leakWithinBudget && unreclaimedWithinBudget;
+    }
+
+    /**
+     * Writes one sample of the health of the process, measured right after a garbage collection, so the heap in use
+     * is what is actually retained.
+     *
+     * @param out        the CSV file to write to
+     * @param startNanos the time the soak started
+     * @param round      the amount of games played so far
+     * @throws IOException if the sample cannot be written
+     */
+    private static void sample(final PrintWriter out, final long startNanos, final int round) throws IOException {
+        System.gc();
+
+        final MemoryUsage heap;
+        final int threads;
+
+        heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        threads = ManagementFactory.getThreadMXBean().getThreadCount();
+
+        long gcCount = 0;
+        long gcMillis = 0;
+
+        for (final GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += Math.max(0, collector.getCollectionCount());
+            gcMillis += Math.max(0, collector.getCollectionTime());
+        }
+
+        out.printf("%d,%d,%d,%d,%d,%d,%d,%d,%d%n", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos),
+                   round, heap.getUsed(), heap.getCommitted(), threads, gcCount, gcMillis, Lifecycle.getLeakCount(),
+                   Lifecycle.countUnreclaimed());
+        out.flush();
+
+        if (out.checkError()) {
+            throw new IOException("The soak samples could not be written to " + QuizAppHarness.SOAK_PATH + ".");
+        }
+    }
+
+    /**
+     * Moves the pulse listener from the previous scene of the stage to its new scene, and starts measuring the time
+     * between pulses anew.
+     *
+     * @param previous the previous scene, or null if there was none
+     * @param current  the new scene, or null if there is none
+     */
+    private void moveListener(final Scene previous, final Scene current) {
+        if (previous != null) {
+            previous.removePostLayoutPulseListener(this.pulseListener);
+        }
+
+        if (current != null) {
+            current.addPostLayoutPulseListener(this.pulseListener);
+        }
+
+        this.lastPulseNanos = 0;
+    }
+
+    /**
+     * Measures the pulse that just laid out the scene, which is the last step before it is rendered. This runs on
+     * the JavaFX application thread.
+     */
+    private void onPulse() {
+        final long now;
+        now = System.nanoTime();
+
+        if (this.stage.getScene().getRoot() instanceof GameScene) {
+            if (this.lastPulseNanos != 0) {
+                this.pulseIntervals.record(now - this.lastPulseNanos);
+            }
+
+            this.lastPulseNanos = now;
+            this.maxQueueDepth = Math.max(this.maxQueueDepth, FxTasks.getPendingCount());
+        }
+
+        if (this.keystrokeNanos != 0) {
+            this.keystrokeLatencies.record(now - this.keystrokeNanos);
+            this.keystrokeNanos = 0;
+        }
+
+        if (this.nextPulse != null) {
+            this.nextPulse.complete(null);
+            this.nextPulse = null;
+        }
+    }
+
+    /**
+     * Types a single key into the answer input, and waits for the pulse that lays out its effect.
+     *
+     * @param character the character the key types, or {@link KeyEvent#CHAR_UNDEFINED} if it types none
+     * @param code      the code of the key
+     * @throws Exception if the answer input is not shown, or no pulse follows in time
+     */
+    private void typeKey(final String character, final KeyCode code) throws Exception {
+        final CompletableFuture<Void> laidOut;
+
+        laidOut = this.onFx(() -> {
+            final Node input;
+            input = this.lookup(GameScene.ANSWER_INPUT_ID);
+
+            this.keystrokeNanos = System.nanoTime();
+            this.nextPulse = new CompletableFuture<>();
+
+            Event.fireEvent(input, QuizAppHarness.keyEvent(KeyEvent.KEY_PRESSED, KeyEvent.CHAR_UNDEFINED, code));
+
+            if (!character.equals(KeyEvent.CHAR_UNDEFINED)) {
+                Event.fireEvent(input, QuizAppHarness.keyEvent(KeyEvent.KEY_TYPED, character, KeyCode.UNDEFINED));
+            }
+
+            Event.fireEvent(input, QuizAppHarness.keyEvent(KeyEvent.KEY_RELEASED, KeyEvent.CHAR_UNDEFINED, code));
+
+            // A pulse is requested even if the key changed nothing on screen, so the wait always ends.
+            Platform.requestNextPulse();
+
+            return this.nextPulse;
+        });
+
+        laidOut.get(QuizAppHarness.STEP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Creates a key event without any modifier keys held down.
+     *
+     * @param type      the type of the event
+     * @param character the character typed, or {@link KeyEvent#CHAR_UNDEFINED} for a pressed or released key
+     * @param code      the code of the key
+     * @return the key event
+     */
+    private static KeyEvent keyEvent(final EventType<KeyEvent> type, final String character,
+                                     final KeyCode code) {
+        return new KeyEvent(type, character, "", code, false, false, false, false);
+    }
+
+    /**
+     * Determines whether the stage shows a scene of the specified type.
+     *
+     * @param sceneType the type of the root of the scene
+     * @return whether a scene of that type is shown
+     * @throws Exception if the JavaFX application thread does not answer in time
+     */
+    private boolean isShowing(final Class<? extends Parent> sceneType) throws Exception {
+        return this.onFx(() -> sceneType.isInstance(this.stage.getScene().getRoot()));
+    }
+
+    /**
+     * Finds the node with the specified id in the shown scene.
+     *
+     * @param id the id of the node
+     * @return the node
+     */
+    private Node lookup(final String id) {
+        final Node node;
+        node = this.stage.getScene().lookup("#" + id);
+
+        if (node == null) {
+            throw new IllegalStateException("No node with the id \"" + id + "\" is shown.");
+        }
+
+        return node;
+    }
+
+    /**
+     * Presses the button with the specified id in the shown scene.
+     *
+     * @param id the id of the button
+     */
+    private void fire(final String id) {
+        if (!(this.lookup(id) instanceof ButtonBase button)) {
+            throw new IllegalStateException("The node with the id \"" + id + "\" is not a button.");
+        }
+
+        button.fire();
+    }
+
+    /**
+     * Runs the specified task on the JavaFX application thread, and waits for its result.
+     * <p>
+     * The task is not run through {@link FxTasks}, so the harness itself never adds to the measured queue depth.
+     *
+     * @param task the task to run
+     * @param <T>  the type of the result
+     * @return the result of the task
+     * @throws Exception if the task fails, or does not finish in time
+     */
+    private <T> T onFx(final Callable<T> task) throws Exception {
+        final CompletableFuture<T> result;
+        result = new CompletableFuture<>();
+
+        Platform.runLater(() -> {
+            try {
+                result.complete(task.call());
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        });
+
+        return result.get(QuizAppHarness.STEP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Prints every measurement against its budget on the standard output stream.
+     *
+     * @return whether every budget was met
+     */
+    private boolean report() {
+        final double pulseMillis;
+        final double keystrokeMillis;
+
+        pulseMillis = this.pulseIntervals.getPercentile(QuizAppHarness.BUDGET_PERCENTILE) /
+                      QuizAppHarness.NANOS_PER_MILLI;
+        keystrokeMillis = this.keystrokeLatencies.getPercentile(QuizAppHarness.BUDGET_PERCENTILE) /
+                          QuizAppHarness.NANOS_PER_MILLI;
+
+        final boolean pulseWithinBudget;
+        final boolean keystrokeWithinBudget;
+        final boolean queueWithinBudget;
+
+        pulseWithinBudget = QuizAppHarness.printMeasurement("pulse interval p99", pulseMillis, "ms",
+                                                            this.pulseIntervals.getCount(),
+                                                            QuizAppHarness.PULSE_BUDGET_MILLIS);
+        keystrokeWithinBudget = QuizAppHarness.printMeasurement("keystroke to pulse p99", keystrokeMillis, "ms",
+                                                                this.keystrokeLatencies.getCount(),
+                                                                QuizAppHarness.KEYSTROKE_BUDGET_MILLIS);
+        queueWithinBudget = QuizAppHarness.printMeasurement("fx queue depth max", this.maxQueueDepth, "tasks",
+                                                            this.pulseIntervals.getCount(),
+                                                            QuizAppHarness.QUEUE_DEPTH_BUDGET);
+
+        return pulseWithinBudget && keystrokeWithinBudget && queueWithinBudget;
+    }
+
+    /**
+     * Prints a single measurement against its budget.
+     *
+     * @param name    the name of the measurement
+     * @param value   the measured value
+     * @param unit    the unit of the value and budget
+     * @param samples the amount of samples the value was measured from
+     * @param budget  the largest value allowed
+     * @return whether the value is within the budget
+     */
+    private static boolean printMeasurement(final String name, final double value, final String unit,
+                                            final long samples, final double budget) {
+        final boolean withinBudget;
+        withinBudget = value <= budget;
+
+        System.out.printf("%s %.1f%s (budget %.1f%s, %d samples) %s%n", name, value, unit, budget, unit, samples,
+                          withinBudget ? "OK" : "OVER BUDGET");
+
+        return withinBudget;
+    }
+
+}
@@ -0,0 +1,484 @@
+package ca.bcit.comp2522.lab09;
+
+import ca.bcit.comp2522.lab09.bank.QuestionBank;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Represents the checkpoint of a quiz in progress, which lets the quiz be resumed at the exact question and remaining
+ * time after the application dies mid-game.
+ * <p>
+ * The checkpoint is a file that is mapped into memory and preallocated for every answer of the quiz when the quiz
+ * begins. Every answer is then written as a tiny fixed-size record straight into the mapping, followed by the record
+ * count, which commits it. This never makes a system call, so checkpointing an answer costs a few memory writes, and
+ * the operating system persists the mapping even if the application is killed.
+ * <p>
+ * Answers longer than a record can hold are cut short, but their result is always kept, so a resumed quiz always has
+ * the same score. Every count and length read back from the file is checked against the size of the file, so a file
+ * that was torn or damaged is ignored as if there were no checkpoint, rather than keeping the application from
+ * starting.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class QuizCheckpoint {
+
+    private static final int MAGIC = 0x51434B50;
+    private static final int VERSION = 2;
+
+    private static final int STATE_ACTIVE = 1;
+    private static final int STATE_FINISHED = 2;
+
+    private static final int VERSION_OFFSET = Integer.BYTES;
+    private static final int STATE_OFFSET = 2 * Integer.BYTES;
+    private static final int QUESTION_COUNT_OFFSET = 3 * Integer.BYTES;
+    private static final int RECORD_COUNT_OFFSET = 4 * Integer.BYTES;
+    private static final int QUESTIONS_BYTES_OFFSET = 5 * Integer.BYTES;
+    private static final int TIMER_OFFSET = 6 * Integer.BYTES;
+    private static final int DEADLINE_OFFSET = QuizCheckpoint.TIMER_OFFSET + Long.BYTES;
+    private static final int HEADER_BYTES = QuizCheckpoint.DEADLINE_OFFSET + Long.BYTES;
+
+    private static final int RECORD_BYTES = 128;
+    private static final int RECORD_CORRECT_OFFSET = Integer.BYTES;
+    private static final int RECORD_ANSWER_LENGTH_OFFSET = QuizCheckpoint.RECORD_CORRECT_OFFSET + Short.BYTES;
+    private static final int RECORD_ANSWER_OFFSET = QuizCheckpoint.RECORD_ANSWER_LENGTH_OFFSET + Short.BYTES;
+    private static final int MAX_ANSWER_BYTES = QuizCheckpoint.RECORD_BYTES - QuizCheckpoint.RECORD_ANSWER_OFFSET;
+
+    private static final long NO_TIMER = -1;
+    private static final long TIMER_MILLIS_MASK = 0xFFFFFFFFL;
+    private static final long NO_DEADLINE = -1;
+
+    private final MappedByteBuffer buffer;
+    private final int recordsOffset;
+    private final int questionCount;
+    private final CharsetEncoder encoder;
+    private final ByteBuffer answerBytes;
+
+    private final Quiz quiz;
+    private final long millisRemaining;
+
+    private volatile int recordCount;
+
+    /**
+     * Creates a checkpoint over the specified mapped file, and attaches it to the specified quiz.
+     *
+     * @param buffer          the mapped contents of the checkpoint file
+     * @param quiz            the quiz that is checkpointed
+     * @param recordCount     the amount of answers already recorded
+     * @param millisRemaining the time left on the current question when the checkpoint was last written, or a
+     *                        negative value if the question was not timed yet
+     */
+    private QuizCheckpoint(final MappedByteBuffer buffer, final Quiz quiz, final int recordCount,
+                           final long millisRemaining) {
+        this.buffer = buffer;
+        this.questionCount = buffer.getInt(QuizCheckpoint.QUESTION_COUNT_OFFSET);
+        this.recordsOffset = QuizCheckpoint.recordsOffset(buffer.getInt(QuizCheckpoint.QUESTIONS_BYTES_OFFSET));
+        this.encoder = StandardCharsets.UTF_8.newEncoder()
+                                             .onMalformedInput(CodingErrorAction.REPLACE)
+                                             .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.answerBytes = ByteBuffer.allocate(QuizCheckpoint.MAX_ANSWER_BYTES);
+
+        this.quiz = quiz;
+        this.millisRemaining = millisRemaining;
+        this.recordCount = recordCount;
+
+        quiz.attachCheckpoint(this);
+    }
+
+    /**
+     * Begins checkpointing the specified quiz, which has not been started yet, in the specified file. Any previous
+     * checkpoint in the file is replaced.
+     *
+     * @param file the file of the checkpoint
+     * @param quiz the quiz to checkpoint
+     * @param bank the bank the questions of the quiz were taken from, which the quiz is resumed from
+     * @return the checkpoint of the quiz
+     * @throws IOException if the file cannot be created or mapped
+     */
+    public static QuizCheckpoint begin(final Path file, final Quiz quiz, final QuestionBank bank) throws IOException {
+        final List<byte[]> encodedQuestions;
+        final List<Integer> ordinals;
+
+        encodedQuestions = new ArrayList<>(quiz.getQuestionCount());
+        ordinals = new ArrayList<>(quiz.getQuestionCount());
+
+        quiz.forEachQuestion((question) -> {
+            final int ordinal;
+            ordinal = bank.ordinalOf(question);
+
+            ordinals.add(ordinal);
+            encodedQuestions.add((ordinal < 0 ? question.encode() : bank.getEncoded(ordinal))
+                                         .getBytes(StandardCharsets.UTF_8));
+        });
+
+        int questionsBytes = 0;
+        for (final byte[] encodedQuestion : encodedQuestions) {
+            questionsBytes += 2 * Integer.BYTES + encodedQuestion.length;
+        }
+
+        final MappedByteBuffer buffer;
+        buffer = QuizCheckpoint.map(file, QuizCheckpoint.recordsOffset(questionsBytes) +
+                                          (long) encodedQuestions.size() * QuizCheckpoint.RECORD_BYTES);
+
+        // The previous checkpoint is finished first and the new header is written last, so the file is never active
+        // while its questions are half written.
+        buffer.putInt(QuizCheckpoint.STATE_OFFSET, QuizCheckpoint.STATE_FINISHED);
+        buffer.position(QuizCheckpoint.HEADER_BYTES);
+
+        for (int i = 0; i < encodedQuestions.size(); i++) {
+            buffer.putInt(ordinals.get(i)).putInt(encodedQuestions.get(i).length).put(encodedQuestions.get(i));
+        }
+
+        buffer.putInt(QuizCheckpoint.VERSION_OFFSET, QuizCheckpoint.VERSION)
+              .putInt(QuizCheckpoint.QUESTION_COUNT_OFFSET, encodedQuestions.size())
+              .putInt(QuizCheckpoint.RECORD_COUNT_OFFSET, 0)
+              .putInt(QuizCheckpoint.QUESTIONS_BYTES_OFFSET, questionsBytes)
+              .putLong(QuizCheckpoint.TIMER_OFFSET, QuizCheckpoint.NO_TIMER)
+              .putLong(QuizCheckpoint.DEADLINE_OFFSET, QuizCheckpoint.NO_DEADLINE)
+              .putInt(0, QuizCheckpoint.MAGIC)
+              .putInt(QuizCheckpoint.STATE_OFFSET, QuizCheckpoint.STATE_ACTIVE);
+
+        return new QuizCheckpoint(buffer, quiz, 0, QuizCheckpoint.NO_TIMER);
+    }
+
+    /**
+     * Resumes the quiz checkpointed in the specified file, if it was left unfinished.
+     * <p>
+     * Questions that are still in the bank unchanged are taken from the bank, so that the resumed quiz can be
+     * recorded for practice like any other quiz. Every recorded answer is restored without being graded again, and
+     * the quiz continues at the first unanswered question.
+     *
+     * @param file the file of the checkpoint
+     * @param bank the bank the questions of the quiz were taken from
+     * @return the checkpoint of the resumed quiz, or null if there is no unfinished quiz to resume, or the checkpoint
+     *         is damaged
+     * @throws IOException if the file exists but cannot be mapped
+     */
+    public static QuizCheckpoint resume(final Path file, final QuestionBank bank) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+
+        final long fileBytes;
+        fileBytes = Files.size(file);
+
+        if (fileBytes < QuizCheckpoint.HEADER_BYTES || fileBytes > Integer.MAX_VALUE) {
+            return null;
+        }
+
+        final MappedByteBuffer buffer;
+        buffer = QuizCheckpoint.map(file, fileBytes);
+
+        if (buffer.getInt(0) != QuizCheckpoint.MAGIC ||
+            buffer.getInt(QuizCheckpoint.VERSION_OFFSET) != QuizCheckpoint.VERSION ||
+            buffer.getInt(QuizCheckpoint.STATE_OFFSET) != QuizCheckpoint.STATE_ACTIVE ||
+            !QuizCheckpoint.fitsHeader(buffer)) {
+            return null;
+        }
+
+        final List<QuizQuestion> questions;
+        final int recordCount;
+        final long timer;
+
+        questions = QuizCheckpoint.readQuestions(buffer, bank);
+        recordCount = buffer.getInt(QuizCheckpoint.RECORD_COUNT_OFFSET);
+        timer = buffer.getLong(QuizCheckpoint.TIMER_OFFSET);
+
+        if (questions == null || recordCount >= questions.size()) {
+            return null;
+        }
+
+        final Set<QuizQuestion> uniqueQuestions;
+        uniqueQuestions = new LinkedHashSet<>(questions);
+
+        // A quiz never asks the same question twice, so a repeated question means the questions were overwritten.
+        if (uniqueQuestions.size() != questions.size()) {
+            return null;
+        }
+
+        final Quiz quiz;
+        quiz = new Quiz(uniqueQuestions);
+
+        final int recordsOffset;
+        recordsOffset = QuizCheckpoint.recordsOffset(buffer.getInt(QuizCheckpoint.QUESTIONS_BYTES_OFFSET));
+
+        int nextIndex = 0;
+        for (int record = 0; record < recordCount; record++) {
+            final ByteBuffer slice;
+            final int index;
+            final int answerLength;
+            final byte[] answer;
+
+            slice = buffer.slice(recordsOffset + record * QuizCheckpoint.RECORD_BYTES, QuizCheckpoint.RECORD_BYTES);
+            index = slice.getInt(0);
+
+            answerLength = slice.getShort(QuizCheckpoint.RECORD_ANSWER_LENGTH_OFFSET);
+
+            if (index < 0 || index >= questions.size() ||
+                answerLength < 0 || answerLength > QuizCheckpoint.MAX_ANSWER_BYTES) {
+                return null;
+            }
+
+            answer = new byte[answerLength];
+            slice.get(QuizCheckpoint.RECORD_ANSWER_OFFSET, answer);
+
+            quiz.restoreAnswer(questions.get(index), new String(answer, StandardCharsets.UTF_8),
+                               slice.get(QuizCheckpoint.RECORD_CORRECT_OFFSET) != 0);
+            nextIndex = Math.max(nextIndex, index + 1);
+        }
+
+        if (nextIndex >= questions.size()) {
+            return null;
+        }
+
+        quiz.skipQuestions(nextIndex);
+
+        // The remaining time only belongs to the current question if it was written after the last answer.
+        if (timer >>> Integer.SIZE != recordCount) {
+            return new QuizCheckpoint(buffer, quiz, recordCount, QuizCheckpoint.NO_TIMER);
+        }
+
+        final long deadline;
+        deadline = buffer.getLong(QuizCheckpoint.DEADLINE_OFFSET);
+
+        long millisRemaining = timer & QuizCheckpoint.TIMER_MILLIS_MASK;
+
+        // A timer that stopped ticking because the window was hidden kept running out until the application died.
+        if (deadline != QuizCheckpoint.NO_DEADLINE) {
+            millisRemaining = Math.clamp(deadline - System.currentTimeMillis(), 0, millisRemaining);
+        }
+
+        return new QuizCheckpoint(buffer, quiz, recordCount, millisRemaining);
+    }
+
+    /**
+     * Determines whether the questions and records that the header of the specified mapped file counts fit in the
+     * file.
+     *
+     * @param buffer the mapped contents of the checkpoint file
+     * @return whether the header fits the file
+     */
+    private static boolean fitsHeader(final ByteBuffer buffer) {
+        final int questionCount;
+        final int questionsBytes;
+        final int recordCount;
+
+        questionCount = buffer.getInt(QuizCheckpoint.QUESTION_COUNT_OFFSET);
+        questionsBytes = buffer.getInt(QuizCheckpoint.QUESTIONS_BYTES_OFFSET);
+        recordCount = buffer.getInt(QuizCheckpoint.RECORD_COUNT_OFFSET);
+
+        if (questionCount < 1 || recordCount < 0 || questionsBytes < 0 ||
+            questionsBytes > buffer.capacity() - QuizCheckpoint.HEADER_BYTES ||
+            (long) questionCount * 2 * Integer.BYTES > questionsBytes) {
+            return false;
+        }
+
+        return QuizCheckpoint.recordsOffset(questionsBytes) +
+               (long) questionCount * QuizCheckpoint.RECORD_BYTES <= buffer.capacity();
+    }
+
+    /**
+     * Reads every question of the checkpoint in the specified mapped file, taking them from the specified bank where
+     * they are still unchanged. The header of the file must already be known to fit the file.
+     *
+     * @param buffer the mapped contents of the checkpoint file
+     * @param bank   the bank the questions were taken from
+     * @return the questions, in the order of the quiz, or null if they do not fit their size in the header or cannot
+     *         be decoded
+     */
+    private static List<QuizQuestion> readQuestions(final ByteBuffer buffer, final QuestionBank bank) {
+        final int questionCount;
+        final int questionsEnd;
+        final List<QuizQuestion> questions;
+
+        questionCount = buffer.getInt(QuizCheckpoint.QUESTION_COUNT_OFFSET);
+        questionsEnd = QuizCheckpoint.HEADER_BYTES + buffer.getInt(QuizCheckpoint.QUESTIONS_BYTES_OFFSET);
+        questions = new ArrayList<>(questionCount);
+
+        buffer.position(QuizCheckpoint.HEADER_BYTES);
+
+        for (int i = 0; i < questionCount; i++) {
+            if (questionsEnd - buffer.position() < 2 * Integer.BYTES) {
+                return null;
+            }
+
+            final int ordinal;
+            final int length;
+
+            ordinal = buffer.getInt();
+            length = buffer.getInt();
+
+            if (length < 0 || length > questionsEnd - buffer.position()) {
+                return null;
+            }
+
+            final byte[] bytes;
+            final String encodedQuestion;
+
+            bytes = new byte[length];
+            buffer.get(bytes);
+            encodedQuestion = new String(bytes, StandardCharsets.UTF_8);
+
+            if (ordinal >= 0 && ordinal < bank.size() && bank.getEncoded(ordinal).equals(encodedQuestion)) {
+                questions.add(bank.get(ordinal));
+                continue;
+            }
+
+            try {
+                questions.add(QuizQuestion.decode(encodedQuestion));
+            } catch (IllegalArgumentException _) {
+                return null;
+            }
+        }
+
+        return questions;
+    }
+
+    /**
+     * Maps the specified amount of bytes of the specified file, creating and growing it as needed.
+     *
+     * @param file  the file to map
+     * @param bytes the amount of bytes to map
+     * @return the mapped contents of the file
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    private static MappedByteBuffer map(final Path file, final long bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                                    StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        }
+    }
+
+    /**
+     * Determines where the records start in a checkpoint with the specified size of questions, which is aligned so
+     * that no record straddles two pages.
+     *
+     * @param questionsBytes the size of the questions, in bytes
+     * @return the offset of the first record
+     */
+    private static int recordsOffset(final int questionsBytes) {
+        return Math.ceilDiv(QuizCheckpoint.HEADER_BYTES + questionsBytes, QuizCheckpoint.RECORD_BYTES) *
+               QuizCheckpoint.RECORD_BYTES;
+    }
+
+    /**
+     * Records the specified answer of the question at the specified index of the quiz.
+     *
+     * @param index   the index of the answered question in the quiz
+     * @param answer  the answer
+     * @param correct whether the answer was correct
+     */
+    void recordAnswer(final int index, final String answer, final boolean correct) {
+        final int record;
+        record = this.recordCount;
+
+        if (record >= this.questionCount) {
+            return;
+        }
+
+        this.answerBytes.clear();
+        this.encoder.reset().encode(CharBuffer.wrap(answer), this.answerBytes, true);
+        this.answerBytes.flip();
+
+        final int offset;
+        offset = this.recordsOffset + record * QuizCheckpoint.RECORD_BYTES;
+
+        this.buffer.putInt(offset, index)
+                   .put(offset + QuizCheckpoint.RECORD_CORRECT_OFFSET, (byte) (correct ? 1 : 0))
+                   .putShort(offset + QuizCheckpoint.RECORD_ANSWER_LENGTH_OFFSET, (short) this.answerBytes.limit())
+                   .put(offset + QuizCheckpoint.RECORD_ANSWER_OFFSET, this.answerBytes, 0, this.answerBytes.limit());
+
+        this.recordCount = record + 1;
+        this.buffer.putInt(QuizCheckpoint.RECORD_COUNT_OFFSET, record + 1);
+    }
+
+    /**
+     * Forgets every recorded answer, for when the quiz is reset.
+     */
+    void clearAnswers() {
+        this.recordCount = 0;
+        this.buffer.putInt(QuizCheckpoint.RECORD_COUNT_OFFSET, 0);
+    }
+
+    /**
+     * Records the time left on the current question. This may be called from any thread, as often as every tick of
+     * the question timer.
+     *
+     * @param millis the time left on the current question, in milliseconds
+     */
+    public void recordMillisRemaining(final long millis) {
+        this.buffer.putLong(QuizCheckpoint.DEADLINE_OFFSET, QuizCheckpoint.NO_DEADLINE);
+        this.writeTimer(millis);
+    }
+
+    /**
+     * Records the time left on the current question when the question timer stops ticking, because the window is
+     * hidden. The question keeps running out while nothing is recorded, so the time it runs out at is recorded as
+     * well, and a quiz resumed after the application died while hidden only gets the time that was really left.
+     *
+     * @param millis the time left on the current question, in milliseconds
+     */
+    public void recordSuspended(final long millis) {
+        this.buffer.putLong(QuizCheckpoint.DEADLINE_OFFSET, System.currentTimeMillis() + millis);
+        this.writeTimer(millis);
+    }
+
+    /**
+     * Writes the time left on the current question, tagged with the amount of answers recorded so far.
+     *
+     * @param millis the time left on the current question, in milliseconds
+     */
+    private void writeTimer(final long millis) {
+        this.buffer.putLong(QuizCheckpoint.TIMER_OFFSET,
+                            (long) this.recordCount << Integer.SIZE | (millis & QuizCheckpoint.TIMER_MILLIS_MASK));
+    }
+
+    /**
+     * Marks the quiz as finished, so that it is no longer offered to be resumed.
+     */
+    public void finish() {
+        this.buffer.putInt(QuizCheckpoint.STATE_OFFSET, QuizCheckpoint.STATE_FINISHED);
+    }
+
+    /**
+     * Returns the checkpointed quiz.
+     *
+     * @return the quiz
+     */
+    public Quiz getQuiz() {
+        return this.quiz;
+    }
+
+    /**
+     * Determines the time that was left on the current question when the quiz was checkpointed.
+     *
+     * @return the time left in milliseconds, or a negative value if the question should get its full time
+     */
+    public long getMillisRemaining() {
+        return this.millisRemaining;
+    }
+
+    /**
+     * Determines the amount of answers recorded so far.
+     *
+     * @return the amount of recorded answers
+     */
+    public int getAnsweredCount() {
+        return this.recordCount;
+    }
+
+}
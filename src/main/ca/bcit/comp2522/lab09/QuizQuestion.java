@@ -1,6 +1,7 @@
 package ca.bcit.comp2522.lab09;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -13,9 +14,13 @@ public final class QuizQuestion {
 
     private static final String ENCODED_ANSWER_SEP = "|";
     private static final String ENCODED_ANSWER_SEP_REGEX = "\\" + ENCODED_ANSWER_SEP;
+    private static final String ENCODED_CATEGORIES_START = "[";
+    private static final String ENCODED_CATEGORIES_END = "]";
+    private static final String ENCODED_CATEGORY_SEP = ",";
 
     private final String question;
     private final List<String> answers;
+    private final List<String> categories;
 
     /**
      * Creates a new quiz question with the given question text and valid answers.
@@ -24,11 +29,24 @@ public final class QuizQuestion {
      * @param answers  the list of valid answers for the question
      */
     public QuizQuestion(final String question, final List<String> answers) {
+        this(question, answers, List.of());
+    }
+
+    /**
+     * Creates a new quiz question with the given question text, valid answers, and categories.
+     *
+     * @param question   the question text
+     * @param answers    the list of valid answers for the question
+     * @param categories the categories the question belongs to, which may be empty
+     */
+    public QuizQuestion(final String question, final List<String> answers, final List<String> categories) {
         QuizQuestion.validateQuestion(question);
         QuizQuestion.validateAnswers(answers);
+        QuizQuestion.validateCategories(categories);
 
         this.question = question;
         this.answers = answers;
+        this.categories = List.copyOf(categories);
     }
 
     /**
@@ -37,6 +55,9 @@ public final class QuizQuestion {
      * Then encoded format is the question text followed by answers, each separated by the
      * {@link QuizQuestion#ENCODED_ANSWER_SEP}. The first answer is always required, and it must be separated from
      * the question text by the {@link QuizQuestion#ENCODED_ANSWER_SEP}.
+     * <p>
+     * The question may optionally be prefixed by its categories, separated by commas and enclosed in square brackets,
+     * such as "[science,space]".
      *
      * @param encodedQuestion the encoded version of a quiz question
      * @return the decoded question representing the encoded input
@@ -44,8 +65,27 @@ public final class QuizQuestion {
     public static QuizQuestion decode(final String encodedQuestion) {
         final int minimumParts = 2;
 
+        final List<String> decodedCategories;
+        final String uncategorizedQuestion;
+
+        if (encodedQuestion.startsWith(QuizQuestion.ENCODED_CATEGORIES_START)) {
+            final int categoriesEnd;
+            categoriesEnd = encodedQuestion.indexOf(QuizQuestion.ENCODED_CATEGORIES_END);
+
+            if (categoriesEnd < 0) {
+                throw new IllegalArgumentException(
+                        "Invalid encoded question: \"" + encodedQuestion + "\" (categories are never closed).");
+            }
+
+            decodedCategories = QuizQuestion.decodeCategories(encodedQuestion.substring(1, categoriesEnd));
+            uncategorizedQuestion = encodedQuestion.substring(categoriesEnd + 1);
+        } else {
+            decodedCategories = List.of();
+            uncategorizedQuestion = encodedQuestion;
+        }
+
         final String[] questionParts;
-        questionParts = encodedQuestion.split(QuizQuestion.ENCODED_ANSWER_SEP_REGEX);
+        questionParts = uncategorizedQuestion.split(QuizQuestion.ENCODED_ANSWER_SEP_REGEX);
 
         if (questionParts.length < minimumParts) {
             throw new IllegalArgumentException(
@@ -62,7 +102,50 @@ public final class QuizQuestion {
             decodedAnswers.add(questionParts[i]);
         }
 
-        return new QuizQuestion(decodedQuestion, decodedAnswers);
+        return new QuizQuestion(decodedQuestion, decodedAnswers, decodedCategories);
+    }
+
+    /**
+     * Decodes the comma separated categories of an encoded question, without the enclosing brackets.
+     *
+     * @param encodedCategories the encoded categories
+     * @return the decoded categories, with surrounding whitespace removed
+     */
+    private static List<String> decodeCategories(final String encodedCategories) {
+        if (encodedCategories.isBlank()) {
+            return List.of();
+        }
+
+        final List<String> decodedCategories;
+        decodedCategories = new ArrayList<>();
+
+        for (final String category : encodedCategories.split(QuizQuestion.ENCODED_CATEGORY_SEP)) {
+            decodedCategories.add(category.strip());
+        }
+
+        return decodedCategories;
+    }
+
+    /**
+     * Encodes this quiz question into the format understood by {@link QuizQuestion#decode(String)}.
+     * <p>
+     * The categories are only written if there are any, or if the question text itself starts with an opening
+     * bracket, which would otherwise be mistaken for categories.
+     *
+     * @return the encoded version of this quiz question
+     */
+    public String encode() {
+        final String encodedAnswers;
+        encodedAnswers = this.question + QuizQuestion.ENCODED_ANSWER_SEP +
+                         String.join(QuizQuestion.ENCODED_ANSWER_SEP, this.answers);
+
+        if (this.categories.isEmpty() && !this.question.startsWith(QuizQuestion.ENCODED_CATEGORIES_START)) {
+            return encodedAnswers;
+        }
+
+        return QuizQuestion.ENCODED_CATEGORIES_START +
+               String.join(QuizQuestion.ENCODED_CATEGORY_SEP, this.categories) +
+               QuizQuestion.ENCODED_CATEGORIES_END + encodedAnswers;
     }
 
     /**
@@ -97,14 +180,43 @@ public final class QuizQuestion {
         }
     }
 
+    /**
+     * Validates the given categories to ensure they are within limits.
+     *
+     * @param categories the categories to validate
+     */
+    private static void validateCategories(final List<String> categories) {
+        if (categories == null) {
+            throw new IllegalArgumentException("Categories cannot be null, a question without categories has none.");
+        }
+
+        for (final String category : categories) {
+            if (category == null || category.isBlank()) {
+                throw new IllegalArgumentException("A category cannot be null or blank.");
+            }
+
+            if (category.contains(QuizQuestion.ENCODED_ANSWER_SEP) ||
+                category.contains(QuizQuestion.ENCODED_CATEGORY_SEP) ||
+                category.contains(QuizQuestion.ENCODED_CATEGORIES_START) ||
+                category.contains(QuizQuestion.ENCODED_CATEGORIES_END) ||
+                !category.equals(category.strip())) {
+                throw new IllegalArgumentException("The category \"" + category + "\" cannot contain separators, " +
+                                                   "brackets, or surrounding whitespace.");
+            }
+        }
+    }
+
     /**
      * Normalizes the specified answer for comparison against another answer.
+     * <p>
+     * Normalization consists of lowercasing the answer in the root locale, and trimming any excess whitespace. An
+     * answer that is already normalized is returned as is.
      *
      * @param answer the answer to normalize
      * @return the normalized answer
      */
     public static String normalizeAnswer(final String answer) {
-        return answer.toLowerCase().trim();
+        return AnswerNormalizer.normalize(answer);
     }
 
     /**
@@ -116,27 +228,15 @@ public final class QuizQuestion {
      * equal to half of the length of the total given answer (floored). This ensures that "the skin" matches the
      * answer "skin" but
      * also has a pitfall where "not skin" would match the answer "skin".
+     * <p>
+     * When both answers are ASCII, the comparison is done in place, without creating any normalized copies.
      *
      * @param rawKnownAnswer the known correct answer
      * @param rawGivenAnswer the given, potentially correct, answer
      * @return whether the given answer is considered a match after normalization
      */
     public static boolean doAnswersMatch(final String rawKnownAnswer, final String rawGivenAnswer) {
-        final String knownAnswer;
-        final String givenAnswer;
-        final int knownAnswerLength;
-        final int givenAnswerLength;
-
-        knownAnswer = QuizQuestion.normalizeAnswer(rawKnownAnswer);
-        givenAnswer = QuizQuestion.normalizeAnswer(rawGivenAnswer);
-        knownAnswerLength = knownAnswer.length();
-        givenAnswerLength = givenAnswer.length();
-
-        if (!givenAnswer.contains(knownAnswer)) {
-            return false;
-        }
-
-        return knownAnswerLength >= (givenAnswerLength / 2);
+        return AnswerNormalizer.matches(rawKnownAnswer, rawGivenAnswer);
     }
 
     /**
@@ -164,6 +264,24 @@ public final class QuizQuestion {
         return this.question;
     }
 
+    /**
+     * Returns every accepted answer for this quiz question, with the best answer first.
+     *
+     * @return the accepted answers
+     */
+    public List<String> getAnswers() {
+        return Collections.unmodifiableList(this.answers);
+    }
+
+    /**
+     * Returns every category this quiz question belongs to, which is empty if it is uncategorized.
+     *
+     * @return the categories
+     */
+    public List<String> getCategories() {
+        return this.categories;
+    }
+
     /**
      * Returns the first, usually the best, answer for this quiz question.
      *
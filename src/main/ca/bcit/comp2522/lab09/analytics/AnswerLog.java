@@ -0,0 +1,194 @@
+package ca.bcit.comp2522.lab09.analytics;
+
+import ca.bcit.comp2522.lab09.Quiz;
+import ca.bcit.comp2522.lab09.bank.QuestionBank;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Represents an append-only archive of every answer given in every quiz session.
+ * <p>
+ * The archive starts with a short header, followed by a fixed-size record for every answer, of the timestamp it was
+ * given at, the {@link QuestionBank#getId(int) id} of its question, how long it took, and whether it was correct.
+ * Questions are kept by their id rather than their ordinal, so the archive stays correct when the bank is edited.
+ * Fixed-size records let an {@link AnswerTable} split the archive into ranges and load them in parallel, without ever
+ * scanning for record boundaries. A record that was cut off by a crash while it was appended is dropped when the
+ * archive is next opened.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class AnswerLog implements Closeable {
+
+    /** This is the first value of the header of an archive. */
+    static final int MAGIC = 0x51414E53;
+
+    /** This is the version of the archive format, which follows the first value of the header. */
+    static final int VERSION = 2;
+
+    /** This is the size of the header of an archive, in bytes. */
+    static final int HEADER_BYTES = 2 * Integer.BYTES;
+
+    /** This is the size of every record in an archive, in bytes. */
+    static final int RECORD_BYTES = 2 * Long.BYTES + Integer.BYTES + Byte.BYTES;
+
+    private static final String ORDINAL_ARCHIVE_SUFFIX = ".v1";
+
+    private final DataOutputStream out;
+
+    /**
+     * Creates a new log that appends to the specified stream.
+     *
+     * @param out the stream to append to
+     */
+    private AnswerLog(final DataOutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Opens the archive in the specified file for appending, creating it if it does not exist yet. A last record that
+     * is cut off is truncated away, so that the next record starts at a record boundary.
+     * <p>
+     * The first version of the archive had no header and kept questions by their ordinal, which may have changed
+     * since. Such an archive is moved aside, to the same name with a {@code .v1} suffix, and a new archive is started.
+     *
+     * @param file the file of the archive
+     * @return the opened log
+     * @throws IOException if the file cannot be opened, created, moved, or truncated
+     */
+    public static AnswerLog open(final Path file) throws IOException {
+        if (AnswerLog.isOrdinalArchive(file)) {
+            Files.move(file, file.resolveSibling(file.getFileName() + AnswerLog.ORDINAL_ARCHIVE_SUFFIX),
+                       StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            final long size;
+            size = channel.size();
+
+            if (size < AnswerLog.HEADER_BYTES) {
+                channel.truncate(0);
+                channel.write(ByteBuffer.allocate(AnswerLog.HEADER_BYTES)
+                                        .putInt(AnswerLog.MAGIC)
+                                        .putInt(AnswerLog.VERSION)
+                                        .flip(), 0);
+            } else if ((size - AnswerLog.HEADER_BYTES) % AnswerLog.RECORD_BYTES != 0) {
+                channel.truncate(size - (size - AnswerLog.HEADER_BYTES) % AnswerLog.RECORD_BYTES);
+            }
+        }
+
+        return new AnswerLog(new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND))));
+    }
+
+    /**
+     * Determines whether the specified file holds an archive of the first version, which has no header.
+     *
+     * @param file the file to check
+     * @return whether the file holds an archive of the first version
+     * @throws IOException if the file cannot be read
+     */
+    private static boolean isOrdinalArchive(final Path file) throws IOException {
+        if (!Files.exists(file) || Files.size(file) < AnswerLog.HEADER_BYTES) {
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return !AnswerLog.hasHeader(channel);
+        }
+    }
+
+    /**
+     * Determines whether the archive of the specified channel starts with the header of this version.
+     *
+     * @param channel the channel to the archive
+     * @return whether the archive has the header
+     * @throws IOException if the archive cannot be read
+     */
+    static boolean hasHeader(final FileChannel channel) throws IOException {
+        final ByteBuffer header;
+        header = ByteBuffer.allocate(AnswerLog.HEADER_BYTES);
+
+        channel.read(header, 0);
+
+        return !header.hasRemaining() && header.getInt(0) == AnswerLog.MAGIC &&
+               header.getInt(Integer.BYTES) == AnswerLog.VERSION;
+    }
+
+    /**
+     * Appends every answer of the specified played quiz, answered now. Answers to questions that are no longer in
+     * the bank are skipped.
+     *
+     * @param bank the bank the questions of the quiz were taken from
+     * @param quiz the played quiz
+     * @throws IOException if the archive cannot be written to
+     */
+    public void appendQuiz(final QuestionBank bank, final Quiz quiz) throws IOException {
+        final long timestampMillis;
+        timestampMillis = System.currentTimeMillis();
+
+        final IOException[] failure;
+        failure = new IOException[1];
+
+        quiz.forEachQuestion((question) -> {
+            final int ordinal;
+            ordinal = bank.ordinalOf(question);
+
+            if (failure[0] != null || ordinal < 0 || quiz.getRecordedAnswerFor(question) == null) {
+                return;
+            }
+
+            try {
+                this.append(bank.getId(ordinal), quiz.getRecordedResultFor(question), timestampMillis,
+                            (int) Math.min(Integer.MAX_VALUE, quiz.getRecordedLatencyFor(question)));
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        });
+
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+
+    /**
+     * Appends a single answer.
+     *
+     * @param questionId      the id of the answered question, as given by {@link QuestionBank#getId(int)}
+     * @param correct         whether the answer was correct
+     * @param timestampMillis the time the answer was given at, in epoch milliseconds
+     * @param latencyMillis   how long the answer took, or a negative value if that is not known
+     * @throws IOException if the archive cannot be written to
+     */
+    public void append(final long questionId, final boolean correct, final long timestampMillis,
+                       final int latencyMillis) throws IOException {
+        this.out.writeLong(timestampMillis);
+        this.out.writeLong(questionId);
+        this.out.writeInt(latencyMillis);
+        this.out.writeByte(correct ? 1 : 0);
+    }
+
+    /**
+     * Writes every appended answer to the file.
+     *
+     * @throws IOException if the archive cannot be written to
+     */
+    public void flush() throws IOException {
+        this.out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.out.close();
+    }
+
+}
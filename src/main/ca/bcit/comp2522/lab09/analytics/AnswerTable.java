@@ -0,0 +1,630 @@
+package ca.bcit.comp2522.lab09.analytics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Represents every answer of an answer archive loaded into memory column by column, for aggregating over hundreds of
+ * millions of answers at once.
+ * <p>
+ * Every field of an answer lives in its own primitive array, and the results are packed into a bit set, so a query
+ * only streams through the columns it needs, sequentially, without a single object per answer. Question ids are
+ * replaced by dense indexes into the sorted distinct ids when the table is loaded, so aggregations can count questions
+ * in plain arrays, and report them by their id again. Loading and every
+ * aggregation are split into ranges of answers that are processed in parallel on the common fork/join pool, and
+ * whose partial results are merged afterward. The inner loops are plain counted loops over primitive arrays, which
+ * the JIT compiler vectorizes where it can.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class AnswerTable {
+
+    /** This is the length of a week, for grouping answers by the week they were given in. */
+    public static final long WEEK_MILLIS = TimeUnit.DAYS.toMillis(7);
+
+    private static final long MIN_PERIOD_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final int MAX_ROWS = Integer.MAX_VALUE - Long.SIZE;
+    private static final int LOAD_ROWS_PER_TASK = 1 << 18;
+    private static final int MIN_ROWS_PER_TASK = 1 << 16;
+    private static final int TASKS_PER_THREAD = 4;
+    private static final long PERIOD_BIAS = Integer.MIN_VALUE;
+    private static final long LOW_BITS = 0xFFFFFFFFL;
+    private static final int REPORT_LIMIT = 10;
+
+    private final int size;
+    private final long[] timestamps;
+    private final int[] questions;
+    private final int[] latencies;
+    private final long[] results;
+
+    private long[] questionIds;
+
+    /**
+     * Creates a new, unfilled table for the specified amount of answers.
+     *
+     * @param size the amount of answers
+     */
+    private AnswerTable(final int size) {
+        this.size = size;
+        this.timestamps = new long[size];
+        this.questions = new int[size];
+        this.latencies = new int[size];
+        this.results = new long[Math.ceilDiv(size, Long.SIZE)];
+    }
+
+    /**
+     * Loads an answer archive and prints the accuracy of every question per week, and the answer times of every
+     * question, along with how long each step took.
+     *
+     * @param args the answer archive
+     * @throws IOException if the answer archive cannot be read
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: AnswerTable <answers file>");
+            return;
+        }
+
+        long startNanos = System.nanoTime();
+
+        final AnswerTable table;
+        table = AnswerTable.load(Path.of(args[0]));
+
+        System.out.printf("Loaded %,d answers in %d ms, %,d correct%n", table.size(),
+                          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos), table.countCorrect());
+
+        startNanos = System.nanoTime();
+
+        final GroupedAccuracy weekly;
+        weekly = table.accuracyByQuestion(AnswerTable.WEEK_MILLIS);
+
+        System.out.printf("Grouped into %,d question weeks in %d ms%n", weekly.size(),
+                          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+
+        for (int group = 0; group < Math.min(AnswerTable.REPORT_LIMIT, weekly.size()); group++) {
+            System.out.printf("  question %016x, week of %s: %.1f%% of %,d%n", weekly.getQuestionId(group),
+                              Instant.ofEpochMilli(weekly.getPeriodStartMillis(group)),
+                              100 * weekly.getAccuracy(group), weekly.getTotal(group));
+        }
+
+        startNanos = System.nanoTime();
+
+        final LatencyPercentiles latencies;
+        latencies = table.latencyPercentilesByQuestion(50, 90, 99);
+
+        System.out.printf("Answer times of %,d questions in %d ms%n", latencies.size(),
+                          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+
+        for (int question = 0; question < Math.min(AnswerTable.REPORT_LIMIT, latencies.size()); question++) {
+            System.out.printf("  question %016x: median %d ms, p90 %d ms, p99 %d ms of %,d%n",
+                              latencies.getQuestionId(question), latencies.getLatencyMillis(question, 0),
+                              latencies.getLatencyMillis(question, 1), latencies.getLatencyMillis(question, 2),
+                              latencies.getCount(question));
+        }
+    }
+
+    /**
+     * Loads every answer of the specified answer archive, decoding ranges of the archive in parallel. A last record
+     * that is cut off, because it is still being appended or was cut off by a crash, is left out.
+     *
+     * @param file the answer archive, as written by an {@link AnswerLog}
+     * @return the table of every answer
+     * @throws IOException if the archive cannot be read
+     */
+    public static AnswerTable load(final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long fileSize;
+            fileSize = channel.size();
+
+            AnswerTable.validateArchive(channel, fileSize);
+
+            final AnswerTable table;
+            final long[] rowIds;
+
+            table = new AnswerTable((int) ((fileSize - AnswerLog.HEADER_BYTES) / AnswerLog.RECORD_BYTES));
+            rowIds = new long[table.size];
+
+            ForkJoinPool.commonPool().invoke(new LoadAction(channel, table, rowIds, 0, table.size));
+            table.indexQuestions(rowIds);
+
+            return table;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Validates the given archive to ensure it is of this version, and does not hold too many answers.
+     *
+     * @param channel  the channel to the archive to validate
+     * @param fileSize the size of the archive, in bytes
+     * @throws IOException if the archive cannot be read
+     */
+    private static void validateArchive(final FileChannel channel, final long fileSize) throws IOException {
+        if (fileSize < AnswerLog.HEADER_BYTES || !AnswerLog.hasHeader(channel)) {
+            throw new IllegalArgumentException("The file is not an answer archive of a supported version.");
+        }
+
+        if ((fileSize - AnswerLog.HEADER_BYTES) / AnswerLog.RECORD_BYTES > AnswerTable.MAX_ROWS) {
+            throw new IllegalArgumentException("An answer table cannot hold more than " + AnswerTable.MAX_ROWS +
+                                               " answers.");
+        }
+    }
+
+    /**
+     * Validates the given percentiles to ensure they are within limits.
+     *
+     * @param percentiles the percentiles to validate
+     */
+    private static void validatePercentiles(final double[] percentiles) {
+        if (percentiles == null || percentiles.length == 0) {
+            throw new IllegalArgumentException("At least one percentile must be computed.");
+        }
+
+        for (final double percentile : percentiles) {
+            if (!(percentile >= 0 && percentile <= 100)) {
+                throw new IllegalArgumentException("A percentile must be between 0 and 100.");
+            }
+        }
+    }
+
+    /**
+     * Validates the given period to ensure it is within limits.
+     *
+     * @param periodMillis the period to validate
+     */
+    private static void validatePeriodMillis(final long periodMillis) {
+        if (periodMillis != 0 && periodMillis < AnswerTable.MIN_PERIOD_MILLIS) {
+            throw new IllegalArgumentException("A period must be at least " + AnswerTable.MIN_PERIOD_MILLIS +
+                                               " milliseconds long.");
+        }
+    }
+
+    /**
+     * Replaces the question id of every row by the index of that id among the sorted distinct question ids.
+     *
+     * @param rowIds the question id of every row
+     */
+    private void indexQuestions(final long[] rowIds) {
+        final long[] sortedIds;
+        sortedIds = rowIds.clone();
+
+        Arrays.parallelSort(sortedIds);
+
+        int distinct = 0;
+        for (int row = 0; row < sortedIds.length; row++) {
+            if (distinct == 0 || sortedIds[row] != sortedIds[distinct - 1]) {
+                sortedIds[distinct++] = sortedIds[row];
+            }
+        }
+
+        final long[] ids;
+        ids = Arrays.copyOf(sortedIds, distinct);
+
+        this.questionIds = ids;
+
+        IntStream.range(0, this.size)
+                 .parallel()
+                 .forEach((row) -> this.questions[row] = Arrays.binarySearch(ids, rowIds[row]));
+    }
+
+    /**
+     * Determines the amount of answers in this table.
+     *
+     * @return the amount of answers
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Counts the correct answers in this table.
+     *
+     * @return the amount of correct answers
+     */
+    public long countCorrect() {
+        return IntStream.range(0, this.getTaskCount())
+                        .parallel()
+                        .mapToLong((task) -> {
+                            final int from;
+                            final int to;
+
+                            from = this.getTaskStart(task, this.results.length);
+                            to = this.getTaskStart(task + 1, this.results.length);
+
+                            long correct = 0;
+                            for (int word = from; word < to; word++) {
+                                correct += Long.bitCount(this.results[word]);
+                            }
+
+                            return correct;
+                        })
+                        .sum();
+    }
+
+    /**
+     * Determines the accuracy of every question over all time.
+     *
+     * @return the accuracy of every answered question
+     */
+    public GroupedAccuracy accuracyByQuestion() {
+        return this.accuracyByQuestion(0);
+    }
+
+    /**
+     * Determines the accuracy of every question in every period, such as every {@link #WEEK_MILLIS week}. Periods
+     * are counted from the epoch.
+     *
+     * @param periodMillis the length of every period, or 0 to not group answers by period
+     * @return the accuracy of every question in every period it was answered in
+     */
+    public GroupedAccuracy accuracyByQuestion(final long periodMillis) {
+        AnswerTable.validatePeriodMillis(periodMillis);
+
+        final int rowsPerTask;
+        final GroupTable groups;
+
+        rowsPerTask = Math.max(AnswerTable.MIN_ROWS_PER_TASK, Math.ceilDiv(this.size, this.getTaskCount()));
+        groups = ForkJoinPool.commonPool().invoke(new GroupTask(this, periodMillis, rowsPerTask, 0, this.size));
+
+        final long[] keys;
+        final long[] groupIds;
+        final long[] periods;
+        final long[] totals;
+        final long[] corrects;
+
+        keys = groups.getSortedKeys();
+        groupIds = new long[keys.length];
+        periods = new long[keys.length];
+        totals = new long[keys.length];
+        corrects = new long[keys.length];
+
+        for (int group = 0; group < keys.length; group++) {
+            groupIds[group] = this.questionIds[(int) (keys[group] >>> Integer.SIZE)];
+            periods[group] = (keys[group] & AnswerTable.LOW_BITS) + AnswerTable.PERIOD_BIAS;
+            totals[group] = groups.getTotal(keys[group]);
+            corrects[group] = groups.getCorrect(keys[group]);
+        }
+
+        return new GroupedAccuracy(periodMillis, groupIds, periods, totals, corrects);
+    }
+
+    /**
+     * Determines percentiles of the answer time of every question, using the nearest rank. Answers of unknown answer
+     * time are left out.
+     * <p>
+     * The answer times are first counted per question in parallel, then scattered into one contiguous range per
+     * question, and every range is then sorted in parallel to read off its percentiles. Besides the counts, this
+     * takes a single extra array of answer times.
+     *
+     * @param percentiles the percentiles to compute, between 0 and 100
+     * @return the percentiles of every question with timed answers
+     */
+    public LatencyPercentiles latencyPercentilesByQuestion(final double... percentiles) {
+        AnswerTable.validatePercentiles(percentiles);
+
+        final int questionCount;
+        final int chunkCount;
+        final int[][] chunkCounts;
+
+        questionCount = this.questionIds.length;
+        chunkCount = Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism(),
+                                          this.size / AnswerTable.MIN_ROWS_PER_TASK));
+        chunkCounts = new int[chunkCount][questionCount];
+
+        IntStream.range(0, chunkCount).parallel().forEach((chunk) -> {
+            final int[] counts;
+            final int from;
+            final int to;
+
+            counts = chunkCounts[chunk];
+            from = this.getChunkStart(chunk, chunkCount);
+            to = this.getChunkStart(chunk + 1, chunkCount);
+
+            for (int row = from; row < to; row++) {
+                if (this.latencies[row] >= 0) {
+                    counts[this.questions[row]]++;
+                }
+            }
+        });
+
+        // Every chunk writes into its own part of the range of every question, starting where the previous chunk
+        // stops, so the chunks can scatter in parallel without ever writing to the same place.
+        final int[] starts;
+        starts = new int[questionCount + 1];
+
+        int offset = 0;
+        for (int question = 0; question < questionCount; question++) {
+            starts[question] = offset;
+
+            for (int chunk = 0; chunk < chunkCount; chunk++) {
+                final int count;
+                count = chunkCounts[chunk][question];
+
+                chunkCounts[chunk][question] = offset;
+                offset += count;
+            }
+        }
+
+        starts[questionCount] = offset;
+
+        final int[] grouped;
+        grouped = new int[offset];
+
+        IntStream.range(0, chunkCount).parallel().forEach((chunk) -> {
+            final int[] cursors;
+            final int from;
+            final int to;
+
+            cursors = chunkCounts[chunk];
+            from = this.getChunkStart(chunk, chunkCount);
+            to = this.getChunkStart(chunk + 1, chunkCount);
+
+            for (int row = from; row < to; row++) {
+                if (this.latencies[row] >= 0) {
+                    grouped[cursors[this.questions[row]]++] = this.latencies[row];
+                }
+            }
+        });
+
+        final int[] answeredQuestions;
+        answeredQuestions = IntStream.range(0, questionCount)
+                                     .filter((question) -> starts[question + 1] > starts[question])
+                                     .toArray();
+
+        final long[] counts;
+        final int[][] values;
+
+        counts = new long[answeredQuestions.length];
+        values = new int[answeredQuestions.length][];
+
+        IntStream.range(0, answeredQuestions.length).parallel().forEach((question) -> {
+            final int from;
+            final int to;
+
+            from = starts[answeredQuestions[question]];
+            to = starts[answeredQuestions[question] + 1];
+
+            Arrays.sort(grouped, from, to);
+
+            counts[question] = to - from;
+            values[question] = new int[percentiles.length];
+
+            for (int percentile = 0; percentile < percentiles.length; percentile++) {
+                final int rank;
+                rank = (int) Math.ceil(percentiles[percentile] / 100 * (to - from));
+
+                values[question][percentile] = grouped[from + Math.clamp(rank - 1, 0, to - from - 1)];
+            }
+        });
+
+        final long[] answeredIds;
+        answeredIds = Arrays.stream(answeredQuestions).mapToLong((question) -> this.questionIds[question]).toArray();
+
+        return new LatencyPercentiles(percentiles.clone(), answeredIds, counts, values);
+    }
+
+    /**
+     * Determines the amount of tasks an aggregation is split into, which is a few per thread of the common pool, so
+     * that a slow task can be balanced out by the others.
+     *
+     * @return the amount of tasks
+     */
+    private int getTaskCount() {
+        return ForkJoinPool.getCommonPoolParallelism() * AnswerTable.TASKS_PER_THREAD;
+    }
+
+    /**
+     * Determines where the specified task of a split starts, when the specified amount of elements is split evenly
+     * between {@link #getTaskCount()} tasks.
+     *
+     * @param task  the index of the task, or the task count for the end of the last task
+     * @param count the amount of elements that is split
+     * @return the index of the first element of the task
+     */
+    private int getTaskStart(final int task, final int count) {
+        return (int) ((long) count * task / this.getTaskCount());
+    }
+
+    /**
+     * Determines where the specified chunk of rows starts, when the rows are split evenly into the specified amount
+     * of chunks.
+     *
+     * @param chunk      the index of the chunk, or the chunk count for the end of the last chunk
+     * @param chunkCount the amount of chunks
+     * @return the index of the first row of the chunk
+     */
+    private int getChunkStart(final int chunk, final int chunkCount) {
+        return (int) ((long) this.size * chunk / chunkCount);
+    }
+
+    /**
+     * Determines the key of the group of the specified row, which orders groups by question id, then by period.
+     *
+     * @param row          the index of the row
+     * @param periodMillis the length of every period, or 0 to not group by period
+     * @return the key of the group
+     */
+    private long groupKeyOf(final int row, final long periodMillis) {
+        final long period;
+        period = periodMillis == 0 ? 0 : Math.floorDiv(this.timestamps[row], periodMillis);
+
+        return (long) this.questions[row] << Integer.SIZE | ((period - AnswerTable.PERIOD_BIAS) & AnswerTable.LOW_BITS);
+    }
+
+    /**
+     * Determines whether the answer in the specified row is correct.
+     *
+     * @param row the index of the row
+     * @return 1 if the answer is correct, 0 otherwise
+     */
+    private long resultOf(final int row) {
+        return (this.results[row >>> 6] >>> row) & 1;
+    }
+
+    /**
+     * Represents the task of decoding a range of rows of an answer archive into the columns of a table, which is
+     * split in half until the range is small enough. Ranges are split on whole words of the result bit set, so no
+     * two tasks ever write to the same word.
+     */
+    // Fork/join tasks are only serializable because ForkJoinTask is, and these are never serialized.
+    @SuppressWarnings("serial")
+    private static final class LoadAction extends RecursiveAction {
+
+        private final FileChannel channel;
+        private final AnswerTable table;
+        private final long[] rowIds;
+        private final int from;
+        private final int to;
+
+        /**
+         * Creates a new load action for the rows between the specified indexes.
+         *
+         * @param channel the channel to the archive
+         * @param table   the table to decode into
+         * @param rowIds  the array to decode the question id of every row into
+         * @param from    the index of the first row to decode, inclusive
+         * @param to      the index of the last row to decode, exclusive
+         */
+        private LoadAction(final FileChannel channel, final AnswerTable table, final long[] rowIds, final int from,
+                           final int to) {
+            this.channel = channel;
+            this.table = table;
+            this.rowIds = rowIds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= AnswerTable.LOAD_ROWS_PER_TASK) {
+                this.decode();
+                return;
+            }
+
+            final int middle;
+            middle = ((this.from + this.to) >>> 1) & -Long.SIZE;
+
+            RecursiveAction.invokeAll(new LoadAction(this.channel, this.table, this.rowIds, this.from, middle),
+                                      new LoadAction(this.channel, this.table, this.rowIds, middle, this.to));
+        }
+
+        /**
+         * Maps the range of rows of this task, and decodes every row into the columns of the table.
+         */
+        private void decode() {
+            final MappedByteBuffer buffer;
+
+            try {
+                buffer = this.channel.map(FileChannel.MapMode.READ_ONLY,
+                                          AnswerLog.HEADER_BYTES + (long) this.from * AnswerLog.RECORD_BYTES,
+                                          (long) (this.to - this.from) * AnswerLog.RECORD_BYTES);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            final long[] timestamps;
+            final long[] ids;
+            final int[] latencies;
+            final long[] results;
+
+            timestamps = this.table.timestamps;
+            ids = this.rowIds;
+            latencies = this.table.latencies;
+            results = this.table.results;
+
+            int position = 0;
+            for (int row = this.from; row < this.to; row++) {
+                timestamps[row] = buffer.getLong(position);
+                ids[row] = buffer.getLong(position + Long.BYTES);
+                latencies[row] = buffer.getInt(position + 2 * Long.BYTES);
+                results[row >>> 6] |= (long) (buffer.get(position + 2 * Long.BYTES + Integer.BYTES) & 1) << row;
+
+                position += AnswerLog.RECORD_BYTES;
+            }
+        }
+
+    }
+
+    /**
+     * Represents the task of counting a range of rows into their groups, which is split in half until the range is
+     * small enough, after which the groups of both halves are merged.
+     */
+    // Fork/join tasks are only serializable because ForkJoinTask is, and these are never serialized.
+    @SuppressWarnings("serial")
+    private static final class GroupTask extends RecursiveTask<GroupTable> {
+
+        private final AnswerTable table;
+        private final long periodMillis;
+        private final int rowsPerTask;
+        private final int from;
+        private final int to;
+
+        /**
+         * Creates a new group task for the rows between the specified indexes.
+         *
+         * @param table        the table to group
+         * @param periodMillis the length of every period, or 0 to not group by period
+         * @param rowsPerTask  the amount of rows to stop splitting at
+         * @param from         the index of the first row to group, inclusive
+         * @param to           the index of the last row to group, exclusive
+         */
+        private GroupTask(final AnswerTable table, final long periodMillis, final int rowsPerTask, final int from,
+                          final int to) {
+            this.table = table;
+            this.periodMillis = periodMillis;
+            this.rowsPerTask = rowsPerTask;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected GroupTable compute() {
+            if (this.to - this.from <= this.rowsPerTask) {
+                final GroupTable groups;
+                groups = new GroupTable();
+
+                for (int row = this.from; row < this.to; row++) {
+                    groups.add(this.table.groupKeyOf(row, this.periodMillis), 1, this.table.resultOf(row));
+                }
+
+                return groups;
+            }
+
+            final int middle;
+            final GroupTask left;
+            final GroupTable right;
+            final GroupTable merged;
+
+            middle = (this.from + this.to) >>> 1;
+            left = new GroupTask(this.table, this.periodMillis, this.rowsPerTask, this.from, middle);
+
+            left.fork();
+            right = new GroupTask(this.table, this.periodMillis, this.rowsPerTask, middle, this.to).compute();
+            merged = left.join();
+
+            // The smaller table is merged into the larger one, which is the fewest insertions.
+            if (merged.size() >= right.size()) {
+                merged.addAll(right);
+                return merged;
+            }
+
+            right.addAll(merged);
+            return right;
+        }
+
+    }
+
+}
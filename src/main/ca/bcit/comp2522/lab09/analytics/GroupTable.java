@@ -0,0 +1,184 @@
+package ca.bcit.comp2522.lab09.analytics;
+
+import java.util.Arrays;
+
+/**
+ * Represents the running totals of a group-by, keyed by a non-negative long.
+ * <p>
+ * Keys and totals live in parallel primitive arrays with open addressing, so counting a row into its group never
+ * allocates. A table is only ever touched by one thread; tables of different threads are merged afterward.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+final class GroupTable {
+
+    private static final long EMPTY = -1;
+    private static final int INITIAL_CAPACITY = 1 << 10;
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private long[] keys;
+    private long[] totals;
+    private long[] corrects;
+    private int size;
+    private int shift;
+
+    /**
+     * Creates a new, empty table.
+     */
+    GroupTable() {
+        this.allocate(GroupTable.INITIAL_CAPACITY);
+    }
+
+    /**
+     * Replaces the arrays of this table with empty arrays of the specified capacity.
+     *
+     * @param capacity the capacity, which must be a power of two
+     */
+    private void allocate(final int capacity) {
+        this.keys = new long[capacity];
+        this.totals = new long[capacity];
+        this.corrects = new long[capacity];
+        this.shift = Long.SIZE - Integer.numberOfTrailingZeros(capacity);
+
+        Arrays.fill(this.keys, GroupTable.EMPTY);
+    }
+
+    /**
+     * Adds the specified totals to the group of the specified key, creating the group if it does not exist yet.
+     *
+     * @param key     the key of the group, which cannot be negative
+     * @param total   the amount of answers to add
+     * @param correct the amount of correct answers to add
+     */
+    void add(final long key, final long total, final long correct) {
+        final int slot;
+        slot = this.findSlot(key);
+
+        if (this.keys[slot] == GroupTable.EMPTY) {
+            this.keys[slot] = key;
+            this.size++;
+
+            if (2 * this.size > this.keys.length) {
+                this.grow();
+                this.add(key, total, correct);
+                return;
+            }
+        }
+
+        this.totals[slot] += total;
+        this.corrects[slot] += correct;
+    }
+
+    /**
+     * Adds every group of the specified table to this table.
+     *
+     * @param other the table to add
+     */
+    void addAll(final GroupTable other) {
+        for (int slot = 0; slot < other.keys.length; slot++) {
+            if (other.keys[slot] != GroupTable.EMPTY) {
+                this.add(other.keys[slot], other.totals[slot], other.corrects[slot]);
+            }
+        }
+    }
+
+    /**
+     * Finds the slot of the specified key, or the empty slot it would be put in.
+     *
+     * @param key the key
+     * @return the slot
+     */
+    private int findSlot(final long key) {
+        final int mask;
+        mask = this.keys.length - 1;
+
+        int slot = (int) ((key * GroupTable.HASH_MULTIPLIER) >>> this.shift);
+
+        while (this.keys[slot] != GroupTable.EMPTY && this.keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    /**
+     * Doubles the capacity of this table, moving every group over. The group that was added last has already been
+     * claimed, but its totals have not been added yet, so they stay zero.
+     */
+    private void grow() {
+        final long[] oldKeys;
+        final long[] oldTotals;
+        final long[] oldCorrects;
+
+        oldKeys = this.keys;
+        oldTotals = this.totals;
+        oldCorrects = this.corrects;
+
+        this.allocate(2 * oldKeys.length);
+        this.size = 0;
+
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != GroupTable.EMPTY) {
+                final int newSlot;
+                newSlot = this.findSlot(oldKeys[slot]);
+
+                this.keys[newSlot] = oldKeys[slot];
+                this.totals[newSlot] = oldTotals[slot];
+                this.corrects[newSlot] = oldCorrects[slot];
+                this.size++;
+            }
+        }
+    }
+
+    /**
+     * Determines the amount of groups in this table.
+     *
+     * @return the amount of groups
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Retrieves the key of every group, in ascending order.
+     *
+     * @return the sorted keys
+     */
+    long[] getSortedKeys() {
+        final long[] sorted;
+        sorted = new long[this.size];
+
+        int count = 0;
+        for (final long key : this.keys) {
+            if (key != GroupTable.EMPTY) {
+                sorted[count++] = key;
+            }
+        }
+
+        Arrays.sort(sorted);
+
+        return sorted;
+    }
+
+    /**
+     * Retrieves the amount of answers in the group of the specified key.
+     *
+     * @param key the key of an existing group
+     * @return the amount of answers
+     */
+    long getTotal(final long key) {
+        return this.totals[this.findSlot(key)];
+    }
+
+    /**
+     * Retrieves the amount of correct answers in the group of the specified key.
+     *
+     * @param key the key of an existing group
+     * @return the amount of correct answers
+     */
+    long getCorrect(final long key) {
+        return this.corrects[this.findSlot(key)];
+    }
+
+}
@@ -0,0 +1,97 @@
+package ca.bcit.comp2522.lab09.analytics;
+
+/**
+ * Represents the accuracy of every group of answers of an {@link AnswerTable}, where answers are grouped by their
+ * question, and optionally by the period they were given in.
+ * <p>
+ * Groups are ordered by question id, then by period, and are read by their index.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class GroupedAccuracy {
+
+    private final long periodMillis;
+    private final long[] questionIds;
+    private final long[] periods;
+    private final long[] totals;
+    private final long[] corrects;
+
+    /**
+     * Creates a new grouped accuracy from the specified columns, which must all have the same length.
+     *
+     * @param periodMillis the length of every period, or 0 if answers are not grouped by period
+     * @param questionIds  the question id of every group
+     * @param periods      the period of every group, counted in periods since the epoch
+     * @param totals       the amount of answers in every group
+     * @param corrects     the amount of correct answers in every group
+     */
+    GroupedAccuracy(final long periodMillis, final long[] questionIds, final long[] periods, final long[] totals,
+                    final long[] corrects) {
+        this.periodMillis = periodMillis;
+        this.questionIds = questionIds;
+        this.periods = periods;
+        this.totals = totals;
+        this.corrects = corrects;
+    }
+
+    /**
+     * Determines the amount of groups.
+     *
+     * @return the amount of groups
+     */
+    public int size() {
+        return this.questionIds.length;
+    }
+
+    /**
+     * Retrieves the id of the question of the group at the specified index.
+     *
+     * @param group the index of the group
+     * @return the question id, as given by {@link ca.bcit.comp2522.lab09.bank.QuestionBank#getId(int)}
+     */
+    public long getQuestionId(final int group) {
+        return this.questionIds[group];
+    }
+
+    /**
+     * Retrieves the start of the period of the group at the specified index.
+     *
+     * @param group the index of the group
+     * @return the start of the period in epoch milliseconds, or 0 if answers are not grouped by period
+     */
+    public long getPeriodStartMillis(final int group) {
+        return this.periods[group] * this.periodMillis;
+    }
+
+    /**
+     * Retrieves the amount of answers in the group at the specified index.
+     *
+     * @param group the index of the group
+     * @return the amount of answers
+     */
+    public long getTotal(final int group) {
+        return this.totals[group];
+    }
+
+    /**
+     * Retrieves the amount of correct answers in the group at the specified index.
+     *
+     * @param group the index of the group
+     * @return the amount of correct answers
+     */
+    public long getCorrect(final int group) {
+        return this.corrects[group];
+    }
+
+    /**
+     * Determines the share of correct answers in the group at the specified index.
+     *
+     * @param group the index of the group
+     * @return the accuracy, between 0 and 1
+     */
+    public double getAccuracy(final int group) {
+        return (double) this.corrects[group] / this.totals[group];
+    }
+
+}
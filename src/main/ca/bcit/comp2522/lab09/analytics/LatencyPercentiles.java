@@ -0,0 +1,84 @@
+package ca.bcit.comp2522.lab09.analytics;
+
+/**
+ * Represents percentiles of the answer time of every question answered in an {@link AnswerTable}.
+ * <p>
+ * Questions are ordered by their id, and are read by their index. Answers of unknown answer time are left out.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class LatencyPercentiles {
+
+    private final double[] percentiles;
+    private final long[] questionIds;
+    private final long[] counts;
+    private final int[][] latencies;
+
+    /**
+     * Creates a new set of percentiles from the specified columns, which must all have the same length.
+     *
+     * @param percentiles the computed percentiles, between 0 and 100
+     * @param questionIds the id of every question
+     * @param counts      the amount of timed answers to every question
+     * @param latencies   the answer time of every question at every computed percentile, in milliseconds
+     */
+    LatencyPercentiles(final double[] percentiles, final long[] questionIds, final long[] counts,
+                       final int[][] latencies) {
+        this.percentiles = percentiles;
+        this.questionIds = questionIds;
+        this.counts = counts;
+        this.latencies = latencies;
+    }
+
+    /**
+     * Determines the amount of questions.
+     *
+     * @return the amount of questions
+     */
+    public int size() {
+        return this.questionIds.length;
+    }
+
+    /**
+     * Retrieves the computed percentiles.
+     *
+     * @return the percentiles, between 0 and 100
+     */
+    public double[] getPercentiles() {
+        return this.percentiles.clone();
+    }
+
+    /**
+     * Retrieves the id of the question at the specified index.
+     *
+     * @param question the index of the question
+     * @return the question id, as given by {@link ca.bcit.comp2522.lab09.bank.QuestionBank#getId(int)}
+     */
+    public long getQuestionId(final int question) {
+        return this.questionIds[question];
+    }
+
+    /**
+     * Retrieves the amount of timed answers to the question at the specified index.
+     *
+     * @param question the index of the question
+     * @return the amount of timed answers
+     */
+    public long getCount(final int question) {
+        return this.counts[question];
+    }
+
+    /**
+     * Retrieves the answer time of the question at the specified index, at the computed percentile at the specified
+     * index.
+     *
+     * @param question   the index of the question
+     * @param percentile the index of the percentile, in the order the percentiles were computed in
+     * @return the answer time in milliseconds
+     */
+    public int getLatencyMillis(final int question, final int percentile) {
+        return this.latencies[question][percentile];
+    }
+
+}
@@ -0,0 +1,452 @@
+package ca.bcit.comp2522.lab09.bank;
+
+import ca.bcit.comp2522.lab09.QuizQuestion;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Represents a bulk importer that merges any amount of questions files into a single clean {@link QuestionBank}.
+ * <p>
+ * Each file is split into byte ranges that start and end on line boundaries, and every range is decoded and
+ * validated in parallel. Invalid lines do not stop the import, they are collected with their line numbers instead.
+ * Identical questions are only kept the first time they appear, across all the imported files.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class BankImporter {
+
+    private static final long MIN_CHUNK_BYTES = 1L << 20;
+    private static final long MAX_CHUNK_BYTES = 1L << 26;
+    private static final int CHUNKS_PER_WORKER = 4;
+    private static final int BOUNDARY_SCAN_BYTES = 8192;
+    private static final int FILE_INDEX_SHIFT = 40;
+    private static final int INITIAL_CHUNK_CAPACITY = 16;
+
+    private static final byte LINE_FEED = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a new importer that decodes on the common fork/join pool.
+     */
+    public BankImporter() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a new importer that decodes on the specified fork/join pool.
+     *
+     * @param pool the pool to decode on
+     */
+    public BankImporter(final ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Imports the specified questions files, and writes the clean bank to the first argument.
+     * <p>
+     * Every rejected line is reported on the standard error stream. A {@link BankSnapshot} of the clean bank is
+     * written next to it, so the application starts from the imported bank without decoding it again.
+     *
+     * @param args the output file, followed by every questions file to import
+     * @throws IOException if any file cannot be read, or the output cannot be written
+     */
+    public static void main(final String[] args) throws IOException {
+        final int minimumArgs = 2;
+
+        if (args.length < minimumArgs) {
+            System.err.println("Usage: BankImporter <output file> <questions file>...");
+            return;
+        }
+
+        final Path output;
+        final List<Path> files;
+        final ImportResult result;
+
+        output = Path.of(args[0]);
+        files = Arrays.stream(args).skip(1).map(Path::of).toList();
+        result = new BankImporter().importFiles(files);
+
+        result.getErrors().forEach(System.err::println);
+        result.writeBank(output);
+        BankSnapshot.write(BankSnapshot.pathFor(output), result.getBank(), output);
+
+        System.out.printf("Imported %d question(s) from %d line(s), %d rejected, %d duplicate(s).%n",
+                          result.getBank().size(), result.getLineCount(), result.getErrors().size(),
+                          result.getDuplicateCount());
+    }
+
+    /**
+     * Imports a single questions file.
+     *
+     * @param file the file to import
+     * @return the result of the import
+     * @throws IOException if the file cannot be read
+     */
+    public ImportResult importFile(final Path file) throws IOException {
+        return this.importFiles(List.of(file));
+    }
+
+    /**
+     * Imports and merges the specified questions files, in order.
+     *
+     * @param files the files to import
+     * @return the result of the import
+     * @throws IOException if any file cannot be read
+     */
+    public ImportResult importFiles(final List<Path> files) throws IOException {
+        final List<Chunk> chunks;
+        final ConcurrentHashMap<String, Long> firstPositions;
+
+        chunks = new ArrayList<>();
+        firstPositions = new ConcurrentHashMap<>();
+
+        for (int i = 0; i < files.size(); i++) {
+            chunks.addAll(this.splitFile(files.get(i), i));
+        }
+
+        try {
+            this.pool.invoke(new DecodeAction(chunks, 0, chunks.size(), firstPositions));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        this.pool.submit(() -> chunks.parallelStream().forEach((chunk) -> chunk.dropDuplicates(firstPositions)))
+                 .join();
+
+        final List<String> encodedQuestions;
+        final List<QuizQuestion> questions;
+        final List<ImportError> errors;
+
+        encodedQuestions = new ArrayList<>();
+        questions = new ArrayList<>();
+        errors = new ArrayList<>();
+
+        long lineCount = 0;
+        long duplicateCount = 0;
+        long fileLineBase = 0;
+        int currentFile = -1;
+
+        for (final Chunk chunk : chunks) {
+            if (chunk.fileIndex != currentFile) {
+                currentFile = chunk.fileIndex;
+                fileLineBase = 0;
+            }
+
+            for (int i = 0; i < chunk.errorMessages.size(); i++) {
+                errors.add(new ImportError(chunk.file, fileLineBase + chunk.errorLines[i], chunk.errorMessages.get(i)));
+            }
+
+            encodedQuestions.addAll(chunk.encodedQuestions);
+            questions.addAll(chunk.questions);
+
+            fileLineBase += chunk.lineCount;
+            lineCount += chunk.lineCount;
+            duplicateCount += chunk.duplicateCount;
+        }
+
+        return new ImportResult(new QuestionBank(encodedQuestions, questions), errors, lineCount, duplicateCount);
+    }
+
+    /**
+     * Splits the specified file into byte ranges which each start at the beginning of a line, and end right after
+     * a line feed or at the end of the file.
+     *
+     * @param file      the file to split
+     * @param fileIndex the position of the file within the import
+     * @return the chunks covering the entire file, in order
+     * @throws IOException if the file cannot be read
+     */
+    private List<Chunk> splitFile(final Path file, final int fileIndex) throws IOException {
+        final List<Chunk> chunks;
+        chunks = new ArrayList<>();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size;
+            final long targetChunkBytes;
+
+            size = channel.size();
+            targetChunkBytes = Math.clamp(size / ((long) this.pool.getParallelism() * BankImporter.CHUNKS_PER_WORKER),
+                                          BankImporter.MIN_CHUNK_BYTES, BankImporter.MAX_CHUNK_BYTES);
+
+            long start = 0;
+            while (start < size) {
+                final long end;
+                end = BankImporter.nextLineStart(channel, Math.min(start + targetChunkBytes, size), size);
+
+                chunks.add(new Chunk(file, fileIndex, start, end));
+                start = end;
+            }
+        }
+
+        return chunks;
+    }
+
+    /**
+     * Finds the position of the first line that starts at or after the specified position.
+     *
+     * @param channel  the channel to the file
+     * @param position the position to start searching at
+     * @param size     the size of the file
+     * @return the position right after the next line feed, or the size of the file if there is none
+     * @throws IOException if the file cannot be read
+     */
+    private static long nextLineStart(final FileChannel channel, final long position, final long size)
+            throws IOException {
+        final ByteBuffer buffer;
+        buffer = ByteBuffer.allocate(BankImporter.BOUNDARY_SCAN_BYTES);
+
+        long scanned = position == 0 ? 0 : position - 1;
+        while (scanned < size) {
+            buffer.clear();
+
+            final int read;
+            read = channel.read(buffer, scanned);
+
+            if (read < 0) {
+                break;
+            }
+
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == BankImporter.LINE_FEED) {
+                    return scanned + i + 1;
+                }
+            }
+
+            scanned += read;
+        }
+
+        return size;
+    }
+
+    /**
+     * Represents the task of decoding a contiguous group of chunks, which is split in half until a single chunk is
+     * left to decode.
+     */
+    // Fork/join tasks are only serializable because ForkJoinTask is, and these are never serialized.
+    @SuppressWarnings("serial")
+    private static final class DecodeAction extends RecursiveAction {
+
+        private final List<Chunk> chunks;
+        private final int from;
+        private final int to;
+        private final ConcurrentHashMap<String, Long> firstPositions;
+
+        /**
+         * Creates a new decode action for the chunks between the specified indexes.
+         *
+         * @param chunks         every chunk of the import
+         * @param from           the index of the first chunk to decode, inclusive
+         * @param to             the index of the last chunk to decode, exclusive
+         * @param firstPositions the earliest position each distinct question was seen at
+         */
+        private DecodeAction(final List<Chunk> chunks, final int from, final int to,
+                             final ConcurrentHashMap<String, Long> firstPositions) {
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+            this.firstPositions = firstPositions;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= 1) {
+                if (this.to > this.from) {
+                    this.chunks.get(this.from).decode(this.firstPositions);
+                }
+
+                return;
+            }
+
+            final int middle;
+            middle = (this.from + this.to) >>> 1;
+
+            RecursiveAction.invokeAll(new DecodeAction(this.chunks, this.from, middle, this.firstPositions),
+                                      new DecodeAction(this.chunks, middle, this.to, this.firstPositions));
+        }
+
+    }
+
+    /**
+     * Represents a byte range of a questions file and the questions decoded from it.
+     * <p>
+     * Line numbers within a chunk are relative to the start of the chunk, since the amount of lines in the
+     * preceding chunks is not known until every chunk has been decoded.
+     */
+    private static final class Chunk {
+
+        private final Path file;
+        private final int fileIndex;
+        private final long start;
+        private final long end;
+
+        private List<String> encodedQuestions;
+        private List<QuizQuestion> questions;
+        private long[] positions;
+        private long[] errorLines;
+        private List<String> errorMessages;
+        private long lineCount;
+        private long duplicateCount;
+
+        /**
+         * Creates a new chunk covering the specified byte range.
+         *
+         * @param file      the file of the chunk
+         * @param fileIndex the position of the file within the import
+         * @param start     the position of the first byte, inclusive
+         * @param end       the position of the last byte, exclusive
+         */
+        private Chunk(final Path file, final int fileIndex, final long start, final long end) {
+            this.file = file;
+            this.fileIndex = fileIndex;
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Decodes every line of this chunk, recording the earliest position of each distinct question.
+         *
+         * @param firstPositions the earliest position each distinct question was seen at
+         * @throws UncheckedIOException if the chunk cannot be read
+         */
+        private void decode(final ConcurrentHashMap<String, Long> firstPositions) {
+            this.encodedQuestions = new ArrayList<>();
+            this.questions = new ArrayList<>();
+            this.positions = new long[BankImporter.INITIAL_CHUNK_CAPACITY];
+            this.errorLines = new long[0];
+            this.errorMessages = new ArrayList<>();
+
+            try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ)) {
+                final MappedByteBuffer buffer;
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, this.start, this.end - this.start);
+
+                byte[] lineBytes = new byte[0];
+                int lineStart = 0;
+
+                for (int i = 0; i <= buffer.limit(); i++) {
+                    if (i < buffer.limit() && buffer.get(i) != BankImporter.LINE_FEED) {
+                        continue;
+                    }
+
+                    if (i == buffer.limit() && lineStart == i) {
+                        break;
+                    }
+
+                    int lineEnd = i;
+                    if (lineEnd > lineStart && buffer.get(lineEnd - 1) == BankImporter.CARRIAGE_RETURN) {
+                        lineEnd--;
+                    }
+
+                    if (lineBytes.length < lineEnd - lineStart) {
+                        lineBytes = new byte[lineEnd - lineStart];
+                    }
+
+                    buffer.get(lineStart, lineBytes, 0, lineEnd - lineStart);
+                    this.lineCount++;
+                    this.decodeLine(new String(lineBytes, 0, lineEnd - lineStart, StandardCharsets.UTF_8),
+                                    this.start + lineStart, firstPositions);
+
+                    lineStart = i + 1;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Decodes a single line of this chunk.
+         *
+         * @param line           the line to decode
+         * @param filePosition   the position of the line within its file
+         * @param firstPositions the earliest position each distinct question was seen at
+         */
+        private void decodeLine(final String line, final long filePosition,
+                                final ConcurrentHashMap<String, Long> firstPositions) {
+            if (line.isBlank()) {
+                return;
+            }
+
+            final QuizQuestion question;
+            try {
+                question = QuizQuestion.decode(line);
+            } catch (IllegalArgumentException e) {
+                this.addError(this.lineCount, e.getMessage());
+                return;
+            }
+
+            final long position;
+            position = ((long) this.fileIndex << BankImporter.FILE_INDEX_SHIFT) | filePosition;
+
+            if (this.questions.size() == this.positions.length) {
+                this.positions = Arrays.copyOf(this.positions, this.positions.length * 2);
+            }
+
+            this.positions[this.questions.size()] = position;
+            this.encodedQuestions.add(line);
+            this.questions.add(question);
+
+            firstPositions.merge(line, position, Math::min);
+        }
+
+        /**
+         * Records that the specified line of this chunk could not be imported.
+         *
+         * @param relativeLine the one-based line number, relative to the start of this chunk
+         * @param message      the reason the line was rejected
+         */
+        private void addError(final long relativeLine, final String message) {
+            final int index;
+            index = this.errorMessages.size();
+
+            if (index == this.errorLines.length) {
+                this.errorLines = Arrays.copyOf(this.errorLines, Math.max(1, index * 2));
+            }
+
+            this.errorLines[index] = relativeLine;
+            this.errorMessages.add(message);
+        }
+
+        /**
+         * Removes every question of this chunk that was first seen at an earlier position.
+         *
+         * @param firstPositions the earliest position each distinct question was seen at
+         */
+        private void dropDuplicates(final ConcurrentHashMap<String, Long> firstPositions) {
+            final List<String> keptEncoded;
+            final List<QuizQuestion> keptQuestions;
+
+            keptEncoded = new ArrayList<>(this.encodedQuestions.size());
+            keptQuestions = new ArrayList<>(this.questions.size());
+
+            for (int i = 0; i < this.questions.size(); i++) {
+                if (firstPositions.get(this.encodedQuestions.get(i)) == this.positions[i]) {
+                    keptEncoded.add(this.encodedQuestions.get(i));
+                    keptQuestions.add(this.questions.get(i));
+                } else {
+                    this.duplicateCount++;
+                }
+            }
+
+            this.encodedQuestions = keptEncoded;
+            this.questions = keptQuestions;
+            this.positions = null;
+        }
+
+    }
+
+}
@@ -0,0 +1,448 @@
+package ca.bcit.comp2522.lab09.bank;
+
+import ca.bcit.comp2522.lab09.QuizQuestion;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Represents the binary snapshot of a decoded {@link QuestionBank}, which lets the bank of a questions file be used
+ * at startup without reading or decoding the questions file.
+ * <p>
+ * The snapshot holds every question already split into its text, answers, and categories, followed by a table of
+ * where every question starts. A snapshot is mapped into memory as a whole, and a question is only read from the
+ * mapping the first time it is used, so loading a snapshot takes the same time no matter how big the bank is.
+ * <p>
+ * Every snapshot is stamped with the size and modification time of the questions file it was taken of, and is only
+ * used while the questions file still has that size and modification time. A snapshot of an older version of the
+ * format, or of a changed questions file, is ignored, and the questions file is read instead.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class BankSnapshot {
+
+    private static final int MAGIC = 0x51534E50;
+    private static final int VERSION = 1;
+
+    private static final int VERSION_OFFSET = Integer.BYTES;
+    private static final int SOURCE_SIZE_OFFSET = 2 * Integer.BYTES;
+    private static final int SOURCE_MODIFIED_OFFSET = BankSnapshot.SOURCE_SIZE_OFFSET + Long.BYTES;
+    private static final int QUESTION_COUNT_OFFSET = BankSnapshot.SOURCE_MODIFIED_OFFSET + Long.BYTES;
+    private static final int HEADER_BYTES = BankSnapshot.QUESTION_COUNT_OFFSET + Integer.BYTES;
+
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    /**
+     * Prevents instantiation of this utility class.
+     */
+    private BankSnapshot() {
+    }
+
+    /**
+     * Determines where the snapshot of the specified questions file is kept, which is next to the questions file.
+     *
+     * @param source the questions file
+     * @return the path of the snapshot of the questions file
+     */
+    public static Path pathFor(final Path source) {
+        return source.resolveSibling(source.getFileName() + BankSnapshot.SNAPSHOT_SUFFIX);
+    }
+
+    /**
+     * Loads the bank of the specified questions file from the specified snapshot, by mapping the snapshot into
+     * memory. No question is read until it is used.
+     *
+     * @param snapshot the snapshot file
+     * @param source   the questions file the snapshot was taken of
+     * @return the bank of the questions file, or null if there is no snapshot of the current questions file
+     * @throws IOException if the snapshot or the questions file cannot be read
+     */
+    public static QuestionBank load(final Path snapshot, final Path source) throws IOException {
+        if (!Files.isRegularFile(snapshot) || !Files.isRegularFile(source)) {
+            return null;
+        }
+
+        final long sourceSize;
+        final long sourceModifiedMillis;
+
+        sourceSize = Files.size(source);
+        sourceModifiedMillis = Files.getLastModifiedTime(source).toMillis();
+
+        final MappedByteBuffer buffer;
+
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            if (channel.size() < BankSnapshot.HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+                return null;
+            }
+
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (!BankSnapshot.isCurrent(buffer, sourceSize, sourceModifiedMillis)) {
+            return null;
+        }
+
+        final int questionCount;
+        final long offsetsOffset;
+
+        questionCount = buffer.getInt(BankSnapshot.QUESTION_COUNT_OFFSET);
+        offsetsOffset = buffer.capacity() - (questionCount + 1L) * Integer.BYTES;
+
+        // The end of the last question is the start of the offsets table, which catches a cut short snapshot.
+        if (questionCount < 0 || offsetsOffset < BankSnapshot.HEADER_BYTES ||
+            buffer.getInt(Math.toIntExact(offsetsOffset + (long) questionCount * Integer.BYTES)) != offsetsOffset) {
+            return null;
+        }
+
+        return new QuestionBank(new EncodedQuestions(buffer, (int) offsetsOffset, questionCount),
+                                new LazyQuestions(buffer, (int) offsetsOffset, questionCount));
+    }
+
+    /**
+     * Determines whether the specified snapshot was taken of a questions file of the specified size and
+     * modification time, in the current version of the format.
+     *
+     * @param snapshot             the snapshot file
+     * @param sourceSize           the size of the questions file
+     * @param sourceModifiedMillis the modification time of the questions file, in epoch milliseconds
+     * @return whether the snapshot is up to date
+     * @throws IOException if the snapshot exists but cannot be read
+     */
+    public static boolean isCurrent(final Path snapshot, final long sourceSize, final long sourceModifiedMillis)
+            throws IOException {
+        if (!Files.isRegularFile(snapshot)) {
+            return false;
+        }
+
+        final ByteBuffer header;
+        header = ByteBuffer.allocate(BankSnapshot.HEADER_BYTES);
+
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    return false;
+                }
+            }
+        }
+
+        return BankSnapshot.isCurrent(header, sourceSize, sourceModifiedMillis);
+    }
+
+    /**
+     * Determines whether the specified snapshot header is of the current version of the format, and stamped with
+     * the specified size and modification time.
+     *
+     * @param header               the buffer starting with the header
+     * @param sourceSize           the size of the questions file
+     * @param sourceModifiedMillis the modification time of the questions file, in epoch milliseconds
+     * @return whether the header is up to date
+     */
+    private static boolean isCurrent(final ByteBuffer header, final long sourceSize,
+                                     final long sourceModifiedMillis) {
+        return header.getInt(0) == BankSnapshot.MAGIC &&
+               header.getInt(BankSnapshot.VERSION_OFFSET) == BankSnapshot.VERSION &&
+               header.getLong(BankSnapshot.SOURCE_SIZE_OFFSET) == sourceSize &&
+               header.getLong(BankSnapshot.SOURCE_MODIFIED_OFFSET) == sourceModifiedMillis;
+    }
+
+    /**
+     * Writes a snapshot of the specified bank, which must match the current contents of the specified questions
+     * file, such as right after the bank was written to it.
+     *
+     * @param snapshot the snapshot file, which is replaced
+     * @param bank     the bank to take a snapshot of
+     * @param source   the questions file the bank was read from or written to
+     * @throws IOException if the questions file cannot be read, or the snapshot cannot be written
+     */
+    public static void write(final Path snapshot, final QuestionBank bank, final Path source) throws IOException {
+        BankSnapshot.write(snapshot, bank, Files.size(source), Files.getLastModifiedTime(source).toMillis());
+    }
+
+    /**
+     * Writes a snapshot of the specified bank, stamped with the specified size and modification time of the
+     * questions file the bank was read from.
+     * <p>
+     * The snapshot is written to a temporary file first, which then replaces the snapshot, so a snapshot is never
+     * seen half written.
+     *
+     * @param snapshot             the snapshot file, which is replaced
+     * @param bank                 the bank to take a snapshot of
+     * @param sourceSize           the size of the questions file the bank was read from
+     * @param sourceModifiedMillis the modification time of the questions file, in epoch milliseconds
+     * @throws IOException if the snapshot cannot be written, or the bank is too big for a snapshot
+     */
+    public static void write(final Path snapshot, final QuestionBank bank, final long sourceSize,
+                             final long sourceModifiedMillis) throws IOException {
+        final Path temporary;
+        final int[] offsets;
+
+        temporary = snapshot.resolveSibling(snapshot.getFileName() + BankSnapshot.TEMPORARY_SUFFIX);
+        offsets = new int[bank.size() + 1];
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(BankSnapshot.MAGIC);
+            out.writeInt(BankSnapshot.VERSION);
+            out.writeLong(sourceSize);
+            out.writeLong(sourceModifiedMillis);
+            out.writeInt(bank.size());
+
+            for (int ordinal = 0; ordinal < bank.size(); ordinal++) {
+                final QuizQuestion question;
+                question = bank.get(ordinal);
+
+                offsets[ordinal] = out.size();
+
+                BankSnapshot.writeString(out, bank.getEncoded(ordinal));
+                BankSnapshot.writeString(out, question.getQuestionText());
+                BankSnapshot.writeStrings(out, question.getAnswers());
+                BankSnapshot.writeStrings(out, question.getCategories());
+            }
+
+            offsets[bank.size()] = out.size();
+
+            // The stream stops counting at the largest int, which every offset must fit in to be mapped.
+            if ((long) out.size() + (long) offsets.length * Integer.BYTES >= Integer.MAX_VALUE) {
+                throw new IOException("The question bank is too big for a snapshot.");
+            }
+
+            for (final int offset : offsets) {
+                out.writeInt(offset);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+
+        Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes the specified string as its length in UTF-8 bytes, followed by those bytes.
+     *
+     * @param out    the stream to write to
+     * @param string the string to write
+     * @throws IOException if the stream cannot be written to
+     */
+    private static void writeString(final DataOutputStream out, final String string) throws IOException {
+        final byte[] bytes;
+        bytes = string.getBytes(StandardCharsets.UTF_8);
+
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Writes the amount of the specified strings, followed by every string.
+     *
+     * @param out     the stream to write to
+     * @param strings the strings to write
+     * @throws IOException if the stream cannot be written to
+     */
+    private static void writeStrings(final DataOutputStream out, final List<String> strings) throws IOException {
+        out.writeInt(strings.size());
+
+        for (final String string : strings) {
+            BankSnapshot.writeString(out, string);
+        }
+    }
+
+    /**
+     * Retrieves the bytes of the question at the specified ordinal from a mapped snapshot.
+     *
+     * @param buffer        the mapped snapshot
+     * @param offsetsOffset the position of the offsets table in the snapshot
+     * @param ordinal       the position of the question in the bank
+     * @return a buffer of just the bytes of the question, positioned at its start
+     */
+    private static ByteBuffer record(final ByteBuffer buffer, final int offsetsOffset, final int ordinal) {
+        final int start;
+        final int end;
+
+        start = buffer.getInt(offsetsOffset + ordinal * Integer.BYTES);
+        end = buffer.getInt(offsetsOffset + (ordinal + 1) * Integer.BYTES);
+
+        return buffer.slice(start, end - start);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutputStream, String)}.
+     *
+     * @param record the buffer to read from, which is advanced past the string
+     * @return the string
+     */
+    private static String readString(final ByteBuffer record) {
+        final byte[] bytes;
+        bytes = new byte[record.getInt()];
+
+        record.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the strings written by {@link #writeStrings(DataOutputStream, List)}.
+     *
+     * @param record the buffer to read from, which is advanced past the strings
+     * @return the strings
+     */
+    private static List<String> readStrings(final ByteBuffer record) {
+        final String[] strings;
+        strings = new String[record.getInt()];
+
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = BankSnapshot.readString(record);
+        }
+
+        return List.of(strings);
+    }
+
+    /**
+     * Represents the encoded questions of a mapped snapshot, which are read from the mapping on every access.
+     */
+    private static final class EncodedQuestions extends AbstractList<String> implements RandomAccess {
+
+        private final ByteBuffer buffer;
+        private final int offsetsOffset;
+        private final int size;
+
+        /**
+         * Creates a view of the encoded questions of the specified mapped snapshot.
+         *
+         * @param buffer        the mapped snapshot
+         * @param offsetsOffset the position of the offsets table in the snapshot
+         * @param size          the amount of questions in the snapshot
+         */
+        private EncodedQuestions(final ByteBuffer buffer, final int offsetsOffset, final int size) {
+            this.buffer = buffer;
+            this.offsetsOffset = offsetsOffset;
+            this.size = size;
+        }
+
+        @Override
+        public String get(final int index) {
+            Objects.checkIndex(index, this.size);
+
+            return BankSnapshot.readString(BankSnapshot.record(this.buffer, this.offsetsOffset, index));
+        }
+
+        @Override
+        public int size() {
+            return this.size;
+        }
+
+    }
+
+    /**
+     * Represents the decoded questions of a mapped snapshot, where every question is read from the mapping the
+     * first time it is accessed, and the same instance is returned from then on.
+     * <p>
+     * Since only questions that were accessed can be handed to anyone, only those are ever looked up by identity,
+     * so the ordinal of a question is remembered as it is read, without reading every question.
+     */
+    static final class LazyQuestions extends AbstractList<QuizQuestion> implements RandomAccess {
+
+        private final ByteBuffer buffer;
+        private final int offsetsOffset;
+        private final AtomicReferenceArray<QuizQuestion> questions;
+        private final Map<QuizQuestion, Integer> ordinals;
+
+        /**
+         * Creates a view of the decoded questions of the specified mapped snapshot.
+         *
+         * @param buffer        the mapped snapshot
+         * @param offsetsOffset the position of the offsets table in the snapshot
+         * @param size          the amount of questions in the snapshot
+         */
+        private LazyQuestions(final ByteBuffer buffer, final int offsetsOffset, final int size) {
+            this.buffer = buffer;
+            this.offsetsOffset = offsetsOffset;
+            this.questions = new AtomicReferenceArray<>(size);
+            this.ordinals = Collections.synchronizedMap(new IdentityHashMap<>());
+        }
+
+        @Override
+        public QuizQuestion get(final int index) {
+            final QuizQuestion question;
+            question = this.questions.get(Objects.checkIndex(index, this.questions.length()));
+
+            if (question != null) {
+                return question;
+            }
+
+            final QuizQuestion read;
+            read = this.read(index);
+
+            // The ordinal is remembered before the question is published, so it can be looked up by any thread
+            // that sees the question. A question that loses the race was never handed out, and is forgotten.
+            this.ordinals.put(read, index);
+
+            if (this.questions.compareAndSet(index, null, read)) {
+                return read;
+            }
+
+            this.ordinals.remove(read);
+
+            return this.questions.get(index);
+        }
+
+        /**
+         * Reads the question at the specified ordinal from the mapping.
+         *
+         * @param ordinal the position of the question in the bank
+         * @return the question
+         */
+        private QuizQuestion read(final int ordinal) {
+            final ByteBuffer record;
+            record = BankSnapshot.record(this.buffer, this.offsetsOffset, ordinal);
+
+            // The encoded question comes first, and is only needed to write the questions file.
+            record.position(record.position() + Integer.BYTES + record.getInt(record.position()));
+
+            final String text;
+            final List<String> answers;
+            final List<String> categories;
+
+            text = BankSnapshot.readString(record);
+            answers = BankSnapshot.readStrings(record);
+            categories = BankSnapshot.readStrings(record);
+
+            return new QuizQuestion(text, answers, categories);
+        }
+
+        /**
+         * Finds the ordinal of the specified question, by identity.
+         *
+         * @param question the question to find
+         * @return the position of the question in the bank, or -1 if it was not read from this snapshot
+         */
+        int ordinalOf(final QuizQuestion question) {
+            return this.ordinals.getOrDefault(question, -1);
+        }
+
+        @Override
+        public int size() {
+            return this.questions.length();
+        }
+
+    }
+
+}
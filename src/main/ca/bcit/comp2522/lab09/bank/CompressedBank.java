@@ -0,0 +1,407 @@
+package ca.bcit.comp2522.lab09.bank;
+
+import ca.bcit.comp2522.lab09.QuizQuestion;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Represents a read-only, block-compressed questions file, where any question can be decoded without decompressing
+ * the blocks of the other questions.
+ * <p>
+ * The file starts with a header, followed by an index of every block, followed by the blocks themselves. Each block
+ * holds the encoded questions of a contiguous range of ordinals, one per line, and is compressed on its own. Loading
+ * the entire bank decompresses every block in parallel, while taking only some questions decompresses only the
+ * blocks that hold them.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class CompressedBank {
+
+    private static final int MAGIC = 0x5142435A;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 * Integer.BYTES;
+    private static final int INDEX_ENTRY_BYTES = 3 * Integer.BYTES + Long.BYTES;
+    private static final int BLOCK_BYTES = 1 << 16;
+
+    private static final byte LINE_FEED = '\n';
+
+    private final ByteBuffer buffer;
+    private final int questionCount;
+    private final int[] firstOrdinals;
+    private final long[] blockOffsets;
+    private final int[] compressedLengths;
+    private final int[] uncompressedLengths;
+
+    /**
+     * Creates a compressed bank over the specified contents, reading the entire block index.
+     *
+     * @param buffer the contents of the compressed bank file
+     */
+    private CompressedBank(final ByteBuffer buffer) {
+        if (buffer.getInt(0) != CompressedBank.MAGIC || buffer.getInt(Integer.BYTES) != CompressedBank.VERSION) {
+            throw new IllegalArgumentException("The file is not a compressed bank of a supported version.");
+        }
+
+        final int blockCount;
+        blockCount = buffer.getInt(3 * Integer.BYTES);
+
+        this.buffer = buffer;
+        this.questionCount = buffer.getInt(2 * Integer.BYTES);
+        this.firstOrdinals = new int[blockCount];
+        this.blockOffsets = new long[blockCount];
+        this.compressedLengths = new int[blockCount];
+        this.uncompressedLengths = new int[blockCount];
+
+        int position = CompressedBank.HEADER_BYTES;
+        for (int block = 0; block < blockCount; block++) {
+            this.firstOrdinals[block] = buffer.getInt(position);
+            this.blockOffsets[block] = buffer.getLong(position + Integer.BYTES);
+            this.compressedLengths[block] = buffer.getInt(position + Integer.BYTES + Long.BYTES);
+            this.uncompressedLengths[block] = buffer.getInt(position + 2 * Integer.BYTES + Long.BYTES);
+
+            position += CompressedBank.INDEX_ENTRY_BYTES;
+        }
+    }
+
+    /**
+     * Compresses the specified questions file into a compressed bank.
+     *
+     * @param args the questions file to compress, followed by the compressed bank file to write
+     * @throws IOException if the questions file cannot be read, or the compressed bank cannot be written
+     */
+    public static void main(final String[] args) throws IOException {
+        final int requiredArgs = 2;
+
+        if (args.length != requiredArgs) {
+            System.err.println("Usage: CompressedBank <questions file> <compressed bank file>");
+            return;
+        }
+
+        final QuestionBank bank;
+        final Path output;
+
+        bank = QuestionBank.load(Path.of(args[0]));
+        output = Path.of(args[1]);
+
+        CompressedBank.write(output, bank);
+
+        System.out.printf("Compressed %d question(s) from %d to %d byte(s).%n", bank.size(),
+                          Files.size(Path.of(args[0])), Files.size(output));
+    }
+
+    /**
+     * Opens the specified compressed bank by mapping it into memory.
+     *
+     * @param file the compressed bank file to open
+     * @return the opened compressed bank
+     * @throws IOException if the file cannot be read
+     */
+    public static CompressedBank open(final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new CompressedBank(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Writes every question of the specified bank to a compressed bank file, in order.
+     *
+     * @param file the file to write to
+     * @param bank the bank to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(final Path file, final QuestionBank bank) throws IOException {
+        final ByteArrayOutputStream data;
+        final ByteArrayOutputStream block;
+        final List<int[]> blockSizes;
+        final List<Integer> firstOrdinals;
+        final Deflater deflater;
+
+        data = new ByteArrayOutputStream();
+        block = new ByteArrayOutputStream(CompressedBank.BLOCK_BYTES);
+        blockSizes = new ArrayList<>();
+        firstOrdinals = new ArrayList<>();
+        deflater = new Deflater();
+
+        try {
+            int blockStart = 0;
+
+            for (int ordinal = 0; ordinal < bank.size(); ordinal++) {
+                block.writeBytes(bank.getEncoded(ordinal).getBytes(StandardCharsets.UTF_8));
+                block.write(CompressedBank.LINE_FEED);
+
+                if (block.size() >= CompressedBank.BLOCK_BYTES || ordinal == bank.size() - 1) {
+                    firstOrdinals.add(blockStart);
+                    blockSizes.add(new int[] {CompressedBank.deflate(deflater, block, data), block.size()});
+
+                    block.reset();
+                    blockStart = ordinal + 1;
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(CompressedBank.MAGIC);
+            out.writeInt(CompressedBank.VERSION);
+            out.writeInt(bank.size());
+            out.writeInt(blockSizes.size());
+
+            long offset = CompressedBank.HEADER_BYTES + (long) blockSizes.size() * CompressedBank.INDEX_ENTRY_BYTES;
+            for (int i = 0; i < blockSizes.size(); i++) {
+                out.writeInt(firstOrdinals.get(i));
+                out.writeLong(offset);
+                out.writeInt(blockSizes.get(i)[0]);
+                out.writeInt(blockSizes.get(i)[1]);
+
+                offset += blockSizes.get(i)[0];
+            }
+
+            data.writeTo(out);
+        }
+    }
+
+    /**
+     * Compresses the specified block on its own, and appends the result to the specified data.
+     *
+     * @param deflater the deflater to compress with, which is reset before use
+     * @param block    the uncompressed block
+     * @param data     the compressed data to append to
+     * @return the amount of compressed bytes appended
+     */
+    private static int deflate(final Deflater deflater, final ByteArrayOutputStream block,
+                               final ByteArrayOutputStream data) {
+        final byte[] chunk;
+        final int sizeBefore;
+
+        chunk = new byte[CompressedBank.BLOCK_BYTES];
+        sizeBefore = data.size();
+
+        deflater.reset();
+        deflater.setInput(block.toByteArray());
+        deflater.finish();
+
+        while (!deflater.finished()) {
+            data.write(chunk, 0, deflater.deflate(chunk));
+        }
+
+        return data.size() - sizeBefore;
+    }
+
+    /**
+     * Decompresses and decodes every block in parallel into a bank.
+     *
+     * @return the bank of every question in this file, in order
+     * @throws IOException if any block is truncated or corrupt
+     */
+    public QuestionBank load() throws IOException {
+        final List<QuestionBank> blockBanks;
+
+        try {
+            blockBanks = IntStream.range(0, this.firstOrdinals.length)
+                                  .parallel()
+                                  .mapToObj((block) -> {
+                                      try {
+                                          final List<String> lines;
+                                          lines = this.decodeLines(block);
+
+                                          return new QuestionBank(lines, QuestionBank.decodeAll(lines));
+                                      } catch (IOException e) {
+                                          throw new UncheckedIOException(e);
+                                      }
+                                  })
+                                  .toList();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        final List<String> encodedQuestions;
+        final List<QuizQuestion> questions;
+
+        encodedQuestions = new ArrayList<>(this.questionCount);
+        questions = new ArrayList<>(this.questionCount);
+
+        for (final QuestionBank blockBank : blockBanks) {
+            for (int ordinal = 0; ordinal < blockBank.size(); ordinal++) {
+                encodedQuestions.add(blockBank.getEncoded(ordinal));
+            }
+
+            questions.addAll(blockBank.getQuestions());
+        }
+
+        return new QuestionBank(encodedQuestions, questions);
+    }
+
+    /**
+     * Randomly selects distinct questions from this file, decompressing only the blocks that hold them.
+     * <p>
+     * The same source of randomness, in the same state, selects the same questions as
+     * {@link QuestionBank#sample(int, Random)} would on the loaded bank.
+     *
+     * @param count  the amount of questions to select, clamped to the size of this bank
+     * @param random the source of randomness for the selection
+     * @return the selected questions, in a random order
+     * @throws IOException if a block that holds any of the questions is truncated or corrupt
+     */
+    public Set<QuizQuestion> sample(final int count, final Random random) throws IOException {
+        return new LinkedHashSet<>(this.getQuestions(QuestionBank.sampleOrdinals(this.questionCount, count, random)));
+    }
+
+    /**
+     * Decodes the questions at the specified ordinals, decompressing each block that holds any of them once, in
+     * parallel.
+     *
+     * @param ordinals the ordinals of the questions to decode
+     * @return the decoded questions, in the same order as the ordinals
+     * @throws IOException if a block that holds any of the questions is truncated or corrupt
+     */
+    public List<QuizQuestion> getQuestions(final int[] ordinals) throws IOException {
+        final Map<Integer, List<String>> blockLines;
+
+        try {
+            blockLines = Arrays.stream(ordinals)
+                               .map(this::blockOf)
+                               .distinct()
+                               .parallel()
+                               .boxed()
+                               .collect(Collectors.toConcurrentMap(Function.identity(), (block) -> {
+                                   try {
+                                       return this.decodeLines(block);
+                                   } catch (IOException e) {
+                                       throw new UncheckedIOException(e);
+                                   }
+                               }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        final List<QuizQuestion> questions;
+        questions = new ArrayList<>(ordinals.length);
+
+        for (final int ordinal : ordinals) {
+            final int block;
+            block = this.blockOf(ordinal);
+
+            questions.add(QuizQuestion.decode(blockLines.get(block).get(ordinal - this.firstOrdinals[block])));
+        }
+
+        return questions;
+    }
+
+    /**
+     * Finds the block that holds the question at the specified ordinal.
+     *
+     * @param ordinal the ordinal of the question
+     * @return the index of the block
+     */
+    private int blockOf(final int ordinal) {
+        if (ordinal < 0 || ordinal >= this.questionCount) {
+            throw new IllegalArgumentException("The ordinal " + ordinal + " is not within the bank.");
+        }
+
+        final int found;
+        found = Arrays.binarySearch(this.firstOrdinals, ordinal);
+
+        return found >= 0 ? found : -found - 2;
+    }
+
+    /**
+     * Decompresses the specified block and splits it into its encoded questions.
+     *
+     * @param block the index of the block
+     * @return the encoded questions of the block, in order
+     * @throws IOException if the block is truncated or corrupt
+     */
+    private List<String> decodeLines(final int block) throws IOException {
+        if (this.blockOffsets[block] < 0 || this.compressedLengths[block] < 0 || this.uncompressedLengths[block] < 0
+            || this.blockOffsets[block] + this.compressedLengths[block] > this.buffer.limit()) {
+            throw new IOException("The block " + block + " of the compressed bank is outside of the file.");
+        }
+
+        final byte[] content;
+        final Inflater inflater;
+
+        content = new byte[this.uncompressedLengths[block]];
+        inflater = new Inflater();
+
+        try {
+            inflater.setInput(this.buffer.slice((int) this.blockOffsets[block], this.compressedLengths[block]));
+
+            int inflated = 0;
+            while (inflated < content.length && !inflater.finished()) {
+                final int count;
+                count = inflater.inflate(content, inflated, content.length - inflated);
+
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("The block " + block + " of the compressed bank is truncated.");
+                }
+
+                inflated += count;
+            }
+
+            if (inflated < content.length) {
+                throw new IOException("The block " + block + " of the compressed bank is shorter than indexed.");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("The block " + block + " of the compressed bank is corrupt.", e);
+        } finally {
+            inflater.end();
+        }
+
+        final List<String> lines;
+        lines = new ArrayList<>();
+
+        int lineStart = 0;
+        for (int i = 0; i < content.length; i++) {
+            if (content[i] == CompressedBank.LINE_FEED) {
+                lines.add(new String(content, lineStart, i - lineStart, StandardCharsets.UTF_8));
+                lineStart = i + 1;
+            }
+        }
+
+        return lines;
+    }
+
+    /**
+     * Determines the amount of questions in this file.
+     *
+     * @return the amount of questions
+     */
+    public int size() {
+        return this.questionCount;
+    }
+
+    /**
+     * Determines the amount of independently compressed blocks in this file.
+     *
+     * @return the amount of blocks
+     */
+    public int getBlockCount() {
+        return this.firstOrdinals.length;
+    }
+
+}
@@ -0,0 +1,112 @@
+package ca.bcit.comp2522.lab09.bank;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Represents a builder of game decks, which are the ordinals of the questions of a game, prepared ahead of time so
+ * that starting a game is a lookup rather than a selection from the whole bank.
+ * <p>
+ * Every deck is derived from a round seed and the position of the deck, so any single deck can be recreated on its
+ * own with {@link ca.bcit.comp2522.lab09.Quiz#fromBank(QuestionBank, int, long)} and
+ * {@link DeckBuilder#deckSeed(long, int)}.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class DeckBuilder {
+
+    private static final int MIN_DECK_SIZE = 1;
+    private static final long SEED_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final long MIX_MULTIPLIER_1 = 0xBF58476D1CE4E5B9L;
+    private static final long MIX_MULTIPLIER_2 = 0x94D049BB133111EBL;
+    private static final int MIX_SHIFT_1 = 30;
+    private static final int MIX_SHIFT_2 = 27;
+    private static final int MIX_SHIFT_3 = 31;
+
+    private final QuestionBank bank;
+    private final int bankSize;
+    private final int deckSize;
+
+    /**
+     * Creates a new deck builder for the specified bank.
+     *
+     * @param bank     the bank the decks are built from
+     * @param deckSize the amount of questions in each deck, clamped to the size of the bank
+     */
+    public DeckBuilder(final QuestionBank bank, final int deckSize) {
+        DeckBuilder.validateDeckSize(deckSize);
+
+        this.bank = bank;
+        this.bankSize = bank.size();
+        this.deckSize = deckSize;
+    }
+
+    /**
+     * Validates the deck size to ensure it is within limits.
+     *
+     * @param deckSize the deck size to validate
+     */
+    private static void validateDeckSize(final int deckSize) {
+        if (deckSize < DeckBuilder.MIN_DECK_SIZE) {
+            throw new IllegalArgumentException(
+                    "A deck must have at least " + DeckBuilder.MIN_DECK_SIZE + " question(s).");
+        }
+    }
+
+    /**
+     * Derives the seed of a single deck from the seed of its round.
+     *
+     * @param roundSeed the seed of the round
+     * @param deckIndex the position of the deck within the round
+     * @return the seed of the deck
+     */
+    public static long deckSeed(final long roundSeed, final int deckIndex) {
+        long mixed = roundSeed + (deckIndex + 1) * DeckBuilder.SEED_GAMMA;
+
+        mixed = (mixed ^ (mixed >>> DeckBuilder.MIX_SHIFT_1)) * DeckBuilder.MIX_MULTIPLIER_1;
+        mixed = (mixed ^ (mixed >>> DeckBuilder.MIX_SHIFT_2)) * DeckBuilder.MIX_MULTIPLIER_2;
+
+        return mixed ^ (mixed >>> DeckBuilder.MIX_SHIFT_3);
+    }
+
+    /**
+     * Builds the specified amount of decks for a round.
+     *
+     * @param deckCount the amount of decks to build
+     * @param roundSeed the seed of the round
+     * @return the decks, each being the ordinals of its questions in play order
+     */
+    public int[][] buildDecks(final int deckCount, final long roundSeed) {
+        final int[][] decks;
+        decks = new int[deckCount][];
+
+        for (int i = 0; i < deckCount; i++) {
+            decks[i] = QuestionBank.sampleOrdinals(this.bankSize, this.deckSize,
+                                                   new Random(DeckBuilder.deckSeed(roundSeed, i)));
+        }
+
+        return decks;
+    }
+
+    /**
+     * Builds the specified amount of decks for a round, and writes them to a deck file.
+     *
+     * @param file      the file to write to
+     * @param deckCount the amount of decks to build
+     * @param roundSeed the seed of the round
+     * @throws IOException if the file cannot be written
+     */
+    public void writeDecks(final Path file, final int deckCount, final long roundSeed) throws IOException {
+        final long[] bankIds;
+        bankIds = new long[this.bankSize];
+
+        for (int ordinal = 0; ordinal < this.bankSize; ordinal++) {
+            bankIds[ordinal] = this.bank.getId(ordinal);
+        }
+
+        DeckFile.write(file, bankIds, this.buildDecks(deckCount, roundSeed));
+    }
+
+}
@@ -0,0 +1,233 @@
+package ca.bcit.comp2522.lab09.bank;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Represents a read-only file of prepared game decks, where any deck can be looked up without reading the others.
+ * <p>
+ * The file starts with a header, followed by the id of every question of the bank the decks were built from, the
+ * offset of every deck, and the decks themselves. Each deck is stored as the difference between each ordinal and the
+ * one before it, zigzag encoded so that negative differences stay small, and written as a variable-length integer of
+ * 7 bits per byte. A deck is looked up as the ids of its questions, so it still plays the same questions after the
+ * questions file is reordered or added to.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class DeckFile {
+
+    private static final int MAGIC = 0x5144434B;
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 4 * Integer.BYTES;
+
+    private static final int VARINT_PAYLOAD_BITS = 7;
+    private static final int VARINT_PAYLOAD_MASK = 0x7F;
+    private static final int VARINT_CONTINUE_BIT = 0x80;
+
+    private final ByteBuffer buffer;
+    private final int bankSize;
+    private final int deckCount;
+    private final int offsetsStart;
+    private final int dataStart;
+
+    /**
+     * Creates a deck file over the specified contents.
+     *
+     * @param buffer the contents of the deck file
+     */
+    private DeckFile(final ByteBuffer buffer) {
+        if (buffer.capacity() < DeckFile.HEADER_BYTES ||
+            buffer.getInt(0) != DeckFile.MAGIC || buffer.getInt(Integer.BYTES) != DeckFile.VERSION) {
+            throw new IllegalArgumentException("The file is not a deck file of a supported version.");
+        }
+
+        this.buffer = buffer;
+        this.bankSize = buffer.getInt(2 * Integer.BYTES);
+        this.deckCount = buffer.getInt(3 * Integer.BYTES);
+
+        if (this.bankSize < 0 || this.deckCount < 0 ||
+            DeckFile.HEADER_BYTES + ((long) this.bankSize + this.deckCount + 1) * Long.BYTES > buffer.capacity()) {
+            throw new IllegalArgumentException("The deck file is damaged.");
+        }
+
+        this.offsetsStart = DeckFile.HEADER_BYTES + this.bankSize * Long.BYTES;
+        this.dataStart = this.offsetsStart + (this.deckCount + 1) * Long.BYTES;
+    }
+
+    /**
+     * Opens the specified deck file by mapping it into memory.
+     *
+     * @param file the deck file to open
+     * @return the opened deck file
+     * @throws IOException if the file cannot be read
+     */
+    public static DeckFile open(final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new DeckFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Writes the specified decks to a deck file.
+     *
+     * @param file    the file to write to
+     * @param bankIds the id of every question of the bank the decks were built from, by ordinal
+     * @param decks   the decks to write, each being the ordinals of its questions in play order
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(final Path file, final long[] bankIds, final int[][] decks) throws IOException {
+        final ByteArrayOutputStream data;
+        final long[] offsets;
+
+        data = new ByteArrayOutputStream();
+        offsets = new long[decks.length + 1];
+
+        for (int i = 0; i < decks.length; i++) {
+            offsets[i] = data.size();
+
+            int previous = 0;
+            for (final int ordinal : decks[i]) {
+                DeckFile.writeVarInt(data, DeckFile.zigzag(ordinal - previous));
+                previous = ordinal;
+            }
+        }
+
+        offsets[decks.length] = data.size();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(DeckFile.MAGIC);
+            out.writeInt(DeckFile.VERSION);
+            out.writeInt(bankIds.length);
+            out.writeInt(decks.length);
+
+            for (final long id : bankIds) {
+                out.writeLong(id);
+            }
+
+            for (final long offset : offsets) {
+                out.writeLong(offset);
+            }
+
+            data.writeTo(out);
+        }
+    }
+
+    /**
+     * Zigzag encodes the specified value, so that values close to zero have few significant bits.
+     *
+     * @param value the value to encode
+     * @return the encoded value
+     */
+    private static int zigzag(final int value) {
+        return (value << 1) ^ (value >> (Integer.SIZE - 1));
+    }
+
+    /**
+     * Decodes a zigzag encoded value.
+     *
+     * @param value the value to decode
+     * @return the decoded value
+     */
+    private static int unzigzag(final int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Writes the specified value as a variable-length integer.
+     *
+     * @param out   the stream to write to
+     * @param value the value to write, treated as unsigned
+     */
+    private static void writeVarInt(final ByteArrayOutputStream out, final int value) {
+        int remaining = value;
+
+        while ((remaining & ~DeckFile.VARINT_PAYLOAD_MASK) != 0) {
+            out.write((remaining & DeckFile.VARINT_PAYLOAD_MASK) | DeckFile.VARINT_CONTINUE_BIT);
+            remaining >>>= DeckFile.VARINT_PAYLOAD_BITS;
+        }
+
+        out.write(remaining);
+    }
+
+    /**
+     * Looks up the deck at the specified position.
+     *
+     * @param deckIndex the position of the deck
+     * @return the {@link QuestionBank#getId(int) ids} of the questions of the deck, in play order
+     */
+    public long[] getDeck(final int deckIndex) {
+        if (deckIndex < 0 || deckIndex >= this.deckCount) {
+            throw new IndexOutOfBoundsException("There is no deck " + deckIndex + " in a file of " + this.deckCount +
+                                                " deck(s).");
+        }
+
+        final long start;
+        final long end;
+
+        start = this.dataStart + this.buffer.getLong(this.offsetsStart + deckIndex * Long.BYTES);
+        end = this.dataStart + this.buffer.getLong(this.offsetsStart + (deckIndex + 1) * Long.BYTES);
+
+        if (start < this.dataStart || end < start || end > this.buffer.capacity()) {
+            throw new IllegalArgumentException("The deck file is damaged.");
+        }
+
+        long[] deck = new long[(int) (end - start)];
+        int size = 0;
+        int previous = 0;
+        int position = (int) start;
+
+        while (position < end) {
+            int value = 0;
+            int shift = 0;
+            byte current;
+
+            do {
+                current = this.buffer.get(position++);
+                value |= (current & DeckFile.VARINT_PAYLOAD_MASK) << shift;
+                shift += DeckFile.VARINT_PAYLOAD_BITS;
+            } while ((current & DeckFile.VARINT_CONTINUE_BIT) != 0);
+
+            previous += DeckFile.unzigzag(value);
+
+            if (previous < 0 || previous >= this.bankSize) {
+                throw new IllegalArgumentException("The deck file is damaged.");
+            }
+
+            deck[size++] = this.buffer.getLong(DeckFile.HEADER_BYTES + previous * Long.BYTES);
+        }
+
+        if (size < deck.length) {
+            deck = Arrays.copyOf(deck, size);
+        }
+
+        return deck;
+    }
+
+    /**
+     * Returns the size of the bank the decks were built from.
+     *
+     * @return the size of the bank
+     */
+    public int getBankSize() {
+        return this.bankSize;
+    }
+
+    /**
+     * Returns the amount of decks in this file.
+     *
+     * @return the deck count
+     */
+    public int getDeckCount() {
+        return this.deckCount;
+    }
+
+}
@@ -0,0 +1,62 @@
+package ca.bcit.comp2522.lab09.bank;
+
+import java.nio.file.Path;
+
+/**
+ * Represents a single line of a questions file that could not be imported.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class ImportError {
+
+    private final Path file;
+    private final long lineNumber;
+    private final String message;
+
+    /**
+     * Creates a new import error for the specified line.
+     *
+     * @param file       the file that contains the line
+     * @param lineNumber the one-based number of the line within the file
+     * @param message    the reason the line could not be imported
+     */
+    public ImportError(final Path file, final long lineNumber, final String message) {
+        this.file = file;
+        this.lineNumber = lineNumber;
+        this.message = message;
+    }
+
+    /**
+     * Returns the file that contains the line.
+     *
+     * @return the file of the line
+     */
+    public Path getFile() {
+        return this.file;
+    }
+
+    /**
+     * Returns the one-based number of the line within its file.
+     *
+     * @return the line number
+     */
+    public long getLineNumber() {
+        return this.lineNumber;
+    }
+
+    /**
+     * Returns the reason the line could not be imported.
+     *
+     * @return the error message
+     */
+    public String getMessage() {
+        return this.message;
+    }
+
+    @Override
+    public String toString() {
+        return this.file + ":" + this.lineNumber + ": " + this.message;
+    }
+
+}
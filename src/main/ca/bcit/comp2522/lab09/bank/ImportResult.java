@@ -0,0 +1,93 @@
+package ca.bcit.comp2522.lab09.bank;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Represents the outcome of importing one or more questions files, which is the clean bank of every valid and
+ * distinct question, alongside every line that had to be rejected.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class ImportResult {
+
+    private final QuestionBank bank;
+    private final List<ImportError> errors;
+    private final long lineCount;
+    private final long duplicateCount;
+
+    /**
+     * Creates a new import result.
+     *
+     * @param bank           the bank of every valid and distinct question
+     * @param errors         every line that was rejected, in file and line order
+     * @param lineCount      the amount of lines that were read
+     * @param duplicateCount the amount of valid lines that were dropped as duplicates
+     */
+    public ImportResult(final QuestionBank bank, final List<ImportError> errors, final long lineCount,
+                        final long duplicateCount) {
+        this.bank = bank;
+        this.errors = Collections.unmodifiableList(errors);
+        this.lineCount = lineCount;
+        this.duplicateCount = duplicateCount;
+    }
+
+    /**
+     * Writes the clean bank as a questions file, with one encoded question per line.
+     *
+     * @param file the file to write to
+     * @throws IOException if the file cannot be written
+     */
+    public void writeBank(final Path file) throws IOException {
+        final List<String> encodedQuestions;
+        encodedQuestions = new ArrayList<>(this.bank.size());
+
+        for (int i = 0; i < this.bank.size(); i++) {
+            encodedQuestions.add(this.bank.getEncoded(i));
+        }
+
+        Files.write(file, encodedQuestions);
+    }
+
+    /**
+     * Returns the bank of every valid and distinct question.
+     *
+     * @return the clean bank
+     */
+    public QuestionBank getBank() {
+        return this.bank;
+    }
+
+    /**
+     * Returns every line that was rejected, in file and line order.
+     *
+     * @return the import errors
+     */
+    public List<ImportError> getErrors() {
+        return this.errors;
+    }
+
+    /**
+     * Returns the amount of lines that were read, including blank and rejected lines.
+     *
+     * @return the amount of lines read
+     */
+    public long getLineCount() {
+        return this.lineCount;
+    }
+
+    /**
+     * Returns the amount of valid lines that were dropped because an identical question was already imported.
+     *
+     * @return the amount of duplicates
+     */
+    public long getDuplicateCount() {
+        return this.duplicateCount;
+    }
+
+}
@@ -0,0 +1,374 @@
+package ca.bcit.comp2522.lab09.bank;
+
+import ca.bcit.comp2522.lab09.QuizQuestion;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Represents an immutable snapshot of every question available to be put on a quiz.
+ * <p>
+ * A bank is never modified once created, any change produces a new bank which shares as much of the decoded
+ * questions with this bank as possible. This means a bank can be handed to any reader without any synchronization.
+ * <p>
+ * The ordinal of a question changes whenever a question before it is inserted or removed, so anything stored across
+ * reloads refers to questions by their {@link #getId(int) id} instead, which only depends on the question itself.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class QuestionBank {
+
+    private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    private final List<String> encodedQuestions;
+    private final List<QuizQuestion> questions;
+    private final BankSnapshot.LazyQuestions lazyQuestions;
+
+    private volatile Map<QuizQuestion, Integer> ordinals;
+    private volatile Map<Long, Integer> ordinalsById;
+
+    /**
+     * Creates a new question bank from the given encoded questions and their decoded counterparts.
+     * <p>
+     * Both lists must be the same length, where the question at an index is the decoded version of the encoded
+     * question at that same index. Neither list is copied, so they must not be modified once given to a bank.
+     *
+     * @param encodedQuestions the encoded version of every question in the bank
+     * @param questions        the decoded version of every question in the bank
+     */
+    public QuestionBank(final List<String> encodedQuestions, final List<QuizQuestion> questions) {
+        QuestionBank.validateQuestions(encodedQuestions, questions);
+
+        this.encodedQuestions = Collections.unmodifiableList(encodedQuestions);
+        this.questions = Collections.unmodifiableList(questions);
+        this.lazyQuestions = questions instanceof BankSnapshot.LazyQuestions lazy ? lazy : null;
+    }
+
+    /**
+     * Loads a question bank containing all the questions from the given file.
+     * <p>
+     * The file is expected to have one encoded {@link QuizQuestion} per line, blank lines are ignored.
+     *
+     * @param file the file to load questions from
+     * @return the bank of all questions in the file
+     * @throws IOException if the provided file path cannot be opened and read
+     */
+    public static QuestionBank load(final Path file) throws IOException {
+        return QuestionBank.fromBytes(Files.readAllBytes(file));
+    }
+
+    /**
+     * Decodes a question bank from the raw contents of a questions file.
+     *
+     * @param content the raw UTF-8 contents of a questions file
+     * @return the bank of all questions in the content
+     */
+    static QuestionBank fromBytes(final byte[] content) {
+        final List<String> encodedQuestions;
+        encodedQuestions = QuestionBank.splitLines(new String(content, StandardCharsets.UTF_8));
+
+        return new QuestionBank(encodedQuestions, QuestionBank.decodeAll(encodedQuestions));
+    }
+
+    /**
+     * Splits the given text into its non-blank lines.
+     *
+     * @param text the text to split
+     * @return every non-blank line in the text, in order
+     */
+    static List<String> splitLines(final String text) {
+        return new ArrayList<>(text.lines().filter((line) -> !line.isBlank()).toList());
+    }
+
+    /**
+     * Decodes every one of the specified encoded questions.
+     *
+     * @param encodedQuestions the encoded questions
+     * @return the decoded questions, in the same order
+     */
+    static List<QuizQuestion> decodeAll(final List<String> encodedQuestions) {
+        final List<QuizQuestion> questions;
+        questions = new ArrayList<>(encodedQuestions.size());
+
+        for (final String encodedQuestion : encodedQuestions) {
+            questions.add(QuizQuestion.decode(encodedQuestion));
+        }
+
+        return questions;
+    }
+
+    /**
+     * Validates that the given encoded and decoded questions line up.
+     *
+     * @param encodedQuestions the encoded questions to check
+     * @param questions        the decoded questions to check
+     */
+    private static void validateQuestions(final List<String> encodedQuestions, final List<QuizQuestion> questions) {
+        if (encodedQuestions == null || questions == null) {
+            throw new IllegalArgumentException("A question bank cannot be created from null questions.");
+        }
+
+        if (encodedQuestions.size() != questions.size()) {
+            throw new IllegalArgumentException(
+                    "A question bank must have exactly one decoded question for every encoded question.");
+        }
+    }
+
+    /**
+     * Creates a new bank containing every question of this bank, followed by the specified questions.
+     *
+     * @param appendedEncoded the encoded questions to append
+     * @param appended        the decoded questions to append
+     * @return the new bank
+     */
+    public QuestionBank withAppended(final List<String> appendedEncoded, final List<QuizQuestion> appended) {
+        final List<String> encodedQuestions;
+        final List<QuizQuestion> questions;
+
+        encodedQuestions = new ArrayList<>(this.encodedQuestions.size() + appendedEncoded.size());
+        questions = new ArrayList<>(this.questions.size() + appended.size());
+
+        encodedQuestions.addAll(this.encodedQuestions);
+        encodedQuestions.addAll(appendedEncoded);
+        questions.addAll(this.questions);
+        questions.addAll(appended);
+
+        return new QuestionBank(encodedQuestions, questions);
+    }
+
+    /**
+     * Creates a new bank containing exactly the specified encoded questions.
+     * <p>
+     * Only the region between the longest unchanged prefix and the longest unchanged suffix is decoded, every
+     * question outside of that region is shared with this bank.
+     *
+     * @param newEncoded the encoded questions of the new bank
+     * @return the new bank
+     */
+    public QuestionBank withEncodedQuestions(final List<String> newEncoded) {
+        final int oldSize = this.encodedQuestions.size();
+        final int newSize = newEncoded.size();
+
+        int prefix = 0;
+        while (prefix < oldSize && prefix < newSize &&
+               this.encodedQuestions.get(prefix).equals(newEncoded.get(prefix))) {
+            prefix++;
+        }
+
+        int suffix = 0;
+        while (suffix < oldSize - prefix && suffix < newSize - prefix &&
+               this.encodedQuestions.get(oldSize - 1 - suffix).equals(newEncoded.get(newSize - 1 - suffix))) {
+            suffix++;
+        }
+
+        final List<QuizQuestion> questions;
+        questions = new ArrayList<>(newSize);
+
+        questions.addAll(this.questions.subList(0, prefix));
+        questions.addAll(QuestionBank.decodeAll(newEncoded.subList(prefix, newSize - suffix)));
+        questions.addAll(this.questions.subList(oldSize - suffix, oldSize));
+
+        return new QuestionBank(new ArrayList<>(newEncoded), questions);
+    }
+
+    /**
+     * Randomly selects distinct questions from this bank, without touching any of the other questions.
+     * <p>
+     * The same source of randomness, in the same state, always selects the same questions in the same order.
+     *
+     * @param count  the amount of questions to select, clamped to the size of this bank
+     * @param random the source of randomness for the selection
+     * @return the selected questions, in a random order
+     */
+    public Set<QuizQuestion> sample(final int count, final Random random) {
+        final Set<QuizQuestion> sample;
+        sample = new LinkedHashSet<>();
+
+        for (final int ordinal : QuestionBank.sampleOrdinals(this.questions.size(), count, random)) {
+            sample.add(this.questions.get(ordinal));
+        }
+
+        return sample;
+    }
+
+    /**
+     * Randomly selects distinct ordinals of a bank of the specified size, in time proportional to the amount of
+     * ordinals selected rather than the size of the bank.
+     *
+     * @param bankSize the amount of questions in the bank
+     * @param count    the amount of ordinals to select, clamped to the bank size
+     * @param random   the source of randomness for the selection
+     * @return the selected ordinals, in a random order
+     */
+    public static int[] sampleOrdinals(final int bankSize, final int count, final Random random) {
+        final int sampleSize = Math.min(count, bankSize);
+
+        final Set<Integer> chosenOrdinals;
+        chosenOrdinals = new HashSet<>();
+
+        final List<Integer> ordinals;
+        ordinals = new ArrayList<>(sampleSize);
+
+        // Floyd's algorithm, which selects a uniformly random subset, which is then shuffled into a random order.
+        for (int upper = bankSize - sampleSize; upper < bankSize; upper++) {
+            final int candidate;
+            final int chosen;
+
+            candidate = random.nextInt(upper + 1);
+            chosen = chosenOrdinals.contains(candidate) ? upper : candidate;
+
+            chosenOrdinals.add(chosen);
+            ordinals.add(chosen);
+        }
+
+        Collections.shuffle(ordinals, random);
+
+        return ordinals.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Determines the amount of questions in this bank.
+     *
+     * @return the amount of questions in this bank
+     */
+    public int size() {
+        return this.questions.size();
+    }
+
+    /**
+     * Retrieves the question at the specified ordinal.
+     *
+     * @param ordinal the position of the question in this bank
+     * @return the question at that position
+     */
+    public QuizQuestion get(final int ordinal) {
+        return this.questions.get(ordinal);
+    }
+
+    /**
+     * Finds the ordinal of the specified question in this bank, by identity.
+     * <p>
+     * The lookup table is built the first time this is called, so only banks that are looked up pay for it. A bank
+     * loaded from a {@link BankSnapshot} already knows the ordinal of every question it handed out, so it never
+     * builds the table, which would read every question.
+     *
+     * @param question the question to find
+     * @return the position of the question in this bank, or -1 if it is not in this bank
+     */
+    public int ordinalOf(final QuizQuestion question) {
+        if (this.lazyQuestions != null) {
+            return this.lazyQuestions.ordinalOf(question);
+        }
+
+        Map<QuizQuestion, Integer> lookup = this.ordinals;
+
+        if (lookup == null) {
+            lookup = new IdentityHashMap<>(this.questions.size());
+
+            for (int ordinal = 0; ordinal < this.questions.size(); ordinal++) {
+                lookup.putIfAbsent(this.questions.get(ordinal), ordinal);
+            }
+
+            this.ordinals = lookup;
+        }
+
+        return lookup.getOrDefault(question, -1);
+    }
+
+    /**
+     * Determines the id of the specified encoded question, which is a 64-bit hash of its encoded text.
+     * <p>
+     * The id of a question stays the same when other questions are added, removed, or moved, so it is what stored
+     * state refers to questions by. Editing a question gives it a new id, so state stored for the old text is no
+     * longer found.
+     *
+     * @param encodedQuestion the encoded question
+     * @return the id of the question
+     */
+    public static long idOf(final String encodedQuestion) {
+        long hash = QuestionBank.FNV_OFFSET_BASIS;
+
+        for (int i = 0; i < encodedQuestion.length(); i++) {
+            hash ^= encodedQuestion.charAt(i);
+            hash *= QuestionBank.FNV_PRIME;
+        }
+
+        // The MurmurHash3 finalizer, so that ids are spread over every bit, even for short questions.
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+
+        return hash;
+    }
+
+    /**
+     * Determines the id of the question at the specified ordinal.
+     *
+     * @param ordinal the position of the question in this bank
+     * @return the id of the question
+     * @see #idOf(String)
+     */
+    public long getId(final int ordinal) {
+        return QuestionBank.idOf(this.encodedQuestions.get(ordinal));
+    }
+
+    /**
+     * Finds the ordinal of the question with the specified id in this bank.
+     * <p>
+     * The lookup table is built the first time this is called, which reads every encoded question once.
+     *
+     * @param id the id of the question
+     * @return the position of the question in this bank, or -1 if no question of this bank has the id
+     */
+    public int ordinalOfId(final long id) {
+        Map<Long, Integer> lookup = this.ordinalsById;
+
+        if (lookup == null) {
+            lookup = new HashMap<>(this.encodedQuestions.size() * 2);
+
+            for (int ordinal = 0; ordinal < this.encodedQuestions.size(); ordinal++) {
+                lookup.putIfAbsent(this.getId(ordinal), ordinal);
+            }
+
+            this.ordinalsById = lookup;
+        }
+
+        return lookup.getOrDefault(id, -1);
+    }
+
+    /**
+     * Retrieves the encoded version of the question at the specified ordinal.
+     *
+     * @param ordinal the position of the question in this bank
+     * @return the encoded question at that position
+     */
+    public String getEncoded(final int ordinal) {
+        return this.encodedQuestions.get(ordinal);
+    }
+
+    /**
+     * Returns a read-only view of every question in this bank, in order.
+     *
+     * @return the questions in this bank
+     */
+    public List<QuizQuestion> getQuestions() {
+        return this.questions;
+    }
+
+}
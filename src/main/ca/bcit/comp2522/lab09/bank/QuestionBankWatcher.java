@@ -0,0 +1,404 @@
+package ca.bcit.comp2522.lab09.bank;
+
+import ca.bcit.comp2522.lab09.Destroyable;
+import ca.bcit.comp2522.lab09.Lifecycle;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Represents a watcher that keeps an up-to-date {@link QuestionBank} for a questions file while it is being edited.
+ * <p>
+ * Whenever the file changes, only the changed region of the file is decoded and a new bank is published. Readers
+ * always see a complete bank, and a bank that has already been handed out is never modified, so quizzes that are
+ * in progress are not affected by a reload.
+ * <p>
+ * The latest bank can be written to a {@link BankSnapshot}, stamped with the size and modification time the file had
+ * when it was last read, so the next run can start from the snapshot instead of the file.
+ * <p>
+ * A reload that fails keeps the current bank. The failure is kept until the next successful reload, and is passed to
+ * the reload listener, so the application can tell the player why their changes are not showing up.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class QuestionBankWatcher implements Destroyable {
+
+    private static final int TAIL_CHECK_BYTES = 4096;
+    private static final byte LINE_FEED = '\n';
+
+    private final Path file;
+    private final AtomicReference<QuestionBank> bank;
+    private final Lifecycle lifecycle;
+
+    private long knownLength;
+    private long knownModifiedMillis;
+    private byte[] knownTail;
+    private volatile Exception reloadError;
+    private volatile Consumer<Exception> onReload;
+
+    /**
+     * Creates a new watcher for the specified questions file, loading the entire file immediately.
+     *
+     * @param file the questions file to watch
+     * @throws IOException if the provided file path cannot be opened and read
+     */
+    public QuestionBankWatcher(final Path file) throws IOException {
+        this(file, null);
+    }
+
+    /**
+     * Creates a new watcher for the specified questions file, starting from an already loaded bank of that file.
+     * <p>
+     * When a bank is given, only the end of the file is read, which is all that is needed to notice later appends.
+     *
+     * @param file        the questions file to watch
+     * @param initialBank the bank that is known to match the current file contents, or null to load it now
+     * @throws IOException if the provided file path cannot be opened and read
+     */
+    public QuestionBankWatcher(final Path file, final QuestionBank initialBank) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.lifecycle = new Lifecycle(this);
+        this.knownModifiedMillis = Files.getLastModifiedTime(this.file).toMillis();
+
+        if (initialBank == null) {
+            final byte[] content;
+            content = Files.readAllBytes(this.file);
+
+            this.bank = new AtomicReference<>(QuestionBank.fromBytes(content));
+            this.rememberContent(content, content.length);
+        } else {
+            this.bank = new AtomicReference<>(initialBank);
+            this.rememberTail();
+        }
+    }
+
+    /**
+     * Returns the latest published bank of the watched file.
+     *
+     * @return the latest bank
+     */
+    public QuestionBank getBank() {
+        return this.bank.get();
+    }
+
+    /**
+     * Returns why the last reload of the questions file failed, if it did.
+     *
+     * @return the failure of the last reload, or null if the latest bank reflects the file
+     */
+    public Exception getReloadError() {
+        return this.reloadError;
+    }
+
+    /**
+     * Sets the listener that is called on the watcher thread after every reload, with the failure of the reload, or
+     * null if a new bank was published.
+     *
+     * @param onReload the listener, or null to not be notified
+     */
+    public void setOnReload(final Consumer<Exception> onReload) {
+        this.onReload = onReload;
+    }
+
+    /**
+     * Starts a file watcher thread on the questions file, which publishes a new bank whenever the file is modified.
+     * <p>
+     * The file is registered before this returns, so no modification made after this call is missed.
+     *
+     * @throws IOException if the questions file cannot be watched
+     */
+    public void start() throws IOException {
+        final WatchService watchService;
+        final Thread watcherThread;
+
+        watchService = FileSystems.getDefault().newWatchService();
+
+        this.lifecycle.trackWatchKey("questions directory",
+                                     this.file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_MODIFY,
+                                                                    StandardWatchEventKinds.ENTRY_CREATE));
+
+        watcherThread = new Thread(() -> {
+            try (watchService) {
+                while (true) {
+                    final WatchKey key;
+                    key = watchService.take();
+
+                    for (final WatchEvent<?> event : key.pollEvents()) {
+                        if (!(event.context() instanceof Path modifiedPath)) {
+                            continue;
+                        }
+
+                        if (!modifiedPath.endsWith(this.file.getFileName())) {
+                            continue;
+                        }
+
+                        this.reload();
+                    }
+
+                    key.reset();
+                }
+            } catch (InterruptedException _) {
+                // The watcher was destroyed.
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }, "question-bank-watcher");
+
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+        this.lifecycle.trackThread(watcherThread);
+    }
+
+    /**
+     * Publishes a new bank reflecting the current contents of the questions file.
+     * <p>
+     * If the file only had lines appended to it, only the appended bytes are read. Otherwise, the file is read in
+     * full, but only the lines that changed are decoded. If the file cannot be read, or any changed line cannot be
+     * decoded, the current bank is kept, since the file is most likely still being edited.
+     */
+    private synchronized void reload() {
+        final Exception error;
+        final Consumer<Exception> listener;
+
+        error = this.tryReload();
+        listener = this.onReload;
+        this.reloadError = error;
+
+        if (listener != null) {
+            listener.accept(error);
+        }
+    }
+
+    /**
+     * Attempts to publish a new bank reflecting the current contents of the questions file.
+     *
+     * @return why the bank could not be reloaded, or null if a new bank was published
+     */
+    private Exception tryReload() {
+        try {
+            if (!this.reloadAppended()) {
+                this.reloadChanged();
+            }
+
+            return null;
+        } catch (IOException | IllegalArgumentException e) {
+            return e;
+        }
+    }
+
+    /**
+     * Attempts to publish a new bank by only reading the lines appended to the file since the last reload.
+     *
+     * @return whether the change was handled as an append
+     * @throws IOException if the file cannot be read
+     */
+    private boolean reloadAppended() throws IOException {
+        final long modifiedMillis;
+        modifiedMillis = Files.getLastModifiedTime(this.file).toMillis();
+
+        try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ)) {
+            final long length;
+            length = channel.size();
+
+            if (length <= this.knownLength || !this.isKnownTailUnchanged(channel)) {
+                return false;
+            }
+
+            final byte[] appendedBytes;
+            final int completeLength;
+
+            appendedBytes = QuestionBankWatcher.readRange(channel, this.knownLength,
+                                                          Math.toIntExact(length - this.knownLength));
+            completeLength = QuestionBankWatcher.lastLineEnd(appendedBytes, appendedBytes.length);
+
+            if (completeLength == 0) {
+                return true;
+            }
+
+            final List<String> encodedQuestions;
+            encodedQuestions = QuestionBank.splitLines(
+                    new String(appendedBytes, 0, completeLength, StandardCharsets.UTF_8));
+
+            this.bank.set(this.bank.get().withAppended(encodedQuestions, QuestionBank.decodeAll(encodedQuestions)));
+            this.rememberContent(appendedBytes, completeLength);
+            this.knownModifiedMillis = modifiedMillis;
+
+            return true;
+        }
+    }
+
+    /**
+     * Publishes a new bank by reading the entire file, decoding only the lines that differ from the current bank.
+     *
+     * @throws IOException if the file cannot be read
+     */
+    private void reloadChanged() throws IOException {
+        final long modifiedMillis;
+        final byte[] content;
+
+        modifiedMillis = Files.getLastModifiedTime(this.file).toMillis();
+        content = Files.readAllBytes(this.file);
+
+        this.bank.set(this.bank.get().withEncodedQuestions(
+                QuestionBank.splitLines(new String(content, StandardCharsets.UTF_8))));
+
+        this.knownLength = 0;
+        this.rememberContent(content, content.length);
+        this.knownModifiedMillis = modifiedMillis;
+    }
+
+    /**
+     * Writes a snapshot of the latest published bank, unless the snapshot already holds the bank of the file as it
+     * was last read.
+     * <p>
+     * The snapshot is stamped with the size and modification time the file had when it was last read, which were
+     * taken before reading it. So if the file was changed since, or while it was being read, the snapshot is stale
+     * the next time it is loaded, rather than silently missing the change.
+     *
+     * @param snapshot the snapshot file
+     * @throws IOException if the snapshot cannot be written
+     */
+    public synchronized void writeSnapshot(final Path snapshot) throws IOException {
+        if (BankSnapshot.isCurrent(snapshot, this.knownLength, this.knownModifiedMillis)) {
+            return;
+        }
+
+        BankSnapshot.write(snapshot, this.bank.get(), this.knownLength, this.knownModifiedMillis);
+    }
+
+    /**
+     * Records the end of the file as the last known content of the file, without reading the rest of it.
+     *
+     * @throws IOException if the file cannot be read
+     */
+    private void rememberTail() throws IOException {
+        try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ)) {
+            final long length;
+            final byte[] tail;
+
+            length = channel.size();
+            tail = QuestionBankWatcher.readRange(channel, Math.max(0, length - QuestionBankWatcher.TAIL_CHECK_BYTES),
+                                                 (int) Math.min(length, QuestionBankWatcher.TAIL_CHECK_BYTES));
+
+            this.knownLength = length - tail.length;
+            this.rememberContent(tail, tail.length);
+        }
+    }
+
+    /**
+     * Records the end of the specified content as the last known content of the file, and advances the known
+     * length of the file past it.
+     *
+     * @param content the content that was most recently read
+     * @param length  the amount of bytes of the content that were consumed
+     */
+    private void rememberContent(final byte[] content, final int length) {
+        final byte[] tail;
+        tail = Arrays.copyOfRange(content, Math.max(0, length - QuestionBankWatcher.TAIL_CHECK_BYTES), length);
+
+        if (tail.length < QuestionBankWatcher.TAIL_CHECK_BYTES && this.knownTail != null && this.knownLength > 0) {
+            final byte[] merged;
+            final int kept;
+
+            kept = Math.min(this.knownTail.length, QuestionBankWatcher.TAIL_CHECK_BYTES - tail.length);
+            merged = new byte[kept + tail.length];
+
+            System.arraycopy(this.knownTail, this.knownTail.length - kept, merged, 0, kept);
+            System.arraycopy(tail, 0, merged, kept, tail.length);
+
+            this.knownTail = merged;
+        } else {
+            this.knownTail = tail;
+        }
+
+        this.knownLength += length;
+    }
+
+    /**
+     * Determines whether the last bytes read from the file are still at the same position in the file.
+     * <p>
+     * The file can only be treated as appended to when it previously ended on a complete line, and that line was
+     * not touched since.
+     *
+     * @param channel the channel to the file
+     * @return whether the known tail of the file is unchanged
+     * @throws IOException if the file cannot be read
+     */
+    private boolean isKnownTailUnchanged(final FileChannel channel) throws IOException {
+        if (this.knownTail.length == 0) {
+            return this.knownLength == 0;
+        }
+
+        if (this.knownTail[this.knownTail.length - 1] != QuestionBankWatcher.LINE_FEED) {
+            return false;
+        }
+
+        final byte[] currentTail;
+        currentTail = QuestionBankWatcher.readRange(channel, this.knownLength - this.knownTail.length,
+                                                    this.knownTail.length);
+
+        return Arrays.equals(currentTail, this.knownTail);
+    }
+
+    /**
+     * Reads the specified range of bytes from a file. If the file ends before the range does, the returned bytes
+     * are cut short.
+     *
+     * @param channel  the channel to the file
+     * @param position the position of the first byte to read
+     * @param length   the amount of bytes to read
+     * @return the bytes that were read
+     * @throws IOException if the file cannot be read
+     */
+    private static byte[] readRange(final FileChannel channel, final long position, final int length)
+            throws IOException {
+        final ByteBuffer buffer;
+        buffer = ByteBuffer.allocate(length);
+
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return Arrays.copyOf(buffer.array(), buffer.position());
+            }
+        }
+
+        return buffer.array();
+    }
+
+    /**
+     * Finds the length of the given bytes up to and including the final line feed.
+     *
+     * @param bytes  the bytes to search
+     * @param length the amount of bytes to search
+     * @return the length of the complete lines within the bytes, or 0 if there is no complete line
+     */
+    private static int lastLineEnd(final byte[] bytes, final int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (bytes[i] == QuestionBankWatcher.LINE_FEED) {
+                return i + 1;
+            }
+        }
+
+        return 0;
+    }
+
+    @Override
+    public void destroy() {
+        this.lifecycle.destroy();
+    }
+
+}
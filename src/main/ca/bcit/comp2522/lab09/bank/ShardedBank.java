@@ -0,0 +1,448 @@
+package ca.bcit.comp2522.lab09.bank;
+
+import ca.bcit.comp2522.lab09.QuizQuestion;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Represents a question bank that is split into shard files by category, together with an index from every category
+ * to the exact location of each of its questions.
+ * <p>
+ * Every question is stored once, in a shard of its first category, and shards are split once they grow past a
+ * maximum size. Questions without any category are stored under {@value #UNCATEGORIZED}. Since the index knows where
+ * each question starts and how long it is, selecting questions reads only the lines of the selected questions, and
+ * only from the shards that hold them.
+ * <p>
+ * Categories are matched without regard to case.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class ShardedBank {
+
+    /** This is the category of every question that has no category of its own. */
+    public static final String UNCATEGORIZED = "uncategorized";
+
+    /** This is the default maximum size of a single shard file, in bytes. */
+    public static final long DEFAULT_MAX_SHARD_BYTES = 1L << 24;
+
+    private static final String INDEX_FILE = "index.bin";
+    private static final String SHARD_FILE_FORMAT = "shard-%05d.txt";
+    private static final int MAGIC = 0x51534844;
+    private static final int VERSION = 1;
+
+    private static final int SHARD_SHIFT = 40;
+    private static final long OFFSET_MASK = (1L << ShardedBank.SHARD_SHIFT) - 1;
+    private static final byte LINE_FEED = '\n';
+
+    private final Path directory;
+    private final List<String> shardFiles;
+    private final Map<String, long[]> categoryLocations;
+    private final Map<String, int[]> categoryLengths;
+
+    /**
+     * Creates a sharded bank from its loaded index.
+     *
+     * @param directory         the directory of the shards
+     * @param shardFiles        the file name of every shard
+     * @param categoryLocations the shard and offset of every question, by category
+     * @param categoryLengths   the encoded length of every question, in the same order as its location, by category
+     */
+    private ShardedBank(final Path directory, final List<String> shardFiles,
+                        final Map<String, long[]> categoryLocations, final Map<String, int[]> categoryLengths) {
+        this.directory = directory;
+        this.shardFiles = shardFiles;
+        this.categoryLocations = categoryLocations;
+        this.categoryLengths = categoryLengths;
+    }
+
+    /**
+     * Splits the specified questions file into a sharded bank in the specified directory.
+     *
+     * @param args the questions file to split, followed by the directory to write the shards to
+     * @throws IOException if the questions file cannot be read, or the shards cannot be written
+     */
+    public static void main(final String[] args) throws IOException {
+        final int requiredArgs = 2;
+
+        if (args.length != requiredArgs) {
+            System.err.println("Usage: ShardedBank <questions file> <shard directory>");
+            return;
+        }
+
+        final ShardedBank bank;
+        bank = ShardedBank.write(Path.of(args[1]), QuestionBank.load(Path.of(args[0])),
+                                 ShardedBank.DEFAULT_MAX_SHARD_BYTES);
+
+        bank.getCategories().forEach((category) -> System.out.printf("%s: %d question(s)%n", category,
+                                                                     bank.countQuestions(Set.of(category))));
+    }
+
+    /**
+     * Opens the sharded bank in the specified directory, by reading its index.
+     *
+     * @param directory the directory of the sharded bank
+     * @return the opened sharded bank
+     * @throws IOException if the index cannot be read
+     */
+    public static ShardedBank open(final Path directory) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                Files.newInputStream(directory.resolve(ShardedBank.INDEX_FILE)))) {
+            if (in.readInt() != ShardedBank.MAGIC || in.readInt() != ShardedBank.VERSION) {
+                throw new IllegalArgumentException(
+                        "The directory does not hold a sharded bank of a supported version.");
+            }
+
+            final int shardCount;
+            final List<String> shardFiles;
+
+            shardCount = in.readInt();
+            shardFiles = new ArrayList<>(shardCount);
+
+            for (int i = 0; i < shardCount; i++) {
+                shardFiles.add(in.readUTF());
+            }
+
+            final int categoryCount;
+            final Map<String, long[]> categoryLocations;
+            final Map<String, int[]> categoryLengths;
+
+            categoryCount = in.readInt();
+            categoryLocations = new HashMap<>();
+            categoryLengths = new HashMap<>();
+
+            for (int i = 0; i < categoryCount; i++) {
+                final String category;
+                final long[] locations;
+                final int[] lengths;
+
+                category = in.readUTF();
+                locations = new long[in.readInt()];
+                lengths = new int[locations.length];
+
+                for (int j = 0; j < locations.length; j++) {
+                    locations[j] = in.readLong();
+                    lengths[j] = in.readInt();
+                }
+
+                categoryLocations.put(category, locations);
+                categoryLengths.put(category, lengths);
+            }
+
+            return new ShardedBank(directory, shardFiles, categoryLocations, categoryLengths);
+        }
+    }
+
+    /**
+     * Writes every question of the specified bank to shards in the specified directory, along with their index.
+     * <p>
+     * Any shards that already exist in the directory under the same names are replaced.
+     *
+     * @param directory     the directory to write to
+     * @param bank          the bank to shard
+     * @param maxShardBytes the size a shard may grow to before the rest of its category moves to a new shard
+     * @return the written sharded bank
+     * @throws IOException if the shards cannot be written
+     */
+    public static ShardedBank write(final Path directory, final QuestionBank bank, final long maxShardBytes)
+            throws IOException {
+        ShardedBank.validateMaxShardBytes(maxShardBytes);
+
+        final Map<String, List<Integer>> primaryOrdinals;
+        final Map<String, List<Long>> locations;
+        final Map<String, List<Integer>> lengths;
+        final List<String> shardFiles;
+
+        primaryOrdinals = new TreeMap<>();
+        locations = new TreeMap<>();
+        lengths = new TreeMap<>();
+        shardFiles = new ArrayList<>();
+
+        for (int ordinal = 0; ordinal < bank.size(); ordinal++) {
+            primaryOrdinals.computeIfAbsent(ShardedBank.categoriesOf(bank.get(ordinal)).getFirst(),
+                                            (_) -> new ArrayList<>())
+                           .add(ordinal);
+        }
+
+        Files.createDirectories(directory);
+
+        for (final List<Integer> ordinals : primaryOrdinals.values()) {
+            OutputStream out = null;
+            long shardBytes = 0;
+
+            try {
+                for (final int ordinal : ordinals) {
+                    final byte[] line;
+                    line = bank.getEncoded(ordinal).getBytes(StandardCharsets.UTF_8);
+
+                    if (out == null || (shardBytes > 0 && shardBytes + line.length >= maxShardBytes)) {
+                        if (out != null) {
+                            out.close();
+                        }
+
+                        shardFiles.add(ShardedBank.SHARD_FILE_FORMAT.formatted(shardFiles.size()));
+                        out = new BufferedOutputStream(Files.newOutputStream(directory.resolve(shardFiles.getLast())));
+                        shardBytes = 0;
+                    }
+
+                    for (final String category : ShardedBank.categoriesOf(bank.get(ordinal))) {
+                        locations.computeIfAbsent(category, (_) -> new ArrayList<>())
+                                 .add(((long) (shardFiles.size() - 1) << ShardedBank.SHARD_SHIFT) | shardBytes);
+                        lengths.computeIfAbsent(category, (_) -> new ArrayList<>()).add(line.length);
+                    }
+
+                    out.write(line);
+                    out.write(ShardedBank.LINE_FEED);
+                    shardBytes += line.length + 1;
+                }
+            } finally {
+                if (out != null) {
+                    out.close();
+                }
+            }
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(directory.resolve(ShardedBank.INDEX_FILE))))) {
+            out.writeInt(ShardedBank.MAGIC);
+            out.writeInt(ShardedBank.VERSION);
+            out.writeInt(shardFiles.size());
+
+            for (final String shardFile : shardFiles) {
+                out.writeUTF(shardFile);
+            }
+
+            out.writeInt(locations.size());
+
+            for (final String category : locations.keySet()) {
+                out.writeUTF(category);
+                out.writeInt(locations.get(category).size());
+
+                for (int i = 0; i < locations.get(category).size(); i++) {
+                    out.writeLong(locations.get(category).get(i));
+                    out.writeInt(lengths.get(category).get(i));
+                }
+            }
+        }
+
+        return ShardedBank.open(directory);
+    }
+
+    /**
+     * Validates the given maximum shard size to ensure it is within limits.
+     *
+     * @param maxShardBytes the maximum shard size to validate
+     */
+    private static void validateMaxShardBytes(final long maxShardBytes) {
+        if (maxShardBytes <= 0 || maxShardBytes > ShardedBank.OFFSET_MASK) {
+            throw new IllegalArgumentException("The maximum shard size must be positive, and fit in the index.");
+        }
+    }
+
+    /**
+     * Determines the distinct index keys of the categories of the specified question, in order.
+     *
+     * @param question the question
+     * @return the keys of the categories of the question, or only {@value #UNCATEGORIZED} if it has none
+     */
+    private static List<String> categoriesOf(final QuizQuestion question) {
+        if (question.getCategories().isEmpty()) {
+            return List.of(ShardedBank.UNCATEGORIZED);
+        }
+
+        final Set<String> keys;
+        keys = new LinkedHashSet<>();
+
+        for (final String category : question.getCategories()) {
+            keys.add(ShardedBank.keyOf(category));
+        }
+
+        return List.copyOf(keys);
+    }
+
+    /**
+     * Determines the index key of the specified category.
+     *
+     * @param category the category
+     * @return the key of the category in the index
+     */
+    private static String keyOf(final String category) {
+        return category.strip().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Counts the distinct questions that belong to at least one of the specified categories, reading only the index.
+     *
+     * @param categories the categories to count the questions of
+     * @return the amount of matching questions
+     */
+    public int countQuestions(final Set<String> categories) {
+        return this.findLocations(categories).size();
+    }
+
+    /**
+     * Randomly selects distinct questions that belong to at least one of the specified categories, reading only the
+     * selected questions, and the shards holding them in parallel.
+     * <p>
+     * Selecting from a single category takes time proportional to the amount of selected questions. Selecting from
+     * several categories also merges their index entries, so that a question in more than one of them is only
+     * counted once.
+     *
+     * @param categories the categories to select questions from
+     * @param count      the amount of questions to select, clamped to the amount of matching questions
+     * @param random     the source of randomness for the selection
+     * @return the selected questions, in a random order
+     * @throws IOException if a shard cannot be read
+     */
+    public Set<QuizQuestion> sample(final Set<String> categories, final int count, final Random random)
+            throws IOException {
+        final List<Map.Entry<Long, Integer>> chosen;
+        chosen = new ArrayList<>();
+
+        if (categories.size() == 1) {
+            final String key;
+            final long[] locations;
+
+            key = ShardedBank.keyOf(categories.iterator().next());
+            locations = this.categoryLocations.getOrDefault(key, new long[0]);
+
+            for (final int position : QuestionBank.sampleOrdinals(locations.length, count, random)) {
+                chosen.add(Map.entry(locations[position], this.categoryLengths.get(key)[position]));
+            }
+        } else {
+            final List<Map.Entry<Long, Integer>> matching;
+            matching = new ArrayList<>(this.findLocations(categories).entrySet());
+
+            for (final int position : QuestionBank.sampleOrdinals(matching.size(), count, random)) {
+                chosen.add(matching.get(position));
+            }
+        }
+
+        return new LinkedHashSet<>(this.readQuestions(chosen));
+    }
+
+    /**
+     * Collects the location and length of every distinct question that belongs to at least one of the specified
+     * categories.
+     *
+     * @param categories the categories to collect the questions of
+     * @return the length of every matching question, by location, in the order of the categories
+     */
+    private Map<Long, Integer> findLocations(final Set<String> categories) {
+        final Map<Long, Integer> matching;
+        matching = new LinkedHashMap<>();
+
+        for (final String category : categories) {
+            final String key;
+            final long[] locations;
+
+            key = ShardedBank.keyOf(category);
+            locations = this.categoryLocations.getOrDefault(key, new long[0]);
+
+            for (int i = 0; i < locations.length; i++) {
+                matching.putIfAbsent(locations[i], this.categoryLengths.get(key)[i]);
+            }
+        }
+
+        return matching;
+    }
+
+    /**
+     * Reads and decodes the questions at the specified locations, reading every involved shard in parallel.
+     *
+     * @param chosen the location and length of every question to read
+     * @return the decoded questions, in the same order as the locations
+     * @throws IOException if a shard cannot be read
+     */
+    private List<QuizQuestion> readQuestions(final List<Map.Entry<Long, Integer>> chosen) throws IOException {
+        final Map<Integer, List<Integer>> positionsByShard;
+        final QuizQuestion[] questions;
+
+        positionsByShard = new HashMap<>();
+        questions = new QuizQuestion[chosen.size()];
+
+        for (int i = 0; i < chosen.size(); i++) {
+            positionsByShard.computeIfAbsent((int) (chosen.get(i).getKey() >>> ShardedBank.SHARD_SHIFT),
+                                             (_) -> new ArrayList<>())
+                            .add(i);
+        }
+
+        try {
+            positionsByShard.entrySet().parallelStream().forEach((shard) -> {
+                final Path file;
+                file = this.directory.resolve(this.shardFiles.get(shard.getKey()));
+
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    for (final int position : shard.getValue()) {
+                        questions[position] = ShardedBank.readQuestion(channel, chosen.get(position));
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        return Arrays.asList(questions);
+    }
+
+    /**
+     * Reads and decodes the single question at the specified location of a shard.
+     *
+     * @param channel  the channel to the shard
+     * @param location the location and length of the question
+     * @return the decoded question
+     * @throws IOException if the shard cannot be read
+     */
+    private static QuizQuestion readQuestion(final FileChannel channel, final Map.Entry<Long, Integer> location)
+            throws IOException {
+        final ByteBuffer line;
+        final long offset;
+
+        line = ByteBuffer.allocate(location.getValue());
+        offset = location.getKey() & ShardedBank.OFFSET_MASK;
+
+        while (line.hasRemaining()) {
+            if (channel.read(line, offset + line.position()) < 0) {
+                throw new IOException("A shard ended before the question at " + offset + ", it is out of date.");
+            }
+        }
+
+        return QuizQuestion.decode(new String(line.array(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns every category with at least one question in this bank, in alphabetical order.
+     *
+     * @return the index keys of the categories
+     */
+    public Set<String> getCategories() {
+        return Collections.unmodifiableSet(new TreeSet<>(this.categoryLocations.keySet()));
+    }
+
+}
@@ -0,0 +1,157 @@
+package ca.bcit.comp2522.lab09.classroom;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Represents a single player connected to a {@link ClassroomServer} on the same machine.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class ClassroomClient implements Closeable {
+
+    private final Socket socket;
+    private final BufferedReader in;
+    private final Writer out;
+
+    private long answerMillis;
+
+    /**
+     * Creates a new client, and joins the classroom on the specified loopback port under the specified name.
+     *
+     * @param port   the port of the server
+     * @param player the name to join with
+     * @throws IOException if the server cannot be reached
+     */
+    public ClassroomClient(final int port, final String player) throws IOException {
+        ClassroomClient.validatePlayer(player);
+
+        this.socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        this.in = new BufferedReader(new InputStreamReader(this.socket.getInputStream(), StandardCharsets.UTF_8));
+        this.out = new BufferedWriter(new OutputStreamWriter(this.socket.getOutputStream(), StandardCharsets.UTF_8));
+
+        this.send(ClassroomProtocol.message(ClassroomProtocol.JOIN, player));
+    }
+
+    /**
+     * Validates the given player name to ensure it can be sent in a single message.
+     *
+     * @param player the player name to validate
+     */
+    private static void validatePlayer(final String player) {
+        if (player == null || player.isBlank()) {
+            throw new IllegalArgumentException("A player name cannot be null or blank.");
+        }
+
+        if (player.indexOf('\n') != -1 || player.indexOf('\r') != -1) {
+            throw new IllegalArgumentException("A player name cannot span multiple lines.");
+        }
+    }
+
+    /**
+     * Waits until the server asks the next question.
+     *
+     * @return the text of the question, or null if the server has closed the classroom
+     * @throws IOException if the server cannot be read from, or rejected this client
+     */
+    public String awaitQuestion() throws IOException {
+        final String[] parts;
+        parts = this.awaitMessage(ClassroomProtocol.QUESTION, 3);
+
+        if (parts == null) {
+            return null;
+        }
+
+        this.answerMillis = Long.parseLong(parts[1]);
+        return parts[2];
+    }
+
+    /**
+     * Returns how long the last asked question can be answered for.
+     *
+     * @return the time to answer in milliseconds
+     */
+    public long getAnswerMillis() {
+        return this.answerMillis;
+    }
+
+    /**
+     * Answers the last asked question. Only the first answer to each question counts.
+     *
+     * @param answer the answer to give
+     * @throws IOException if the server cannot be written to
+     */
+    public void answer(final String answer) throws IOException {
+        this.send(ClassroomProtocol.message(ClassroomProtocol.ANSWER, answer.replace('\n', ' ').replace('\r', ' ')));
+    }
+
+    /**
+     * Waits until the server tells the verdict of the last asked question.
+     *
+     * @return whether the answer was correct, or null if no answer arrived in time or the classroom was closed
+     * @throws IOException if the server cannot be read from, or rejected this client
+     */
+    public Boolean awaitResult() throws IOException {
+        final String[] parts;
+        parts = this.awaitMessage(ClassroomProtocol.END, 4);
+
+        if (parts == null || parts[1].equals(ClassroomProtocol.MISSED)) {
+            return null;
+        }
+
+        return parts[1].equals(ClassroomProtocol.CORRECT);
+    }
+
+    /**
+     * Reads messages until one of the specified command arrives, skipping any other messages.
+     *
+     * @param command   the command to wait for
+     * @param partCount the amount of parts to split the message into, the command included
+     * @return the parts of the message, or null if the server has closed the classroom
+     * @throws IOException if the server cannot be read from, or rejected this client
+     */
+    private String[] awaitMessage(final String command, final int partCount) throws IOException {
+        String line;
+        while ((line = this.in.readLine()) != null) {
+            final String[] parts;
+            parts = line.split(ClassroomProtocol.SEPARATOR, partCount);
+
+            if (parts[0].equals(ClassroomProtocol.ERROR)) {
+                throw new IOException("Rejected by the classroom: " + line.substring(parts[0].length()).strip());
+            }
+
+            if (parts[0].equals(command) && parts.length == partCount) {
+                return parts;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Sends the specified message to the server.
+     *
+     * @param message the message to send
+     * @throws IOException if the server cannot be written to
+     */
+    private void send(final String message) throws IOException {
+        this.out.write(message);
+        this.out.write('\n');
+        this.out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.socket.close();
+    }
+
+}
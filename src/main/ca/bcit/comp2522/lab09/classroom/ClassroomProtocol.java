@@ -0,0 +1,66 @@
+package ca.bcit.comp2522.lab09.classroom;
+
+/**
+ * Represents the line-based protocol spoken between a {@link ClassroomServer} and its {@link ClassroomClient}s.
+ * <p>
+ * Every message is a single UTF-8 line, made of a command, a space, and the arguments of the command. A client first
+ * joins with its name, then answers every question it receives. After the deadline of every question, the server
+ * tells each client their verdict, along with how the classroom did as a whole.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+final class ClassroomProtocol {
+
+    /** This is sent by a client to join with the name that follows. */
+    static final String JOIN = "JOIN";
+
+    /** This is sent by a client to answer the current question with the text that follows. */
+    static final String ANSWER = "ANSWER";
+
+    /** This is sent by the server with the milliseconds to answer in and the question text that follow. */
+    static final String QUESTION = "QUESTION";
+
+    /** This is sent by the server with the verdict, the correct count, and the submission count that follow. */
+    static final String END = "END";
+
+    /** This is sent by the server, with a description that follows, when it rejects a client. */
+    static final String ERROR = "ERROR";
+
+    /** This is the verdict of a player who answered correctly. */
+    static final String CORRECT = "correct";
+
+    /** This is the verdict of a player who answered incorrectly. */
+    static final String INCORRECT = "incorrect";
+
+    /** This is the verdict of a player who did not answer in time. */
+    static final String MISSED = "missed";
+
+    /** This separates a command from its arguments, and the arguments from each other. */
+    static final String SEPARATOR = " ";
+
+    /**
+     * Prevents instantiation of this utility class.
+     */
+    private ClassroomProtocol() {
+    }
+
+    /**
+     * Creates a message of the specified command and arguments.
+     *
+     * @param command   the command of the message
+     * @param arguments the arguments of the command
+     * @return the message, without a line terminator
+     */
+    static String message(final String command, final Object... arguments) {
+        final StringBuilder message;
+        message = new StringBuilder(command);
+
+        for (final Object argument : arguments) {
+            message.append(ClassroomProtocol.SEPARATOR).append(argument);
+        }
+
+        return message.toString();
+    }
+
+}
@@ -0,0 +1,62 @@
+package ca.bcit.comp2522.lab09.classroom;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Represents a single answer given by a player during a {@link ClassroomRound}.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class ClassroomResponse {
+
+    private final String player;
+    private final String answer;
+    private final long latencyNanos;
+
+    /**
+     * Creates a new response.
+     *
+     * @param player       the name of the player
+     * @param answer       the answer of the player
+     * @param latencyNanos how long after the start of the round the answer arrived
+     */
+    ClassroomResponse(final String player, final String answer, final long latencyNanos) {
+        this.player = player;
+        this.answer = answer;
+        this.latencyNanos = latencyNanos;
+    }
+
+    /**
+     * Returns the name of the player who responded.
+     *
+     * @return the player name
+     */
+    public String getPlayer() {
+        return this.player;
+    }
+
+    /**
+     * Returns the answer the player gave.
+     *
+     * @return the answer
+     */
+    public String getAnswer() {
+        return this.answer;
+    }
+
+    /**
+     * Returns how long after the start of the round the answer arrived.
+     *
+     * @return the latency in nanoseconds
+     */
+    public long getLatencyNanos() {
+        return this.latencyNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (%d ms)", this.player, TimeUnit.NANOSECONDS.toMillis(this.latencyNanos));
+    }
+
+}
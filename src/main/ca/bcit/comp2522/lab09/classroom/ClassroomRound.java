@@ -0,0 +1,219 @@
+package ca.bcit.comp2522.lab09.classroom;
+
+import ca.bcit.comp2522.lab09.QuizQuestion;
+import ca.bcit.comp2522.lab09.match.GradingCache;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Represents a single question asked to every player of a classroom at once, and the live aggregate of their answers.
+ * <p>
+ * Answers are accepted from any amount of threads without ever taking a lock. Counts are kept in striped adders, the
+ * histogram of answers in a concurrent map of adders, and the fastest correct responders claim their place with a
+ * single atomic increment. Since responses are timed as they arrive, the first correct responders to arrive are also
+ * the fastest.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class ClassroomRound {
+
+    /** This is the amount of fastest correct responders that are remembered. */
+    public static final int FASTEST_COUNT = 10;
+
+    private final QuizQuestion question;
+    private final long startNanos;
+    private final long deadlineNanos;
+
+    private final Map<String, Boolean> results;
+    private final Map<String, LongAdder> answerCounts;
+    private final LongAdder submissionCount;
+    private final LongAdder correctCount;
+    private final AtomicInteger fastestClaimed;
+    private final AtomicReferenceArray<ClassroomResponse> fastest;
+
+    /**
+     * Creates a new round that accepts answers to the specified question from now until the specified duration has
+     * passed.
+     *
+     * @param question       the question of the round
+     * @param durationMillis how long answers are accepted for
+     */
+    public ClassroomRound(final QuizQuestion question, final long durationMillis) {
+        ClassroomRound.validateRound(question, durationMillis);
+
+        this.question = question;
+        this.startNanos = System.nanoTime();
+        this.deadlineNanos = this.startNanos + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+
+        this.results = new ConcurrentHashMap<>();
+        this.answerCounts = new ConcurrentHashMap<>();
+        this.submissionCount = new LongAdder();
+        this.correctCount = new LongAdder();
+        this.fastestClaimed = new AtomicInteger();
+        this.fastest = new AtomicReferenceArray<>(ClassroomRound.FASTEST_COUNT);
+    }
+
+    /**
+     * Validates the given round to ensure it is within limits.
+     *
+     * @param question       the question to validate
+     * @param durationMillis the duration to validate
+     */
+    private static void validateRound(final QuizQuestion question, final long durationMillis) {
+        if (question == null) {
+            throw new IllegalArgumentException("A classroom round must have a question.");
+        }
+
+        if (durationMillis <= 0) {
+            throw new IllegalArgumentException("A classroom round must last for some time.");
+        }
+    }
+
+    /**
+     * Grades and records the answer of the specified player.
+     * <p>
+     * Only the first answer of each player counts, and answers that arrive after the deadline are rejected.
+     *
+     * @param player the name of the answering player
+     * @param answer the answer of the player
+     * @return whether the answer was accepted
+     */
+    public boolean submit(final String player, final String answer) {
+        final long latencyNanos;
+        latencyNanos = System.nanoTime() - this.startNanos;
+
+        if (this.startNanos + latencyNanos - this.deadlineNanos > 0 || this.results.containsKey(player)) {
+            return false;
+        }
+
+        final boolean correct;
+        correct = GradingCache.shared().grade(this.question, answer);
+
+        if (this.results.putIfAbsent(player, correct) != null) {
+            return false;
+        }
+
+        this.submissionCount.increment();
+        this.answerCounts.computeIfAbsent(QuizQuestion.normalizeAnswer(answer), (_) -> new LongAdder()).increment();
+
+        if (correct) {
+            this.correctCount.increment();
+
+            final int place;
+            place = this.fastestClaimed.getAndIncrement();
+
+            if (place < ClassroomRound.FASTEST_COUNT) {
+                this.fastest.set(place, new ClassroomResponse(player, answer, latencyNanos));
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Determines whether answers are still accepted.
+     *
+     * @return whether the deadline has not passed yet
+     */
+    public boolean isOpen() {
+        return System.nanoTime() - this.deadlineNanos <= 0;
+    }
+
+    /**
+     * Determines how long is left until the deadline.
+     *
+     * @return the remaining time in milliseconds, or 0 if the deadline has passed
+     */
+    public long getMillisRemaining() {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(this.deadlineNanos - System.nanoTime()));
+    }
+
+    /**
+     * Determines the result of the specified player.
+     *
+     * @param player the name of the player
+     * @return whether the player answered correctly, or null if they did not answer
+     */
+    public Boolean getResultFor(final String player) {
+        return this.results.get(player);
+    }
+
+    /**
+     * Returns the question of this round.
+     *
+     * @return the question
+     */
+    public QuizQuestion getQuestion() {
+        return this.question;
+    }
+
+    /**
+     * Returns the amount of accepted answers so far.
+     *
+     * @return the submission count
+     */
+    public long getSubmissionCount() {
+        return this.submissionCount.sum();
+    }
+
+    /**
+     * Returns the amount of correct answers so far.
+     *
+     * @return the correct count
+     */
+    public long getCorrectCount() {
+        return this.correctCount.sum();
+    }
+
+    /**
+     * Takes a snapshot of how many times each normalized answer was given, the most common answer first.
+     *
+     * @return the count of every given answer
+     */
+    public Map<String, Long> getAnswerHistogram() {
+        final Map<String, Long> histogram;
+        histogram = new LinkedHashMap<>();
+
+        this.answerCounts.entrySet()
+                         .stream()
+                         .map((entry) -> Map.entry(entry.getKey(), entry.getValue().sum()))
+                         .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                         .forEachOrdered((entry) -> histogram.put(entry.getKey(), entry.getValue()));
+
+        return histogram;
+    }
+
+    /**
+     * Returns the fastest correct responses so far, fastest first.
+     *
+     * @return up to {@value #FASTEST_COUNT} of the fastest correct responses
+     */
+    public List<ClassroomResponse> getFastestCorrect() {
+        final List<ClassroomResponse> responses;
+        responses = new ArrayList<>(ClassroomRound.FASTEST_COUNT);
+
+        for (int place = 0; place < ClassroomRound.FASTEST_COUNT; place++) {
+            final ClassroomResponse response;
+            response = this.fastest.get(place);
+
+            if (response != null) {
+                responses.add(response);
+            }
+        }
+
+        responses.sort(Comparator.comparingLong(ClassroomResponse::getLatencyNanos));
+
+        return responses;
+    }
+
+}
@@ -0,0 +1,411 @@
+package ca.bcit.comp2522.lab09.classroom;
+
+import ca.bcit.comp2522.lab09.QuizQuestion;
+import ca.bcit.comp2522.lab09.bank.QuestionBank;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Represents the host of a live classroom, which asks one question at a time to every connected player at once.
+ * <p>
+ * The server only listens on the loopback address, and serves every player on its own virtual thread, so thousands
+ * of players can be connected without thousands of platform threads. Every answer is handed straight to the current
+ * {@link ClassroomRound}, which aggregates it without locking.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class ClassroomServer implements Closeable {
+
+    private static final int CONNECTION_BACKLOG = 4096;
+    private static final int DEFAULT_PLAYERS = 1000;
+    private static final long DEFAULT_ROUND_MILLIS = 2000;
+    private static final int DEFAULT_ROUNDS = 3;
+    private static final long JOIN_POLL_MILLIS = 10;
+    private static final String WRONG_ANSWER = "no idea";
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor;
+    private final Map<String, Connection> connections;
+
+    private volatile ClassroomRound currentRound;
+
+    /**
+     * Creates a new classroom server listening on the specified loopback port.
+     *
+     * @param port the port to listen on, or 0 for any free port
+     * @throws IOException if the port cannot be listened on
+     */
+    public ClassroomServer(final int port) throws IOException {
+        this.serverSocket = new ServerSocket(port, ClassroomServer.CONNECTION_BACKLOG,
+                                             InetAddress.getLoopbackAddress());
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.connections = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Plays a few rounds of random questions from a questions file with simulated players over loopback, and prints
+     * the aggregate of every round.
+     *
+     * @param args the questions file, optionally followed by the amount of players
+     * @throws IOException          if the questions file cannot be read, or the server cannot be started
+     * @throws InterruptedException if interrupted while a round is running
+     */
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("Usage: ClassroomServer <questions file> [players]");
+            return;
+        }
+
+        final QuestionBank bank;
+        final int playerCount;
+
+        bank = QuestionBank.load(Path.of(args[0]));
+        playerCount = args.length > 1 ? Integer.parseInt(args[1]) : ClassroomServer.DEFAULT_PLAYERS;
+
+        final Map<String, String> answerKey;
+        answerKey = new HashMap<>();
+
+        for (final QuizQuestion question : bank.getQuestions()) {
+            answerKey.putIfAbsent(question.getQuestionText(), question.getBestAnswer());
+        }
+
+        try (ClassroomServer server = new ClassroomServer(0)) {
+            server.start();
+
+            for (int i = 0; i < playerCount; i++) {
+                Thread.ofVirtual().start(ClassroomServer.simulatedPlayer(server.getPort(), "player" + i, answerKey));
+            }
+
+            while (server.getPlayerCount() < playerCount) {
+                Thread.sleep(ClassroomServer.JOIN_POLL_MILLIS);
+            }
+
+            for (final int ordinal : QuestionBank.sampleOrdinals(bank.size(), ClassroomServer.DEFAULT_ROUNDS,
+                                                                 new Random())) {
+                final ClassroomRound round;
+                round = server.runRound(bank.get(ordinal), ClassroomServer.DEFAULT_ROUND_MILLIS);
+
+                System.out.printf("%s%n  %d/%d correct, fastest %s%n  answers %s%n",
+                                  round.getQuestion().getQuestionText(), round.getCorrectCount(),
+                                  round.getSubmissionCount(), round.getFastestCorrect(), round.getAnswerHistogram());
+            }
+        }
+    }
+
+    /**
+     * Creates a simulated player, which answers every question it is asked with either the best answer or a wrong
+     * answer, at random.
+     *
+     * @param port      the port of the server
+     * @param player    the name of the player
+     * @param answerKey the best answer to every question, by question text
+     * @return the task of the simulated player
+     */
+    private static Runnable simulatedPlayer(final int port, final String player, final Map<String, String> answerKey) {
+        return () -> {
+            try (ClassroomClient client = new ClassroomClient(port, player)) {
+                final Random random;
+                random = new Random();
+
+                String question;
+                while ((question = client.awaitQuestion()) != null) {
+                    client.answer(random.nextBoolean() ? answerKey.get(question) : ClassroomServer.WRONG_ANSWER);
+                    client.awaitResult();
+                }
+            } catch (IOException e) {
+                System.err.println(player + " disconnected: " + e.getMessage());
+            }
+        };
+    }
+
+    /**
+     * Starts accepting players in the background.
+     */
+    public void start() {
+        this.executor.submit(this::acceptPlayers);
+    }
+
+    /**
+     * Asks the specified question to every connected player, waits until the deadline has passed, and tells every
+     * player their verdict.
+     *
+     * @param question       the question to ask
+     * @param durationMillis how long answers are accepted for
+     * @return the finished round
+     * @throws InterruptedException if interrupted while waiting for the deadline
+     */
+    public ClassroomRound runRound(final QuizQuestion question, final long durationMillis)
+            throws InterruptedException {
+        final ClassroomRound round;
+        round = new ClassroomRound(question, durationMillis);
+
+        this.currentRound = round;
+        this.broadcast((_) -> ClassroomProtocol.message(ClassroomProtocol.QUESTION, durationMillis,
+                                                        question.getQuestionText()));
+
+        while (round.isOpen()) {
+            Thread.sleep(Math.max(1, round.getMillisRemaining()));
+        }
+
+        this.currentRound = null;
+        this.broadcast((player) -> ClassroomProtocol.message(ClassroomProtocol.END,
+                                                             ClassroomServer.verdictOf(round.getResultFor(player)),
+                                                             round.getCorrectCount(), round.getSubmissionCount()));
+
+        return round;
+    }
+
+    /**
+     * Determines the verdict to send to a player with the specified result.
+     *
+     * @param result whether the player answered correctly, or null if they did not answer
+     * @return the verdict of the player
+     */
+    private static String verdictOf(final Boolean result) {
+        if (result == null) {
+            return ClassroomProtocol.MISSED;
+        }
+
+        return result ? ClassroomProtocol.CORRECT : ClassroomProtocol.INCORRECT;
+    }
+
+    /**
+     * Sends a message to every connected player. Every player is sent their messages in order by their own virtual
+     * thread, so that a slow player does not hold up the others.
+     *
+     * @param messageFor creates the message for the player of the specified name
+     */
+    private void broadcast(final Function<String, String> messageFor) {
+        this.connections.forEach((player, connection) -> {
+            final String message;
+            message = messageFor.apply(player);
+
+            connection.send(message);
+        });
+    }
+
+    /**
+     * Accepts every player that connects, until this server is closed.
+     */
+    private void acceptPlayers() {
+        while (!this.serverSocket.isClosed()) {
+            try {
+                final Socket socket;
+                socket = this.serverSocket.accept();
+
+                this.executor.submit(() -> this.serve(socket));
+            } catch (IOException e) {
+                if (!this.serverSocket.isClosed()) {
+                    System.err.println("Could not accept a player: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Serves a single connected player until they disconnect: they first join with their name, and then every line
+     * they send is an answer to the current question.
+     *
+     * @param socket the socket of the player
+     */
+    private void serve(final Socket socket) {
+        String player = null;
+
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                                                                          StandardCharsets.UTF_8))) {
+            final Connection connection;
+            final String join;
+
+            connection = new Connection(socket, this.executor);
+            join = in.readLine();
+
+            if (join == null || !join.startsWith(ClassroomProtocol.JOIN + ClassroomProtocol.SEPARATOR)) {
+                connection.reject(ClassroomProtocol.message(ClassroomProtocol.ERROR, "join first"));
+                return;
+            }
+
+            final String name;
+            name = join.substring(ClassroomProtocol.JOIN.length() + 1).strip();
+
+            if (name.isEmpty() || this.connections.putIfAbsent(name, connection) != null) {
+                connection.reject(ClassroomProtocol.message(ClassroomProtocol.ERROR, "name taken"));
+                return;
+            }
+
+            player = name;
+
+            String line;
+            while ((line = in.readLine()) != null) {
+                final ClassroomRound round;
+                round = this.currentRound;
+
+                if (round != null && line.startsWith(ClassroomProtocol.ANSWER + ClassroomProtocol.SEPARATOR)) {
+                    round.submit(player, line.substring(ClassroomProtocol.ANSWER.length() + 1));
+                }
+            }
+        } catch (IOException e) {
+            if (!this.serverSocket.isClosed()) {
+                System.err.println("Lost a player: " + e.getMessage());
+            }
+        } finally {
+            if (player != null) {
+                this.connections.remove(player);
+            }
+        }
+    }
+
+    /**
+     * Returns the port this server listens on.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return this.serverSocket.getLocalPort();
+    }
+
+    /**
+     * Returns the amount of players that have joined and are still connected.
+     *
+     * @return the player count
+     */
+    public int getPlayerCount() {
+        return this.connections.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.serverSocket.close();
+
+        for (final Connection connection : this.connections.values()) {
+            connection.close();
+        }
+
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Represents the sending side of the connection to a single player.
+     * <p>
+     * Messages are queued, and written in the order they were sent by a single drain task at a time, so a player
+     * always receives the question of a round before its verdict. The drain task only runs while there is something to
+     * write, and writes everything queued before flushing once.
+     */
+    private static final class Connection {
+
+        private final Socket socket;
+        private final Writer out;
+        private final ExecutorService executor;
+        private final Queue<String> outbox;
+        private final AtomicBoolean draining;
+
+        /**
+         * Creates a new connection over the specified socket.
+         *
+         * @param socket   the socket of the player
+         * @param executor the executor the messages are written on
+         * @throws IOException if the socket cannot be written to
+         */
+        private Connection(final Socket socket, final ExecutorService executor) throws IOException {
+            this.socket = socket;
+            this.out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            this.executor = executor;
+            this.outbox = new ConcurrentLinkedQueue<>();
+            this.draining = new AtomicBoolean();
+        }
+
+        /**
+         * Queues the specified message to be sent to the player, after every message queued before it.
+         *
+         * @param message the message to send
+         */
+        private void send(final String message) {
+            this.outbox.add(message);
+            this.scheduleDrain();
+        }
+
+        /**
+         * Starts a drain task, unless one is already running.
+         */
+        private void scheduleDrain() {
+            if (this.draining.compareAndSet(false, true)) {
+                this.executor.submit(this::drain);
+            }
+        }
+
+        /**
+         * Writes every queued message to the player. A failure to send drops the queued messages, since the player is
+         * removed once their connection is read to its end.
+         */
+        private void drain() {
+            try {
+                String message;
+                while ((message = this.outbox.poll()) != null) {
+                    this.out.write(message);
+                    this.out.write('\n');
+                }
+
+                this.out.flush();
+            } catch (IOException _) {
+                // The reading side notices the broken connection and removes the player.
+                this.outbox.clear();
+            } finally {
+                this.draining.set(false);
+            }
+
+            // A message queued after the last poll but before the flag was cleared would otherwise never be written.
+            if (!this.outbox.isEmpty()) {
+                this.scheduleDrain();
+            }
+        }
+
+        /**
+         * Sends the specified message to a player that is about to be disconnected without joining, and waits until
+         * it is written. This must only be used while nothing was sent to the player yet.
+         *
+         * @param message the message to send
+         */
+        private void reject(final String message) {
+            try {
+                this.out.write(message);
+                this.out.write('\n');
+                this.out.flush();
+            } catch (IOException _) {
+                // The player is disconnected right after, so there is nothing left to tell them.
+            }
+        }
+
+        /**
+         * Closes the connection to the player.
+         *
+         * @throws IOException if the socket cannot be closed
+         */
+        private void close() throws IOException {
+            this.socket.close();
+        }
+
+    }
+
+}
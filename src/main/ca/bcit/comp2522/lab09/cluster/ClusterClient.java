@@ -0,0 +1,158 @@
+package ca.bcit.comp2522.lab09.cluster;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Represents a player connected to any node of a cluster on the same machine. Every request for a session is
+ * forwarded to the node that owns the session, so the client never needs to know which node that is.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class ClusterClient implements Closeable {
+
+    private static final int NO_HOPS = 0;
+
+    private final ClusterLink link;
+
+    /**
+     * Creates a new client connected to the node on the specified loopback port.
+     *
+     * @param port the port of the node
+     * @throws IOException if the node cannot be reached
+     */
+    public ClusterClient(final int port) throws IOException {
+        this.link = new ClusterLink(port);
+    }
+
+    /**
+     * Starts a quiz of randomly chosen questions under the specified session id.
+     *
+     * @param sessionId     the id of the session, which must not be in use
+     * @param questionCount the amount of questions to ask
+     * @param seed          the seed the questions are chosen with
+     * @throws IOException if the cluster cannot be reached, or rejected the session
+     */
+    public void start(final String sessionId, final int questionCount, final long seed) throws IOException {
+        this.request(ClusterProtocol.START, sessionId, ClusterProtocol.OK, 1, questionCount, seed);
+    }
+
+    /**
+     * Asks the next question of the quiz of the specified session.
+     *
+     * @param sessionId the id of the session
+     * @return the text of the question, or null if every question was already asked
+     * @throws IOException if the cluster cannot be reached, or rejected the request
+     */
+    public String nextQuestion(final String sessionId) throws IOException {
+        final String[] parts;
+        parts = this.request(ClusterProtocol.NEXT, sessionId, null, 2);
+
+        if (parts[0].equals(ClusterProtocol.DONE)) {
+            return null;
+        }
+
+        ClusterClient.expect(parts, ClusterProtocol.QUESTION, 2);
+
+        return parts[1];
+    }
+
+    /**
+     * Answers the last asked question of the quiz of the specified session.
+     *
+     * @param sessionId the id of the session
+     * @param answer    the answer to give
+     * @return whether the answer was correct
+     * @throws IOException if the cluster cannot be reached, or rejected the answer
+     */
+    public boolean answer(final String sessionId, final String answer) throws IOException {
+        final String[] parts;
+        parts = this.request(ClusterProtocol.ANSWER, sessionId, ClusterProtocol.RESULT, 2,
+                             answer.replace('\n', ' ').replace('\r', ' '));
+
+        return parts[1].equals(ClusterProtocol.CORRECT);
+    }
+
+    /**
+     * Determines how many questions of the quiz of the specified session were answered correctly.
+     *
+     * @param sessionId the id of the session
+     * @return the amount of correctly answered questions
+     * @throws IOException if the cluster cannot be reached, or rejected the request
+     */
+    public int getCorrectCount(final String sessionId) throws IOException {
+        final String[] parts;
+        parts = this.request(ClusterProtocol.SCORE, sessionId, ClusterProtocol.SCORE, 3);
+
+        return Integer.parseInt(parts[1]);
+    }
+
+    /**
+     * Ends the quiz of the specified session, which frees its id.
+     *
+     * @param sessionId the id of the session
+     * @throws IOException if the cluster cannot be reached, or rejected the request
+     */
+    public void end(final String sessionId) throws IOException {
+        this.request(ClusterProtocol.END, sessionId, ClusterProtocol.OK, 1);
+    }
+
+    /**
+     * Sends a request for the specified session, and checks that it is answered with the expected response.
+     *
+     * @param command   the command of the request
+     * @param sessionId the id of the session
+     * @param expected  the expected command of the response, or null to accept any response that is not an error
+     * @param partCount the amount of parts to split the response into, the command included
+     * @param arguments the arguments that follow the session id
+     * @return the parts of the response
+     * @throws IOException if the cluster cannot be reached, or answered with an error or an unexpected response
+     */
+    private String[] request(final String command, final String sessionId, final String expected,
+                             final int partCount, final Object... arguments) throws IOException {
+        ClusterSession.validateId(sessionId);
+
+        final Object[] allArguments;
+        final String response;
+        final String[] parts;
+
+        allArguments = new Object[arguments.length + 2];
+        allArguments[0] = ClusterClient.NO_HOPS;
+        allArguments[1] = sessionId;
+        System.arraycopy(arguments, 0, allArguments, 2, arguments.length);
+
+        response = this.link.request(ClusterProtocol.message(command, allArguments));
+        parts = response.split(ClusterProtocol.SEPARATOR, partCount);
+
+        if (parts[0].equals(ClusterProtocol.ERROR)) {
+            throw new IOException("Rejected by the cluster: " + response.substring(parts[0].length()).strip());
+        }
+
+        if (expected != null) {
+            ClusterClient.expect(parts, expected, partCount);
+        }
+
+        return parts;
+    }
+
+    /**
+     * Checks that the specified response is of the expected command.
+     *
+     * @param parts     the parts of the response
+     * @param expected  the expected command of the response
+     * @param partCount the expected amount of parts, the command included
+     * @throws IOException if the response is not of the expected command
+     */
+    private static void expect(final String[] parts, final String expected, final int partCount) throws IOException {
+        if (!parts[0].equals(expected) || parts.length < partCount) {
+            throw new IOException("Unexpected response from the cluster: " + parts[0]);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.link.close();
+    }
+
+}
@@ -0,0 +1,76 @@
+package ca.bcit.comp2522.lab09.cluster;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Represents a connection to a node of a cluster on the same machine, which sends one request at a time and waits for
+ * its response.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+final class ClusterLink implements Closeable {
+
+    private final Socket socket;
+    private final BufferedReader in;
+    private final Writer out;
+
+    /**
+     * Creates a new link to the node on the specified loopback port.
+     *
+     * @param port the port of the node
+     * @throws IOException if the node cannot be reached
+     */
+    ClusterLink(final int port) throws IOException {
+        this.socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        this.in = new BufferedReader(new InputStreamReader(this.socket.getInputStream(), StandardCharsets.UTF_8));
+        this.out = new BufferedWriter(new OutputStreamWriter(this.socket.getOutputStream(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Sends the specified request, and waits for the first line of its response.
+     *
+     * @param request the request to send
+     * @return the first line of the response
+     * @throws IOException if the node cannot be written to or read from, or closed the link
+     */
+    String request(final String request) throws IOException {
+        this.out.write(request);
+        this.out.write('\n');
+        this.out.flush();
+
+        return this.readLine();
+    }
+
+    /**
+     * Waits for the next line of a response.
+     *
+     * @return the line
+     * @throws IOException if the node cannot be read from, or closed the link
+     */
+    String readLine() throws IOException {
+        final String line;
+        line = this.in.readLine();
+
+        if (line == null) {
+            throw new IOException("The node on port " + this.socket.getPort() + " closed the connection.");
+        }
+
+        return line;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.socket.close();
+    }
+
+}
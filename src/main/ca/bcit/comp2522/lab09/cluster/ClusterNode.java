@@ -0,0 +1,976 @@
+package ca.bcit.comp2522.lab09.cluster;
+
+import ca.bcit.comp2522.lab09.QuizQuestion;
+import ca.bcit.comp2522.lab09.bank.QuestionBank;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Represents a node of a cluster, which holds a share of every quiz session of the cluster.
+ * <p>
+ * Sessions are partitioned across the nodes with a {@link HashRing} of their ids. A request for a session can be sent
+ * to any node, and a node that does not own the session forwards it to the node that does, over a pooled connection.
+ * When a node joins, every node hands over the sessions the new node now owns. When a node leaves, it hands over all of
+ * its sessions before it goes. Every node holds its own read-only copy of the question bank, which a joining node
+ * replicates from the cluster, so a session is handed over as just the ordinals of its questions and its answers.
+ * <p>
+ * Nodes only listen on the loopback address, and serve every connection on its own virtual thread. Nodes are expected
+ * to join and leave one at a time. A session that cannot be handed over stays on its node, which keeps serving it, and
+ * the join or leave that needed it fails. Failures on the threads of a node, which no caller waits for, are kept as
+ * its {@link #getLastFailure() last failure} and passed to its {@link #setOnFailure(Consumer) failure listener}.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class ClusterNode implements Closeable {
+
+    private static final int CONNECTION_BACKLOG = 4096;
+    private static final int MAX_HOPS = 3;
+    private static final long FINGERPRINT_MULTIPLIER = 0x100000001B3L;
+
+    private static final String SERVE_OPTION = "--serve";
+    private static final String JOIN_OPTION = "--join";
+    private static final int NO_SEED = -1;
+    private static final int DEFAULT_NODES = 3;
+    private static final int DEFAULT_SESSIONS = 1000;
+    private static final int SIMULATED_QUESTIONS = 10;
+    private static final long SIMULATED_THINKING_MILLIS = 200;
+    private static final long MEMBERSHIP_CHANGE_MILLIS = 100;
+    private static final String WRONG_ANSWER = "no idea";
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor;
+    private final QuestionBank bank;
+    private final long bankFingerprint;
+    private final Map<String, ClusterSession> sessions;
+    private final Map<Integer, Queue<ClusterLink>> idleLinks;
+    private final Set<Socket> openSockets;
+
+    private volatile HashRing ring;
+    private volatile HashRing previousRing;
+    private volatile IOException lastFailure;
+    private volatile Consumer<IOException> onFailure;
+
+    /**
+     * Creates a new node listening on the specified loopback port, which holds the specified bank.
+     *
+     * @param port the port to listen on, or 0 for any free port
+     * @param bank the question bank, which must be the same on every node of the cluster
+     * @throws IOException if the port cannot be listened on
+     */
+    public ClusterNode(final int port, final QuestionBank bank) throws IOException {
+        this(port, bank, HashRing.DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * Creates a new node listening on the specified loopback port, which holds the specified bank.
+     *
+     * @param port         the port to listen on, or 0 for any free port
+     * @param bank         the question bank, which must be the same on every node of the cluster
+     * @param virtualNodes the amount of virtual nodes every node is placed on the ring as, the same on every node
+     * @throws IOException if the port cannot be listened on
+     */
+    public ClusterNode(final int port, final QuestionBank bank, final int virtualNodes) throws IOException {
+        ClusterNode.validateBank(bank);
+
+        this.ring = HashRing.empty(virtualNodes);
+        this.previousRing = this.ring;
+        this.bank = bank;
+        this.bankFingerprint = ClusterNode.fingerprintOf(bank);
+        this.sessions = new ConcurrentHashMap<>();
+        this.idleLinks = new ConcurrentHashMap<>();
+        this.openSockets = ConcurrentHashMap.newKeySet();
+        this.serverSocket = new ServerSocket(port, ClusterNode.CONNECTION_BACKLOG, InetAddress.getLoopbackAddress());
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    /**
+     * Validates that the given bank exists.
+     *
+     * @param bank the bank to check
+     */
+    private static void validateBank(final QuestionBank bank) {
+        if (bank == null) {
+            throw new IllegalArgumentException("A cluster node must have a question bank.");
+        }
+    }
+
+    /**
+     * Creates a new node that holds a replica of the question bank of the node on the specified port. The new node
+     * still has to be started and join the cluster.
+     *
+     * @param port     the port to listen on, or 0 for any free port
+     * @param seedPort the port of any node of the cluster
+     * @return the new node
+     * @throws IOException if the port cannot be listened on, or the bank cannot be replicated
+     */
+    public static ClusterNode replicate(final int port, final int seedPort) throws IOException {
+        final List<String> encodedQuestions;
+        final List<QuizQuestion> questions;
+
+        try (ClusterLink link = new ClusterLink(seedPort)) {
+            final String[] parts;
+            final int count;
+
+            parts = link.request(ClusterProtocol.BANK).split(ClusterProtocol.SEPARATOR);
+            if (!parts[0].equals(ClusterProtocol.BANK)) {
+                throw new IOException("The node on port " + seedPort + " did not send its question bank.");
+            }
+
+            count = Integer.parseInt(parts[1]);
+            encodedQuestions = new ArrayList<>(count);
+            questions = new ArrayList<>(count);
+
+            for (int i = 0; i < count; i++) {
+                final String encoded;
+                encoded = link.readLine();
+
+                encodedQuestions.add(encoded);
+                questions.add(QuizQuestion.decode(encoded));
+            }
+        }
+
+        return new ClusterNode(port, new QuestionBank(encodedQuestions, questions));
+    }
+
+    /**
+     * Runs a cluster of nodes on the loopback address, either as a simulation within this process, or as a single node
+     * of a cluster of separate processes.
+     * <p>
+     * The simulation plays quizzes on every node at once, while a node joins and another one leaves, and checks that
+     * every score is still right afterward. A node of a separate process runs until the process is stopped, and then
+     * leaves the cluster.
+     *
+     * @param args the questions file, optionally followed by the amount of nodes and sessions to simulate, or
+     *             {@code --serve <port> <questions file>} to run the first node of a cluster, or
+     *             {@code --join <port> <seed port>} to run a node that joins the cluster of the seed node
+     * @throws IOException          if the questions file cannot be read, or a node cannot be started
+     * @throws InterruptedException if interrupted while the cluster is running
+     */
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        final int optionArgs = 3;
+
+        if (args.length >= optionArgs && args[0].equals(ClusterNode.SERVE_OPTION)) {
+            final ClusterNode node;
+            node = new ClusterNode(Integer.parseInt(args[1]), QuestionBank.load(Path.of(args[2])));
+
+            ClusterNode.runUntilStopped(node, ClusterNode.NO_SEED);
+        } else if (args.length >= optionArgs && args[0].equals(ClusterNode.JOIN_OPTION)) {
+            final int seedPort;
+            seedPort = Integer.parseInt(args[2]);
+
+            ClusterNode.runUntilStopped(ClusterNode.replicate(Integer.parseInt(args[1]), seedPort), seedPort);
+        } else if (args.length >= 1 && !args[0].startsWith("-")) {
+            ClusterNode.simulate(QuestionBank.load(Path.of(args[0])),
+                                 args.length > 1 ? Integer.parseInt(args[1]) : ClusterNode.DEFAULT_NODES,
+                                 args.length > 2 ? Integer.parseInt(args[2]) : ClusterNode.DEFAULT_SESSIONS);
+        } else {
+            System.err.println("Usage: ClusterNode <questions file> [nodes] [sessions]");
+            System.err.println("       ClusterNode --serve <port> <questions file>");
+            System.err.println("       ClusterNode --join <port> <seed port>");
+        }
+    }
+
+    /**
+     * Starts the specified node, joins it to the cluster of the seed node, and keeps it running until the process is
+     * stopped, at which point it leaves the cluster.
+     *
+     * @param node     the node to run
+     * @param seedPort the port of any node of the cluster to join, or {@link #NO_SEED} to start a new cluster
+     * @throws IOException          if the node cannot join the cluster
+     * @throws InterruptedException if interrupted while running
+     */
+    private static void runUntilStopped(final ClusterNode node, final int seedPort)
+            throws IOException, InterruptedException {
+        node.setOnFailure((failure) -> System.err.println("Node on port " + node.getPort() + ": " +
+                                                          failure.getMessage()));
+        node.start();
+
+        if (seedPort != ClusterNode.NO_SEED) {
+            node.join(seedPort);
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                node.leave();
+            } catch (IOException e) {
+                System.err.println("Could not leave the cluster: " + e.getMessage());
+            }
+        }));
+
+        System.out.println("Node on port " + node.getPort() + " is in the cluster " + node.getNodes() + ".");
+
+        // The node serves on its own threads, so this thread only waits for the process to be stopped.
+        Thread.currentThread().join();
+    }
+
+    /**
+     * Simulates a cluster of the specified amount of nodes within this process, playing the specified amount of
+     * quizzes on them while a node joins and another one leaves, and prints how the sessions were spread.
+     *
+     * @param bank         the question bank
+     * @param nodeCount    the amount of nodes to start with
+     * @param sessionCount the amount of quizzes to play
+     * @throws IOException          if a node cannot be started
+     * @throws InterruptedException if interrupted while the quizzes are played
+     */
+    private static void simulate(final QuestionBank bank, final int nodeCount, final int sessionCount)
+            throws IOException, InterruptedException {
+        final List<ClusterNode> nodes;
+        final Map<String, String> answerKey;
+
+        nodes = new ArrayList<>();
+        answerKey = new HashMap<>();
+
+        for (final QuizQuestion question : bank.getQuestions()) {
+            answerKey.putIfAbsent(question.getQuestionText(), question.getBestAnswer());
+        }
+
+        nodes.add(new ClusterNode(0, bank));
+        nodes.getFirst().start();
+
+        for (int i = 1; i < nodeCount; i++) {
+            nodes.add(ClusterNode.replicate(0, nodes.getFirst().getPort()));
+            nodes.getLast().start();
+            nodes.getLast().join(nodes.getFirst().getPort());
+        }
+
+        // Players only connect to nodes that stay, while the last of the starting nodes leaves during the games.
+        final ClusterNode leaving;
+        final List<Future<Boolean>> games;
+        final CountDownLatch started;
+        final long startNanos;
+
+        leaving = nodes.getLast();
+        games = new ArrayList<>();
+        started = new CountDownLatch(sessionCount);
+        startNanos = System.nanoTime();
+
+        try (ExecutorService players = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < sessionCount; i++) {
+                final int port;
+                final String sessionId;
+
+                port = nodes.get(i % Math.max(1, nodeCount - 1)).getPort();
+                sessionId = "session" + i;
+
+                games.add(players.submit(() -> ClusterNode.simulatedGame(port, sessionId, answerKey, started)));
+            }
+
+            started.await();
+            ClusterNode.printSpread("Before joining", nodes);
+
+            nodes.add(ClusterNode.replicate(0, nodes.getFirst().getPort()));
+            nodes.getLast().start();
+            nodes.getLast().join(nodes.getFirst().getPort());
+            ClusterNode.printSpread("After joining", nodes);
+
+            Thread.sleep(ClusterNode.MEMBERSHIP_CHANGE_MILLIS);
+
+            if (nodeCount > 1) {
+                leaving.leave();
+                nodes.remove(leaving);
+                ClusterNode.printSpread("After leaving", nodes);
+            }
+        }
+
+        int correctScores = 0;
+        for (final Future<Boolean> game : games) {
+            try {
+                if (game.get()) {
+                    correctScores++;
+                }
+            } catch (Exception e) {
+                System.err.println("A game failed: " + e.getMessage());
+            }
+        }
+
+        System.out.printf("%d/%d games kept the right score in %d ms.%n", correctScores, sessionCount,
+                          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+
+        for (final ClusterNode node : nodes) {
+            node.close();
+        }
+    }
+
+    /**
+     * Plays a quiz through the node on the specified port, answering every question with either the best answer or a
+     * wrong answer, at random, and then checks the score the cluster kept against the answers that were correct.
+     *
+     * @param port      the port of the node to connect to
+     * @param sessionId the id of the session to play
+     * @param answerKey the best answer to every question, by question text
+     * @param started   the latch that is counted down once the quiz has started
+     * @return whether the cluster kept the right score
+     * @throws IOException          if the cluster cannot be reached, or rejected a request
+     * @throws InterruptedException if interrupted while thinking about an answer
+     */
+    private static boolean simulatedGame(final int port, final String sessionId, final Map<String, String> answerKey,
+                                         final CountDownLatch started) throws IOException, InterruptedException {
+        try (ClusterClient client = new ClusterClient(port)) {
+            final Random random;
+            random = new Random();
+
+            try {
+                client.start(sessionId, ClusterNode.SIMULATED_QUESTIONS, random.nextLong());
+            } finally {
+                started.countDown();
+            }
+
+            int correct = 0;
+            String question;
+            while ((question = client.nextQuestion(sessionId)) != null) {
+                Thread.sleep(ClusterNode.SIMULATED_THINKING_MILLIS);
+
+                final String answer;
+                answer = random.nextBoolean() ? answerKey.get(question) : ClusterNode.WRONG_ANSWER;
+
+                if (client.answer(sessionId, answer)) {
+                    correct++;
+                }
+            }
+
+            final int score;
+            score = client.getCorrectCount(sessionId);
+
+            client.end(sessionId);
+
+            return score == correct;
+        }
+    }
+
+    /**
+     * Prints how many sessions every node holds.
+     *
+     * @param moment when the sessions are counted
+     * @param nodes  the nodes of the cluster
+     */
+    private static void printSpread(final String moment, final List<ClusterNode> nodes) {
+        final StringBuilder spread;
+        spread = new StringBuilder(moment + ":");
+
+        for (final ClusterNode node : nodes) {
+            spread.append(String.format(" %d=%d", node.getPort(), node.getSessionCount()));
+        }
+
+        System.out.println(spread);
+    }
+
+    /**
+     * Starts accepting connections in the background, as a cluster of only this node.
+     */
+    public void start() {
+        this.changeRing((ring) -> ring.withNode(this.getPort()));
+        this.executor.submit(this::acceptConnections);
+    }
+
+    /**
+     * Joins the cluster of the node on the specified port. Every node of the cluster hands over the sessions that this
+     * node now owns before this returns.
+     *
+     * @param seedPort the port of any node of the cluster
+     * @throws IOException if the cluster cannot be reached, or holds a different question bank
+     */
+    public void join(final int seedPort) throws IOException {
+        final String[] members;
+        members = this.request(seedPort, ClusterProtocol.message(ClusterProtocol.MEMBERS))
+                      .split(ClusterProtocol.SEPARATOR);
+
+        if (!members[0].equals(ClusterProtocol.MEMBERS)
+            || Long.parseLong(members[1]) != this.bankFingerprint) {
+            throw new IOException("The cluster of the node on port " + seedPort + " holds a different question bank.");
+        }
+
+        HashRing clusterRing = this.ring.withoutNode(this.getPort());
+
+        for (int i = 2; i < members.length; i++) {
+            clusterRing = clusterRing.withNode(Integer.parseInt(members[i]));
+        }
+
+        this.updateRing(clusterRing, clusterRing.withNode(this.getPort()));
+
+        for (final int member : clusterRing.getNodes()) {
+            this.expectOk(member, ClusterProtocol.message(ClusterProtocol.ADD, this.getPort()));
+        }
+    }
+
+    /**
+     * Leaves the cluster, handing over every session of this node to the nodes that own it from now on, and closes
+     * this node. If any session cannot be handed over, this node stays in the cluster and keeps serving the sessions
+     * it still holds, so leaving can be tried again.
+     *
+     * @throws IOException if a session cannot be handed over, or the other nodes cannot be told that this node left
+     */
+    public void leave() throws IOException {
+        final HashRing remaining;
+        remaining = this.changeRing((ring) -> ring.withoutNode(this.getPort()));
+
+        if (remaining.size() > 0) {
+            // Until every other node knows that this node left, requests that still arrive here are forwarded.
+            try {
+                this.rebalance();
+            } catch (IOException e) {
+                this.changeRing((ring) -> ring.withNode(this.getPort()));
+                throw e;
+            }
+
+            for (final int member : remaining.getNodes()) {
+                this.expectOk(member, ClusterProtocol.message(ClusterProtocol.REMOVE, this.getPort()));
+            }
+        }
+
+        this.close();
+    }
+
+    /**
+     * Replaces the ring of this node, remembering the ring before it, whose owners may still hold sessions that have
+     * not been handed over yet.
+     *
+     * @param previous the ring before the change
+     * @param current  the ring after the change
+     */
+    private synchronized void updateRing(final HashRing previous, final HashRing current) {
+        this.previousRing = previous;
+        this.ring = current;
+    }
+
+    /**
+     * Changes the ring of this node, remembering the ring before the change.
+     *
+     * @param change the change to apply to the current ring
+     * @return the changed ring
+     */
+    private synchronized HashRing changeRing(final UnaryOperator<HashRing> change) {
+        this.updateRing(this.ring, change.apply(this.ring));
+
+        return this.ring;
+    }
+
+    /**
+     * Hands over every session of this node that is owned by another node. A session that cannot be handed over stays
+     * on this node, and the others are still handed over.
+     *
+     * @throws IOException if any session could not be handed over, with the failures of the others suppressed
+     */
+    private void rebalance() throws IOException {
+        IOException failure = null;
+
+        for (final ClusterSession session : this.sessions.values()) {
+            final int owner;
+            owner = this.ring.ownerOf(session.getId());
+
+            if (owner == this.getPort()) {
+                continue;
+            }
+
+            try {
+                this.migrate(session, owner);
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Hands over the specified session to the specified node. The session is locked until the other node holds it,
+     * so requests for it wait, and are then forwarded to the other node.
+     *
+     * @param session the session to hand over
+     * @param owner   the node that owns the session
+     * @throws IOException if the other node cannot be reached, or rejected the session, which then stays on this node
+     */
+    private void migrate(final ClusterSession session, final int owner) throws IOException {
+        session.lock();
+
+        try {
+            if (session.isReleased()) {
+                return;
+            }
+
+            try {
+                this.expectOk(owner, ClusterProtocol.message(ClusterProtocol.MIGRATE, session.getId(),
+                                                             session.encode()));
+            } catch (IOException e) {
+                throw new IOException("Could not hand over session " + session.getId() + ": " + e.getMessage(), e);
+            }
+
+            session.release();
+            this.sessions.remove(session.getId(), session);
+        } finally {
+            session.unlock();
+        }
+    }
+
+    /**
+     * Keeps the specified failure of a thread of this node as its last failure, and passes it to the failure listener.
+     *
+     * @param failure the failure
+     */
+    private void reportFailure(final IOException failure) {
+        final Consumer<IOException> listener;
+        listener = this.onFailure;
+
+        this.lastFailure = failure;
+
+        if (listener != null) {
+            listener.accept(failure);
+        }
+    }
+
+    /**
+     * Accepts every connection, until this node is closed.
+     */
+    private void acceptConnections() {
+        while (!this.serverSocket.isClosed()) {
+            try {
+                final Socket socket;
+                socket = this.serverSocket.accept();
+
+                this.executor.submit(() -> this.serve(socket));
+            } catch (IOException e) {
+                if (!this.serverSocket.isClosed()) {
+                    this.reportFailure(new IOException("Could not accept a connection: " + e.getMessage(), e));
+                }
+            }
+        }
+    }
+
+    /**
+     * Serves a single connection until it is closed, answering every request it sends in order.
+     *
+     * @param socket the socket of the connection
+     */
+    private void serve(final Socket socket) {
+        this.openSockets.add(socket);
+
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                                                                          StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(),
+                                                                    StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.equals(ClusterProtocol.BANK)) {
+                    this.sendBank(out);
+                } else {
+                    out.write(this.handle(line));
+                    out.write('\n');
+                }
+
+                out.flush();
+            }
+        } catch (IOException e) {
+            if (!this.serverSocket.isClosed()) {
+                this.reportFailure(new IOException("Lost a connection: " + e.getMessage(), e));
+            }
+        } finally {
+            this.openSockets.remove(socket);
+        }
+    }
+
+    /**
+     * Sends the question bank of this node, as the amount of questions followed by every encoded question in order.
+     *
+     * @param out the connection to send to
+     * @throws IOException if the connection cannot be written to
+     */
+    private void sendBank(final Writer out) throws IOException {
+        out.write(ClusterProtocol.message(ClusterProtocol.BANK, this.bank.size()));
+        out.write('\n');
+
+        for (int ordinal = 0; ordinal < this.bank.size(); ordinal++) {
+            out.write(this.bank.getEncoded(ordinal));
+            out.write('\n');
+        }
+    }
+
+    /**
+     * Answers a single request.
+     *
+     * @param request the request
+     * @return the response
+     */
+    private String handle(final String request) {
+        final String[] parts;
+        parts = request.split(ClusterProtocol.SEPARATOR, 2);
+
+        try {
+            return switch (parts[0]) {
+                case ClusterProtocol.MEMBERS -> ClusterProtocol.message(ClusterProtocol.MEMBERS, this.bankFingerprint)
+                                                + ClusterNode.joinNodes(this.ring.getNodes());
+                case ClusterProtocol.ADD -> {
+                    this.changeRing((ring) -> ring.withNode(Integer.parseInt(parts[1])));
+
+                    try {
+                        this.rebalance();
+                    } catch (IOException e) {
+                        // The sessions that were not handed over are still served here, so only the join fails.
+                        this.reportFailure(e);
+                        yield ClusterProtocol.message(ClusterProtocol.ERROR, e.getMessage());
+                    }
+
+                    yield ClusterProtocol.OK;
+                }
+                case ClusterProtocol.REMOVE -> {
+                    this.changeRing((ring) -> ring.withoutNode(Integer.parseInt(parts[1])));
+                    yield ClusterProtocol.OK;
+                }
+                case ClusterProtocol.MIGRATE -> this.receive(parts[1]);
+                default -> this.handleSession(request);
+            };
+        } catch (RuntimeException e) {
+            return ClusterProtocol.message(ClusterProtocol.ERROR, e.getMessage());
+        }
+    }
+
+    /**
+     * Joins the specified nodes into the arguments of a message.
+     *
+     * @param nodes the nodes to join
+     * @return the nodes, each preceded by a separator
+     */
+    private static String joinNodes(final List<Integer> nodes) {
+        final StringBuilder joined;
+        joined = new StringBuilder();
+
+        for (final int node : nodes) {
+            joined.append(ClusterProtocol.SEPARATOR).append(node);
+        }
+
+        return joined.toString();
+    }
+
+    /**
+     * Takes over a session handed over by another node.
+     *
+     * @param arguments the session id followed by the encoded session
+     * @return the response
+     */
+    private String receive(final String arguments) {
+        final String[] parts;
+        final ClusterSession session;
+
+        parts = arguments.split(ClusterProtocol.SEPARATOR, 2);
+        session = ClusterSession.decode(parts[0], this.bank, parts[1]);
+
+        // A session that arrives again replaces the previous copy, since only the newest copy is still in use.
+        this.sessions.put(session.getId(), session);
+
+        return ClusterProtocol.OK;
+    }
+
+    /**
+     * Answers a request for a session, on this node if it holds the session, or else by forwarding it to the node that
+     * owns the session.
+     *
+     * @param request the request
+     * @return the response
+     */
+    private String handleSession(final String request) {
+        final String[] parts;
+        parts = request.split(ClusterProtocol.SEPARATOR, 4);
+
+        if (parts.length < 3) {
+            return ClusterProtocol.message(ClusterProtocol.ERROR, "unknown request");
+        }
+
+        final String command;
+        final int hops;
+        final String sessionId;
+        final String argument;
+
+        command = parts[0];
+        hops = Integer.parseInt(parts[1]);
+        sessionId = parts[2];
+        argument = parts.length > 3 ? parts[3] : null;
+
+        final ClusterSession session;
+        session = this.sessions.get(sessionId);
+
+        if (session != null) {
+            session.lock();
+
+            try {
+                if (!session.isReleased()) {
+                    return this.apply(session, command, argument);
+                }
+            } finally {
+                session.unlock();
+            }
+        }
+
+        final int owner;
+        owner = this.ring.ownerOf(sessionId);
+
+        if (owner == this.getPort()) {
+            if (command.equals(ClusterProtocol.START)) {
+                return this.startSession(sessionId, argument);
+            }
+
+            // The session may not have been handed over yet by the node that owned it before this node joined.
+            final int previousOwner;
+            previousOwner = this.previousRing.size() > 0 ? this.previousRing.ownerOf(sessionId) : owner;
+
+            if (previousOwner == owner) {
+                return ClusterProtocol.message(ClusterProtocol.ERROR, "unknown session " + sessionId);
+            }
+
+            return this.forward(previousOwner, command, hops, sessionId, argument);
+        }
+
+        return this.forward(owner, command, hops, sessionId, argument);
+    }
+
+    /**
+     * Forwards a request for a session to the specified node.
+     *
+     * @param node      the node to forward to
+     * @param command   the command of the request
+     * @param hops      how many times the request was already forwarded
+     * @param sessionId the id of the session
+     * @param argument  the argument of the request, or null if there is none
+     * @return the response of the node
+     */
+    private String forward(final int node, final String command, final int hops, final String sessionId,
+                           final String argument) {
+        if (hops >= ClusterNode.MAX_HOPS) {
+            return ClusterProtocol.message(ClusterProtocol.ERROR, "session " + sessionId + " could not be found");
+        }
+
+        try {
+            if (argument == null) {
+                return this.request(node, ClusterProtocol.message(command, hops + 1, sessionId));
+            }
+
+            return this.request(node, ClusterProtocol.message(command, hops + 1, sessionId, argument));
+        } catch (IOException e) {
+            return ClusterProtocol.message(ClusterProtocol.ERROR, "node " + node + " cannot be reached");
+        }
+    }
+
+    /**
+     * Starts a new session on this node.
+     *
+     * @param sessionId the id of the session
+     * @param argument  the question count and the seed of the session
+     * @return the response
+     */
+    private String startSession(final String sessionId, final String argument) {
+        if (argument == null) {
+            return ClusterProtocol.message(ClusterProtocol.ERROR, "missing question count and seed");
+        }
+
+        final String[] arguments;
+        final ClusterSession session;
+
+        arguments = argument.split(ClusterProtocol.SEPARATOR);
+        session = ClusterSession.start(sessionId, this.bank, Integer.parseInt(arguments[0]),
+                                       Long.parseLong(arguments[1]));
+
+        if (this.sessions.putIfAbsent(sessionId, session) != null) {
+            return ClusterProtocol.message(ClusterProtocol.ERROR, "session " + sessionId + " already exists");
+        }
+
+        return ClusterProtocol.OK;
+    }
+
+    /**
+     * Applies a request to a session held by this node, while holding the lock of the session.
+     *
+     * @param session  the session
+     * @param command  the command of the request
+     * @param argument the argument of the request, or null if there is none
+     * @return the response
+     */
+    private String apply(final ClusterSession session, final String command, final String argument) {
+        return switch (command) {
+            case ClusterProtocol.START -> ClusterProtocol.message(ClusterProtocol.ERROR,
+                                                                  "session " + session.getId() + " already exists");
+            case ClusterProtocol.NEXT -> {
+                final String question;
+                question = session.nextQuestion();
+
+                yield question == null ? ClusterProtocol.DONE
+                                       : ClusterProtocol.message(ClusterProtocol.QUESTION, question);
+            }
+            case ClusterProtocol.ANSWER -> ClusterProtocol.message(ClusterProtocol.RESULT,
+                                                                   session.answer(argument == null ? "" : argument)
+                                                                   ? ClusterProtocol.CORRECT
+                                                                   : ClusterProtocol.INCORRECT);
+            case ClusterProtocol.SCORE -> ClusterProtocol.message(ClusterProtocol.SCORE,
+                                                                  session.getQuiz().getCorrectAnsweredCount(),
+                                                                  session.getQuiz().getQuestionCount());
+            case ClusterProtocol.END -> {
+                session.release();
+                this.sessions.remove(session.getId(), session);
+                yield ClusterProtocol.OK;
+            }
+            default -> ClusterProtocol.message(ClusterProtocol.ERROR, "unknown request " + command);
+        };
+    }
+
+    /**
+     * Sends a request to the specified node, over an idle pooled connection to it if there is one.
+     *
+     * @param node    the node to send to
+     * @param request the request
+     * @return the response
+     * @throws IOException if the node cannot be reached
+     */
+    private String request(final int node, final String request) throws IOException {
+        final Queue<ClusterLink> links;
+        ClusterLink link;
+
+        links = this.idleLinks.computeIfAbsent(node, (_) -> new ConcurrentLinkedQueue<>());
+        link = links.poll();
+
+        if (link == null) {
+            link = new ClusterLink(node);
+        }
+
+        try {
+            final String response;
+            response = link.request(request);
+
+            links.offer(link);
+
+            return response;
+        } catch (IOException e) {
+            link.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Sends a request to the specified node, and checks that it succeeded.
+     *
+     * @param node    the node to send to
+     * @param request the request
+     * @throws IOException if the node cannot be reached, or rejected the request
+     */
+    private void expectOk(final int node, final String request) throws IOException {
+        final String response;
+        response = this.request(node, request);
+
+        if (!response.equals(ClusterProtocol.OK)) {
+            throw new IOException("The node on port " + node + " answered " + response);
+        }
+    }
+
+    /**
+     * Computes a fingerprint of the specified bank, which only matches the fingerprint of a bank with the same
+     * questions in the same order, so that ordinals mean the same on every node.
+     *
+     * @param bank the bank
+     * @return the fingerprint
+     */
+    private static long fingerprintOf(final QuestionBank bank) {
+        long fingerprint = bank.size();
+
+        for (int ordinal = 0; ordinal < bank.size(); ordinal++) {
+            fingerprint = fingerprint * ClusterNode.FINGERPRINT_MULTIPLIER ^ HashRing.hash(bank.getEncoded(ordinal));
+        }
+
+        return fingerprint;
+    }
+
+    /**
+     * Returns the port this node listens on, which identifies it within the cluster.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return this.serverSocket.getLocalPort();
+    }
+
+    /**
+     * Returns every node of the cluster, as far as this node knows.
+     *
+     * @return the ports of the nodes
+     */
+    public List<Integer> getNodes() {
+        return this.ring.getNodes();
+    }
+
+    /**
+     * Returns the last failure on a thread of this node, such as a connection that was lost, or a session that could
+     * not be handed over to a node that joined.
+     *
+     * @return the last failure, or null if nothing failed
+     */
+    public IOException getLastFailure() {
+        return this.lastFailure;
+    }
+
+    /**
+     * Sets the listener that is called with every failure on a thread of this node, on the thread that failed.
+     *
+     * @param onFailure the listener, or null to not be notified
+     */
+    public void setOnFailure(final Consumer<IOException> onFailure) {
+        this.onFailure = onFailure;
+    }
+
+    /**
+     * Returns the amount of sessions this node holds.
+     *
+     * @return the session count
+     */
+    public int getSessionCount() {
+        return this.sessions.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.serverSocket.close();
+
+        for (final Socket socket : this.openSockets) {
+            socket.close();
+        }
+
+        for (final Queue<ClusterLink> links : this.idleLinks.values()) {
+            ClusterLink link;
+            while ((link = links.poll()) != null) {
+                link.close();
+            }
+        }
+
+        this.executor.shutdownNow();
+    }
+
+}
@@ -0,0 +1,94 @@
+package ca.bcit.comp2522.lab09.cluster;
+
+/**
+ * Represents the line-based protocol spoken between the nodes of a cluster, and between a {@link ClusterClient} and
+ * any node.
+ * <p>
+ * Every request is a single UTF-8 line, made of a command, a space, and the arguments of the command, and is answered
+ * with a single line. Requests for a session also carry how many times they were already forwarded, and the session
+ * id, so any node can forward them to the node that owns the session.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+final class ClusterProtocol {
+
+    /** This is sent with the hops, the session id, the question count, and the seed that follow, to start a quiz. */
+    static final String START = "START";
+
+    /** This is sent with the hops and the session id that follow, to ask the next question of a quiz. */
+    static final String NEXT = "NEXT";
+
+    /** This is sent with the hops, the session id, and the answer that follow, to answer the last asked question. */
+    static final String ANSWER = "ANSWER";
+
+    /** This is sent with the hops and the session id that follow, to get the score of a quiz. */
+    static final String SCORE = "SCORE";
+
+    /** This is sent with the hops and the session id that follow, to end a quiz. */
+    static final String END = "END";
+
+    /** This is sent by a node with the session id and the encoded session that follow, to hand over a session. */
+    static final String MIGRATE = "MIGRATE";
+
+    /** This is sent by a node to get the nodes of the cluster, which are answered with the bank fingerprint first. */
+    static final String MEMBERS = "MEMBERS";
+
+    /** This is sent by a node with the port that follows, to add that node to the cluster. */
+    static final String ADD = "ADD";
+
+    /** This is sent by a node with the port that follows, to remove that node from the cluster. */
+    static final String REMOVE = "REMOVE";
+
+    /** This is sent by a node to get the question bank, which is answered with the count and then every question. */
+    static final String BANK = "BANK";
+
+    /** This is answered when a request succeeded without any result. */
+    static final String OK = "OK";
+
+    /** This is answered with the text of the question that follows, when a question was asked. */
+    static final String QUESTION = "QUESTION";
+
+    /** This is answered when every question of a quiz was already asked. */
+    static final String DONE = "DONE";
+
+    /** This is answered with the verdict that follows, when a question was answered. */
+    static final String RESULT = "RESULT";
+
+    /** This is answered, with a description that follows, when a request is rejected. */
+    static final String ERROR = "ERROR";
+
+    /** This is the verdict of a correct answer. */
+    static final String CORRECT = "correct";
+
+    /** This is the verdict of an incorrect answer. */
+    static final String INCORRECT = "incorrect";
+
+    /** This separates a command from its arguments, and the arguments from each other. */
+    static final String SEPARATOR = " ";
+
+    /**
+     * Prevents instantiation of this utility class.
+     */
+    private ClusterProtocol() {
+    }
+
+    /**
+     * Creates a message of the specified command and arguments.
+     *
+     * @param command   the command of the message
+     * @param arguments the arguments of the command
+     * @return the message, without a line terminator
+     */
+    static String message(final String command, final Object... arguments) {
+        final StringBuilder message;
+        message = new StringBuilder(command);
+
+        for (final Object argument : arguments) {
+            message.append(ClusterProtocol.SEPARATOR).append(argument);
+        }
+
+        return message.toString();
+    }
+
+}
@@ -0,0 +1,268 @@
+package ca.bcit.comp2522.lab09.cluster;
+
+import ca.bcit.comp2522.lab09.Quiz;
+import ca.bcit.comp2522.lab09.QuizQuestion;
+import ca.bcit.comp2522.lab09.bank.QuestionBank;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Represents a quiz being played on a node of a cluster, under a session id that is unique across the cluster.
+ * <p>
+ * A session only holds the ordinals of its questions in the question bank and the answers given so far, so it can be
+ * moved to another node as a single line of text. Since every node holds the same replicated bank, the receiving node
+ * rebuilds the quiz from the ordinals and replays the answers, which grades them to the same results.
+ * <p>
+ * A session is only ever used while holding its lock, since requests for it can arrive on any connection. The lock is
+ * a {@link ReentrantLock} rather than a monitor, so that a virtual thread that is handing the session over does not
+ * hold on to its carrier thread while it waits for the other node.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+final class ClusterSession {
+
+    private static final String ORDINAL_SEPARATOR = ",";
+    private static final String FIELD_SEPARATOR = " ";
+    private static final String NO_ANSWER = "-";
+    private static final String ANSWER_PREFIX = "+";
+
+    private final String id;
+    private final int[] ordinals;
+    private final Quiz quiz;
+    private final List<String> answers;
+    private final ReentrantLock lock;
+
+    private QuizQuestion currentQuestion;
+    private boolean released;
+
+    /**
+     * Creates a new session that has not asked any question yet.
+     *
+     * @param id       the id of the session
+     * @param bank     the bank the questions are taken from
+     * @param ordinals the ordinals of the questions of the session, in order
+     */
+    private ClusterSession(final String id, final QuestionBank bank, final int[] ordinals) {
+        this.id = id;
+        this.ordinals = ordinals;
+        this.quiz = Quiz.fromDeck(bank, ordinals);
+        this.answers = new ArrayList<>();
+        this.lock = new ReentrantLock();
+    }
+
+    /**
+     * Creates a new session of randomly chosen questions. The same seed always chooses the same questions from the
+     * same bank, whichever node the session is started on.
+     *
+     * @param id            the id of the session
+     * @param bank          the bank the questions are taken from
+     * @param questionCount the amount of questions to ask
+     * @param seed          the seed the questions are chosen with
+     * @return the new session
+     */
+    static ClusterSession start(final String id, final QuestionBank bank, final int questionCount, final long seed) {
+        ClusterSession.validateId(id);
+        ClusterSession.validateQuestionCount(questionCount);
+
+        final int[] ordinals;
+        ordinals = QuestionBank.sampleOrdinals(bank.size(), questionCount, new Random(seed));
+
+        return new ClusterSession(id, bank, ordinals);
+    }
+
+    /**
+     * Validates the given session id to ensure it can be sent as a single argument of a message.
+     *
+     * @param id the session id to validate
+     */
+    static void validateId(final String id) {
+        if (id == null || id.isBlank()) {
+            throw new IllegalArgumentException("A session id cannot be null or blank.");
+        }
+
+        if (id.chars().anyMatch(Character::isWhitespace)) {
+            throw new IllegalArgumentException("A session id cannot contain whitespace.");
+        }
+    }
+
+    /**
+     * Validates the given question count to ensure a quiz can be made of it.
+     *
+     * @param questionCount the question count to validate
+     */
+    private static void validateQuestionCount(final int questionCount) {
+        if (questionCount < 1) {
+            throw new IllegalArgumentException("A session must ask at least one question.");
+        }
+    }
+
+    /**
+     * Rebuilds a session from its encoded form, by asking every question that was asked and giving every answer that
+     * was given again.
+     *
+     * @param id      the id of the session
+     * @param bank    the bank the session was encoded against
+     * @param encoded the encoded session, as returned by {@link #encode()}
+     * @return the rebuilt session
+     */
+    static ClusterSession decode(final String id, final QuestionBank bank, final String encoded) {
+        ClusterSession.validateId(id);
+
+        final String[] fields;
+        final int[] ordinals;
+        final ClusterSession session;
+
+        fields = encoded.split(ClusterSession.FIELD_SEPARATOR);
+
+        try {
+            ordinals = Arrays.stream(fields[0].split(ClusterSession.ORDINAL_SEPARATOR))
+                             .mapToInt(Integer::parseInt)
+                             .toArray();
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("The encoded session \"" + id + "\" has invalid ordinals.", e);
+        }
+
+        session = new ClusterSession(id, bank, ordinals);
+
+        for (int i = 1; i < fields.length; i++) {
+            session.nextQuestion();
+
+            if (fields[i].startsWith(ClusterSession.ANSWER_PREFIX)) {
+                session.answer(new String(Base64.getUrlDecoder().decode(fields[i].substring(1)),
+                                          StandardCharsets.UTF_8));
+            } else if (!fields[i].equals(ClusterSession.NO_ANSWER)) {
+                throw new IllegalArgumentException("The encoded session \"" + id + "\" has an invalid answer.");
+            }
+        }
+
+        return session;
+    }
+
+    /**
+     * Encodes this session as a single line of text, which holds the ordinals of its questions, followed by the answer
+     * to every question asked so far.
+     *
+     * @return the encoded session
+     */
+    String encode() {
+        final StringBuilder encoded;
+        encoded = new StringBuilder();
+
+        for (int i = 0; i < this.ordinals.length; i++) {
+            if (i > 0) {
+                encoded.append(ClusterSession.ORDINAL_SEPARATOR);
+            }
+
+            encoded.append(this.ordinals[i]);
+        }
+
+        for (final String answer : this.answers) {
+            encoded.append(ClusterSession.FIELD_SEPARATOR);
+
+            if (answer == null) {
+                encoded.append(ClusterSession.NO_ANSWER);
+            } else {
+                encoded.append(ClusterSession.ANSWER_PREFIX)
+                       .append(Base64.getUrlEncoder().withoutPadding()
+                                     .encodeToString(answer.getBytes(StandardCharsets.UTF_8)));
+            }
+        }
+
+        return encoded.toString();
+    }
+
+    /**
+     * Asks the next question of this session. A question that was asked but not answered is skipped.
+     *
+     * @return the text of the next question, or null if every question was asked
+     */
+    String nextQuestion() {
+        this.currentQuestion = this.quiz.getNextQuestion();
+
+        if (this.currentQuestion == null) {
+            return null;
+        }
+
+        this.answers.add(null);
+
+        return this.currentQuestion.getQuestionText();
+    }
+
+    /**
+     * Answers the question that was asked last.
+     *
+     * @param answer the answer to give
+     * @return whether the answer was correct
+     */
+    boolean answer(final String answer) {
+        if (this.currentQuestion == null) {
+            throw new IllegalStateException("The session \"" + this.id + "\" is not waiting for an answer.");
+        }
+
+        final QuizQuestion question;
+        question = this.currentQuestion;
+
+        this.quiz.answerQuestion(question, answer);
+        this.answers.set(this.answers.size() - 1, answer);
+        this.currentQuestion = null;
+
+        return this.quiz.getRecordedResultFor(question);
+    }
+
+    /**
+     * Waits until the lock of this session is acquired.
+     */
+    void lock() {
+        this.lock.lock();
+    }
+
+    /**
+     * Releases the lock of this session.
+     */
+    void unlock() {
+        this.lock.unlock();
+    }
+
+    /**
+     * Marks this session as released by this node, because it was moved to another node or ended. A released
+     * session is never used again on this node.
+     */
+    void release() {
+        this.released = true;
+    }
+
+    /**
+     * Determines whether this session was released by this node.
+     *
+     * @return whether the session was released
+     */
+    boolean isReleased() {
+        return this.released;
+    }
+
+    /**
+     * Returns the id of this session.
+     *
+     * @return the session id
+     */
+    String getId() {
+        return this.id;
+    }
+
+    /**
+     * Returns the quiz played in this session.
+     *
+     * @return the quiz
+     */
+    Quiz getQuiz() {
+        return this.quiz;
+    }
+
+}
@@ -0,0 +1,223 @@
+package ca.bcit.comp2522.lab09.cluster;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Represents a consistent hash ring, which assigns every key to one of the nodes of a cluster.
+ * <p>
+ * Every node is placed on the ring many times, as virtual nodes, so keys spread evenly even across a few nodes. A key
+ * belongs to the first virtual node at or after its own position on the ring. Adding or removing a node therefore only
+ * moves the keys of that node, and leaves every other key where it was.
+ * <p>
+ * A ring is never modified once created. Adding or removing a node creates a new ring, so a ring can be read from any
+ * amount of threads while the membership of the cluster changes.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class HashRing {
+
+    /** This is the amount of virtual nodes every node is placed on the ring as, unless specified otherwise. */
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+    private static final long MIX_MULTIPLIER_1 = 0xBF58476D1CE4E5B9L;
+    private static final long MIX_MULTIPLIER_2 = 0x94D049BB133111EBL;
+    private static final int MIX_SHIFT_1 = 30;
+    private static final int MIX_SHIFT_2 = 27;
+    private static final int MIX_SHIFT_3 = 31;
+
+    private static final String VIRTUAL_NODE_SEPARATOR = "#";
+
+    private final int virtualNodes;
+    private final Set<Integer> nodes;
+    private final long[] positions;
+    private final int[] owners;
+
+    /**
+     * Creates a new ring of the specified nodes.
+     *
+     * @param virtualNodes the amount of virtual nodes per node
+     * @param nodes        the nodes on the ring
+     */
+    private HashRing(final int virtualNodes, final Set<Integer> nodes) {
+        this.virtualNodes = virtualNodes;
+        this.nodes = nodes;
+        this.positions = new long[nodes.size() * virtualNodes];
+        this.owners = new int[this.positions.length];
+
+        final long[] entries;
+        entries = new long[this.positions.length];
+
+        int index = 0;
+        for (final int node : nodes) {
+            for (int replica = 0; replica < virtualNodes; replica++) {
+                entries[index++] = HashRing.hash(node + HashRing.VIRTUAL_NODE_SEPARATOR + replica);
+            }
+        }
+
+        // Positions are sorted together with their nodes, by sorting the indexes of the entries by position.
+        final Integer[] order;
+        order = new Integer[entries.length];
+
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+
+        Arrays.sort(order, (first, second) -> Long.compareUnsigned(entries[first], entries[second]));
+
+        final Integer[] nodeOfEntry;
+        nodeOfEntry = nodes.toArray(new Integer[0]);
+
+        for (int i = 0; i < order.length; i++) {
+            this.positions[i] = entries[order[i]];
+            this.owners[i] = nodeOfEntry[order[i] / virtualNodes];
+        }
+    }
+
+    /**
+     * Creates a new empty ring.
+     *
+     * @param virtualNodes the amount of virtual nodes every node is placed on the ring as
+     * @return the empty ring
+     */
+    public static HashRing empty(final int virtualNodes) {
+        HashRing.validateVirtualNodes(virtualNodes);
+
+        return new HashRing(virtualNodes, new TreeSet<>());
+    }
+
+    /**
+     * Validates that every node can be placed on the ring at least once.
+     *
+     * @param virtualNodes the amount of virtual nodes to check
+     */
+    private static void validateVirtualNodes(final int virtualNodes) {
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("Every node must be placed on the ring at least once.");
+        }
+    }
+
+    /**
+     * Creates a new ring with the specified node added to the nodes of this ring.
+     *
+     * @param node the node to add
+     * @return the ring with the node, or this ring if it already has the node
+     */
+    public HashRing withNode(final int node) {
+        if (this.nodes.contains(node)) {
+            return this;
+        }
+
+        final Set<Integer> newNodes;
+        newNodes = new TreeSet<>(this.nodes);
+
+        newNodes.add(node);
+
+        return new HashRing(this.virtualNodes, newNodes);
+    }
+
+    /**
+     * Creates a new ring with the specified node removed from the nodes of this ring.
+     *
+     * @param node the node to remove
+     * @return the ring without the node, or this ring if it does not have the node
+     */
+    public HashRing withoutNode(final int node) {
+        if (!this.nodes.contains(node)) {
+            return this;
+        }
+
+        final Set<Integer> newNodes;
+        newNodes = new TreeSet<>(this.nodes);
+
+        newNodes.remove(node);
+
+        return new HashRing(this.virtualNodes, newNodes);
+    }
+
+    /**
+     * Finds the node that owns the specified key.
+     *
+     * @param key the key to look up
+     * @return the node owning the key
+     */
+    public int ownerOf(final String key) {
+        if (this.positions.length == 0) {
+            throw new IllegalStateException("A ring without nodes does not have an owner for any key.");
+        }
+
+        final long position;
+        position = HashRing.hash(key);
+
+        int low = 0;
+        int high = this.positions.length;
+
+        while (low < high) {
+            final int middle;
+            middle = (low + high) >>> 1;
+
+            if (Long.compareUnsigned(this.positions[middle], position) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        // Past the last virtual node, the ring wraps around to the first one.
+        return this.owners[low == this.positions.length ? 0 : low];
+    }
+
+    /**
+     * Determines whether the specified node is on this ring.
+     *
+     * @param node the node to look for
+     * @return whether the ring has the node
+     */
+    public boolean hasNode(final int node) {
+        return this.nodes.contains(node);
+    }
+
+    /**
+     * Returns every node on this ring, in ascending order.
+     *
+     * @return the nodes
+     */
+    public List<Integer> getNodes() {
+        return List.copyOf(this.nodes);
+    }
+
+    /**
+     * Returns the amount of nodes on this ring.
+     *
+     * @return the node count
+     */
+    public int size() {
+        return this.nodes.size();
+    }
+
+    /**
+     * Hashes the specified text to a position on the ring, with FNV-1a followed by a final mix so that similar
+     * texts, like the virtual nodes of one node, land far apart.
+     *
+     * @param text the text to hash
+     * @return the position of the text
+     */
+    static long hash(final String text) {
+        long hash = HashRing.FNV_OFFSET_BASIS;
+
+        for (int i = 0; i < text.length(); i++) {
+            hash = (hash ^ text.charAt(i)) * HashRing.FNV_PRIME;
+        }
+
+        hash = (hash ^ (hash >>> HashRing.MIX_SHIFT_1)) * HashRing.MIX_MULTIPLIER_1;
+        hash = (hash ^ (hash >>> HashRing.MIX_SHIFT_2)) * HashRing.MIX_MULTIPLIER_2;
+
+        return hash ^ (hash >>> HashRing.MIX_SHIFT_3);
+    }
+
+}
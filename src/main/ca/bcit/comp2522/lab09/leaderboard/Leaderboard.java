@@ -0,0 +1,394 @@
+package ca.bcit.comp2522.lab09.leaderboard;
+
+import ca.bcit.comp2522.lab09.Quiz;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Represents a global leaderboard of the best score of every player, which can be submitted to and queried from any
+ * amount of threads at once.
+ * <p>
+ * Players are ranked by their score, with ties broken by whoever achieved it first, to the millisecond, and then by
+ * name, so no two players ever share a rank. Both the ranks and the top standings are read from the same
+ * order-statistic tree, a treap where every node counts the standings below it, so they always agree. Submitting a
+ * score and querying a rank both take logarithmic time in the amount of players, and the tree takes one node per
+ * player.
+ * <p>
+ * The tree never changes once published: a submission copies only the nodes on the path it changes and then
+ * publishes the new root, so queries take no lock and never wait for, or hold up, a submission. A query reads the
+ * tree as it was when the query started. Submissions wait only for each other.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class Leaderboard {
+
+    private final int maxScore;
+    private final Map<String, Standing> standings;
+    private final Lock submitLock;
+    private final SplittableRandom priorities;
+
+    private volatile Node root;
+
+    /**
+     * Creates a new, empty leaderboard.
+     *
+     * @param maxScore the highest possible score
+     */
+    public Leaderboard(final int maxScore) {
+        Leaderboard.validateMaxScore(maxScore);
+
+        this.maxScore = maxScore;
+        this.standings = new ConcurrentHashMap<>();
+        this.submitLock = new ReentrantLock();
+        this.priorities = new SplittableRandom();
+    }
+
+    /**
+     * Validates the given highest possible score to ensure it is within limits.
+     *
+     * @param maxScore the highest possible score to validate
+     */
+    private static void validateMaxScore(final int maxScore) {
+        if (maxScore < 0) {
+            throw new IllegalArgumentException("The highest possible score of a leaderboard cannot be negative.");
+        }
+    }
+
+    /**
+     * Submits the result of the specified played quiz, completed now.
+     *
+     * @param player the name of the player
+     * @param quiz   the played quiz
+     * @return whether this is the new best score of the player
+     */
+    public boolean submit(final String player, final Quiz quiz) {
+        return this.submit(player, quiz.getCorrectAnsweredCount(), System.currentTimeMillis());
+    }
+
+    /**
+     * Submits the specified score, which only replaces the standing of the player if it beats their best score.
+     *
+     * @param player           the name of the player
+     * @param score            the score to submit
+     * @param completionMillis the time the score was achieved, in epoch milliseconds
+     * @return whether this is the new best score of the player
+     */
+    public boolean submit(final String player, final int score, final long completionMillis) {
+        this.validateSubmission(player, score);
+
+        final Standing submitted;
+        submitted = new Standing(player, score, completionMillis);
+
+        // Submissions are serialized among themselves, so two submissions of the same player never both count. Queries
+        // never take this lock, and keep reading whichever tree was published when they started.
+        this.submitLock.lock();
+
+        try {
+            final Standing previous;
+            previous = this.standings.get(player);
+
+            if (previous != null && Standing.BEST_FIRST.compare(previous, submitted) <= 0) {
+                return false;
+            }
+
+            Node newRoot = this.root;
+            if (previous != null) {
+                newRoot = Leaderboard.remove(newRoot, previous);
+            }
+
+            newRoot = Leaderboard.insert(newRoot, submitted, this.priorities.nextInt());
+            this.standings.put(player, submitted);
+            this.root = newRoot;
+
+            return true;
+        } finally {
+            this.submitLock.unlock();
+        }
+    }
+
+    /**
+     * Validates the given submission to ensure it is within limits.
+     *
+     * @param player the player name to validate
+     * @param score  the score to validate
+     */
+    private void validateSubmission(final String player, final int score) {
+        if (player == null || player.isBlank()) {
+            throw new IllegalArgumentException("A player name cannot be null or blank.");
+        }
+
+        if (score < 0 || score > this.maxScore) {
+            throw new IllegalArgumentException("A score must be between 0 and " + this.maxScore + ".");
+        }
+    }
+
+    /**
+     * Determines the rank of the specified player, where the best player has rank 1. This is the position of the
+     * player in the standings returned by {@link #getTop(int)}, counted from 1.
+     *
+     * @param player the name of the player
+     * @return the rank of the player, or 0 if they have not submitted a score
+     */
+    public long getRank(final String player) {
+        final Node snapshot;
+        final Standing standing;
+
+        snapshot = this.root;
+        standing = this.standings.get(player);
+
+        if (standing == null) {
+            return 0;
+        }
+
+        return Leaderboard.countBefore(snapshot, standing) + 1;
+    }
+
+    /**
+     * Retrieves the best standing of the specified player.
+     *
+     * @param player the name of the player
+     * @return the standing of the player, or null if they have not submitted a score
+     */
+    public Standing getStanding(final String player) {
+        return this.standings.get(player);
+    }
+
+    /**
+     * Retrieves the best standings on this leaderboard, best first.
+     *
+     * @param count the maximum amount of standings to retrieve
+     * @return the top standings
+     */
+    public List<Standing> getTop(final int count) {
+        final Node snapshot;
+        final List<Standing> top;
+        final Deque<Node> path;
+
+        snapshot = this.root;
+        top = new ArrayList<>(Math.max(0, Math.min(count, Leaderboard.sizeOf(snapshot))));
+        path = new ArrayDeque<>();
+
+        Node node = snapshot;
+        while (top.size() < count && (node != null || !path.isEmpty())) {
+            if (node != null) {
+                path.push(node);
+                node = node.left;
+            } else {
+                node = path.pop();
+                top.add(node.standing);
+                node = node.right;
+            }
+        }
+
+        return top;
+    }
+
+    /**
+     * Determines the amount of players on this leaderboard.
+     *
+     * @return the amount of players
+     */
+    public int size() {
+        return this.standings.size();
+    }
+
+    /**
+     * Determines the amount of standings in the specified subtree.
+     *
+     * @param node the root of the subtree, or null for an empty subtree
+     * @return the amount of standings
+     */
+    private static int sizeOf(final Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * Counts the standings of other players in the specified subtree that are strictly better than the specified
+     * standing.
+     *
+     * @param root     the root of the subtree
+     * @param standing the standing to count before
+     * @return the amount of better standings
+     */
+    private static long countBefore(final Node root, final Standing standing) {
+        long count = 0;
+
+        Node node = root;
+        while (node != null) {
+            if (Standing.BEST_FIRST.compare(node.standing, standing) < 0) {
+                count += Leaderboard.sizeOf(node.left) + 1;
+
+                // The tree may still hold an older standing of the player, if it was read before the submission that
+                // replaced it was published, which is not counted against the player.
+                if (node.standing.getPlayer().equals(standing.getPlayer())) {
+                    count--;
+                }
+
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Inserts the specified standing into the specified subtree, copying the nodes on its path.
+     *
+     * @param root     the root of the subtree
+     * @param standing the standing to insert
+     * @param priority the random heap priority of the new node
+     * @return the root of the new subtree
+     */
+    private static Node insert(final Node root, final Standing standing, final int priority) {
+        if (root == null) {
+            return new Node(standing, priority, null, null);
+        }
+
+        if (priority > root.priority) {
+            final Node[] halves;
+            halves = Leaderboard.split(root, standing);
+
+            return new Node(standing, priority, halves[0], halves[1]);
+        }
+
+        if (Standing.BEST_FIRST.compare(standing, root.standing) < 0) {
+            return root.withLeft(Leaderboard.insert(root.left, standing, priority));
+        }
+
+        return root.withRight(Leaderboard.insert(root.right, standing, priority));
+    }
+
+    /**
+     * Splits the specified subtree into the standings better than the specified standing and the rest, copying the
+     * nodes on the path of the split.
+     *
+     * @param root     the root of the subtree to split
+     * @param standing the standing to split at
+     * @return the root of the better half, and the root of the rest
+     */
+    private static Node[] split(final Node root, final Standing standing) {
+        if (root == null) {
+            return new Node[2];
+        }
+
+        final Node[] halves;
+
+        if (Standing.BEST_FIRST.compare(root.standing, standing) < 0) {
+            halves = Leaderboard.split(root.right, standing);
+            halves[0] = root.withRight(halves[0]);
+        } else {
+            halves = Leaderboard.split(root.left, standing);
+            halves[1] = root.withLeft(halves[1]);
+        }
+
+        return halves;
+    }
+
+    /**
+     * Removes the specified standing from the specified subtree, copying the nodes on its path.
+     *
+     * @param root     the root of the subtree, which must hold the standing
+     * @param standing the standing to remove
+     * @return the root of the new subtree
+     */
+    private static Node remove(final Node root, final Standing standing) {
+        final int comparison;
+        comparison = Standing.BEST_FIRST.compare(standing, root.standing);
+
+        if (comparison == 0) {
+            return Leaderboard.merge(root.left, root.right);
+        }
+
+        if (comparison < 0) {
+            return root.withLeft(Leaderboard.remove(root.left, standing));
+        }
+
+        return root.withRight(Leaderboard.remove(root.right, standing));
+    }
+
+    /**
+     * Merges the specified subtrees, where every standing of the left subtree is better than every standing of the
+     * right subtree, copying the nodes on the path of the merge.
+     *
+     * @param left  the root of the left subtree
+     * @param right the root of the right subtree
+     * @return the root of the merged subtree
+     */
+    private static Node merge(final Node left, final Node right) {
+        if (left == null) {
+            return right;
+        }
+
+        if (right == null) {
+            return left;
+        }
+
+        if (left.priority > right.priority) {
+            return left.withRight(Leaderboard.merge(left.right, right));
+        }
+
+        return right.withLeft(Leaderboard.merge(left, right.left));
+    }
+
+    /**
+     * Represents a node of the treap, which holds a single standing and counts the standings of its subtree. A node
+     * never changes once created, so a tree can be read while newer trees are built from it.
+     */
+    private static final class Node {
+
+        private final Standing standing;
+        private final int priority;
+        private final Node left;
+        private final Node right;
+        private final int size;
+
+        /**
+         * Creates a new node.
+         *
+         * @param standing the standing of the node
+         * @param priority the random heap priority of the node
+         * @param left     the root of the better subtree, or null
+         * @param right    the root of the worse subtree, or null
+         */
+        private Node(final Standing standing, final int priority, final Node left, final Node right) {
+            this.standing = standing;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = Leaderboard.sizeOf(left) + Leaderboard.sizeOf(right) + 1;
+        }
+
+        /**
+         * Creates a copy of this node with the specified better subtree.
+         *
+         * @param newLeft the root of the new better subtree, or null
+         * @return the copied node
+         */
+        private Node withLeft(final Node newLeft) {
+            return new Node(this.standing, this.priority, newLeft, this.right);
+        }
+
+        /**
+         * Creates a copy of this node with the specified worse subtree.
+         *
+         * @param newRight the root of the new worse subtree, or null
+         * @return the copied node
+         */
+        private Node withRight(final Node newRight) {
+            return new Node(this.standing, this.priority, this.left, newRight);
+        }
+
+    }
+
+}
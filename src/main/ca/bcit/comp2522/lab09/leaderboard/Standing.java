@@ -0,0 +1,68 @@
+package ca.bcit.comp2522.lab09.leaderboard;
+
+import java.util.Comparator;
+
+/**
+ * Represents the best result of a single player on a {@link Leaderboard}.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class Standing {
+
+    /** This orders standings from best to worst: highest score first, then earliest completion, then by name. */
+    static final Comparator<Standing> BEST_FIRST = Comparator.comparingInt(Standing::getScore)
+                                                             .reversed()
+                                                             .thenComparingLong(Standing::getCompletionMillis)
+                                                             .thenComparing(Standing::getPlayer);
+
+    private final String player;
+    private final int score;
+    private final long completionMillis;
+
+    /**
+     * Creates a new standing.
+     *
+     * @param player           the name of the player
+     * @param score            the score of the player
+     * @param completionMillis the time the score was achieved, in epoch milliseconds
+     */
+    Standing(final String player, final int score, final long completionMillis) {
+        this.player = player;
+        this.score = score;
+        this.completionMillis = completionMillis;
+    }
+
+    /**
+     * Returns the name of the player of this standing.
+     *
+     * @return the player name
+     */
+    public String getPlayer() {
+        return this.player;
+    }
+
+    /**
+     * Returns the best score of the player.
+     *
+     * @return the score
+     */
+    public int getScore() {
+        return this.score;
+    }
+
+    /**
+     * Returns the time the best score of the player was achieved.
+     *
+     * @return the completion time, in epoch milliseconds
+     */
+    public long getCompletionMillis() {
+        return this.completionMillis;
+    }
+
+    @Override
+    public String toString() {
+        return this.player + " (" + this.score + ")";
+    }
+
+}
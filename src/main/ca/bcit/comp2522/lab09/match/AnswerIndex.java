@@ -0,0 +1,444 @@
+package ca.bcit.comp2522.lab09.match;
+
+import ca.bcit.comp2522.lab09.QuizQuestion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Represents an index of every known answer of a group of questions, which can find every known answer that a
+ * given answer would be accepted as in a single pass over the given answer.
+ * <p>
+ * The index is an Aho-Corasick automaton over the normalized known answers. Its nodes are numbered in breadth-first
+ * order, which means the children of any node are numbered consecutively, so the whole transition table is stored
+ * as one offset and one character per node. A given answer still has to pass the same length rule as
+ * {@link QuizQuestion#doAnswersMatch(String, String)} to be accepted.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class AnswerIndex {
+
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final List<QuizQuestion> questions;
+
+    private final int[] patternQuestions;
+    private final int[] patternAnswers;
+    private final int[] patternLengths;
+    private final int[] patternNext;
+    private final int[] emptyPatterns;
+
+    private final int[] childStart;
+    private final char[] edgeChars;
+    private final int[] failLinks;
+    private final int[] outputLinks;
+    private final int[] patternHeads;
+
+    /**
+     * Creates a new index of every known answer of the specified questions.
+     *
+     * @param questions the questions to index the answers of
+     */
+    public AnswerIndex(final List<QuizQuestion> questions) {
+        this.questions = List.copyOf(questions);
+
+        final TrieBuilder builder;
+        final List<Integer> emptyPatternIds;
+
+        builder = new TrieBuilder();
+        emptyPatternIds = new ArrayList<>();
+
+        for (int q = 0; q < this.questions.size(); q++) {
+            final List<String> answers;
+            answers = this.questions.get(q).getAnswers();
+
+            for (int a = 0; a < answers.size(); a++) {
+                final String normalized;
+                final int patternId;
+
+                normalized = QuizQuestion.normalizeAnswer(answers.get(a));
+                patternId = builder.addPattern(q, a, normalized);
+
+                if (normalized.isEmpty()) {
+                    emptyPatternIds.add(patternId);
+                }
+            }
+        }
+
+        this.patternQuestions = Arrays.copyOf(builder.patternQuestions, builder.patternCount);
+        this.patternAnswers = Arrays.copyOf(builder.patternAnswers, builder.patternCount);
+        this.patternLengths = Arrays.copyOf(builder.patternLengths, builder.patternCount);
+        this.patternNext = Arrays.copyOf(builder.patternNext, builder.patternCount);
+        this.emptyPatterns = emptyPatternIds.stream().mapToInt(Integer::intValue).toArray();
+
+        this.childStart = new int[builder.nodeCount + 1];
+        this.edgeChars = new char[builder.nodeCount - 1];
+        this.patternHeads = new int[builder.nodeCount];
+        this.failLinks = new int[builder.nodeCount];
+        this.outputLinks = new int[builder.nodeCount];
+
+        this.compact(builder);
+        this.link();
+    }
+
+    /**
+     * Renumbers the built trie in breadth-first order, with the children of every node sorted by character, into
+     * the compact transition table.
+     * <p>
+     * Since every node except the root is reached by exactly one edge, and edges are numbered in the same order as
+     * the nodes they lead to, the edge at index {@code e} always leads to the node {@code e + 1}.
+     *
+     * @param builder the built trie
+     */
+    private void compact(final TrieBuilder builder) {
+        final int[] queue;
+        queue = new int[builder.nodeCount];
+
+        int head = 0;
+        int tail = 0;
+        int edge = 0;
+
+        queue[tail++] = AnswerIndex.ROOT;
+
+        while (head < tail) {
+            final int oldNode;
+            final int newNode;
+            final int[] children;
+
+            oldNode = queue[head];
+            newNode = head++;
+            children = builder.sortedChildren(oldNode);
+
+            this.childStart[newNode] = edge;
+            this.patternHeads[newNode] = builder.patternHeads[oldNode];
+
+            for (final int child : children) {
+                this.edgeChars[edge++] = builder.nodeChars[child];
+                queue[tail++] = child;
+            }
+        }
+
+        this.childStart[builder.nodeCount] = edge;
+    }
+
+    /**
+     * Computes the failure link of every node, which is the node of the longest proper suffix of its path that is
+     * also in the trie, and the output link, which is the closest node along the failure links that ends a pattern.
+     */
+    private void link() {
+        this.failLinks[AnswerIndex.ROOT] = AnswerIndex.ROOT;
+        this.outputLinks[AnswerIndex.ROOT] = AnswerIndex.NONE;
+
+        for (int node = 0; node < this.failLinks.length; node++) {
+            for (int edge = this.childStart[node]; edge < this.childStart[node + 1]; edge++) {
+                final int child;
+                final int fail;
+
+                child = edge + 1;
+                fail = node == AnswerIndex.ROOT
+                       ? AnswerIndex.ROOT
+                       : this.step(this.failLinks[node], this.edgeChars[edge]);
+
+                this.failLinks[child] = fail;
+                this.outputLinks[child] = this.patternHeads[fail] != AnswerIndex.NONE ? fail : this.outputLinks[fail];
+            }
+        }
+    }
+
+    /**
+     * Finds the child of the specified node along the edge with the specified character.
+     *
+     * @param node      the node to find the child of
+     * @param character the character of the edge
+     * @return the child, or {@link AnswerIndex#NONE} if there is no such edge
+     */
+    private int child(final int node, final char character) {
+        int low = this.childStart[node];
+        int high = this.childStart[node + 1] - 1;
+
+        while (low <= high) {
+            final int middle;
+            middle = (low + high) >>> 1;
+
+            if (this.edgeChars[middle] < character) {
+                low = middle + 1;
+            } else if (this.edgeChars[middle] > character) {
+                high = middle - 1;
+            } else {
+                return middle + 1;
+            }
+        }
+
+        return AnswerIndex.NONE;
+    }
+
+    /**
+     * Advances the automaton from the specified node by the specified character, following failure links until an
+     * edge with that character is found.
+     *
+     * @param node      the node to advance from
+     * @param character the character to advance by
+     * @return the node after advancing
+     */
+    private int step(final int node, final char character) {
+        int current = node;
+
+        while (true) {
+            final int next;
+            next = this.child(current, character);
+
+            if (next != AnswerIndex.NONE) {
+                return next;
+            }
+
+            if (current == AnswerIndex.ROOT) {
+                return AnswerIndex.ROOT;
+            }
+
+            current = this.failLinks[current];
+        }
+    }
+
+    /**
+     * Finds every known answer that the given answer is accepted as, by the rules of
+     * {@link QuizQuestion#doAnswersMatch(String, String)}.
+     *
+     * @param rawGivenAnswer the given answer
+     * @return every accepted match, each known answer at most once
+     */
+    public List<AnswerMatch> findMatches(final String rawGivenAnswer) {
+        final String givenAnswer;
+        final int minimumLength;
+        final Set<Integer> matchedPatterns;
+
+        givenAnswer = QuizQuestion.normalizeAnswer(rawGivenAnswer);
+        minimumLength = givenAnswer.length() / 2;
+        matchedPatterns = new LinkedHashSet<>();
+
+        if (minimumLength == 0) {
+            Arrays.stream(this.emptyPatterns).forEach(matchedPatterns::add);
+        }
+
+        int node = AnswerIndex.ROOT;
+        for (int i = 0; i < givenAnswer.length(); i++) {
+            node = this.step(node, givenAnswer.charAt(i));
+
+            int output = this.patternHeads[node] != AnswerIndex.NONE ? node : this.outputLinks[node];
+
+            // Patterns along the output links only get shorter, so the rest can be skipped once one is too short.
+            while (output != AnswerIndex.NONE &&
+                   this.patternLengths[this.patternHeads[output]] >= minimumLength) {
+                for (int pattern = this.patternHeads[output]; pattern != AnswerIndex.NONE;
+                     pattern = this.patternNext[pattern]) {
+                    matchedPatterns.add(pattern);
+                }
+
+                output = this.outputLinks[output];
+            }
+        }
+
+        final List<AnswerMatch> matches;
+        matches = new ArrayList<>(matchedPatterns.size());
+
+        for (final int pattern : matchedPatterns) {
+            final QuizQuestion question;
+            question = this.questions.get(this.patternQuestions[pattern]);
+
+            matches.add(new AnswerMatch(question, question.getAnswers().get(this.patternAnswers[pattern])));
+        }
+
+        return matches;
+    }
+
+    /**
+     * Finds every question that the given answer would be accepted for.
+     *
+     * @param givenAnswer the given answer
+     * @return every question with at least one accepted match
+     */
+    public Set<QuizQuestion> findQuestions(final String givenAnswer) {
+        final Set<QuizQuestion> matchedQuestions;
+        matchedQuestions = new HashSet<>();
+
+        this.findMatches(givenAnswer).forEach((match) -> matchedQuestions.add(match.getQuestion()));
+
+        return matchedQuestions;
+    }
+
+    /**
+     * Returns the amount of nodes in the automaton.
+     *
+     * @return the node count
+     */
+    public int getNodeCount() {
+        return this.failLinks.length;
+    }
+
+    /**
+     * Represents a growable trie of patterns, where each node keeps its children as a linked list of siblings.
+     * This is only used while an index is being created, and is discarded once the index is compacted.
+     */
+    private static final class TrieBuilder {
+
+        private int nodeCount;
+        private int[] firstChildren;
+        private int[] nextSiblings;
+        private char[] nodeChars;
+        private int[] patternHeads;
+
+        private int patternCount;
+        private int[] patternQuestions;
+        private int[] patternAnswers;
+        private int[] patternLengths;
+        private int[] patternNext;
+
+        /**
+         * Creates a new trie builder containing only the root.
+         */
+        private TrieBuilder() {
+            this.firstChildren = new int[AnswerIndex.INITIAL_CAPACITY];
+            this.nextSiblings = new int[AnswerIndex.INITIAL_CAPACITY];
+            this.nodeChars = new char[AnswerIndex.INITIAL_CAPACITY];
+            this.patternHeads = new int[AnswerIndex.INITIAL_CAPACITY];
+
+            this.patternQuestions = new int[AnswerIndex.INITIAL_CAPACITY];
+            this.patternAnswers = new int[AnswerIndex.INITIAL_CAPACITY];
+            this.patternLengths = new int[AnswerIndex.INITIAL_CAPACITY];
+            this.patternNext = new int[AnswerIndex.INITIAL_CAPACITY];
+
+            this.addNode('\0');
+        }
+
+        /**
+         * Adds a new node with no children.
+         *
+         * @param character the character of the edge leading to the node
+         * @return the new node
+         */
+        private int addNode(final char character) {
+            if (this.nodeCount == this.firstChildren.length) {
+                final int capacity;
+                capacity = this.nodeCount * 2;
+
+                this.firstChildren = Arrays.copyOf(this.firstChildren, capacity);
+                this.nextSiblings = Arrays.copyOf(this.nextSiblings, capacity);
+                this.nodeChars = Arrays.copyOf(this.nodeChars, capacity);
+                this.patternHeads = Arrays.copyOf(this.patternHeads, capacity);
+            }
+
+            this.firstChildren[this.nodeCount] = AnswerIndex.NONE;
+            this.nextSiblings[this.nodeCount] = AnswerIndex.NONE;
+            this.nodeChars[this.nodeCount] = character;
+            this.patternHeads[this.nodeCount] = AnswerIndex.NONE;
+
+            return this.nodeCount++;
+        }
+
+        /**
+         * Adds the specified pattern to the trie.
+         *
+         * @param question the index of the question the pattern belongs to
+         * @param answer   the index of the answer within the question
+         * @param pattern  the normalized answer
+         * @return the identifier of the pattern
+         */
+        private int addPattern(final int question, final int answer, final String pattern) {
+            int node = AnswerIndex.ROOT;
+
+            for (int i = 0; i < pattern.length(); i++) {
+                node = this.getOrAddChild(node, pattern.charAt(i));
+            }
+
+            if (this.patternCount == this.patternQuestions.length) {
+                final int capacity;
+                capacity = this.patternCount * 2;
+
+                this.patternQuestions = Arrays.copyOf(this.patternQuestions, capacity);
+                this.patternAnswers = Arrays.copyOf(this.patternAnswers, capacity);
+                this.patternLengths = Arrays.copyOf(this.patternLengths, capacity);
+                this.patternNext = Arrays.copyOf(this.patternNext, capacity);
+            }
+
+            final int patternId;
+            patternId = this.patternCount++;
+
+            this.patternQuestions[patternId] = question;
+            this.patternAnswers[patternId] = answer;
+            this.patternLengths[patternId] = pattern.length();
+
+            if (!pattern.isEmpty()) {
+                this.patternNext[patternId] = this.patternHeads[node];
+                this.patternHeads[node] = patternId;
+            } else {
+                this.patternNext[patternId] = AnswerIndex.NONE;
+            }
+
+            return patternId;
+        }
+
+        /**
+         * Finds the child of the specified node along the edge with the specified character, adding it if it does
+         * not exist yet.
+         *
+         * @param node      the node to find the child of
+         * @param character the character of the edge
+         * @return the child
+         */
+        private int getOrAddChild(final int node, final char character) {
+            for (int child = this.firstChildren[node]; child != AnswerIndex.NONE; child = this.nextSiblings[child]) {
+                if (this.nodeChars[child] == character) {
+                    return child;
+                }
+            }
+
+            final int child;
+            child = this.addNode(character);
+
+            this.nextSiblings[child] = this.firstChildren[node];
+            this.firstChildren[node] = child;
+
+            return child;
+        }
+
+        /**
+         * Lists the children of the specified node, sorted by the character of the edge leading to them.
+         *
+         * @param node the node to list the children of
+         * @return the sorted children
+         */
+        private int[] sortedChildren(final int node) {
+            int count = 0;
+            for (int child = this.firstChildren[node]; child != AnswerIndex.NONE; child = this.nextSiblings[child]) {
+                count++;
+            }
+
+            final long[] keyed;
+            keyed = new long[count];
+
+            int i = 0;
+            for (int child = this.firstChildren[node]; child != AnswerIndex.NONE; child = this.nextSiblings[child]) {
+                keyed[i++] = ((long) this.nodeChars[child] << Integer.SIZE) | child;
+            }
+
+            Arrays.sort(keyed);
+
+            final int[] children;
+            children = new int[count];
+
+            for (i = 0; i < count; i++) {
+                children[i] = (int) keyed[i];
+            }
+
+            return children;
+        }
+
+    }
+
+}
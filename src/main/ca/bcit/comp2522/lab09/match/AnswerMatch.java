@@ -0,0 +1,50 @@
+package ca.bcit.comp2522.lab09.match;
+
+import ca.bcit.comp2522.lab09.QuizQuestion;
+
+/**
+ * Represents a known answer of a question that a given answer was accepted as.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class AnswerMatch {
+
+    private final QuizQuestion question;
+    private final String answer;
+
+    /**
+     * Creates a new answer match.
+     *
+     * @param question the question the matched answer belongs to
+     * @param answer   the known answer that was matched, as it appears on the question
+     */
+    public AnswerMatch(final QuizQuestion question, final String answer) {
+        this.question = question;
+        this.answer = answer;
+    }
+
+    /**
+     * Returns the question the matched answer belongs to.
+     *
+     * @return the matched question
+     */
+    public QuizQuestion getQuestion() {
+        return this.question;
+    }
+
+    /**
+     * Returns the known answer that was matched, as it appears on the question.
+     *
+     * @return the matched answer
+     */
+    public String getAnswer() {
+        return this.answer;
+    }
+
+    @Override
+    public String toString() {
+        return this.question.getQuestionText() + " -> " + this.answer;
+    }
+
+}
@@ -0,0 +1,556 @@
+package ca.bcit.comp2522.lab09.match;
+
+import ca.bcit.comp2522.lab09.QuizQuestion;
+import ca.bcit.comp2522.lab09.metrics.Counter;
+import ca.bcit.comp2522.lab09.metrics.Metrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Represents a bounded cache of grading results, keyed by the question and the normalized given answer, so that an
+ * answer that was already given to a question is graded with a single lookup.
+ * <p>
+ * Lookups never block, they only read a concurrent map. Which entries are kept is decided by a W-TinyLFU policy:
+ * new entries enter a small recency window, and once they leave the window they are only admitted into the main
+ * area if they have been seen more often than the entry they would replace, which is estimated by a compact
+ * frequency sketch. The main area is split into a probation and a protected segment, so a single burst of new
+ * answers cannot push out the answers that are given over and over. Recording accesses for the policy is skipped
+ * whenever another thread is already updating it, so readers never wait on each other.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class GradingCache {
+
+    private static final int MIN_MAXIMUM_SIZE = 1;
+    private static final int MAX_CACHED_ANSWER_LENGTH = 64;
+    private static final double WINDOW_RATIO = 0.01;
+    private static final double PROTECTED_RATIO = 0.8;
+    private static final int DEFAULT_SHARED_SIZE = 10_000;
+
+    private static final GradingCache SHARED = new GradingCache(
+            Integer.getInteger("quizzer.gradingCache.size", GradingCache.DEFAULT_SHARED_SIZE));
+
+    private static final Counter HIT_COUNTER = Metrics.counter("grading.cache.hit");
+    private static final Counter MISS_COUNTER = Metrics.counter("grading.cache.miss");
+    private static final Counter EVICTION_COUNTER = Metrics.counter("grading.cache.eviction");
+
+    private final int maximumSize;
+    private final int maximumWindowSize;
+    private final int maximumProtectedSize;
+
+    private final ConcurrentHashMap<GradeKey, Entry> entries;
+    private final ReentrantLock policyLock;
+    private final FrequencySketch sketch;
+    private final AccessQueue window;
+    private final AccessQueue probation;
+    private final AccessQueue protectedQueue;
+
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+
+    /**
+     * Creates a new, empty grading cache.
+     *
+     * @param maximumSize the maximum amount of grading results kept at once
+     */
+    public GradingCache(final int maximumSize) {
+        GradingCache.validateMaximumSize(maximumSize);
+
+        this.maximumSize = maximumSize;
+        this.maximumWindowSize = Math.max(1, (int) (maximumSize * GradingCache.WINDOW_RATIO));
+        this.maximumProtectedSize = (int) ((maximumSize - this.maximumWindowSize) * GradingCache.PROTECTED_RATIO);
+
+        this.entries = new ConcurrentHashMap<>();
+        this.policyLock = new ReentrantLock();
+        this.sketch = new FrequencySketch(maximumSize);
+        this.window = new AccessQueue();
+        this.probation = new AccessQueue();
+        this.protectedQueue = new AccessQueue();
+
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+    }
+
+    /**
+     * Returns the grading cache shared by every quiz. Its size is set by the {@code quizzer.gradingCache.size} system
+     * property.
+     *
+     * @return the shared cache
+     */
+    public static GradingCache shared() {
+        return GradingCache.SHARED;
+    }
+
+    /**
+     * Validates the maximum size to ensure it is within limits.
+     *
+     * @param maximumSize the maximum size to validate
+     */
+    private static void validateMaximumSize(final int maximumSize) {
+        if (maximumSize < GradingCache.MIN_MAXIMUM_SIZE) {
+            throw new IllegalArgumentException(
+                    "A grading cache must be able to hold at least " + GradingCache.MIN_MAXIMUM_SIZE + " result(s).");
+        }
+    }
+
+    /**
+     * Grades the given answer for the specified question, exactly like {@link QuizQuestion#isAcceptedAnswer(String)},
+     * reusing the result of an earlier grading of the same normalized answer if it is still cached.
+     * <p>
+     * Very long answers are graded without being cached, since they are unlikely to be repeated.
+     *
+     * @param question    the question that was answered
+     * @param givenAnswer the answer to grade
+     * @return whether the given answer matches at least one accepted answer
+     */
+    public boolean grade(final QuizQuestion question, final String givenAnswer) {
+        final String normalizedAnswer;
+        normalizedAnswer = QuizQuestion.normalizeAnswer(givenAnswer);
+
+        if (normalizedAnswer.length() > GradingCache.MAX_CACHED_ANSWER_LENGTH) {
+            return question.isAcceptedAnswer(givenAnswer);
+        }
+
+        final GradeKey key;
+        final Entry cached;
+
+        key = new GradeKey(question, normalizedAnswer);
+        cached = this.entries.get(key);
+
+        if (cached != null) {
+            this.hits.increment();
+            GradingCache.HIT_COUNTER.increment();
+            this.recordAccess(cached);
+
+            return cached.result;
+        }
+
+        this.misses.increment();
+        GradingCache.MISS_COUNTER.increment();
+
+        final boolean result;
+        result = question.isAcceptedAnswer(givenAnswer);
+
+        this.insert(new Entry(key, result));
+
+        return result;
+    }
+
+    /**
+     * Records an access of a cached entry for the eviction policy, unless another thread is currently updating the
+     * policy, in which case the access is dropped rather than waited for.
+     *
+     * @param entry the accessed entry
+     */
+    private void recordAccess(final Entry entry) {
+        if (!this.policyLock.tryLock()) {
+            return;
+        }
+
+        try {
+            if (entry.queue == null) {
+                return;
+            }
+
+            this.sketch.increment(entry.key.hashCode());
+
+            if (entry.queue == this.probation) {
+                this.probation.remove(entry);
+                this.protectedQueue.addLast(entry);
+
+                if (this.protectedQueue.size > this.maximumProtectedSize) {
+                    final Entry demoted;
+                    demoted = this.protectedQueue.removeFirst();
+
+                    this.probation.addLast(demoted);
+                }
+            } else {
+                entry.queue.moveToLast(entry);
+            }
+        } finally {
+            this.policyLock.unlock();
+        }
+    }
+
+    /**
+     * Inserts a newly graded entry into the recency window, moving the oldest window entry into the main area and
+     * evicting whichever of the two main area candidates is used less often if the cache is full.
+     *
+     * @param entry the entry to insert
+     */
+    private void insert(final Entry entry) {
+        this.policyLock.lock();
+
+        try {
+            this.sketch.increment(entry.key.hashCode());
+
+            if (this.entries.putIfAbsent(entry.key, entry) != null) {
+                return;
+            }
+
+            this.window.addLast(entry);
+
+            if (this.window.size > this.maximumWindowSize) {
+                this.probation.addLast(this.window.removeFirst());
+            }
+
+            if (this.entries.size() > this.maximumSize) {
+                this.evict();
+            }
+        } finally {
+            this.policyLock.unlock();
+        }
+    }
+
+    /**
+     * Evicts a single entry from the main area, by comparing the entry that most recently left the window against
+     * the least recently used probation entry, and evicting whichever is estimated to be used less often.
+     */
+    private void evict() {
+        final AccessQueue source;
+
+        if (this.probation.size > 0) {
+            source = this.probation;
+        } else if (this.protectedQueue.size > 0) {
+            source = this.protectedQueue;
+        } else {
+            source = this.window;
+        }
+
+        final Entry candidate;
+        final Entry victim;
+
+        candidate = source.last();
+        victim = source.first();
+
+        final Entry evicted;
+        if (candidate != victim &&
+            this.sketch.frequency(candidate.key.hashCode()) > this.sketch.frequency(victim.key.hashCode())) {
+            evicted = victim;
+        } else {
+            evicted = candidate;
+        }
+
+        source.remove(evicted);
+        this.entries.remove(evicted.key, evicted);
+
+        this.evictions.increment();
+        GradingCache.EVICTION_COUNTER.increment();
+    }
+
+    /**
+     * Returns the amount of gradings that were answered from the cache.
+     *
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return this.hits.sum();
+    }
+
+    /**
+     * Returns the amount of gradings that had to be computed.
+     *
+     * @return the miss count
+     */
+    public long getMissCount() {
+        return this.misses.sum();
+    }
+
+    /**
+     * Returns the amount of entries that were evicted to stay within the maximum size.
+     *
+     * @return the eviction count
+     */
+    public long getEvictionCount() {
+        return this.evictions.sum();
+    }
+
+    /**
+     * Returns the amount of entries currently cached.
+     *
+     * @return the size of the cache
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Represents the key of a grading result, which is the identity of the question and the normalized answer.
+     */
+    private static final class GradeKey {
+
+        private final QuizQuestion question;
+        private final String normalizedAnswer;
+        private final int hash;
+
+        /**
+         * Creates a new grading key.
+         *
+         * @param question         the question that was answered
+         * @param normalizedAnswer the normalized given answer
+         */
+        private GradeKey(final QuizQuestion question, final String normalizedAnswer) {
+            this.question = question;
+            this.normalizedAnswer = normalizedAnswer;
+            this.hash = System.identityHashCode(question) * 31 + normalizedAnswer.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            return other instanceof GradeKey key && key.question == this.question &&
+                   key.normalizedAnswer.equals(this.normalizedAnswer);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+    }
+
+    /**
+     * Represents a cached grading result, which is also a node in exactly one of the policy queues while cached.
+     */
+    private static final class Entry {
+
+        private final GradeKey key;
+        private final boolean result;
+
+        private AccessQueue queue;
+        private Entry previous;
+        private Entry next;
+
+        /**
+         * Creates a new entry that is not in any queue yet.
+         *
+         * @param key    the key of the grading result
+         * @param result the grading result
+         */
+        private Entry(final GradeKey key, final boolean result) {
+            this.key = key;
+            this.result = result;
+        }
+
+    }
+
+    /**
+     * Represents a doubly linked queue of entries from least to most recently used. It is only ever modified while
+     * holding the policy lock.
+     */
+    private static final class AccessQueue {
+
+        private Entry head;
+        private Entry tail;
+        private int size;
+
+        /**
+         * Adds the specified entry as the most recently used entry.
+         *
+         * @param entry the entry to add
+         */
+        private void addLast(final Entry entry) {
+            entry.queue = this;
+            entry.previous = this.tail;
+            entry.next = null;
+
+            if (this.tail == null) {
+                this.head = entry;
+            } else {
+                this.tail.next = entry;
+            }
+
+            this.tail = entry;
+            this.size++;
+        }
+
+        /**
+         * Removes the specified entry from this queue.
+         *
+         * @param entry the entry to remove
+         */
+        private void remove(final Entry entry) {
+            if (entry.previous == null) {
+                this.head = entry.next;
+            } else {
+                entry.previous.next = entry.next;
+            }
+
+            if (entry.next == null) {
+                this.tail = entry.previous;
+            } else {
+                entry.next.previous = entry.previous;
+            }
+
+            entry.queue = null;
+            entry.previous = null;
+            entry.next = null;
+            this.size--;
+        }
+
+        /**
+         * Removes and returns the least recently used entry.
+         *
+         * @return the removed entry
+         */
+        private Entry removeFirst() {
+            final Entry first;
+            first = this.head;
+
+            this.remove(first);
+
+            return first;
+        }
+
+        /**
+         * Marks the specified entry of this queue as the most recently used.
+         *
+         * @param entry the entry to move
+         */
+        private void moveToLast(final Entry entry) {
+            if (entry != this.tail) {
+                this.remove(entry);
+                this.addLast(entry);
+            }
+        }
+
+        /**
+         * Returns the least recently used entry.
+         *
+         * @return the first entry
+         */
+        private Entry first() {
+            return this.head;
+        }
+
+        /**
+         * Returns the most recently used entry.
+         *
+         * @return the last entry
+         */
+        private Entry last() {
+            return this.tail;
+        }
+
+    }
+
+    /**
+     * Represents a count-min sketch of how often each key was seen, using four 4-bit counters per key packed sixteen
+     * to a long. Every counter is halved once enough keys have been counted, so that the sketch favours recent
+     * popularity over all-time popularity.
+     */
+    private static final class FrequencySketch {
+
+        private static final int HASH_COUNT = 4;
+        private static final int COUNTER_BITS = 4;
+        private static final long COUNTER_MAX = (1L << COUNTER_BITS) - 1;
+        private static final int COUNTERS_PER_LONG = Long.SIZE / COUNTER_BITS;
+        private static final long HALVING_MASK = 0x7777777777777777L;
+        private static final int SAMPLE_MULTIPLIER = 10;
+        private static final long[] SEEDS = {
+                0x97CB3127A9C6E71BL, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L
+        };
+
+        private final long[] table;
+        private final int sampleSize;
+        private int additions;
+
+        /**
+         * Creates a new sketch sized for the specified amount of keys.
+         *
+         * @param expectedKeys the amount of keys expected to be tracked at once
+         */
+        private FrequencySketch(final int expectedKeys) {
+            this.table = new long[Math.max(1, Integer.highestOneBit(Math.max(1, expectedKeys - 1)) << 1)];
+            this.sampleSize = Math.max(1, expectedKeys) * FrequencySketch.SAMPLE_MULTIPLIER;
+        }
+
+        /**
+         * Determines the position of the counter of the specified hash function for a key.
+         *
+         * @param hash     the hash of the key
+         * @param function the hash function
+         * @return the position of the counter, as a table index in the high bits and a counter in the low bits
+         */
+        private long counterOf(final int hash, final int function) {
+            long mixed = (hash + FrequencySketch.SEEDS[function]) * FrequencySketch.SEEDS[function];
+            mixed ^= mixed >>> (Integer.SIZE);
+
+            final int index;
+            final int counter;
+
+            index = (int) (mixed & (this.table.length - 1));
+            counter = (int) ((mixed >>> Integer.SIZE) & (FrequencySketch.COUNTERS_PER_LONG - 1));
+
+            return ((long) index << Integer.SIZE) | counter;
+        }
+
+        /**
+         * Estimates how often the specified key was seen.
+         *
+         * @param hash the hash of the key
+         * @return the estimated frequency, between 0 and 15
+         */
+        private int frequency(final int hash) {
+            long minimum = FrequencySketch.COUNTER_MAX;
+
+            for (int function = 0; function < FrequencySketch.HASH_COUNT; function++) {
+                final long position;
+                final int shift;
+
+                position = this.counterOf(hash, function);
+                shift = (int) position * FrequencySketch.COUNTER_BITS;
+
+                minimum = Math.min(minimum, (this.table[(int) (position >>> Integer.SIZE)] >>> shift) &
+                                            FrequencySketch.COUNTER_MAX);
+            }
+
+            return (int) minimum;
+        }
+
+        /**
+         * Counts an occurrence of the specified key.
+         *
+         * @param hash the hash of the key
+         */
+        private void increment(final int hash) {
+            boolean added = false;
+
+            for (int function = 0; function < FrequencySketch.HASH_COUNT; function++) {
+                final long position;
+                final int index;
+                final int shift;
+
+                position = this.counterOf(hash, function);
+                index = (int) (position >>> Integer.SIZE);
+                shift = (int) position * FrequencySketch.COUNTER_BITS;
+
+                if (((this.table[index] >>> shift) & FrequencySketch.COUNTER_MAX) != FrequencySketch.COUNTER_MAX) {
+                    this.table[index] += 1L << shift;
+                    added = true;
+                }
+            }
+
+            if (added && ++this.additions >= this.sampleSize) {
+                this.halve();
+            }
+        }
+
+        /**
+         * Halves every counter, so that older occurrences count for less than newer ones.
+         */
+        private void halve() {
+            for (int i = 0; i < this.table.length; i++) {
+                this.table[i] = (this.table[i] >>> 1) & FrequencySketch.HALVING_MASK;
+            }
+
+            this.additions /= 2;
+        }
+
+    }
+
+}
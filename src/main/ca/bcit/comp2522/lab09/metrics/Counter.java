@@ -0,0 +1,66 @@
+package ca.bcit.comp2522.lab09.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Represents a named count of occurrences, which can be incremented from any thread without contention.
+ * <p>
+ * Nothing is counted unless {@link Metrics#ENABLED} is set.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class Counter {
+
+    private final String name;
+    private final LongAdder count;
+
+    /**
+     * Creates a new counter, starting at zero.
+     *
+     * @param name the name of the counter
+     */
+    Counter(final String name) {
+        this.name = name;
+        this.count = new LongAdder();
+    }
+
+    /**
+     * Counts a single occurrence.
+     */
+    public void increment() {
+        if (Metrics.ENABLED) {
+            this.count.increment();
+        }
+    }
+
+    /**
+     * Counts the specified amount of occurrences.
+     *
+     * @param amount the amount of occurrences
+     */
+    public void add(final long amount) {
+        if (Metrics.ENABLED) {
+            this.count.add(amount);
+        }
+    }
+
+    /**
+     * Returns the name of this counter.
+     *
+     * @return the counter name
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Returns the amount of occurrences counted so far.
+     *
+     * @return the current count
+     */
+    public long getCount() {
+        return this.count.sum();
+    }
+
+}
@@ -0,0 +1,26 @@
+package ca.bcit.comp2522.lab09.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Represents the flight recorder event of a task waiting in the JavaFX application thread queue, which spans from
+ * when the task was queued to when it started running.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+@Name("ca.bcit.comp2522.lab09.FxQueue")
+@Label("FX Queue Delay")
+@Category("Quizzer")
+@Description("Time a task spent queued before running on the JavaFX application thread")
+public final class FxQueueEvent extends Event {
+
+    /** This is the amount of tasks that were queued but not yet run when this task was queued. */
+    @Label("Queue Depth")
+    public int queueDepth;
+
+}
@@ -0,0 +1,69 @@
+package ca.bcit.comp2522.lab09.metrics;
+
+import javafx.application.Platform;
+import jdk.jfr.EventType;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Represents the instrumented way of running tasks on the JavaFX application thread, which measures how long each
+ * task waited in the queue before it ran.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class FxTasks {
+
+    private static final LatencyHistogram QUEUE_DELAY = Metrics.histogram("fx.queue.delay");
+    private static final EventType QUEUE_EVENT_TYPE = EventType.getEventType(FxQueueEvent.class);
+    private static final AtomicInteger PENDING = new AtomicInteger();
+
+    /**
+     * Prevents instantiation of this utility class.
+     */
+    private FxTasks() {
+    }
+
+    /**
+     * Runs the specified task on the JavaFX application thread at some point in the future, exactly like
+     * {@link Platform#runLater(Runnable)}.
+     * <p>
+     * The task is only wrapped for measuring when metrics are enabled, or the flight recorder event is enabled.
+     *
+     * @param task the task to run
+     */
+    public static void runLater(final Runnable task) {
+        if (!Metrics.ENABLED && !FxTasks.QUEUE_EVENT_TYPE.isEnabled()) {
+            Platform.runLater(task);
+            return;
+        }
+
+        final FxQueueEvent event;
+        final long queuedAt;
+
+        event = new FxQueueEvent();
+        queuedAt = System.nanoTime();
+
+        event.queueDepth = FxTasks.PENDING.getAndIncrement();
+        event.begin();
+
+        Platform.runLater(() -> {
+            FxTasks.PENDING.decrementAndGet();
+
+            event.commit();
+            FxTasks.QUEUE_DELAY.recordSince(queuedAt);
+
+            task.run();
+        });
+    }
+
+    /**
+     * Returns the amount of measured tasks that were queued but have not started running yet.
+     *
+     * @return the queue depth
+     */
+    public static int getPendingCount() {
+        return FxTasks.PENDING.get();
+    }
+
+}
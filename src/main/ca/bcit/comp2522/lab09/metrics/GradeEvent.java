@@ -0,0 +1,29 @@
+package ca.bcit.comp2522.lab09.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Represents the flight recorder event of grading an answer to a quiz question.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+@Name("ca.bcit.comp2522.lab09.Grade")
+@Label("Grade Answer")
+@Category("Quizzer")
+@Description("Grading of a single answer to a quiz question")
+public final class GradeEvent extends Event {
+
+    /** This is the length of the given answer. */
+    @Label("Answer Length")
+    public int answerLength;
+
+    /** This is whether the given answer was accepted. */
+    @Label("Correct")
+    public boolean correct;
+
+}
@@ -0,0 +1,184 @@
+package ca.bcit.comp2522.lab09.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Represents a named histogram of latencies in nanoseconds, which can be recorded to from any thread without locking.
+ * <p>
+ * Values are counted in log-linear buckets, where every power of two is split into {@value #SUB_BUCKET_COUNT}
+ * equally sized buckets. This means that any reported percentile is within about 1.6% of the real value, while
+ * the entire range of positive longs fits in a few thousand buckets.
+ * <p>
+ * Nothing is recorded unless {@link Metrics#ENABLED} is set.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKET_COUNT;
+    private static final int BUCKET_COUNT = LINEAR_LIMIT + (Long.SIZE - SUB_BUCKET_BITS - 2) * SUB_BUCKET_COUNT;
+    private static final double MAX_PERCENTILE = 100.0;
+
+    private final String name;
+    private final AtomicLongArray buckets;
+    private final AtomicLong count;
+    private final AtomicLong total;
+    private final AtomicLong max;
+
+    /**
+     * Creates a new, empty histogram.
+     *
+     * @param name the name of the histogram
+     */
+    LatencyHistogram(final String name) {
+        this.name = name;
+        this.buckets = new AtomicLongArray(LatencyHistogram.BUCKET_COUNT);
+        this.count = new AtomicLong();
+        this.total = new AtomicLong();
+        this.max = new AtomicLong();
+    }
+
+    /**
+     * Determines the bucket that the specified value is counted in.
+     *
+     * @param value the value, which must not be negative
+     * @return the bucket of the value
+     */
+    private static int bucketOf(final long value) {
+        if (value < LatencyHistogram.LINEAR_LIMIT) {
+            return (int) value;
+        }
+
+        final int highestBit;
+        final int shift;
+
+        highestBit = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        shift = highestBit - LatencyHistogram.SUB_BUCKET_BITS;
+
+        return LatencyHistogram.LINEAR_LIMIT + (shift - 1) * LatencyHistogram.SUB_BUCKET_COUNT +
+               (int) ((value >>> shift) - LatencyHistogram.SUB_BUCKET_COUNT);
+    }
+
+    /**
+     * Determines the smallest value that is counted in the specified bucket.
+     *
+     * @param bucket the bucket
+     * @return the lowest value of the bucket
+     */
+    private static long lowestValueOf(final int bucket) {
+        if (bucket < LatencyHistogram.LINEAR_LIMIT) {
+            return bucket;
+        }
+
+        final int shift;
+        final int subBucket;
+
+        shift = (bucket - LatencyHistogram.LINEAR_LIMIT) / LatencyHistogram.SUB_BUCKET_COUNT + 1;
+        subBucket = (bucket - LatencyHistogram.LINEAR_LIMIT) % LatencyHistogram.SUB_BUCKET_COUNT;
+
+        return (long) (LatencyHistogram.SUB_BUCKET_COUNT + subBucket) << shift;
+    }
+
+    /**
+     * Records the time elapsed since the specified start time.
+     *
+     * @param startNanos the start time, as returned by {@link Metrics#now()}
+     */
+    public void recordSince(final long startNanos) {
+        if (Metrics.ENABLED) {
+            this.record(System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Records the specified latency. Negative latencies are recorded as zero.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    public void record(final long nanos) {
+        if (!Metrics.ENABLED) {
+            return;
+        }
+
+        final long value;
+        value = Math.max(0, nanos);
+
+        this.buckets.incrementAndGet(LatencyHistogram.bucketOf(value));
+        this.count.incrementAndGet();
+        this.total.addAndGet(value);
+        this.max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Estimates the latency at the specified percentile of everything recorded so far.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the estimated latency in nanoseconds, or 0 if nothing was recorded
+     */
+    public long getPercentile(final double percentile) {
+        final long recorded;
+        recorded = this.count.get();
+
+        if (recorded == 0) {
+            return 0;
+        }
+
+        final long rank;
+        rank = Math.max(1, (long) Math.ceil(percentile / LatencyHistogram.MAX_PERCENTILE * recorded));
+
+        long seen = 0;
+        for (int bucket = 0; bucket < LatencyHistogram.BUCKET_COUNT; bucket++) {
+            seen += this.buckets.get(bucket);
+
+            if (seen >= rank) {
+                return Math.min(LatencyHistogram.lowestValueOf(bucket), this.max.get());
+            }
+        }
+
+        return this.max.get();
+    }
+
+    /**
+     * Returns the name of this histogram.
+     *
+     * @return the histogram name
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Returns the amount of latencies recorded so far.
+     *
+     * @return the recorded count
+     */
+    public long getCount() {
+        return this.count.get();
+    }
+
+    /**
+     * Returns the average of every latency recorded so far.
+     *
+     * @return the mean latency in nanoseconds, or 0 if nothing was recorded
+     */
+    public double getMean() {
+        final long recorded;
+        recorded = this.count.get();
+
+        return recorded == 0 ? 0 : ((double) this.total.get()) / recorded;
+    }
+
+    /**
+     * Returns the highest latency recorded so far.
+     *
+     * @return the max latency in nanoseconds
+     */
+    public long getMax() {
+        return this.max.get();
+    }
+
+}
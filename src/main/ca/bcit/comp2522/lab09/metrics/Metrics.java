@@ -0,0 +1,112 @@
+package ca.bcit.comp2522.lab09.metrics;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Represents the in-process registry of every counter and latency histogram.
+ * <p>
+ * Metrics are only recorded when the {@code quizzer.metrics} system property is set to {@code true}. Since that is
+ * decided once at startup, every disabled recording is a single constant check that the JIT compiler removes. The
+ * JDK Flight Recorder events in this package are independent of this, and are controlled by the recording settings.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class Metrics {
+
+    /** This is whether any metric is recorded at all. */
+    public static final boolean ENABLED = Boolean.getBoolean("quizzer.metrics");
+
+    private static final Path DUMP_PATH = Path.of(System.getProperty("quizzer.metrics.file", "metrics.txt"));
+    private static final double[] DUMPED_PERCENTILES = {50, 90, 99, 99.9};
+    private static final double NANOS_PER_MICRO = TimeUnit.MICROSECONDS.toNanos(1);
+
+    private static final Map<String, Counter> COUNTERS = new ConcurrentHashMap<>();
+    private static final Map<String, LatencyHistogram> HISTOGRAMS = new ConcurrentHashMap<>();
+
+    /**
+     * Prevents instantiation of this registry.
+     */
+    private Metrics() {
+    }
+
+    /**
+     * Retrieves the counter with the specified name, creating it if it does not exist yet.
+     * <p>
+     * Counters are meant to be looked up once and kept in a constant, rather than looked up for every count.
+     *
+     * @param name the name of the counter
+     * @return the counter
+     */
+    public static Counter counter(final String name) {
+        return Metrics.COUNTERS.computeIfAbsent(name, Counter::new);
+    }
+
+    /**
+     * Retrieves the latency histogram with the specified name, creating it if it does not exist yet.
+     * <p>
+     * Histograms are meant to be looked up once and kept in a constant, rather than looked up for every recording.
+     *
+     * @param name the name of the histogram
+     * @return the histogram
+     */
+    public static LatencyHistogram histogram(final String name) {
+        return Metrics.HISTOGRAMS.computeIfAbsent(name, LatencyHistogram::new);
+    }
+
+    /**
+     * Returns the current time to start measuring a latency from, or 0 if metrics are disabled, which avoids reading
+     * the clock at all when nothing will be recorded.
+     *
+     * @return the current time in nanoseconds
+     */
+    public static long now() {
+        return Metrics.ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Writes every counter and histogram to the file named by the {@code quizzer.metrics.file} system property, or
+     * {@code metrics.txt} by default. Nothing is written if metrics are disabled.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public static void dump() throws IOException {
+        if (Metrics.ENABLED) {
+            Metrics.dump(Metrics.DUMP_PATH);
+        }
+    }
+
+    /**
+     * Writes every counter and histogram to the specified file, sorted by name. Latencies are written in
+     * microseconds.
+     *
+     * @param file the file to write to
+     * @throws IOException if the file cannot be written
+     */
+    public static void dump(final Path file) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+            new TreeMap<>(Metrics.COUNTERS).forEach((name, counter) -> out.printf("%s count=%d%n", name,
+                                                                                 counter.getCount()));
+
+            new TreeMap<>(Metrics.HISTOGRAMS).forEach((name, histogram) -> {
+                out.printf("%s count=%d mean=%.1fus", name, histogram.getCount(),
+                           histogram.getMean() / Metrics.NANOS_PER_MICRO);
+
+                for (final double percentile : Metrics.DUMPED_PERCENTILES) {
+                    out.printf(" p%s=%.1fus", percentile,
+                               histogram.getPercentile(percentile) / Metrics.NANOS_PER_MICRO);
+                }
+
+                out.printf(" max=%.1fus%n", histogram.getMax() / Metrics.NANOS_PER_MICRO);
+            });
+        }
+    }
+
+}
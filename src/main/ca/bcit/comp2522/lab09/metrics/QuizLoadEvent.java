@@ -0,0 +1,29 @@
+package ca.bcit.comp2522.lab09.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Represents the flight recorder event of creating a quiz from a questions file or a question bank.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+@Name("ca.bcit.comp2522.lab09.QuizLoad")
+@Label("Quiz Load")
+@Category("Quizzer")
+@Description("Creation of a quiz from a questions file or a question bank")
+public final class QuizLoadEvent extends Event {
+
+    /** This is where the questions of the quiz were taken from. */
+    @Label("Source")
+    public String source;
+
+    /** This is the amount of questions on the created quiz. */
+    @Label("Question Count")
+    public int questionCount;
+
+}
@@ -0,0 +1,29 @@
+package ca.bcit.comp2522.lab09.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Represents the flight recorder event of loading a new scene onto the primary stage.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+@Name("ca.bcit.comp2522.lab09.SceneSwitch")
+@Label("Scene Switch")
+@Category("Quizzer")
+@Description("Replacement of the scene on the primary stage, including destroying the previous scene")
+public final class SceneSwitchEvent extends Event {
+
+    /** This is the name of the scene that was replaced, if any. */
+    @Label("From Scene")
+    public String fromScene;
+
+    /** This is the name of the scene that was loaded. */
+    @Label("To Scene")
+    public String toScene;
+
+}
@@ -0,0 +1,91 @@
+package ca.bcit.comp2522.lab09.metrics;
+
+import javafx.scene.Scene;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Represents the breakdown of how long the application took to start, from the launch of the JVM up to the first
+ * question being on screen.
+ * <p>
+ * Every phase of startup is marked when it ends, and lasts from the end of the phase before it. The first phase lasts
+ * from the launch of the JVM. Phases are only marked until the report is printed, which happens once per run.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class StartupReport {
+
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long JVM_START_NANOS =
+            System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(ManagementFactory.getRuntimeMXBean().getUptime());
+
+    private static final Map<String, Long> PHASE_ENDS = new LinkedHashMap<>();
+
+    private static boolean reported;
+
+    /**
+     * Prevents instantiation of this utility class.
+     */
+    private StartupReport() {
+    }
+
+    /**
+     * Marks the end of the specified phase of startup now. A phase that was already marked keeps its first end.
+     *
+     * @param phase the name of the phase
+     */
+    public static synchronized void mark(final String phase) {
+        if (!StartupReport.reported) {
+            StartupReport.PHASE_ENDS.putIfAbsent(phase, System.nanoTime());
+        }
+    }
+
+    /**
+     * Marks the end of the specified phase of startup once the specified scene has been laid out for the next
+     * pulse, which is right before it is rendered.
+     *
+     * @param phase the name of the phase
+     * @param scene the scene whose next pulse ends the phase
+     */
+    public static void markAfterNextPulse(final String phase, final Scene scene) {
+        scene.addPostLayoutPulseListener(new Runnable() {
+            @Override
+            public void run() {
+                scene.removePostLayoutPulseListener(this);
+                StartupReport.mark(phase);
+            }
+        });
+    }
+
+    /**
+     * Prints how long every marked phase took, and how long startup took in total, on the standard output stream.
+     * Only the first call prints anything.
+     */
+    public static synchronized void report() {
+        if (StartupReport.reported) {
+            return;
+        }
+
+        StartupReport.reported = true;
+
+        final StringBuilder report;
+        report = new StringBuilder("Startup:");
+
+        long phaseStart = StartupReport.JVM_START_NANOS;
+        for (final Map.Entry<String, Long> phase : StartupReport.PHASE_ENDS.entrySet()) {
+            report.append(String.format(" %s %.1fms,", phase.getKey(),
+                                        (phase.getValue() - phaseStart) / StartupReport.NANOS_PER_MILLI));
+            phaseStart = phase.getValue();
+        }
+
+        report.append(String.format(" total %.1fms", (phaseStart - StartupReport.JVM_START_NANOS) /
+                                                     StartupReport.NANOS_PER_MILLI));
+
+        System.out.println(report);
+    }
+
+}
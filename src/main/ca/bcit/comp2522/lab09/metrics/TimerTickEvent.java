@@ -0,0 +1,31 @@
+package ca.bcit.comp2522.lab09.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * Represents the flight recorder event of a single timer tick, which spans the wait for the tick.
+ * <p>
+ * Since timers tick very often, only ticks that take noticeably longer than intended are recorded by default.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+@Name("ca.bcit.comp2522.lab09.TimerTick")
+@Label("Timer Tick")
+@Category("Quizzer")
+@Description("A timer tick that woke up later than intended")
+@Threshold("2 ms")
+public final class TimerTickEvent extends Event {
+
+    /** This is how much later than intended the tick woke up. */
+    @Label("Lag")
+    @Timespan(Timespan.NANOSECONDS)
+    public long lag;
+
+}
@@ -0,0 +1,453 @@
+package ca.bcit.comp2522.lab09.practice;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Represents the spaced repetition state of every question a single player has practiced, scheduled with the SM-2
+ * algorithm.
+ * <p>
+ * The state of each question is kept in parallel primitive arrays, and an indexed min-heap orders the questions by
+ * when they are next due. Recording an answer updates the state and the heap in logarithmic time, and the most due
+ * questions can be found without touching the rest.
+ * <p>
+ * Questions are identified by their {@link ca.bcit.comp2522.lab09.bank.QuestionBank#getId(int) id}, rather than
+ * their ordinal, so a schedule stays correct when questions are added to or removed from the questions file.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class PracticeSchedule {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MAX_LOAD_PERCENT = 50;
+    private static final int PERCENT = 100;
+    private static final int EMPTY = -1;
+    private static final int RECORD_BYTES = Long.BYTES + Long.BYTES + Integer.BYTES + Short.BYTES + Short.BYTES;
+
+    private static final short INITIAL_EASE_PERMILLE = 2500;
+    private static final short MIN_EASE_PERMILLE = 1300;
+    private static final int PERMILLE = 1000;
+    private static final int EASE_BONUS_PERMILLE = 100;
+    private static final int EASE_PENALTY_PERMILLE = 80;
+    private static final int EASE_PENALTY_GROWTH_PERMILLE = 20;
+    private static final int CORRECT_QUALITY = 4;
+    private static final int INCORRECT_QUALITY = 1;
+    private static final int MAX_QUALITY = 5;
+    private static final int PASSING_QUALITY = 3;
+
+    private static final int FIRST_INTERVAL_MINUTES = (int) TimeUnit.DAYS.toMinutes(1);
+    private static final int SECOND_INTERVAL_MINUTES = (int) TimeUnit.DAYS.toMinutes(6);
+    private static final long RETRY_DELAY_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final long MILLIS_PER_MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    private int size;
+    private long[] ids;
+    private long[] dueMillis;
+    private int[] intervalMinutes;
+    private short[] easePermille;
+    private short[] repetitions;
+
+    private int[] heap;
+    private int[] heapPositions;
+    private int[] slotTable;
+
+    /**
+     * Creates a new, empty schedule.
+     */
+    public PracticeSchedule() {
+        this.allocate(PracticeSchedule.INITIAL_CAPACITY);
+    }
+
+    /**
+     * Reads a schedule that was written by {@link #writeTo(DataOutputStream)}.
+     *
+     * @param in           the stream to read from
+     * @param maxReadBytes the most bytes the schedule can take up, which is what remains of the stream
+     * @return the read schedule, or null if the stored schedule does not fit in the remaining bytes or repeats a
+     *         question, which means it is damaged
+     * @throws IOException if the stream cannot be read, or ends before the schedule does
+     */
+    static PracticeSchedule readFrom(final DataInputStream in, final long maxReadBytes) throws IOException {
+        final int count;
+        count = in.readInt();
+
+        if (count < 0 || count > (maxReadBytes - Integer.BYTES) / PracticeSchedule.RECORD_BYTES) {
+            return null;
+        }
+
+        final PracticeSchedule schedule;
+        schedule = new PracticeSchedule();
+
+        schedule.allocate(Math.max(PracticeSchedule.INITIAL_CAPACITY, count));
+
+        for (int slot = 0; slot < count; slot++) {
+            final long id;
+            id = in.readLong();
+
+            if (schedule.findSlot(id) != PracticeSchedule.EMPTY) {
+                return null;
+            }
+
+            schedule.ids[slot] = id;
+            schedule.dueMillis[slot] = in.readLong();
+            schedule.intervalMinutes[slot] = in.readInt();
+            schedule.easePermille[slot] = in.readShort();
+            schedule.repetitions[slot] = in.readShort();
+
+            schedule.insertSlot(id, slot);
+            schedule.heap[slot] = slot;
+            schedule.heapPositions[slot] = slot;
+        }
+
+        schedule.size = count;
+
+        for (int position = count / 2 - 1; position >= 0; position--) {
+            schedule.siftDown(position);
+        }
+
+        return schedule;
+    }
+
+    /**
+     * Determines how many bytes a schedule of the specified amount of questions takes up when written.
+     *
+     * @param count the amount of questions
+     * @return the amount of bytes
+     */
+    static long bytesFor(final int count) {
+        return Integer.BYTES + (long) count * PracticeSchedule.RECORD_BYTES;
+    }
+
+    /**
+     * Writes the state of every question in this schedule, in the compact form read by
+     * {@link #readFrom(DataInputStream, long)}.
+     *
+     * @param out the stream to write to
+     * @throws IOException if the stream cannot be written
+     */
+    synchronized void writeTo(final DataOutputStream out) throws IOException {
+        out.writeInt(this.size);
+
+        for (int slot = 0; slot < this.size; slot++) {
+            out.writeLong(this.ids[slot]);
+            out.writeLong(this.dueMillis[slot]);
+            out.writeInt(this.intervalMinutes[slot]);
+            out.writeShort(this.easePermille[slot]);
+            out.writeShort(this.repetitions[slot]);
+        }
+    }
+
+    /**
+     * Records an answer to the specified question, and schedules when it is next due.
+     * <p>
+     * A correct answer pushes the question further out every time it is repeated, while an incorrect answer starts
+     * the repetitions over and makes the question due again shortly.
+     *
+     * @param id        the id of the answered question
+     * @param correct   whether the answer was correct
+     * @param nowMillis the time of the answer, in epoch milliseconds
+     */
+    public synchronized void record(final long id, final boolean correct, final long nowMillis) {
+        int slot = this.findSlot(id);
+        if (slot == PracticeSchedule.EMPTY) {
+            slot = this.addSlot(id);
+        }
+
+        final int quality;
+        final int qualityGap;
+
+        quality = correct ? PracticeSchedule.CORRECT_QUALITY : PracticeSchedule.INCORRECT_QUALITY;
+        qualityGap = PracticeSchedule.MAX_QUALITY - quality;
+
+        // SM-2: the ease drops the further the quality was from perfect, down to a minimum ease.
+        this.easePermille[slot] = (short) Math.max(PracticeSchedule.MIN_EASE_PERMILLE,
+                                                   this.easePermille[slot] + PracticeSchedule.EASE_BONUS_PERMILLE -
+                                                   qualityGap * (PracticeSchedule.EASE_PENALTY_PERMILLE + qualityGap *
+                                                                 PracticeSchedule.EASE_PENALTY_GROWTH_PERMILLE));
+
+        if (quality < PracticeSchedule.PASSING_QUALITY) {
+            this.repetitions[slot] = 0;
+            this.intervalMinutes[slot] = 0;
+            this.dueMillis[slot] = nowMillis + PracticeSchedule.RETRY_DELAY_MILLIS;
+        } else {
+            this.intervalMinutes[slot] = switch (this.repetitions[slot]) {
+                case 0 -> PracticeSchedule.FIRST_INTERVAL_MINUTES;
+                case 1 -> PracticeSchedule.SECOND_INTERVAL_MINUTES;
+                default -> (int) Math.min(Integer.MAX_VALUE, Math.round(
+                        (double) this.intervalMinutes[slot] * this.easePermille[slot] / PracticeSchedule.PERMILLE));
+            };
+
+            this.repetitions[slot] = (short) Math.min(Short.MAX_VALUE, this.repetitions[slot] + 1);
+            this.dueMillis[slot] = nowMillis + this.intervalMinutes[slot] * PracticeSchedule.MILLIS_PER_MINUTE;
+        }
+
+        this.siftUp(this.heapPositions[slot]);
+        this.siftDown(this.heapPositions[slot]);
+    }
+
+    /**
+     * Finds the questions that are due the soonest, without modifying this schedule.
+     * <p>
+     * This takes time proportional to the amount of questions found, not the size of this schedule.
+     *
+     * @param count       the maximum amount of questions to find
+     * @param dueByMillis the time the questions must be due by, in epoch milliseconds
+     * @return the ids of the found questions, the most overdue first
+     */
+    public synchronized long[] findMostDue(final int count, final long dueByMillis) {
+        final long[] found;
+        final PriorityQueue<Integer> frontier;
+
+        found = new long[Math.min(count, this.size)];
+        frontier = new PriorityQueue<>((left, right) -> Long.compare(this.dueMillis[this.heap[left]],
+                                                                     this.dueMillis[this.heap[right]]));
+
+        if (this.size > 0) {
+            frontier.add(0);
+        }
+
+        int foundCount = 0;
+        while (foundCount < found.length && !frontier.isEmpty()) {
+            final int position;
+            position = frontier.poll();
+
+            if (this.dueMillis[this.heap[position]] > dueByMillis) {
+                break;
+            }
+
+            found[foundCount++] = this.ids[this.heap[position]];
+
+            for (int child = 2 * position + 1; child <= 2 * position + 2 && child < this.size; child++) {
+                frontier.add(child);
+            }
+        }
+
+        return Arrays.copyOf(found, foundCount);
+    }
+
+    /**
+     * Determines whether the specified question has been practiced before.
+     *
+     * @param id the id of the question
+     * @return whether the question is in this schedule
+     */
+    public synchronized boolean contains(final long id) {
+        return this.findSlot(id) != PracticeSchedule.EMPTY;
+    }
+
+    /**
+     * Determines when the specified question is next due.
+     *
+     * @param id the id of the question
+     * @return the time the question is due, in epoch milliseconds, or 0 if it has never been practiced
+     */
+    public synchronized long getDueMillis(final long id) {
+        final int slot;
+        slot = this.findSlot(id);
+
+        return slot == PracticeSchedule.EMPTY ? 0 : this.dueMillis[slot];
+    }
+
+    /**
+     * Determines the amount of questions that have been practiced.
+     *
+     * @return the amount of questions in this schedule
+     */
+    public synchronized int size() {
+        return this.size;
+    }
+
+    /**
+     * Replaces every array with empty arrays of the specified capacity.
+     *
+     * @param capacity the amount of questions the arrays can hold
+     */
+    private void allocate(final int capacity) {
+        this.ids = new long[capacity];
+        this.dueMillis = new long[capacity];
+        this.intervalMinutes = new int[capacity];
+        this.easePermille = new short[capacity];
+        this.repetitions = new short[capacity];
+        this.heap = new int[capacity];
+        this.heapPositions = new int[capacity];
+        this.slotTable = new int[Integer.highestOneBit((int) ((long) capacity * PracticeSchedule.PERCENT /
+                                                              PracticeSchedule.MAX_LOAD_PERCENT)) << 1];
+
+        Arrays.fill(this.slotTable, PracticeSchedule.EMPTY);
+    }
+
+    /**
+     * Adds a new question to this schedule, due immediately with the initial ease.
+     *
+     * @param id the id of the question
+     * @return the slot of the question
+     */
+    private int addSlot(final long id) {
+        if (this.size == this.ids.length) {
+            this.grow();
+        }
+
+        final int slot;
+        slot = this.size++;
+
+        this.ids[slot] = id;
+        this.dueMillis[slot] = Long.MIN_VALUE;
+        this.intervalMinutes[slot] = 0;
+        this.easePermille[slot] = PracticeSchedule.INITIAL_EASE_PERMILLE;
+        this.repetitions[slot] = 0;
+        this.heap[slot] = slot;
+        this.heapPositions[slot] = slot;
+
+        this.insertSlot(id, slot);
+
+        return slot;
+    }
+
+    /**
+     * Grows every array by half, and rebuilds the slot table.
+     */
+    private void grow() {
+        final int capacity;
+        capacity = this.ids.length + (this.ids.length >> 1);
+
+        this.ids = Arrays.copyOf(this.ids, capacity);
+        this.dueMillis = Arrays.copyOf(this.dueMillis, capacity);
+        this.intervalMinutes = Arrays.copyOf(this.intervalMinutes, capacity);
+        this.easePermille = Arrays.copyOf(this.easePermille, capacity);
+        this.repetitions = Arrays.copyOf(this.repetitions, capacity);
+        this.heap = Arrays.copyOf(this.heap, capacity);
+        this.heapPositions = Arrays.copyOf(this.heapPositions, capacity);
+
+        if ((long) capacity * PracticeSchedule.PERCENT / PracticeSchedule.MAX_LOAD_PERCENT > this.slotTable.length) {
+            this.slotTable = new int[this.slotTable.length << 1];
+            Arrays.fill(this.slotTable, PracticeSchedule.EMPTY);
+
+            for (int slot = 0; slot < this.size; slot++) {
+                this.insertSlot(this.ids[slot], slot);
+            }
+        }
+    }
+
+    /**
+     * Finds the slot of the specified question in the slot table.
+     *
+     * @param id the id of the question
+     * @return the slot of the question, or {@link #EMPTY} if it is not in this schedule
+     */
+    private int findSlot(final long id) {
+        final int mask = this.slotTable.length - 1;
+
+        for (int index = PracticeSchedule.hash(id) & mask; ; index = (index + 1) & mask) {
+            final int slot;
+            slot = this.slotTable[index];
+
+            if (slot == PracticeSchedule.EMPTY || this.ids[slot] == id) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Inserts the specified question into the slot table, with linear probing.
+     *
+     * @param id   the id of the question
+     * @param slot the slot of the question
+     */
+    private void insertSlot(final long id, final int slot) {
+        final int mask = this.slotTable.length - 1;
+
+        int index = PracticeSchedule.hash(id) & mask;
+        while (this.slotTable[index] != PracticeSchedule.EMPTY) {
+            index = (index + 1) & mask;
+        }
+
+        this.slotTable[index] = slot;
+    }
+
+    /**
+     * Folds the specified id into the index bits of the slot table. Ids are already spread over every bit, so both
+     * halves are simply combined.
+     *
+     * @param id the id to hash
+     * @return the hash of the id
+     */
+    private static int hash(final long id) {
+        return (int) (id ^ (id >>> Integer.SIZE));
+    }
+
+    /**
+     * Moves the slot at the specified heap position up, until its parent is due no later than it.
+     *
+     * @param position the heap position to move up from
+     */
+    private void siftUp(final int position) {
+        int current = position;
+
+        while (current > 0) {
+            final int parent;
+            parent = (current - 1) / 2;
+
+            if (this.dueMillis[this.heap[parent]] <= this.dueMillis[this.heap[current]]) {
+                return;
+            }
+
+            this.swap(current, parent);
+            current = parent;
+        }
+    }
+
+    /**
+     * Moves the slot at the specified heap position down, until both its children are due no earlier than it.
+     *
+     * @param position the heap position to move down from
+     */
+    private void siftDown(final int position) {
+        int current = position;
+
+        while (true) {
+            final int left;
+            final int right;
+
+            left = 2 * current + 1;
+            right = left + 1;
+
+            int earliest = current;
+            if (left < this.size && this.dueMillis[this.heap[left]] < this.dueMillis[this.heap[earliest]]) {
+                earliest = left;
+            }
+
+            if (right < this.size && this.dueMillis[this.heap[right]] < this.dueMillis[this.heap[earliest]]) {
+                earliest = right;
+            }
+
+            if (earliest == current) {
+                return;
+            }
+
+            this.swap(current, earliest);
+            current = earliest;
+        }
+    }
+
+    /**
+     * Swaps the slots at the specified heap positions, keeping their recorded positions up to date.
+     *
+     * @param first  the first heap position
+     * @param second the second heap position
+     */
+    private void swap(final int first, final int second) {
+        final int firstSlot = this.heap[first];
+
+        this.heap[first] = this.heap[second];
+        this.heap[second] = firstSlot;
+
+        this.heapPositions[this.heap[first]] = first;
+        this.heapPositions[this.heap[second]] = second;
+    }
+
+}
@@ -0,0 +1,205 @@
+package ca.bcit.comp2522.lab09.practice;
+
+import ca.bcit.comp2522.lab09.Quiz;
+import ca.bcit.comp2522.lab09.bank.QuestionBank;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Represents the practice schedules of every player, which can be saved to and restored from a compact snapshot.
+ * <p>
+ * Each player has their own {@link PracticeSchedule}, so players never contend with each other when recording
+ * their answers.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class PracticeScheduler {
+
+    private static final int MAGIC = 0x51505243;
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = Integer.BYTES + Integer.BYTES + Integer.BYTES;
+    private static final int MIN_PLAYER_BYTES = Short.BYTES + Integer.BYTES;
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final Map<String, PracticeSchedule> schedules;
+
+    /**
+     * Creates a new scheduler without any players.
+     */
+    public PracticeScheduler() {
+        this.schedules = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Loads the scheduler saved in the specified snapshot, or creates a new scheduler without any players if the
+     * snapshot does not exist yet.
+     * <p>
+     * A snapshot of the first version referred to questions by their ordinal, which may have changed since, so it
+     * cannot be trusted and is discarded in the same way. So is a snapshot that is not a practice snapshot at all, or
+     * that is cut off or damaged: every count read back is checked against the bytes that remain, and the next save
+     * replaces the snapshot.
+     *
+     * @param file the snapshot to load
+     * @return the loaded scheduler
+     * @throws IOException if the snapshot exists, but cannot be read
+     */
+    public static PracticeScheduler load(final Path file) throws IOException {
+        if (Files.notExists(file)) {
+            return new PracticeScheduler();
+        }
+
+        final long fileBytes;
+        fileBytes = Files.size(file);
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            final PracticeScheduler scheduler;
+            scheduler = PracticeScheduler.readFrom(in, fileBytes);
+
+            return scheduler == null ? new PracticeScheduler() : scheduler;
+        } catch (EOFException | UTFDataFormatException _) {
+            return new PracticeScheduler();
+        }
+    }
+
+    /**
+     * Reads the schedule of every player from the specified snapshot.
+     *
+     * @param in        the stream of the snapshot
+     * @param fileBytes the size of the snapshot
+     * @return the read scheduler, or null if the snapshot is not a practice snapshot of the current version, or is
+     *         damaged
+     * @throws IOException if the snapshot cannot be read, or is cut off
+     */
+    private static PracticeScheduler readFrom(final DataInputStream in, final long fileBytes) throws IOException {
+        if (fileBytes < PracticeScheduler.HEADER_BYTES ||
+            in.readInt() != PracticeScheduler.MAGIC ||
+            in.readInt() != PracticeScheduler.VERSION) {
+            return null;
+        }
+
+        final PracticeScheduler scheduler;
+        final int playerCount;
+
+        scheduler = new PracticeScheduler();
+        playerCount = in.readInt();
+
+        long remainingBytes = fileBytes - PracticeScheduler.HEADER_BYTES;
+
+        if (playerCount < 0 || playerCount > remainingBytes / PracticeScheduler.MIN_PLAYER_BYTES) {
+            return null;
+        }
+
+        for (int i = 0; i < playerCount; i++) {
+            final String player;
+            final PracticeSchedule schedule;
+
+            player = in.readUTF();
+
+            // The modified UTF-8 of the stream is never shorter than standard UTF-8, so this never undercounts what
+            // remains.
+            remainingBytes -= Short.BYTES + player.getBytes(StandardCharsets.UTF_8).length;
+            schedule = PracticeSchedule.readFrom(in, remainingBytes);
+
+            if (schedule == null || scheduler.schedules.putIfAbsent(player, schedule) != null) {
+                return null;
+            }
+
+            remainingBytes -= PracticeSchedule.bytesFor(schedule.size());
+        }
+
+        return scheduler;
+    }
+
+    /**
+     * Saves the schedule of every player to the specified snapshot.
+     * <p>
+     * The snapshot is written next to the file first and then moved over it, so a crash while saving never leaves a
+     * partially written snapshot behind.
+     *
+     * @param file the snapshot to save to
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void save(final Path file) throws IOException {
+        final Path temporary;
+        final Map<String, PracticeSchedule> saved;
+
+        temporary = file.resolveSibling(file.getFileName() + PracticeScheduler.TEMPORARY_SUFFIX);
+        saved = Map.copyOf(this.schedules);
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(PracticeScheduler.MAGIC);
+            out.writeInt(PracticeScheduler.VERSION);
+            out.writeInt(saved.size());
+
+            for (final Map.Entry<String, PracticeSchedule> entry : saved.entrySet()) {
+                out.writeUTF(entry.getKey());
+                entry.getValue().writeTo(out);
+            }
+        }
+
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Retrieves the schedule of the specified player, creating an empty one if they have not practiced yet.
+     *
+     * @param player the name of the player
+     * @return the schedule of the player
+     */
+    public PracticeSchedule getSchedule(final String player) {
+        PracticeScheduler.validatePlayer(player);
+
+        return this.schedules.computeIfAbsent(player, (_) -> new PracticeSchedule());
+    }
+
+    /**
+     * Records the result of every question on the specified played quiz to the schedule of the specified player.
+     * <p>
+     * Unanswered questions count as answered incorrectly, and questions that are not in the bank are ignored.
+     *
+     * @param player the name of the player
+     * @param bank   the bank the questions of the quiz were taken from
+     * @param quiz   the played quiz
+     */
+    public void recordQuiz(final String player, final QuestionBank bank, final Quiz quiz) {
+        final PracticeSchedule schedule;
+        final long nowMillis;
+
+        schedule = this.getSchedule(player);
+        nowMillis = System.currentTimeMillis();
+
+        quiz.forEachQuestion((question) -> {
+            final int ordinal;
+            ordinal = bank.ordinalOf(question);
+
+            if (ordinal >= 0) {
+                schedule.record(bank.getId(ordinal), quiz.getRecordedResultFor(question), nowMillis);
+            }
+        });
+    }
+
+    /**
+     * Validates the given player name to ensure it is within limits.
+     *
+     * @param player the player name to validate
+     */
+    private static void validatePlayer(final String player) {
+        if (player == null || player.isBlank()) {
+            throw new IllegalArgumentException("A player name cannot be null or blank.");
+        }
+    }
+
+}
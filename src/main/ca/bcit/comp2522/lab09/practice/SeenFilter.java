@@ -0,0 +1,295 @@
+package ca.bcit.comp2522.lab09.practice;
+
+import ca.bcit.comp2522.lab09.bank.QuestionBank;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Represents a Bloom filter of the questions a single player has already seen, which fits in a fixed amount of
+ * memory regardless of how many questions they have seen.
+ * <p>
+ * The filter may claim that an unseen question was seen, which only means that it is skipped for a while, but it
+ * never claims that a seen question was not seen. It is sized from the size of the question bank for a
+ * {@value #TARGET_FALSE_POSITIVE_PERCENT}% false positive rate, unless that would exceed its memory budget, in which
+ * case it uses the entire budget at a higher false positive rate.
+ * <p>
+ * Questions are identified by their {@link QuestionBank#getId(int) id}, rather than their ordinal, so a filter stays
+ * correct when questions are added to or removed from the questions file.
+ * <p>
+ * The state of the filter, including its size, is stored in a single buffer, so that it can be kept in memory or
+ * mapped straight from a file by a {@link SeenStore}.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class SeenFilter {
+
+    /** This is the size of the state kept in front of the bits of a filter, in bytes. */
+    static final int HEADER_BYTES = 4 * Integer.BYTES;
+
+    private static final double TARGET_FALSE_POSITIVE_PERCENT = 1.0;
+    private static final double PERCENT = 100.0;
+    private static final int MAX_HASH_COUNT = 16;
+    private static final int SAMPLE_ATTEMPTS_PER_QUESTION = 8;
+    private static final int GROWTH_FACTOR = 2;
+
+    private static final int BIT_COUNT_OFFSET = 0;
+    private static final int HASH_COUNT_OFFSET = Integer.BYTES;
+    private static final int SIZED_FOR_OFFSET = 2 * Integer.BYTES;
+    private static final int ADDED_COUNT_OFFSET = 3 * Integer.BYTES;
+
+    private final ByteBuffer state;
+    private final int maxBits;
+
+    /**
+     * Creates a filter over the specified state. The state is reset to an empty filter if it has never been sized.
+     *
+     * @param state    the state of the filter, starting with its header and followed by its bits
+     * @param bankSize the size of the question bank the filter is used for
+     */
+    SeenFilter(final ByteBuffer state, final int bankSize) {
+        SeenFilter.validateState(state);
+
+        this.state = state;
+        this.maxBits = (state.capacity() - SeenFilter.HEADER_BYTES) / Long.BYTES * Long.SIZE;
+
+        this.ensureSizedFor(bankSize);
+    }
+
+    /**
+     * Creates a new, empty filter that is only kept in memory.
+     *
+     * @param bankSize    the size of the question bank the filter is used for
+     * @param budgetBytes the maximum size of the bits of the filter
+     * @return the created filter
+     */
+    public static SeenFilter create(final int bankSize, final int budgetBytes) {
+        return new SeenFilter(ByteBuffer.allocate(SeenFilter.HEADER_BYTES + budgetBytes), bankSize);
+    }
+
+    /**
+     * Validates the given state to ensure it can hold a filter.
+     *
+     * @param state the state to validate
+     */
+    private static void validateState(final ByteBuffer state) {
+        if (state.capacity() < SeenFilter.HEADER_BYTES + Long.BYTES) {
+            throw new IllegalArgumentException("A seen filter needs room for at least one word of bits.");
+        }
+    }
+
+    /**
+     * Determines the amount of bits a filter needs to hold the specified amount of questions at the target false
+     * positive rate.
+     *
+     * @param questionCount the amount of questions
+     * @return the optimal amount of bits
+     */
+    private static long optimalBits(final int questionCount) {
+        final double ln2 = Math.log(2);
+
+        return (long) Math.ceil(-Math.max(1, questionCount) *
+                                Math.log(SeenFilter.TARGET_FALSE_POSITIVE_PERCENT / SeenFilter.PERCENT) / (ln2 * ln2));
+    }
+
+    /**
+     * Resizes and clears this filter if the bank it was sized for has more than doubled since, so that its false
+     * positive rate stays bounded as the bank grows.
+     *
+     * @param bankSize the current size of the question bank
+     */
+    public synchronized void ensureSizedFor(final int bankSize) {
+        final int sizedFor;
+        sizedFor = this.state.getInt(SeenFilter.SIZED_FOR_OFFSET);
+
+        if (this.isSized() && bankSize <= (long) sizedFor * SeenFilter.GROWTH_FACTOR) {
+            return;
+        }
+
+        final long bits;
+        final int hashCount;
+
+        bits = Math.min(this.maxBits, Math.ceilDiv(SeenFilter.optimalBits(bankSize), Long.SIZE) * Long.SIZE);
+        hashCount = Math.clamp(Math.round((double) bits / Math.max(1, bankSize) * Math.log(2)), 1,
+                               SeenFilter.MAX_HASH_COUNT);
+
+        this.state.putInt(SeenFilter.BIT_COUNT_OFFSET, (int) bits);
+        this.state.putInt(SeenFilter.HASH_COUNT_OFFSET, hashCount);
+        this.state.putInt(SeenFilter.SIZED_FOR_OFFSET, Math.max(1, bankSize));
+        this.clear();
+    }
+
+    /**
+     * Determines whether the stored size of this filter is one it could have been sized to, so a slot that was never
+     * sized, or was damaged, is sized again rather than read out of bounds.
+     *
+     * @return whether this filter is sized
+     */
+    private boolean isSized() {
+        final int bitCount;
+        final int hashCount;
+
+        bitCount = this.getBitCount();
+        hashCount = this.getHashCount();
+
+        return bitCount > 0 && bitCount <= this.maxBits && bitCount % Long.SIZE == 0 &&
+               hashCount >= 1 && hashCount <= SeenFilter.MAX_HASH_COUNT;
+    }
+
+    /**
+     * Records that the specified question was seen.
+     * <p>
+     * Ids are already spread over every bit, so both halves of the id are used as independent hashes.
+     *
+     * @param id the id of the seen question
+     */
+    public synchronized void add(final long id) {
+        final long hash;
+        final int bitCount;
+
+        hash = id;
+        bitCount = this.getBitCount();
+
+        boolean changed = false;
+
+        for (int i = 0; i < this.getHashCount(); i++) {
+            final int bit;
+            final int offset;
+            final long word;
+
+            bit = Math.floorMod((int) hash + i * ((int) (hash >>> Integer.SIZE) | 1), bitCount);
+            offset = SeenFilter.HEADER_BYTES + (bit / Long.SIZE) * Long.BYTES;
+            word = this.state.getLong(offset);
+
+            changed |= (word & (1L << bit)) == 0;
+            this.state.putLong(offset, word | (1L << bit));
+        }
+
+        if (changed) {
+            this.state.putInt(SeenFilter.ADDED_COUNT_OFFSET, this.getAddedCount() + 1);
+        }
+    }
+
+    /**
+     * Determines whether the specified question might have been seen.
+     *
+     * @param id the id of the question
+     * @return false if the question was definitely never seen, true if it probably was
+     */
+    public synchronized boolean mightContain(final long id) {
+        final long hash;
+        final int bitCount;
+
+        hash = id;
+        bitCount = this.getBitCount();
+
+        for (int i = 0; i < this.getHashCount(); i++) {
+            final int bit;
+            bit = Math.floorMod((int) hash + i * ((int) (hash >>> Integer.SIZE) | 1), bitCount);
+
+            if ((this.state.getLong(SeenFilter.HEADER_BYTES + (bit / Long.SIZE) * Long.BYTES) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Forgets every seen question, keeping the current size.
+     */
+    public synchronized void clear() {
+        for (int offset = 0; offset < this.getBitCount() / Byte.SIZE; offset += Long.BYTES) {
+            this.state.putLong(SeenFilter.HEADER_BYTES + offset, 0);
+        }
+
+        this.state.putInt(SeenFilter.ADDED_COUNT_OFFSET, 0);
+    }
+
+    /**
+     * Randomly selects distinct questions of the bank that were not seen yet, and records them as seen.
+     * <p>
+     * Once the player has seen about every question of the bank, this filter is cleared and a new cycle through the
+     * bank starts, so a quiz can always be filled as long as the bank has enough questions.
+     *
+     * @param bank   the question bank to select from
+     * @param count  the amount of questions to select, clamped to the size of the bank
+     * @param random the source of randomness for the selection
+     * @return the ordinals of the selected questions in the bank, in a random order
+     */
+    public synchronized int[] sampleUnseen(final QuestionBank bank, final int count, final Random random) {
+        final int bankSize;
+        bankSize = bank.size();
+
+        this.ensureSizedFor(bankSize);
+
+        final int sampleSize;
+        final int maxDraws;
+        final Set<Integer> sample;
+
+        sampleSize = Math.min(count, bankSize);
+        maxDraws = sampleSize * SeenFilter.SAMPLE_ATTEMPTS_PER_QUESTION;
+        sample = new LinkedHashSet<>();
+
+        for (int cycle = 0; cycle < 2 && sample.size() < sampleSize; cycle++) {
+            if (cycle > 0) {
+                this.clear();
+                sample.forEach((ordinal) -> this.add(bank.getId(ordinal)));
+            }
+
+            for (int draw = 0; draw < maxDraws && sample.size() < sampleSize; draw++) {
+                final int ordinal;
+                final long id;
+
+                ordinal = random.nextInt(bankSize);
+                id = bank.getId(ordinal);
+
+                if (!sample.contains(ordinal) && !this.mightContain(id)) {
+                    this.add(id);
+                    sample.add(ordinal);
+                }
+            }
+        }
+
+        // A tiny bank can leave every remaining question looking seen, so the rest is filled in order.
+        for (int ordinal = 0; ordinal < bankSize && sample.size() < sampleSize; ordinal++) {
+            if (sample.add(ordinal)) {
+                this.add(bank.getId(ordinal));
+            }
+        }
+
+        return sample.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Returns the amount of bits this filter currently uses.
+     *
+     * @return the bit count
+     */
+    public synchronized int getBitCount() {
+        return this.state.getInt(SeenFilter.BIT_COUNT_OFFSET);
+    }
+
+    /**
+     * Returns the amount of bits set for every question.
+     *
+     * @return the hash count
+     */
+    public synchronized int getHashCount() {
+        return this.state.getInt(SeenFilter.HASH_COUNT_OFFSET);
+    }
+
+    /**
+     * Returns the amount of distinct questions recorded as seen since this filter was last cleared. A question that
+     * collided with earlier questions on every bit is not counted.
+     *
+     * @return the approximate seen count
+     */
+    public synchronized int getAddedCount() {
+        return this.state.getInt(SeenFilter.ADDED_COUNT_OFFSET);
+    }
+
+}
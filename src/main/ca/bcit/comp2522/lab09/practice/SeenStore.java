@@ -0,0 +1,304 @@
+package ca.bcit.comp2522.lab09.practice;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Represents a file of the {@link SeenFilter} of every player, where each player owns a fixed-size slot.
+ * <p>
+ * The file is mapped into memory in segments of {@value #SLOTS_PER_SEGMENT} slots, and each filter works directly on
+ * its slot of the mapping. This means that a filter is persisted as it is changed, without ever being serialized,
+ * and only the slots of the players that actually play are ever read from disk.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class SeenStore implements Closeable {
+
+    /** This is the default amount of bytes each player may use for their seen questions. */
+    public static final int DEFAULT_BUDGET_BYTES = 4096;
+
+    private static final int MAGIC = 0x51534545;
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 4 * Integer.BYTES;
+    private static final int SLOT_BYTES_OFFSET = 2 * Integer.BYTES;
+    private static final int NAME_BYTES = 64;
+    private static final int MAX_NAME_LENGTH = SeenStore.NAME_BYTES - Short.BYTES;
+    private static final int SLOTS_PER_SEGMENT = 1024;
+    private static final int MAX_BUDGET_BYTES = 1 << 20;
+
+    private final FileChannel channel;
+    private final int slotBytes;
+    private final List<MappedByteBuffer> segments;
+    private final Map<String, Integer> slots;
+    private final Map<String, SeenFilter> filters;
+
+    private int nextSlot;
+
+    /**
+     * Creates a store over the specified open file, finding the slot of every player in it.
+     *
+     * @param channel   the channel to the file of the store
+     * @param slotBytes the size of every slot in the file
+     * @throws IOException if the file cannot be read
+     */
+    private SeenStore(final FileChannel channel, final int slotBytes) throws IOException {
+        this.channel = channel;
+        this.slotBytes = slotBytes;
+        this.segments = new ArrayList<>();
+        this.slots = new ConcurrentHashMap<>();
+        this.filters = new ConcurrentHashMap<>();
+
+        final long slotCount;
+        slotCount = (channel.size() - SeenStore.HEADER_BYTES) / slotBytes;
+
+        while (this.nextSlot < slotCount) {
+            final ByteBuffer slot;
+            final int nameLength;
+
+            slot = this.mapSlot(this.nextSlot);
+            nameLength = slot.getShort(0);
+
+            // A damaged name ends the players like an empty slot does, so the slots from there on are claimed again.
+            if (nameLength <= 0 || nameLength > SeenStore.MAX_NAME_LENGTH) {
+                break;
+            }
+
+            this.slots.put(new String(SeenStore.readName(slot, nameLength), StandardCharsets.UTF_8), this.nextSlot);
+            this.nextSlot++;
+        }
+    }
+
+    /**
+     * Opens the store in the specified file, creating it if it does not exist yet.
+     * <p>
+     * The budget only applies to a new store, an existing store keeps the budget it was created with. A store of the
+     * first version hashed questions by their ordinal, which may have changed since, so it is started over as a new
+     * store. So is a file that is not a seen store of the current version, or whose header is damaged, rather than
+     * keeping the player from playing.
+     *
+     * @param file        the file of the store
+     * @param budgetBytes the amount of bytes each player may use for their seen questions
+     * @return the opened store
+     * @throws IOException if the file cannot be opened, read, or created
+     */
+    public static SeenStore open(final Path file, final int budgetBytes) throws IOException {
+        SeenStore.validateBudgetBytes(budgetBytes);
+
+        final FileChannel channel;
+        final ByteBuffer header;
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                   StandardOpenOption.WRITE);
+        header = ByteBuffer.allocate(SeenStore.HEADER_BYTES);
+
+        try {
+            if (channel.size() >= SeenStore.HEADER_BYTES) {
+                channel.read(header, 0);
+            }
+
+            if (!SeenStore.isUsable(header)) {
+                channel.truncate(0);
+                header.clear()
+                      .putInt(SeenStore.MAGIC)
+                      .putInt(SeenStore.VERSION)
+                      .putInt(SeenStore.NAME_BYTES + SeenFilter.HEADER_BYTES + budgetBytes)
+                      .putInt(0)
+                      .flip();
+
+                channel.write(header, 0);
+            }
+
+            return new SeenStore(channel, header.getInt(SeenStore.SLOT_BYTES_OFFSET));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Determines whether the specified header is the header of a seen store of the current version, with a slot size
+     * that a store could have been created with.
+     *
+     * @param header the header read from the file, which is all zeros if the file was too short to hold one
+     * @return whether the store can be opened as it is
+     */
+    private static boolean isUsable(final ByteBuffer header) {
+        final int budgetBytes;
+        budgetBytes = header.getInt(SeenStore.SLOT_BYTES_OFFSET) - SeenStore.NAME_BYTES - SeenFilter.HEADER_BYTES;
+
+        return header.getInt(0) == SeenStore.MAGIC &&
+               header.getInt(Integer.BYTES) == SeenStore.VERSION &&
+               budgetBytes >= Long.BYTES && budgetBytes <= SeenStore.MAX_BUDGET_BYTES &&
+               budgetBytes % Long.BYTES == 0;
+    }
+
+    /**
+     * Validates the given budget to ensure it is within limits.
+     *
+     * @param budgetBytes the budget to validate
+     */
+    private static void validateBudgetBytes(final int budgetBytes) {
+        if (budgetBytes < Long.BYTES || budgetBytes > SeenStore.MAX_BUDGET_BYTES || budgetBytes % Long.BYTES != 0) {
+            throw new IllegalArgumentException("The budget of a seen filter must be a positive multiple of 8 bytes, " +
+                                               "up to " + SeenStore.MAX_BUDGET_BYTES + " bytes.");
+        }
+    }
+
+    /**
+     * Validates the given player name to ensure it is within limits.
+     *
+     * @param player the player name to validate
+     */
+    private static void validatePlayer(final String player) {
+        if (player == null || player.isBlank()) {
+            throw new IllegalArgumentException("A player name cannot be null or blank.");
+        }
+
+        if (player.getBytes(StandardCharsets.UTF_8).length > SeenStore.MAX_NAME_LENGTH) {
+            throw new IllegalArgumentException("A player name cannot be longer than " + SeenStore.MAX_NAME_LENGTH +
+                                               " bytes.");
+        }
+    }
+
+    /**
+     * Retrieves the seen filter of the specified player, giving them a new slot if they have none yet.
+     *
+     * @param player   the name of the player
+     * @param bankSize the size of the question bank the filter is used for
+     * @return the seen filter of the player
+     * @throws IOException if the slot of the player cannot be mapped
+     */
+    public SeenFilter getFilter(final String player, final int bankSize) throws IOException {
+        SeenStore.validatePlayer(player);
+
+        SeenFilter filter = this.filters.get(player);
+
+        if (filter == null) {
+            synchronized (this) {
+                filter = this.filters.get(player);
+
+                if (filter == null) {
+                    filter = this.loadFilter(player, bankSize);
+                    this.filters.put(player, filter);
+                }
+            }
+        }
+
+        filter.ensureSizedFor(bankSize);
+
+        return filter;
+    }
+
+    /**
+     * Creates the filter over the slot of the specified player, claiming the next free slot if they have none yet.
+     *
+     * @param player   the name of the player
+     * @param bankSize the size of the question bank the filter is used for
+     * @return the seen filter of the player
+     * @throws IOException if the slot of the player cannot be mapped
+     */
+    private SeenFilter loadFilter(final String player, final int bankSize) throws IOException {
+        final Integer existingSlot;
+        existingSlot = this.slots.get(player);
+
+        if (existingSlot != null) {
+            return new SeenFilter(this.mapSlot(existingSlot).slice(SeenStore.NAME_BYTES, this.getStateBytes()),
+                                  bankSize);
+        }
+
+        final ByteBuffer slot;
+        final byte[] name;
+
+        slot = this.mapSlot(this.nextSlot);
+        name = player.getBytes(StandardCharsets.UTF_8);
+
+        slot.put(Short.BYTES, name);
+        slot.putShort(0, (short) name.length);
+
+        this.slots.put(player, this.nextSlot);
+        this.nextSlot++;
+
+        return new SeenFilter(slot.slice(SeenStore.NAME_BYTES, this.getStateBytes()), bankSize);
+    }
+
+    /**
+     * Reads the name stored in the specified slot.
+     *
+     * @param slot       the slot
+     * @param nameLength the length of the name, in bytes
+     * @return the bytes of the name
+     */
+    private static byte[] readName(final ByteBuffer slot, final int nameLength) {
+        final byte[] name;
+        name = new byte[nameLength];
+
+        slot.get(Short.BYTES, name);
+
+        return name;
+    }
+
+    /**
+     * Maps the segment holding the specified slot if it is not mapped yet, and returns the slot within it.
+     * <p>
+     * Mapping a segment past the end of the file grows the file to fit it.
+     *
+     * @param slot the index of the slot
+     * @return the contents of the slot
+     * @throws IOException if the segment cannot be mapped
+     */
+    private ByteBuffer mapSlot(final int slot) throws IOException {
+        final int segment;
+        segment = slot / SeenStore.SLOTS_PER_SEGMENT;
+
+        while (this.segments.size() <= segment) {
+            final long segmentBytes;
+            segmentBytes = (long) SeenStore.SLOTS_PER_SEGMENT * this.slotBytes;
+
+            this.segments.add(this.channel.map(FileChannel.MapMode.READ_WRITE,
+                                               SeenStore.HEADER_BYTES + this.segments.size() * segmentBytes,
+                                               segmentBytes));
+        }
+
+        return this.segments.get(segment).slice((slot % SeenStore.SLOTS_PER_SEGMENT) * this.slotBytes,
+                                                this.slotBytes);
+    }
+
+    /**
+     * Determines the size of the state of a filter within a slot.
+     *
+     * @return the size of the state, in bytes
+     */
+    private int getStateBytes() {
+        return this.slotBytes - SeenStore.NAME_BYTES;
+    }
+
+    /**
+     * Determines the amount of players with a slot in this store.
+     *
+     * @return the amount of players
+     */
+    public synchronized int getPlayerCount() {
+        return this.nextSlot;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (final MappedByteBuffer segment : this.segments) {
+            segment.force();
+        }
+
+        this.channel.close();
+    }
+
+}
@@ -0,0 +1,51 @@
+package ca.bcit.comp2522.lab09.report;
+
+/**
+ * Represents how text from a quiz is written into a report, so that it cannot break the format of the report.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+@FunctionalInterface
+public interface Escaper {
+
+    /** This writes text into HTML, as element content or a quoted attribute value. */
+    Escaper HTML = (out, text) -> {
+        for (int i = 0; i < text.length(); i++) {
+            final char character;
+            character = text.charAt(i);
+
+            switch (character) {
+                case '&' -> out.append("&amp;");
+                case '<' -> out.append("&lt;");
+                case '>' -> out.append("&gt;");
+                case '"' -> out.append("&quot;");
+                case '\'' -> out.append("&#39;");
+                default -> out.append(character);
+            }
+        }
+    };
+
+    /** This writes text into a quoted CSV field, by doubling every quote. */
+    Escaper CSV = (out, text) -> {
+        for (int i = 0; i < text.length(); i++) {
+            final char character;
+            character = text.charAt(i);
+
+            if (character == '"') {
+                out.append('"');
+            }
+
+            out.append(character);
+        }
+    };
+
+    /**
+     * Appends the specified text to the report, escaped.
+     *
+     * @param out  the report being written
+     * @param text the text to append
+     */
+    void append(StringBuilder out, String text);
+
+}
@@ -0,0 +1,70 @@
+package ca.bcit.comp2522.lab09.report;
+
+import ca.bcit.comp2522.lab09.Quiz;
+
+/**
+ * Represents the finished quiz of a single player, which is reported on.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class PlayerResult {
+
+    private final String player;
+    private final Quiz quiz;
+
+    /**
+     * Creates a new result of the specified player.
+     *
+     * @param player the name of the player
+     * @param quiz   the quiz the player finished
+     */
+    public PlayerResult(final String player, final Quiz quiz) {
+        PlayerResult.validatePlayer(player);
+        PlayerResult.validateQuiz(quiz);
+
+        this.player = player;
+        this.quiz = quiz;
+    }
+
+    /**
+     * Validates that the given player name is usable.
+     *
+     * @param player the player name to check
+     */
+    private static void validatePlayer(final String player) {
+        if (player == null || player.isBlank()) {
+            throw new IllegalArgumentException("A result must have a player.");
+        }
+    }
+
+    /**
+     * Validates that the given quiz exists.
+     *
+     * @param quiz the quiz to check
+     */
+    private static void validateQuiz(final Quiz quiz) {
+        if (quiz == null) {
+            throw new IllegalArgumentException("A result must have a quiz.");
+        }
+    }
+
+    /**
+     * Returns the name of the player.
+     *
+     * @return the player name
+     */
+    public String getPlayer() {
+        return this.player;
+    }
+
+    /**
+     * Returns the quiz the player finished.
+     *
+     * @return the quiz
+     */
+    public Quiz getQuiz() {
+        return this.quiz;
+    }
+
+}
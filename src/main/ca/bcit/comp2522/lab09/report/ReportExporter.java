@@ -0,0 +1,474 @@
+package ca.bcit.comp2522.lab09.report;
+
+import ca.bcit.comp2522.lab09.Quiz;
+import ca.bcit.comp2522.lab09.QuizQuestion;
+import ca.bcit.comp2522.lab09.bank.QuestionBank;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Represents a batch exporter that streams the reports of any amount of players into a single file.
+ * <p>
+ * Results are taken from the iterator in batches, and the reports of a batch are rendered in parallel into builders
+ * and direct byte buffers that are reused for every batch. While one batch is written to the channel, the next one is
+ * already being rendered, so only two batches of results are ever held in memory, however many players are exported.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class ReportExporter {
+
+    private static final int BATCH_SIZE = 4096;
+    private static final int LEAF_SIZE = 256;
+    private static final int LEAVES_PER_BATCH = ReportExporter.BATCH_SIZE / ReportExporter.LEAF_SIZE;
+    private static final int INITIAL_LEAF_CHARS = 1 << 16;
+    private static final int INITIAL_LEAF_BYTES = 1 << 16;
+
+    private static final int SAMPLE_QUESTIONS = 10;
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final ReportTemplate template;
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a new exporter for the specified template that renders on the common fork/join pool.
+     *
+     * @param template the template of every report
+     */
+    public ReportExporter(final ReportTemplate template) {
+        this(template, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a new exporter for the specified template that renders on the specified fork/join pool.
+     *
+     * @param template the template of every report
+     * @param pool     the pool to render on
+     */
+    public ReportExporter(final ReportTemplate template, final ForkJoinPool pool) {
+        ReportExporter.validateTemplate(template);
+
+        this.template = template;
+        this.pool = pool;
+    }
+
+    /**
+     * Validates that the given template exists.
+     *
+     * @param template the template to check
+     */
+    private static void validateTemplate(final ReportTemplate template) {
+        if (template == null) {
+            throw new IllegalArgumentException("An exporter must have a report template.");
+        }
+    }
+
+    /**
+     * Exports the reports of a generated tournament, to measure how long exporting takes.
+     * <p>
+     * Every player plays a quiz from the questions file, answering each question either correctly, incorrectly, or
+     * not at all. The players are generated as they are exported, and both a CSV and an HTML report are written.
+     *
+     * @param args the questions file, the amount of players, and the output directory
+     * @throws IOException if the questions file cannot be read, or a report cannot be written
+     */
+    public static void main(final String[] args) throws IOException {
+        final int requiredArgs = 3;
+
+        if (args.length < requiredArgs) {
+            System.err.println("Usage: ReportExporter <questions file> <players> <output directory>");
+            return;
+        }
+
+        final QuestionBank bank;
+        final int players;
+        final Path directory;
+
+        bank = QuestionBank.load(Path.of(args[0]));
+        players = Integer.parseInt(args[1]);
+        directory = Path.of(args[2]);
+
+        Files.createDirectories(directory);
+
+        ReportExporter.exportSample(ReportTemplate.CSV, bank, players, directory.resolve("report.csv"));
+        ReportExporter.exportSample(ReportTemplate.HTML, bank, players, directory.resolve("report.html"));
+    }
+
+    /**
+     * Exports the reports of a generated tournament with the specified template, printing how long it took.
+     *
+     * @param template the template of every report
+     * @param bank     the bank the quizzes are taken from
+     * @param players  the amount of players
+     * @param file     the file to export to
+     * @throws IOException if the file cannot be written
+     */
+    private static void exportSample(final ReportTemplate template, final QuestionBank bank, final int players,
+                                     final Path file) throws IOException {
+        final long startNanos;
+        final long exported;
+        final long elapsedNanos;
+
+        startNanos = System.nanoTime();
+        exported = new ReportExporter(template).export(ReportExporter.sampleResults(bank, players), file);
+        elapsedNanos = System.nanoTime() - startNanos;
+
+        System.out.printf("Exported %d report(s) to %s (%d bytes) in %.1fms.%n", exported, file, Files.size(file),
+                          elapsedNanos / ReportExporter.NANOS_PER_MILLI);
+    }
+
+    /**
+     * Creates an iterator that generates the specified amount of played quizzes as it is advanced.
+     *
+     * @param bank    the bank the quizzes are taken from
+     * @param players the amount of players
+     * @return the iterator over the generated results
+     */
+    private static Iterator<PlayerResult> sampleResults(final QuestionBank bank, final int players) {
+        return new Iterator<>() {
+            private int player;
+
+            @Override
+            public boolean hasNext() {
+                return this.player < players;
+            }
+
+            @Override
+            public PlayerResult next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                final Quiz quiz;
+                quiz = Quiz.fromBank(bank, ReportExporter.SAMPLE_QUESTIONS, this.player);
+
+                int asked = 0;
+                QuizQuestion question;
+                while ((question = quiz.getNextQuestion()) != null) {
+                    switch ((this.player + asked++) % 3) {
+                        case 0 -> quiz.answerQuestion(question, question.getBestAnswer());
+                        case 1 -> quiz.answerQuestion(question, "not " + question.getBestAnswer());
+                        default -> {
+                            // The question is left unanswered.
+                        }
+                    }
+                }
+
+                return new PlayerResult("Player " + this.player++, quiz);
+            }
+        };
+    }
+
+    /**
+     * Exports the report of every result to the specified file, which is replaced if it already exists.
+     *
+     * @param results the results to report, in the order they are written
+     * @param file    the file to export to
+     * @return the amount of exported reports
+     * @throws IOException if the file cannot be written
+     */
+    public long export(final Iterator<PlayerResult> results, final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            return this.export(results, channel);
+        }
+    }
+
+    /**
+     * Exports the report of every result to the specified channel, preceded by the header of the template and
+     * followed by its footer. The channel is left open.
+     *
+     * @param results the results to report, in the order they are written
+     * @param channel the channel to export to
+     * @return the amount of exported reports
+     * @throws IOException if the channel cannot be written to
+     */
+    public long export(final Iterator<PlayerResult> results, final WritableByteChannel channel) throws IOException {
+        Batch current;
+        Batch next;
+        ForkJoinTask<Void> rendering;
+        long exported = 0;
+
+        current = new Batch(this.template);
+        next = new Batch(this.template);
+
+        ReportExporter.writeFully(channel, ByteBuffer.wrap(this.template.getHeader().getBytes(StandardCharsets.UTF_8)));
+
+        rendering = this.startRendering(current, results);
+
+        try {
+            while (rendering != null) {
+                rendering.join();
+
+                // The next batch is rendered while the current one is being written.
+                rendering = this.startRendering(next, results);
+
+                current.writeTo(channel);
+                exported += current.size;
+                current.clear();
+
+                final Batch written;
+                written = current;
+                current = next;
+                next = written;
+            }
+        } finally {
+            if (rendering != null) {
+                rendering.quietlyJoin();
+            }
+        }
+
+        ReportExporter.writeFully(channel, ByteBuffer.wrap(this.template.getFooter().getBytes(StandardCharsets.UTF_8)));
+
+        return exported;
+    }
+
+    /**
+     * Fills the specified batch with the next results, and starts rendering it.
+     *
+     * @param batch   the empty batch to fill
+     * @param results the results to take from
+     * @return the rendering of the batch, or null if there were no results left
+     */
+    private ForkJoinTask<Void> startRendering(final Batch batch, final Iterator<PlayerResult> results) {
+        batch.fill(results);
+
+        if (batch.size == 0) {
+            return null;
+        }
+
+        return this.pool.submit(new RenderAction(batch, 0, batch.getLeafCount()));
+    }
+
+    /**
+     * Writes the entire buffer to the specified channel.
+     *
+     * @param channel the channel to write to
+     * @param buffer  the buffer to write
+     * @throws IOException if the channel cannot be written to
+     */
+    private static void writeFully(final WritableByteChannel channel, final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Represents a batch of results, and the reused buffers every group of results of the batch is rendered into.
+     */
+    private static final class Batch {
+
+        private final ReportTemplate template;
+        private final PlayerResult[] results;
+        private final StringBuilder[] texts;
+        private final CharsetEncoder[] encoders;
+        private final ByteBuffer[] bytes;
+
+        private int size;
+
+        /**
+         * Creates a new empty batch.
+         *
+         * @param template the template the results are rendered with
+         */
+        private Batch(final ReportTemplate template) {
+            this.template = template;
+            this.results = new PlayerResult[ReportExporter.BATCH_SIZE];
+            this.texts = new StringBuilder[ReportExporter.LEAVES_PER_BATCH];
+            this.encoders = new CharsetEncoder[ReportExporter.LEAVES_PER_BATCH];
+            this.bytes = new ByteBuffer[ReportExporter.LEAVES_PER_BATCH];
+
+            for (int leaf = 0; leaf < ReportExporter.LEAVES_PER_BATCH; leaf++) {
+                this.texts[leaf] = new StringBuilder(ReportExporter.INITIAL_LEAF_CHARS);
+                this.encoders[leaf] = StandardCharsets.UTF_8.newEncoder()
+                                                            .onMalformedInput(CodingErrorAction.REPLACE)
+                                                            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+                this.bytes[leaf] = ByteBuffer.allocateDirect(ReportExporter.INITIAL_LEAF_BYTES);
+            }
+        }
+
+        /**
+         * Fills this batch with as many of the next results as it can hold.
+         *
+         * @param results the results to take from
+         */
+        private void fill(final Iterator<PlayerResult> results) {
+            while (this.size < this.results.length && results.hasNext()) {
+                this.results[this.size++] = results.next();
+            }
+        }
+
+        /**
+         * Determines the amount of groups of results in this batch.
+         *
+         * @return the amount of groups
+         */
+        private int getLeafCount() {
+            return (this.size + ReportExporter.LEAF_SIZE - 1) / ReportExporter.LEAF_SIZE;
+        }
+
+        /**
+         * Renders the reports of the specified group of results, and encodes them into the bytes of the group.
+         *
+         * @param leaf the index of the group
+         */
+        private void render(final int leaf) {
+            final StringBuilder text;
+            final int from;
+            final int to;
+
+            text = this.texts[leaf];
+            from = leaf * ReportExporter.LEAF_SIZE;
+            to = Math.min(this.size, from + ReportExporter.LEAF_SIZE);
+
+            text.setLength(0);
+
+            for (int i = from; i < to; i++) {
+                this.template.render(text, this.results[i]);
+            }
+
+            // The rendered text is encoded straight from the builder, without copying it into a character array first.
+            this.encode(leaf, CharBuffer.wrap(text));
+        }
+
+        /**
+         * Encodes the specified characters into the bytes of the specified group, growing them when they are full.
+         *
+         * @param leaf       the index of the group
+         * @param characters the characters to encode
+         */
+        private void encode(final int leaf, final CharBuffer characters) {
+            final CharsetEncoder encoder;
+            encoder = this.encoders[leaf];
+
+            encoder.reset();
+            this.bytes[leaf].clear();
+
+            while (encoder.encode(characters, this.bytes[leaf], true).isOverflow()) {
+                this.grow(leaf);
+            }
+
+            while (encoder.flush(this.bytes[leaf]).isOverflow()) {
+                this.grow(leaf);
+            }
+
+            this.bytes[leaf].flip();
+        }
+
+        /**
+         * Doubles the capacity of the bytes of the specified group, keeping the bytes already written.
+         *
+         * @param leaf the index of the group
+         */
+        private void grow(final int leaf) {
+            final ByteBuffer grown;
+            grown = ByteBuffer.allocateDirect(this.bytes[leaf].capacity() * 2);
+
+            this.bytes[leaf].flip();
+            grown.put(this.bytes[leaf]);
+
+            this.bytes[leaf] = grown;
+        }
+
+        /**
+         * Writes the rendered reports of this batch to the specified channel, in order.
+         *
+         * @param channel the channel to write to
+         * @throws IOException if the channel cannot be written to
+         */
+        private void writeTo(final WritableByteChannel channel) throws IOException {
+            final int leafCount;
+            leafCount = this.getLeafCount();
+
+            if (channel instanceof GatheringByteChannel gathering) {
+                int first = 0;
+
+                while (first < leafCount) {
+                    gathering.write(this.bytes, first, leafCount - first);
+
+                    while (first < leafCount && !this.bytes[first].hasRemaining()) {
+                        first++;
+                    }
+                }
+
+                return;
+            }
+
+            for (int leaf = 0; leaf < leafCount; leaf++) {
+                ReportExporter.writeFully(channel, this.bytes[leaf]);
+            }
+        }
+
+        /**
+         * Empties this batch, so that the results it held can be reclaimed while the buffers are kept.
+         */
+        private void clear() {
+            Arrays.fill(this.results, 0, this.size, null);
+            this.size = 0;
+        }
+
+    }
+
+    /**
+     * Represents an action that renders the groups of results of a batch between two indexes, splitting the range
+     * in half until only a single group is left.
+     */
+    // Fork/join tasks are only serializable because ForkJoinTask is, and these are never serialized.
+    @SuppressWarnings("serial")
+    private static final class RenderAction extends RecursiveAction {
+
+        private final Batch batch;
+        private final int from;
+        private final int to;
+
+        /**
+         * Creates a new render action for the groups between the specified indexes.
+         *
+         * @param batch the batch to render
+         * @param from  the index of the first group to render, inclusive
+         * @param to    the index of the last group to render, exclusive
+         */
+        private RenderAction(final Batch batch, final int from, final int to) {
+            this.batch = batch;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= 1) {
+                if (this.to > this.from) {
+                    this.batch.render(this.from);
+                }
+
+                return;
+            }
+
+            final int middle;
+            middle = (this.from + this.to) >>> 1;
+
+            RecursiveAction.invokeAll(new RenderAction(this.batch, this.from, middle),
+                                      new RenderAction(this.batch, middle, this.to));
+        }
+
+    }
+
+}
@@ -0,0 +1,465 @@
+package ca.bcit.comp2522.lab09.report;
+
+import ca.bcit.comp2522.lab09.Quiz;
+import ca.bcit.comp2522.lab09.QuizQuestion;
+
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents a precompiled template of a per-player result report, holding the same information as the summary
+ * screen: the grade, how many questions were answered correctly, and every missed question with its best answer.
+ * <p>
+ * The body of a template is rendered once per player, and may contain the following tags:
+ * <ul>
+ *     <li>{@code {player}}, {@code {grade}}, {@code {correct}}, and {@code {total}} for the player and its quiz</li>
+ *     <li>{@code {#missed}...{/missed}}, which is repeated for every question that was not answered correctly</li>
+ *     <li>{@code {question}}, {@code {answer}}, and {@code {bestAnswer}}, only within {@code {#missed}}</li>
+ *     <li>{@code {?answer}...{/answer}}, which is only rendered when the missed question was answered at all</li>
+ * </ul>
+ * Templates are parsed once when compiled, so rendering only appends the literal text and the escaped values.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class ReportTemplate {
+
+    private static final int LITERAL = 0;
+    private static final int PLAYER = 1;
+    private static final int GRADE = 2;
+    private static final int CORRECT = 3;
+    private static final int TOTAL = 4;
+    private static final int QUESTION = 5;
+    private static final int ANSWER = 6;
+    private static final int BEST_ANSWER = 7;
+    private static final int MISSED = 8;
+    private static final int IF_ANSWER = 9;
+
+    private static final String[] FIELD_TAGS = {null, "player", "grade", "correct", "total", "question", "answer",
+                                                "bestAnswer"};
+    private static final String MISSED_TAG = "missed";
+    private static final String IF_ANSWER_TAG = "answer";
+
+    private static final char TAG_START = '{';
+    private static final char TAG_END = '}';
+    private static final char LOOP_MARKER = '#';
+    private static final char CONDITION_MARKER = '?';
+    private static final char CLOSE_MARKER = '/';
+
+    private static final int PERCENT_HUNDREDTHS = 10000;
+    private static final int HUNDREDTHS = 100;
+    private static final int TENTHS = 10;
+    private static final double HALF = 0.5;
+
+    /** This is a template that renders every player as a section of an HTML page, laid out like the summary screen. */
+    public static final ReportTemplate HTML = ReportTemplate.compile(
+            """
+            <!DOCTYPE html>
+            <html>
+            <head>
+            <meta charset="UTF-8">
+            <title>Quiz Results</title>
+            </head>
+            <body>
+            """,
+            """
+            <section class="report">
+            <h2>{player}</h2>
+            <p class="grade-text">{grade}</p>
+            <p class="question-count-text">{correct}/{total} Correctly Answered</p>
+            <pre class="missed-questions">Missed Questions:
+            {#missed}
+            Question: {question}{?answer}
+            Your Answer: {answer}{/answer}
+            Correct Answer: {bestAnswer}
+            {/missed}</pre>
+            </section>
+            """,
+            """
+            </body>
+            </html>
+            """,
+            Escaper.HTML);
+
+    /** This is a template that renders every player as a row of a CSV file, with every missed question in one field. */
+    public static final ReportTemplate CSV = ReportTemplate.compile(
+            "player,grade,correct,total,missed\n",
+            "\"{player}\",\"{grade}\",{correct},{total},\"{#missed}Question: {question}\n"
+            + "{?answer}Your Answer: {answer}\n{/answer}Correct Answer: {bestAnswer}\n{/missed}\"\n",
+            "",
+            Escaper.CSV);
+
+    private final String header;
+    private final Segment[] body;
+    private final String footer;
+    private final Escaper escaper;
+    private final char decimalSeparator;
+    private final char percentSign;
+
+    /**
+     * Creates a new compiled template.
+     *
+     * @param header  the text written once before every report
+     * @param body    the compiled body of a single report
+     * @param footer  the text written once after every report
+     * @param escaper how the values in the body are escaped
+     */
+    private ReportTemplate(final String header, final Segment[] body, final String footer, final Escaper escaper) {
+        final DecimalFormatSymbols symbols;
+        symbols = DecimalFormatSymbols.getInstance();
+
+        this.header = header;
+        this.body = body;
+        this.footer = footer;
+        this.escaper = escaper;
+        this.decimalSeparator = symbols.getDecimalSeparator();
+        this.percentSign = symbols.getPercent();
+    }
+
+    /**
+     * Compiles a template from the specified parts.
+     *
+     * @param header  the text written once before every report, which is not parsed
+     * @param body    the template of a single report
+     * @param footer  the text written once after every report, which is not parsed
+     * @param escaper how the values in the body are escaped
+     * @return the compiled template
+     */
+    public static ReportTemplate compile(final String header, final String body, final String footer,
+                                         final Escaper escaper) {
+        ReportTemplate.validatePart(header);
+        ReportTemplate.validatePart(body);
+        ReportTemplate.validatePart(footer);
+        ReportTemplate.validateEscaper(escaper);
+
+        final Parser parser;
+        final Segment[] segments;
+
+        parser = new Parser(body);
+        segments = parser.parse(null, false);
+
+        return new ReportTemplate(header, segments, footer, escaper);
+    }
+
+    /**
+     * Validates that the given part of a template exists.
+     *
+     * @param part the part to check
+     */
+    private static void validatePart(final String part) {
+        if (part == null) {
+            throw new IllegalArgumentException("Every part of a report template must exist.");
+        }
+    }
+
+    /**
+     * Validates that the given escaper exists.
+     *
+     * @param escaper the escaper to check
+     */
+    private static void validateEscaper(final Escaper escaper) {
+        if (escaper == null) {
+            throw new IllegalArgumentException("A report template must have an escaper.");
+        }
+    }
+
+    /**
+     * Returns the text written once before every report.
+     *
+     * @return the header
+     */
+    public String getHeader() {
+        return this.header;
+    }
+
+    /**
+     * Returns the text written once after every report.
+     *
+     * @return the footer
+     */
+    public String getFooter() {
+        return this.footer;
+    }
+
+    /**
+     * Renders the report of the specified result, appending it to the specified builder.
+     *
+     * @param out    the builder to append to
+     * @param result the result to report
+     */
+    void render(final StringBuilder out, final PlayerResult result) {
+        final Quiz quiz;
+        final int correct;
+
+        quiz = result.getQuiz();
+        correct = quiz.getCorrectAnsweredCount();
+
+        this.render(out, this.body, result, correct, null, null);
+    }
+
+    /**
+     * Renders the specified segments.
+     *
+     * @param out      the builder to append to
+     * @param segments the segments to render
+     * @param result   the result being reported
+     * @param correct  the amount of correctly answered questions of the result
+     * @param question the missed question being rendered, or null outside of the missed questions
+     * @param answer   the answer to the missed question, or null if it was not answered
+     */
+    private void render(final StringBuilder out, final Segment[] segments, final PlayerResult result,
+                        final int correct, final QuizQuestion question, final String answer) {
+        final Quiz quiz;
+        quiz = result.getQuiz();
+
+        for (final Segment segment : segments) {
+            switch (segment.kind) {
+                case ReportTemplate.LITERAL -> out.append(segment.literal);
+                case ReportTemplate.PLAYER -> this.escaper.append(out, result.getPlayer());
+                case ReportTemplate.GRADE -> this.appendGrade(out, correct, quiz.getQuestionCount());
+                case ReportTemplate.CORRECT -> out.append(correct);
+                case ReportTemplate.TOTAL -> out.append(quiz.getQuestionCount());
+                case ReportTemplate.QUESTION -> this.escaper.append(out, question.getQuestionText());
+                case ReportTemplate.ANSWER -> this.escaper.append(out, answer);
+                case ReportTemplate.BEST_ANSWER -> this.escaper.append(out, question.getBestAnswer());
+                case ReportTemplate.IF_ANSWER -> {
+                    if (answer != null) {
+                        this.render(out, segment.children, result, correct, question, answer);
+                    }
+                }
+                case ReportTemplate.MISSED -> quiz.forEachQuestion((missed) -> {
+                    if (!quiz.getRecordedResultFor(missed)) {
+                        this.render(out, segment.children, result, correct, missed,
+                                    quiz.getRecordedAnswerFor(missed));
+                    }
+                });
+                default -> throw new IllegalStateException("Unknown report segment " + segment.kind + ".");
+            }
+        }
+    }
+
+    /**
+     * Appends the percentage of correctly answered questions, formatted the same way as on the summary screen: with
+     * at most two decimals, rounded half to even, and without trailing zeros. A quiz without any questions is graded
+     * 0%, since none of its questions were answered correctly.
+     *
+     * @param out     the builder to append to
+     * @param correct the amount of correctly answered questions
+     * @param total   the amount of questions
+     */
+    private void appendGrade(final StringBuilder out, final int correct, final int total) {
+        if (total == 0) {
+            out.append(0).append(this.percentSign);
+            return;
+        }
+
+        final long scaled;
+        final long remainder;
+        long hundredths;
+
+        scaled = (long) correct * ReportTemplate.PERCENT_HUNDREDTHS;
+        hundredths = scaled / total;
+        remainder = scaled % total;
+
+        if (remainder * 2 > total || remainder * 2 == total && ReportTemplate.roundsTieUp(correct, total, hundredths)) {
+            hundredths++;
+        }
+
+        final long whole;
+        final long fraction;
+
+        whole = hundredths / ReportTemplate.HUNDREDTHS;
+        fraction = hundredths % ReportTemplate.HUNDREDTHS;
+
+        out.append(whole);
+
+        if (fraction != 0) {
+            out.append(this.decimalSeparator).append(fraction / ReportTemplate.TENTHS);
+
+            if (fraction % ReportTemplate.TENTHS != 0) {
+                out.append(fraction % ReportTemplate.TENTHS);
+            }
+        }
+
+        out.append(this.percentSign);
+    }
+
+    /**
+     * Determines whether a grade that lies exactly halfway between two hundredths of a percent is rounded up.
+     * <p>
+     * The summary screen formats the grade as a double percentage, which is rounded by its exact binary value. That
+     * value is slightly above or below most ties, so those are rounded towards it, and only exact ties are rounded
+     * to even.
+     *
+     * @param correct    the amount of correctly answered questions
+     * @param total      the amount of questions
+     * @param hundredths the grade in hundredths of a percent, rounded down
+     * @return whether the grade is rounded up
+     */
+    private static boolean roundsTieUp(final int correct, final int total, final long hundredths) {
+        final double percentage;
+        final double error;
+
+        percentage = (double) correct / total * ReportTemplate.HUNDREDTHS;
+        error = Math.fma(percentage, ReportTemplate.HUNDREDTHS, -(hundredths + ReportTemplate.HALF));
+
+        if (error != 0) {
+            return error > 0;
+        }
+
+        return hundredths % 2 != 0;
+    }
+
+    /**
+     * Represents a single compiled part of a template body, which is literal text, a value, or a section with its
+     * own segments.
+     */
+    private static final class Segment {
+
+        private final int kind;
+        private final String literal;
+        private final Segment[] children;
+
+        /**
+         * Creates a new segment.
+         *
+         * @param kind     the kind of the segment
+         * @param literal  the literal text of the segment, or null if it is not literal text
+         * @param children the segments within the segment, or null if it is not a section
+         */
+        private Segment(final int kind, final String literal, final Segment[] children) {
+            this.kind = kind;
+            this.literal = literal;
+            this.children = children;
+        }
+
+    }
+
+    /**
+     * Represents the parser of a template body, which reads it from start to end once.
+     */
+    private static final class Parser {
+
+        private final String body;
+
+        private int position;
+
+        /**
+         * Creates a new parser at the start of the specified body.
+         *
+         * @param body the template body to parse
+         */
+        private Parser(final String body) {
+            this.body = body;
+        }
+
+        /**
+         * Parses segments up to the specified closing tag, or up to the end of the body if there is none.
+         *
+         * @param closingTag the name of the tag that closes the current section, or null at the top level
+         * @param inMissed   whether the segments are within the missed questions
+         * @return the parsed segments
+         */
+        private Segment[] parse(final String closingTag, final boolean inMissed) {
+            final List<Segment> segments;
+            final StringBuilder literal;
+
+            segments = new ArrayList<>();
+            literal = new StringBuilder();
+
+            while (this.position < this.body.length()) {
+                final char character;
+                character = this.body.charAt(this.position);
+
+                if (character != ReportTemplate.TAG_START) {
+                    literal.append(character);
+                    this.position++;
+                    continue;
+                }
+
+                final int tagEnd;
+                final String tag;
+
+                tagEnd = this.body.indexOf(ReportTemplate.TAG_END, this.position);
+                if (tagEnd < 0) {
+                    throw new IllegalArgumentException("The report tag at " + this.position + " is never closed.");
+                }
+
+                tag = this.body.substring(this.position + 1, tagEnd);
+                this.position = tagEnd + 1;
+
+                if (!literal.isEmpty()) {
+                    segments.add(new Segment(ReportTemplate.LITERAL, literal.toString(), null));
+                    literal.setLength(0);
+                }
+
+                if (tag.isEmpty()) {
+                    throw new IllegalArgumentException("The report tag at " + tagEnd + " is empty.");
+                }
+
+                final char marker;
+                final String name;
+
+                marker = tag.charAt(0);
+                name = tag.substring(1);
+
+                if (marker == ReportTemplate.CLOSE_MARKER) {
+                    if (!name.equals(closingTag)) {
+                        throw new IllegalArgumentException("The report tag {" + tag + "} does not close a section.");
+                    }
+
+                    return segments.toArray(new Segment[0]);
+                }
+
+                segments.add(this.parseTag(tag, marker, name, inMissed));
+            }
+
+            if (closingTag != null) {
+                throw new IllegalArgumentException("The report section {" + closingTag + "} is never closed.");
+            }
+
+            if (!literal.isEmpty()) {
+                segments.add(new Segment(ReportTemplate.LITERAL, literal.toString(), null));
+            }
+
+            return segments.toArray(new Segment[0]);
+        }
+
+        /**
+         * Parses a single tag, including the segments of the section it opens.
+         *
+         * @param tag      the entire tag, without braces
+         * @param marker   the first character of the tag
+         * @param name     the tag without its first character
+         * @param inMissed whether the tag is within the missed questions
+         * @return the parsed segment
+         */
+        private Segment parseTag(final String tag, final char marker, final String name, final boolean inMissed) {
+            if (marker == ReportTemplate.LOOP_MARKER && name.equals(ReportTemplate.MISSED_TAG) && !inMissed) {
+                return new Segment(ReportTemplate.MISSED, null, this.parse(ReportTemplate.MISSED_TAG, true));
+            }
+
+            if (marker == ReportTemplate.CONDITION_MARKER && name.equals(ReportTemplate.IF_ANSWER_TAG) && inMissed) {
+                return new Segment(ReportTemplate.IF_ANSWER, null, this.parse(ReportTemplate.IF_ANSWER_TAG, true));
+            }
+
+            for (int kind = ReportTemplate.PLAYER; kind < ReportTemplate.FIELD_TAGS.length; kind++) {
+                if (!ReportTemplate.FIELD_TAGS[kind].equals(tag)) {
+                    continue;
+                }
+
+                if (kind >= ReportTemplate.QUESTION && !inMissed) {
+                    throw new IllegalArgumentException("The report tag {" + tag + "} is only allowed within {#"
+                                                       + ReportTemplate.MISSED_TAG + "}.");
+                }
+
+                return new Segment(kind, null, null);
+            }
+
+            throw new IllegalArgumentException("The report tag {" + tag + "} is not supported here.");
+        }
+
+    }
+
+}
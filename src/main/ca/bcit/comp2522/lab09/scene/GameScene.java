@@ -1,12 +1,17 @@
 package ca.bcit.comp2522.lab09.scene;
 
 import ca.bcit.comp2522.lab09.Destroyable;
+import ca.bcit.comp2522.lab09.Lifecycle;
 import ca.bcit.comp2522.lab09.Quiz;
+import ca.bcit.comp2522.lab09.QuizCheckpoint;
 import ca.bcit.comp2522.lab09.QuizQuestion;
+import ca.bcit.comp2522.lab09.bank.QuestionBank;
+import ca.bcit.comp2522.lab09.metrics.FxTasks;
+import ca.bcit.comp2522.lab09.service.StageActivity;
 import ca.bcit.comp2522.lab09.service.TimerService;
-import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
+import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
@@ -16,9 +21,8 @@ import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
 
-import java.io.IOException;
-import java.nio.file.Path;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 /**
@@ -29,16 +33,38 @@ import java.util.function.Consumer;
  */
 public final class GameScene extends VBox implements Destroyable {
 
-    private static final Path QUESTIONS_FILE = Path.of("quiz.txt");
-    private static final int QUESTIONS_PER_GAME = 10;
+    /** This is the amount of questions on every game. */
+    public static final int QUESTIONS_PER_GAME = 10;
+
+    /** This is the id of the text showing the current question. */
+    public static final String QUESTION_TEXT_ID = "questionText";
+
+    /** This is the id of the text showing the time remaining on the current question. */
+    public static final String TIMER_TEXT_ID = "timerText";
+
+    /** This is the id of the field the answer is typed into, which submits the answer when enter is released. */
+    public static final String ANSWER_INPUT_ID = "answerInput";
+
+    /** This is the id of the button that submits the answer. */
+    public static final String SUBMIT_BUTTON_ID = "submitButton";
+
+    /** This is the id of the button that ends the game early. */
+    public static final String FINISH_BUTTON_ID = "finishButton";
+
     private static final long MILLIS_PER_QUESTION = TimeUnit.SECONDS.toMillis(10);
 
     private static final double ELEMENT_SPACING = 25.0;
 
+    private static final long NO_PENDING_MILLIS = -1;
+
     private final Consumer<Quiz> onComplete;
 
     private final Quiz quiz;
+    private final QuizCheckpoint checkpoint;
+    private final Lifecycle lifecycle;
+    private final StageActivity activity;
     private final TimerService questionTimer;
+    private final AtomicLong pendingMillisRemaining;
 
     private final Label questionText;
     private final Label timerText;
@@ -52,17 +78,60 @@ public final class GameScene extends VBox implements Destroyable {
     /**
      * Creates a new game scene. This will immediately display the first question and begin the timer.
      *
+     * @param bank       the question bank to take the questions of the game from
+     * @param onComplete the complete observer that can processes the game that this scene played
+     */
+    public GameScene(final QuestionBank bank, final Consumer<Quiz> onComplete) {
+        this(Quiz.fromBank(bank, GameScene.QUESTIONS_PER_GAME, true), onComplete);
+    }
+
+    /**
+     * Creates a new game scene that plays the specified quiz. This will immediately display the first question and
+     * begin the timer.
+     *
+     * @param quiz       the quiz to play
+     * @param onComplete the complete observer that can processes the game that this scene played
+     */
+    public GameScene(final Quiz quiz, final Consumer<Quiz> onComplete) {
+        this(quiz, null, onComplete);
+    }
+
+    /**
+     * Creates a new game scene that plays the quiz of the specified checkpoint, from where the checkpoint left off.
+     * This will immediately display the current question and continue its timer.
+     *
+     * @param checkpoint the checkpoint of the quiz to play, which records every answer and tick of the timer
+     * @param onComplete the complete observer that can processes the game that this scene played
+     */
+    public GameScene(final QuizCheckpoint checkpoint, final Consumer<Quiz> onComplete) {
+        this(checkpoint.getQuiz(), checkpoint, onComplete);
+    }
+
+    /**
+     * Creates a new game scene that plays the specified quiz, optionally checkpointing it. This will immediately
+     * display the next question and begin the timer.
+     *
+     * @param quiz       the quiz to play
+     * @param checkpoint the checkpoint of the quiz, or null if the quiz is not checkpointed
      * @param onComplete the complete observer that can processes the game that this scene played
-     * @throws IOException if the quiz questions cannot be loaded for the game
      */
-    public GameScene(final Consumer<Quiz> onComplete) throws IOException {
+    private GameScene(final Quiz quiz, final QuizCheckpoint checkpoint, final Consumer<Quiz> onComplete) {
         this.onComplete = onComplete;
 
-        this.quiz = Quiz.fromQuestionsFile(GameScene.QUESTIONS_FILE, GameScene.QUESTIONS_PER_GAME, true);
+        this.quiz = quiz;
+        this.checkpoint = checkpoint;
 
-        this.questionTimer = new TimerService(GameScene.MILLIS_PER_QUESTION, this::setMillisRemaining);
+        this.lifecycle = new Lifecycle(this);
+        this.activity = new StageActivity();
+        this.questionTimer = new TimerService(GameScene.MILLIS_PER_QUESTION, this.activity, this::setMillisRemaining);
+        this.lifecycle.trackService("question timer", this.questionTimer);
+        this.pendingMillisRemaining = new AtomicLong(GameScene.NO_PENDING_MILLIS);
         this.questionTimer.setOnSucceeded((_) -> this.lockInAnswer());
 
+        if (checkpoint != null) {
+            this.questionTimer.setOnSuspend(checkpoint::recordSuspended);
+        }
+
         this.questionText = this.createQuestionText();
         this.timerText = this.createTimerText();
         this.answerInput = this.createAnswerInput();
@@ -85,6 +154,16 @@ public final class GameScene extends VBox implements Destroyable {
         this.getChildren().add(answerArea);
         this.getChildren().add(this.finishButton);
 
+        // The timer follows whichever window this scene ends up shown in, until this scene is destroyed.
+        this.lifecycle.track("stage activity", () -> this.activity.watch(null));
+        this.lifecycle.trackSubscription("window subscription", this.sceneProperty()
+                                                                    .flatMap(Scene::windowProperty)
+                                                                    .subscribe(this.activity::watch));
+
+        if (checkpoint != null && checkpoint.getMillisRemaining() >= 0) {
+            this.questionTimer.setNextMilliseconds(Math.max(1, checkpoint.getMillisRemaining()));
+        }
+
         this.updateRunningScore();
         this.nextQuestion();
     }
@@ -98,6 +177,7 @@ public final class GameScene extends VBox implements Destroyable {
         final Label text;
         text = new Label();
 
+        text.setId(GameScene.QUESTION_TEXT_ID);
         text.getStyleClass().add("question-text");
 
         return text;
@@ -112,6 +192,7 @@ public final class GameScene extends VBox implements Destroyable {
         final Label text;
         text = new Label();
 
+        text.setId(GameScene.TIMER_TEXT_ID);
         text.getStyleClass().add("timer-text");
 
         return text;
@@ -126,6 +207,7 @@ public final class GameScene extends VBox implements Destroyable {
         final TextField field;
         field = new TextField();
 
+        field.setId(GameScene.ANSWER_INPUT_ID);
         field.getStyleClass().add("answer-input");
         field.setPromptText("Enter your answer");
         field.setOnKeyReleased((event) -> {
@@ -146,6 +228,7 @@ public final class GameScene extends VBox implements Destroyable {
         final Button button;
         button = new Button();
 
+        button.setId(GameScene.SUBMIT_BUTTON_ID);
         button.setText("Submit");
         button.setOnAction(_ -> {
             this.submitAnswer();
@@ -164,6 +247,7 @@ public final class GameScene extends VBox implements Destroyable {
         final Button button;
         button = new Button();
 
+        button.setId(GameScene.FINISH_BUTTON_ID);
         button.setText("End Game");
         button.setOnAction(_ -> this.finishGame());
 
@@ -280,26 +364,43 @@ public final class GameScene extends VBox implements Destroyable {
 
     /**
      * Updates the timer text to display the specified amount of milliseconds remaining.
+     * <p>
+     * This is called from the timer thread, and only posts an update to the JavaFX application thread if none is
+     * pending yet. An update that is still pending shows the latest time instead, so a busy application thread never
+     * falls behind on timer updates.
      *
      * @param millis the amount of milliseconds remaining
      */
     private void setMillisRemaining(final long millis) {
+        if (this.checkpoint != null) {
+            this.checkpoint.recordMillisRemaining(millis);
+        }
+
+        if (this.pendingMillisRemaining.getAndSet(millis) == GameScene.NO_PENDING_MILLIS) {
+            FxTasks.runLater(this::showMillisRemaining);
+        }
+    }
+
+    /**
+     * Displays the latest amount of milliseconds remaining in the timer text.
+     */
+    private void showMillisRemaining() {
         final Color safeColor = Color.LIGHTGREEN;
         final Color dangerColor = Color.RED;
         final double millisPerSeconds = 1000;
 
+        final long millis;
         final double seconds;
         final double elapsedPerc;
         final Color indicatedColor;
 
+        millis = this.pendingMillisRemaining.getAndSet(GameScene.NO_PENDING_MILLIS);
         seconds = millis / millisPerSeconds;
         elapsedPerc = 1 - ((double) millis) / MILLIS_PER_QUESTION;
         indicatedColor = safeColor.interpolate(dangerColor, elapsedPerc);
 
-        Platform.runLater(() -> {
-            this.timerText.setTextFill(indicatedColor);
-            this.timerText.setText(String.format("Remaining time: %.2fs", seconds));
-        });
+        this.timerText.setTextFill(indicatedColor);
+        this.timerText.setText(String.format("Remaining time: %.2fs", seconds));
     }
 
     /**
@@ -316,6 +417,10 @@ public final class GameScene extends VBox implements Destroyable {
         this.stopTimer();
         this.toggleInputs(false);
 
+        if (this.checkpoint != null) {
+            this.checkpoint.finish();
+        }
+
         this.onComplete.accept(this.quiz);
     }
 
@@ -335,6 +440,6 @@ public final class GameScene extends VBox implements Destroyable {
 
     @Override
     public void destroy() {
-        this.stopTimer();
+        this.lifecycle.destroy();
     }
 }
@@ -3,6 +3,7 @@ package ca.bcit.comp2522.lab09.scene;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.Button;
+import javafx.scene.control.Label;
 import javafx.scene.layout.VBox;
 import javafx.scene.text.Text;
 
@@ -14,25 +15,82 @@ import javafx.scene.text.Text;
  */
 public final class HomeScene extends VBox {
 
+    /** This is the id of the button that starts a new game. */
+    public static final String START_BUTTON_ID = "startButton";
+
+    /** This is the id of the button that starts a practice game. */
+    public static final String PRACTICE_BUTTON_ID = "practiceButton";
+
+    /** This is the id of the button that resumes the unfinished game, which is only shown if there is one. */
+    public static final String RESUME_BUTTON_ID = "resumeButton";
+
     private static final double ELEMENT_SPACING = 25.0;
 
     /** This is the action that is run when the start button is pressed. */
     private final Runnable startAction;
 
+    /** This is the action that is run when the practice button is pressed. */
+    private final Runnable practiceAction;
+
+    /** This is the action that is run when the resume button is pressed, or null if there is nothing to resume. */
+    private final Runnable resumeAction;
+
+    /** This is the notice shown under the title, or null if there is nothing to tell the player. */
+    private final String notice;
+
     /**
-     * Creates a new home screen with the given start action.
+     * Creates a new home screen with the given start and practice actions.
      *
-     * @param startAction the action executed when the start button is pressed
+     * @param startAction    the action executed when the start button is pressed
+     * @param practiceAction the action executed when the practice button is pressed
      */
-    public HomeScene(final Runnable startAction) {
+    public HomeScene(final Runnable startAction, final Runnable practiceAction) {
+        this(startAction, practiceAction, null);
+    }
+
+    /**
+     * Creates a new home screen with the given start, practice, and resume actions.
+     *
+     * @param startAction    the action executed when the start button is pressed
+     * @param practiceAction the action executed when the practice button is pressed
+     * @param resumeAction   the action executed when the resume button is pressed, or null to not offer resuming
+     */
+    public HomeScene(final Runnable startAction, final Runnable practiceAction, final Runnable resumeAction) {
+        this(startAction, practiceAction, resumeAction, null);
+    }
+
+    /**
+     * Creates a new home screen with the given start, practice, and resume actions, which shows the given notice
+     * under the title.
+     *
+     * @param startAction    the action executed when the start button is pressed
+     * @param practiceAction the action executed when the practice button is pressed
+     * @param resumeAction   the action executed when the resume button is pressed, or null to not offer resuming
+     * @param notice         the notice to show, or null to not show any
+     */
+    public HomeScene(final Runnable startAction, final Runnable practiceAction, final Runnable resumeAction,
+                     final String notice) {
         this.startAction = startAction;
+        this.practiceAction = practiceAction;
+        this.resumeAction = resumeAction;
+        this.notice = notice;
 
         this.setAlignment(Pos.CENTER);
         this.setSpacing(HomeScene.ELEMENT_SPACING);
         this.setPadding(new Insets(HomeScene.ELEMENT_SPACING));
 
         this.getChildren().add(this.createGameTitle());
+
+        if (this.notice != null) {
+            this.getChildren().add(this.createNoticeText());
+        }
+
+        if (this.resumeAction != null) {
+            this.getChildren().add(this.createResumeButton());
+        }
+
         this.getChildren().add(this.createStartButton());
+        this.getChildren().add(this.createPracticeButton());
     }
 
     /**
@@ -49,6 +107,20 @@ public final class HomeScene extends VBox {
         return text;
     }
 
+    /**
+     * Creates a new label for the notice.
+     *
+     * @return the notice label
+     */
+    private Label createNoticeText() {
+        final Label label;
+        label = new Label(this.notice);
+
+        label.getStyleClass().add("notice-text");
+
+        return label;
+    }
+
     /**
      * Creates a new button to start the game.
      *
@@ -58,10 +130,43 @@ public final class HomeScene extends VBox {
         final Button button;
         button = new Button();
 
+        button.setId(HomeScene.START_BUTTON_ID);
         button.setText("Start Quiz");
         button.setOnAction(_ -> this.startAction.run());
 
         return button;
     }
 
+    /**
+     * Creates a new button to resume the game that was left unfinished.
+     *
+     * @return the resume button
+     */
+    private Button createResumeButton() {
+        final Button button;
+        button = new Button();
+
+        button.setId(HomeScene.RESUME_BUTTON_ID);
+        button.setText("Resume Quiz");
+        button.setOnAction(_ -> this.resumeAction.run());
+
+        return button;
+    }
+
+    /**
+     * Creates a new button to start a practice game, made of the questions that are due for review.
+     *
+     * @return the practice button
+     */
+    private Button createPracticeButton() {
+        final Button button;
+        button = new Button();
+
+        button.setId(HomeScene.PRACTICE_BUTTON_ID);
+        button.setText("Practice");
+        button.setOnAction(_ -> this.practiceAction.run());
+
+        return button;
+    }
+
 }
@@ -20,6 +20,9 @@ import java.text.DecimalFormat;
  */
 public final class SummaryScene extends HBox {
 
+    /** This is the id of the button that goes back to the home screen. */
+    public static final String EXIT_BUTTON_ID = "exitButton";
+
     private static final double ELEMENT_SPACING = 25.0;
 
     private final Quiz playedQuiz;
@@ -145,6 +148,7 @@ public final class SummaryScene extends HBox {
         final Button button;
         button = new Button();
 
+        button.setId(SummaryScene.EXIT_BUTTON_ID);
         button.setText("Exit");
         button.setOnAction(_ -> this.onExit.run());
 
@@ -0,0 +1,132 @@
+package ca.bcit.comp2522.lab09.service;
+
+import javafx.beans.value.ChangeListener;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Represents whether a window is being looked at, which decides how often the timers shown in it need to tick.
+ * <p>
+ * A window is visible while it is showing and not iconified, and active while it is visible and focused. The state
+ * can be read from any thread, while the window itself is only ever watched from the JavaFX application thread. A
+ * window that is not watched at all counts as active, so timers that are not shown in any window tick normally.
+ *
+ * @author Ole Lammers & Tianyou Xie
+ * @version 1.0
+ */
+public final class StageActivity {
+
+    private final List<Runnable> listeners;
+    private final ChangeListener<Boolean> windowListener;
+
+    private volatile boolean visible;
+    private volatile boolean focused;
+
+    private Window window;
+
+    /**
+     * Creates a new activity that does not watch any window yet, and is active until it does.
+     */
+    public StageActivity() {
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.windowListener = (_, _, _) -> this.update();
+        this.visible = true;
+        this.focused = true;
+    }
+
+    /**
+     * Starts watching the specified window instead of the currently watched window.
+     *
+     * @param window the window to watch, or null to stop watching
+     */
+    public void watch(final Window window) {
+        if (this.window != null) {
+            this.window.showingProperty().removeListener(this.windowListener);
+            this.window.focusedProperty().removeListener(this.windowListener);
+
+            if (this.window instanceof Stage stage) {
+                stage.iconifiedProperty().removeListener(this.windowListener);
+            }
+        }
+
+        this.window = window;
+
+        if (window != null) {
+            window.showingProperty().addListener(this.windowListener);
+            window.focusedProperty().addListener(this.windowListener);
+
+            if (window instanceof Stage stage) {
+                stage.iconifiedProperty().addListener(this.windowListener);
+            }
+        }
+
+        this.update();
+    }
+
+    /**
+     * Reads the state of the watched window, and notifies every listener if it changed.
+     */
+    private void update() {
+        final boolean nowVisible;
+        final boolean nowFocused;
+
+        if (this.window == null) {
+            nowVisible = true;
+            nowFocused = true;
+        } else {
+            nowVisible = this.window.isShowing() && !(this.window instanceof Stage stage && stage.isIconified());
+            nowFocused = this.window.isFocused();
+        }
+
+        if (nowVisible == this.visible && nowFocused == this.focused) {
+            return;
+        }
+
+        this.visible = nowVisible;
+        this.focused = nowFocused;
+
+        for (final Runnable listener : this.listeners) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Adds a listener that is run whenever the window becomes more or less visible or focused.
+     *
+     * @param listener the listener to add
+     */
+    public void addListener(final Runnable listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added with {@link #addListener(Runnable)}.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeListener(final Runnable listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Determines whether the window can be seen, which is when it is showing and not iconified.
+     *
+     * @return whether the window is visible
+     */
+    public boolean isVisible() {
+        return this.visible;
+    }
+
+    /**
+     * Determines whether the window is visible and has the focus.
+     *
+     * @return whether the window is active
+     */
+    public boolean isActive() {
+        return this.visible && this.focused;
+    }
+
+}
@@ -1,14 +1,26 @@
 package ca.bcit.comp2522.lab09.service;
 
+import ca.bcit.comp2522.lab09.metrics.LatencyHistogram;
+import ca.bcit.comp2522.lab09.metrics.Metrics;
+import ca.bcit.comp2522.lab09.metrics.TimerTickEvent;
 import javafx.concurrent.Service;
 import javafx.concurrent.Task;
+import jdk.jfr.EventType;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Consumer;
 
 /**
  * Represents a service that starts a timer which will tick down and return when it is ended.
  * <p>
  * When terminated, either naturally or forcefully, the amount of milliseconds remaining is returned.
+ * <p>
+ * The timer runs until a fixed deadline, rather than counting its ticks, so it always ends on time no matter how
+ * often it ticks. How often it ticks follows the activity of the window it is shown in: often enough for a smooth
+ * countdown while the window is active, rarely while the window is visible but not focused, and not at all while the
+ * window is hidden, in which case the timer sleeps until its deadline unless the window is shown again first. The
+ * time left when it stops ticking is given to the suspend handler, since no tick reports it until the window is shown.
  *
  * @author Ole Lammers & Tianyou Xie
  * @version 1.0
@@ -16,24 +28,46 @@ import java.util.function.Consumer;
 public final class TimerService extends Service<Long> {
 
     private static final long MIN_MILLISECONDS = 1;
+    private static final long ACTIVE_TICK_NANOSECONDS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long INACTIVE_TICK_NANOSECONDS = TimeUnit.MILLISECONDS.toNanos(250);
+
+    private static final LatencyHistogram TICK_LAG = Metrics.histogram("timer.tick.lag");
+    private static final EventType TICK_EVENT_TYPE = EventType.getEventType(TimerTickEvent.class);
 
     private final long milliseconds;
+    private final StageActivity activity;
     private final Consumer<Long> onTick;
 
+    private volatile Consumer<Long> onSuspend;
+    private long startMilliseconds;
+
     /**
-     * Creates a new timer that runs for the specified amount of milliseconds.
+     * Creates a new timer that runs for the specified amount of milliseconds, and always ticks as if it is looked at.
      *
      * @param milliseconds the milliseconds this timer will run for
-     * @param onTick       the handler for each millisecond countdown tick, this is called with the milliseconds
-     *                     remaining
+     * @param onTick       the handler for each countdown tick, this is called with the milliseconds remaining
      */
     public TimerService(final long milliseconds, final Consumer<Long> onTick) {
+        this(milliseconds, new StageActivity(), onTick);
+    }
+
+    /**
+     * Creates a new timer that runs for the specified amount of milliseconds, and ticks as often as the specified
+     * activity calls for.
+     *
+     * @param milliseconds the milliseconds this timer will run for
+     * @param activity     the activity of the window the timer is shown in
+     * @param onTick       the handler for each countdown tick, this is called with the milliseconds remaining
+     */
+    public TimerService(final long milliseconds, final StageActivity activity, final Consumer<Long> onTick) {
         super();
 
         TimerService.validateMilliseconds(milliseconds);
 
         this.milliseconds = milliseconds;
+        this.activity = activity;
         this.onTick = onTick;
+        this.startMilliseconds = milliseconds;
     }
 
     /**
@@ -48,29 +82,139 @@ public final class TimerService extends Service<Long> {
         }
     }
 
+    /**
+     * Determines how long to wait until the next tick, according to the current activity.
+     *
+     * @param remainingNanos the time left until the deadline
+     * @return the time until the next tick, which is never past the deadline
+     */
+    private long getTickNanos(final long remainingNanos) {
+        if (this.activity.isActive()) {
+            return Math.min(remainingNanos, TimerService.ACTIVE_TICK_NANOSECONDS);
+        }
+
+        if (this.activity.isVisible()) {
+            return Math.min(remainingNanos, TimerService.INACTIVE_TICK_NANOSECONDS);
+        }
+
+        return remainingNanos;
+    }
+
+    /**
+     * Waits for a single tick, and records how much later than intended the tick woke up. The wait ends early if the
+     * waiting thread is unparked or interrupted, in which case no lag is recorded.
+     * <p>
+     * The clock is only read when metrics are enabled, or the flight recorder event is enabled.
+     *
+     * @param tickNanos the time to wait
+     */
+    private static void waitTick(final long tickNanos) {
+        if (!Metrics.ENABLED && !TimerService.TICK_EVENT_TYPE.isEnabled()) {
+            LockSupport.parkNanos(tickNanos);
+            return;
+        }
+
+        final TimerTickEvent event;
+        final long startNanos;
+
+        event = new TimerTickEvent();
+        event.begin();
+        startNanos = System.nanoTime();
+
+        LockSupport.parkNanos(tickNanos);
+
+        final long lag;
+        lag = System.nanoTime() - startNanos - tickNanos;
+
+        if (lag >= 0) {
+            event.lag = lag;
+            event.commit();
+            TimerService.TICK_LAG.record(lag);
+        }
+    }
+
+    /**
+     * Sets the handler that is called with the time left whenever the timer stops ticking because the window is
+     * hidden, from the timer thread.
+     *
+     * @param onSuspend the handler, or null to not be notified
+     */
+    public void setOnSuspend(final Consumer<Long> onSuspend) {
+        this.onSuspend = onSuspend;
+    }
+
+    /**
+     * Makes the next started timer run for the specified amount of milliseconds instead, such as to continue a timer
+     * that was interrupted. Timers started after it run for the full amount of milliseconds again.
+     *
+     * @param milliseconds the milliseconds the next timer will run for
+     */
+    public void setNextMilliseconds(final long milliseconds) {
+        TimerService.validateMilliseconds(milliseconds);
+
+        this.startMilliseconds = milliseconds;
+    }
+
     @Override
     protected Task<Long> createTask() {
+        final long startMilliseconds;
+        startMilliseconds = this.startMilliseconds;
+        this.startMilliseconds = this.milliseconds;
+
         return new Task<>() {
             @Override
             protected Long call() {
-                long millisRemaining = TimerService.this.milliseconds;
-
-                while (millisRemaining > 0) {
-                    try {
-                        Thread.sleep(1);
-                        TimerService.this.onTick.accept(millisRemaining);
-                    } catch (InterruptedException _) {
-                        if (this.isCancelled()) {
-                            break;
+                final long deadlineNanos;
+                final Thread timerThread;
+                final Runnable wakeUp;
+
+                deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(startMilliseconds);
+                timerThread = Thread.currentThread();
+                wakeUp = () -> LockSupport.unpark(timerThread);
+
+                // A change in activity wakes the timer, so that a timer sleeping until its deadline in a hidden
+                // window starts ticking again as soon as the window is shown.
+                TimerService.this.activity.addListener(wakeUp);
+
+                try {
+                    long remainingNanos;
+                    while ((remainingNanos = deadlineNanos - System.nanoTime()) > 0 && !this.isCancelled()) {
+                        final Consumer<Long> suspendHandler;
+                        suspendHandler = TimerService.this.onSuspend;
+
+                        if (suspendHandler != null && !TimerService.this.activity.isVisible()) {
+                            suspendHandler.accept(TimerService.toMillis(remainingNanos));
                         }
-                    }
 
-                    millisRemaining--;
+                        TimerService.waitTick(TimerService.this.getTickNanos(remainingNanos));
+                        Thread.interrupted();
+
+                        if (TimerService.this.activity.isVisible() && !this.isCancelled()) {
+                            TimerService.this.onTick.accept(TimerService.toMillis(deadlineNanos - System.nanoTime()));
+                        }
+                    }
+                } finally {
+                    TimerService.this.activity.removeListener(wakeUp);
                 }
 
+                final long millisRemaining;
+                millisRemaining = TimerService.toMillis(deadlineNanos - System.nanoTime());
+
                 TimerService.this.onTick.accept(millisRemaining);
                 return millisRemaining;
             }
         };
     }
+
+    /**
+     * Converts the specified time left to whole milliseconds, rounding up so that a timer only shows 0 once it has
+     * ended.
+     *
+     * @param remainingNanos the time left, in nanoseconds
+     * @return the time left in milliseconds, or 0 if no time is left
+     */
+    private static long toMillis(final long remainingNanos) {
+        return Math.max(0, Math.ceilDiv(remainingNanos, TimeUnit.MILLISECONDS.toNanos(1)));
+    }
+
 }